@@ -0,0 +1,326 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A single-pass alternative to {@link RowParser}. Characters are pulled from
+ * the underlying {@link Reader} into a reusable window and run through a small
+ * state machine, so quoted fields that span several lines are parsed once
+ * rather than re-parsed every time another line is appended. Unquoted field
+ * text is collected in one shared buffer and field boundaries are kept as
+ * offsets, so the only per-record allocations are the resulting strings.
+ * 
+ * The output is identical to {@link CSVReader} reading line by line with
+ * {@link RowParser}: line terminators inside quoted fields come back as '\n',
+ * and a quote preceded by a backslash inside a quoted field is kept.
+ */
+final class BufferedRowParser {
+	
+	static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	
+	private final Reader in;
+	private final char delimiter;
+	
+	private final char[] window;
+	private int pos = 0;
+	private int limit = 0;
+	private boolean eof = false;
+	
+	/*
+	 * Set after a '\r' so that a following '\n' is treated as part of the
+	 * same line terminator (as BufferedReader.readLine() does).
+	 */
+	private boolean skipLF = false;
+	
+	/*
+	 * Line terminators consumed so far, and the line the last record started 
+	 * on.
+	 */
+	private long lines = 0;
+	private long recordLine = 0;
+	
+	private char[] text = new char[1024];
+	private int[] ends = new int[32];
+	
+	// fields to turn into strings, or null for all
+	private boolean[] wanted;
+	
+	private RecordFilter filter;
+	private final Raw raw = new Raw();
+	
+	BufferedRowParser(Reader in, char delimiter) {
+		this(in, delimiter, DEFAULT_BUFFER_SIZE);
+	}
+	
+	BufferedRowParser(Reader in, char delimiter, int bufferSize) {
+		if (in == null) throw new NullPointerException();
+		if (bufferSize < 1) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		this.in = in;
+		this.delimiter = delimiter;
+		this.window = new char[bufferSize];
+	}
+	
+	/**
+	 * @return true if there are characters left to parse without blocking, in
+	 * the same sense as {@link Reader#ready()}.
+	 */
+	boolean ready() throws IOException {
+		if (skipLF) {
+			if (pos >= limit && in.ready()) fill();
+			if (pos < limit) {
+				if (window[pos] == '\n') pos++;
+				skipLF = false;
+			}
+		}
+		return pos < limit || (!eof && in.ready());
+	}
+	
+	/**
+	 * Blocks until there is another character to parse or the input ends, so
+	 * the answer comes from the data itself rather than from whatever the
+	 * underlying stream can deliver without blocking.
+	 * 
+	 * @return true if another record follows.
+	 */
+	boolean hasMore() throws IOException {
+		for (;;) {
+			if (pos >= limit && !fill()) return false;
+			if (!skipLF) return true;
+			skipLF = false;
+			if (window[pos] == '\n') pos++;
+		}
+	}
+	
+	/**
+	 * @return the fields of the next record the filter accepts, or null if the
+	 * input ended before another such record was started.
+	 * @throws IOException if the input ended inside a quoted field
+	 */
+	String[] next() throws IOException {
+		for (;;) {
+			int fieldCount = scan();
+			if (fieldCount < 0) return null;
+			if (filter == null || filter.accept(raw.reset(fieldCount))) return fields(fieldCount);
+		}
+	}
+	
+	/**
+	 * Parses the next record into {@link #text} and {@link #ends}.
+	 * 
+	 * @return its number of fields, or -1 if the input ended before another 
+	 * record was started.
+	 */
+	private int scan() throws IOException {
+		
+		char[] text = this.text;
+		int length = 0;
+		int fieldCount = 0;
+		boolean started = false;
+		boolean inQuotes = false;
+		char prev = 0;
+		recordLine = lines + 1;
+		
+		for (;;) {
+			if (pos >= limit && !fill()) {
+				if (inQuotes) throw new IOException("End of file");
+				if (!started) return -1;
+				break;
+			}
+			
+			char c = window[pos++];
+			
+			if (skipLF) {
+				skipLF = false;
+				if (c == '\n') continue;
+			}
+			started = true;
+			
+			if (c == '\n' || c == '\r') {
+				skipLF = c == '\r';
+				lines++;
+				if (!inQuotes) break;
+				c = '\n';
+			}
+			else if (c == delimiter && !inQuotes) {
+				if (fieldCount == ends.length) ends = grow(ends);
+				ends[fieldCount++] = length;
+				prev = c;
+				continue;
+			}
+			else if (c == '"') {
+				if (!inQuotes) {
+					inQuotes = true;
+					prev = c;
+					continue;
+				}
+				else if (prev != '\\') {
+					inQuotes = false;
+					prev = c;
+					continue;
+				}
+				// otherwise this is an escaped quote
+			}
+			
+			if (length == text.length) {
+				text = grow(text);
+				this.text = text;
+			}
+			text[length++] = c;
+			prev = c;
+		}
+		
+		if (fieldCount == ends.length) ends = grow(ends);
+		ends[fieldCount++] = length;
+		return fieldCount;
+	}
+	
+	private String[] fields(int fieldCount) {
+		char[] text = this.text;
+		String[] fields = new String[fieldCount];
+		int start = 0;
+		boolean[] wanted = this.wanted;
+		for (int i=0; i<fieldCount; i++) {
+			if (wanted == null || (i < wanted.length && wanted[i])) {
+				fields[i] = new String(text, start, ends[i] - start);
+			}
+			start = ends[i];
+		}
+		return fields;
+	}
+	
+	/**
+	 * @param wanted the fields, by position, that {@link #next()} should 
+	 * return; the others, including any past the end of the array, come back
+	 * as null. Null returns every field.
+	 */
+	void setWanted(boolean[] wanted) {
+		this.wanted = wanted;
+	}
+	
+	/**
+	 * @param filter skips the records it doesn't accept before their fields
+	 * are turned into strings; null accepts every record.
+	 */
+	void setFilter(RecordFilter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * @return the 1-based line on which the record last returned by 
+	 * {@link #next()} started.
+	 */
+	long line() {
+		return recordLine;
+	}
+	
+	private boolean fill() throws IOException {
+		if (eof) return false;
+		int n = in.read(window, 0, window.length);
+		while (n == 0) n = in.read(window, 0, window.length);
+		if (n < 0) {
+			eof = true;
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+	
+	private static char[] grow(char[] a) {
+		char[] b = new char[a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+	
+	/**
+	 * The record just scanned, as slices of {@link #text}.
+	 */
+	private final class Raw implements RecordFilter.RawRecord, CharSequence {
+		
+		private int count;
+		private int start;
+		private int end;
+		
+		Raw reset(int count) {
+			this.count = count;
+			return this;
+		}
+		
+		public int count() {
+			return count;
+		}
+		
+		public CharSequence field(int index) {
+			if (index >= count) {
+				start = end = 0;
+			}
+			else {
+				start = index == 0 ? 0 : ends[index - 1];
+				end = ends[index];
+			}
+			return this;
+		}
+		
+		public int length() {
+			return end - start;
+		}
+		
+		public char charAt(int index) {
+			return text[start + index];
+		}
+		
+		public CharSequence subSequence(int from, int to) {
+			return toString().substring(from, to);
+		}
+		
+		@Override
+		public String toString() {
+			return new String(text, start, end - start);
+		}
+	}
+	
+	private static int[] grow(int[] a) {
+		int[] b = new int[a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
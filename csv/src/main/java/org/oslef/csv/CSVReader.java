@@ -48,11 +48,36 @@ import java.math.BigDecimal;
 import java.net.URL;
 
 public final class CSVReader {
+	
+	/**
+	 * Selects how records are split into fields.
+	 */
+	public enum ParserType {
+		/**
+		 * Reads a line at a time and hands it to {@link RowParser}, re-parsing
+		 * the accumulated text whenever a quoted field continues onto the next
+		 * line. {@link #getCurrentLine()} is available in this mode.
+		 */
+		LINE,
+		
+		/**
+		 * Parses the input in a single pass over a reusable character buffer
+		 * (see {@link BufferedRowParser}). Produces the same fields as 
+		 * {@link #LINE} with far less copying, but does not keep the raw text
+		 * of each record, so {@link #getCurrentLine()} returns null.
+		 */
+		SINGLE_PASS
+	}
 
 	private char delimiter = ',';
+	private ParserType parserType = ParserType.LINE;
+	private boolean lookAhead = false;
 	
 	private BufferedReader in;
+	private BufferedRowParser parser;
 	private String currentLine;
+	private long lines = 0;
+	private long lineNumber = 0;
 	
 	public CSVReader(File file) throws IOException {
 		in = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
@@ -70,28 +95,144 @@ public final class CSVReader {
 		this.in = new BufferedReader(in);
 	}
 	
+	/**
+	 * By default this reports whether the underlying reader is 
+	 * {@link Reader#ready() ready}, which can be false before the real end of
+	 * the data on pipes, slow disks and compressed streams. With
+	 * {@link #setLookAhead(boolean) look-ahead} enabled it instead blocks until
+	 * it has either seen the next character or reached the end of the input.
+	 */
 	public boolean hasNext() throws IOException {
+		if (lookAhead) {
+			if (parserType == ParserType.SINGLE_PASS) {
+				return parser().hasMore();
+			}
+			in.mark(1);
+			if (in.read() == -1) return false;
+			in.reset();
+			return true;
+		}
+		if (parser != null) return parser.ready();
 		return in.ready();
 	}
 	
+	/**
+	 * @return the fields of the next record. With a 
+	 * {@link #setFilter(RecordFilter) filter} set this is the next record the
+	 * filter accepts, or null if the input ends before there is one.
+	 */
 	public String[] next() throws IOException {
 		currentLine = null;
 		String[] values;
-		do{
-			if (!hasNext()){throw new IOException("End of file");}
-			currentLine = currentLine==null?in.readLine():currentLine + '\n' + in.readLine();
-			values = RowParser.parse(currentLine, delimiter);
-		}while(values==null);
+		
+		if (parserType == ParserType.SINGLE_PASS) {
+			values = parser().next();
+			if (values == null) {
+				if (filter != null) return null;
+				throw new IOException("End of file");
+			}
+			lineNumber = parser.line();
+			columns = values;
+			return columns;
+		}
+		
+		for (;;) {
+			if (filter != null && !hasNext()) return null;
+			
+			currentLine = null;
+			lineNumber = lines + 1;
+			do{
+				if (!hasNext()){throw new IOException("End of file");}
+				currentLine = currentLine==null?in.readLine():currentLine + '\n' + in.readLine();
+				lines++;
+				values = RowParser.parse(currentLine, delimiter);
+			}while(values==null);
+			
+			if (filter == null || filter.accept(raw.reset(values))) break;
+		}
 
 		columns = values;
 
 		return columns;
 	}
 	
+	private BufferedRowParser parser() {
+		if (parser == null) {
+			parser = new BufferedRowParser(in, delimiter);
+			parser.setWanted(projection);
+			parser.setFilter(filter);
+		}
+		return parser;
+	}
+	
+	private RecordFilter filter;
+	private final StringsRecord raw = new StringsRecord();
+	
+	/**
+	 * Skip the records the filter doesn't accept. The 
+	 * {@link ParserType#SINGLE_PASS} parser tests each record before turning
+	 * its fields into strings. Null (the default) returns every record. Takes
+	 * effect from the next record.
+	 */
+	public void setFilter(RecordFilter filter) {
+		this.filter = filter;
+		if (parser != null) parser.setFilter(filter);
+	}
+	
+	public RecordFilter getFilter() {
+		return filter;
+	}
+	
+	private static final class StringsRecord implements RecordFilter.RawRecord {
+		
+		private String[] values;
+		
+		StringsRecord reset(String[] values) {
+			this.values = values;
+			return this;
+		}
+		
+		public int count() {
+			return values.length;
+		}
+		
+		public CharSequence field(int index) {
+			return index < values.length ? values[index] : "";
+		}
+	}
+	
+	private boolean[] projection;
+	
+	/**
+	 * Only turn the fields marked true into strings; the others, including 
+	 * any past the end of the array, come back as null. Null (the default)
+	 * returns every field. Only the {@link ParserType#SINGLE_PASS} parser 
+	 * skips fields, the line parser always returns all of them. Takes effect
+	 * from the next record.
+	 */
+	public void setProjection(boolean[] projection) {
+		this.projection = projection;
+		if (parser != null) parser.setWanted(projection);
+	}
+	
+	public boolean[] getProjection() {
+		return projection;
+	}
+	
 	public String getCurrentLine() {
 		return currentLine;
 	}
 	
+	/**
+	 * @return the 1-based line of the input on which the current record 
+	 * starts, or 0 before the first call to {@link #next()}. Records with 
+	 * quoted line breaks span several lines, so this can skip ahead by more 
+	 * than one.
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+	
 	private String[] columns;
 	
 	public String[] getColumns() {
@@ -145,4 +286,30 @@ public final class CSVReader {
 	public void setDelimiter(char delimiter) {
 		this.delimiter = delimiter;
 	}
+
+	public boolean isLookAhead() {
+		return lookAhead;
+	}
+
+	/**
+	 * Decide the end of input by reading ahead rather than by asking the 
+	 * underlying reader whether it is ready. Use this for anything that is not
+	 * a plain local file: pipes, sockets, compressed streams.
+	 */
+	public void setLookAhead(boolean lookAhead) {
+		this.lookAhead = lookAhead;
+	}
+
+	public ParserType getParserType() {
+		return parserType;
+	}
+
+	/**
+	 * Must be called before the first call to {@link #next()}.
+	 */
+	public void setParserType(ParserType parserType) {
+		if (parserType == null) throw new NullPointerException();
+		if (parser != null || columns != null) throw new IllegalStateException("Cannot change the parser once reading has started");
+		this.parserType = parserType;
+	}
 }
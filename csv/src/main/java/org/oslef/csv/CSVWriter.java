@@ -49,14 +49,30 @@ public final class CSVWriter {
 	public static class QuoteSpec {
 		public enum QuoteMode{EVERYTHING, AS_NEEDED}
 		
+		/**
+		 * How values are checked and quotes in them replaced. REGEX scans a
+		 * value once per special character and replaces quotes with
+		 * {@link String#replaceAll(String, String)}, so '$' and '\' in the 
+		 * replacement are special. SINGLE_PASS finds everything in one scan 
+		 * and copies the value straight to the output around its quotes, 
+		 * writing the replacement literally.
+		 */
+		public enum Escaping{REGEX, SINGLE_PASS}
+		
 		private final String quote;
 		private final String quoteReplacement;
 		private final boolean quoteEverything;
+		private final boolean singlePass;
 		
 		public QuoteSpec(String quote, String quoteReplacement, QuoteMode mode) {
+			this(quote, quoteReplacement, mode, Escaping.REGEX);
+		}
+		
+		public QuoteSpec(String quote, String quoteReplacement, QuoteMode mode, Escaping escaping) {
 			super();
 			this.quote = quote;
 			this.quoteReplacement = quoteReplacement;
+			this.singlePass = escaping == Escaping.SINGLE_PASS;
 			switch(mode){
 			case AS_NEEDED:
 				quoteEverything = false;
@@ -88,7 +104,7 @@ public final class CSVWriter {
 		super();
 		this.writer = writer;
 		this.quoting = quoting;
-		quotePattern = Pattern.quote(quoting.quote);
+		quotePattern = quoting.quote == null ? null : Pattern.quote(quoting.quote);
 	}
 
 	public void flush() throws IOException {
@@ -108,6 +124,10 @@ public final class CSVWriter {
 			writer.append(delimiter);
 		}
 		isNewline = false;
+		if (quoting.singlePass) {
+			writeSinglePass(value);
+			return;
+		}
 		boolean valueHasQuotes = value.indexOf(quoting.quote)!=-1;
 		
 		boolean hasDelimiter = value.indexOf(delimiter)!=-1;
@@ -135,4 +155,58 @@ public final class CSVWriter {
 			}
 		}
 	}
+	
+	private void writeSinglePass(String value) throws IOException {
+		final String quote = quoting.quote;
+		final int length = value.length();
+		
+		// find the first quote, noting whether a delimiter or newline comes before it
+		boolean special = false;
+		int firstQuote = -1;
+		if (quote != null && quote.length() > 0) {
+			final char q = quote.charAt(0);
+			for (int i=0; i<length; i++) {
+				char c = value.charAt(i);
+				if (c == q && value.startsWith(quote, i)) {
+					firstQuote = i;
+					break;
+				}
+				else if (c == delimiter || c == '\n') {
+					special = true;
+				}
+			}
+		}
+		else {
+			for (int i=0; i<length && !special; i++) {
+				char c = value.charAt(i);
+				special = c == delimiter || c == '\n';
+			}
+		}
+		
+		if (quote == null) {
+			if (special) throw new IOException("The following value must be quoted, but this is not configured to print quotes: \"" + value + "\"");
+			writer.write(value);
+		}
+		else if (firstQuote != -1) {
+			writer.write(quote);
+			int from = 0;
+			int q = firstQuote;
+			while (q != -1) {
+				writer.write(value, from, q - from);
+				writer.write(quoting.quoteReplacement);
+				from = q + quote.length();
+				q = value.indexOf(quote, from);
+			}
+			writer.write(value, from, length - from);
+			writer.write(quote);
+		}
+		else if (special || quoting.quoteEverything) {
+			writer.write(quote);
+			writer.write(value);
+			writer.write(quote);
+		}
+		else {
+			writer.write(value);
+		}
+	}
 }
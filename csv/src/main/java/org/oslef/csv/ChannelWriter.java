@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Writer} for files that collects characters in a buffer, encodes
+ * them a buffer at a time into a direct {@link ByteBuffer} and hands that to
+ * a {@link FileChannel} in large blocks. Unlike {@link java.io.FileWriter} it
+ * takes no lock per call, which matters to {@link CSVWriter}'s many small 
+ * appends. The direct buffers are pooled, since they are expensive to 
+ * allocate and an export usually opens several files at once.
+ * 
+ * Characters the charset can't encode are replaced, as with 
+ * {@link java.io.FileWriter}. Not thread-safe.
+ */
+public final class ChannelWriter extends Writer {
+	
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	
+	private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_POOLED = 8;
+	private static final List<ByteBuffer> pool = new ArrayList<ByteBuffer>();
+	
+	private final FileOutputStream out;
+	private final FileChannel channel;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+	private ByteBuffer bytes;
+	
+	public ChannelWriter(File file) throws IOException {
+		this(file, Charset.forName("UTF-8"));
+	}
+	
+	public ChannelWriter(File file, Charset charset) throws IOException {
+		if (file == null || charset == null) throw new NullPointerException();
+		this.encoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.out = new FileOutputStream(file);
+		this.channel = out.getChannel();
+		this.bytes = acquire();
+	}
+	
+	@Override
+	public void write(int c) throws IOException {
+		ensureOpen();
+		if (!chars.hasRemaining()) encode(false);
+		chars.put((char) c);
+	}
+	
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (!chars.hasRemaining()) encode(false);
+			int n = Math.min(len, chars.remaining());
+			chars.put(cbuf, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+	
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (!chars.hasRemaining()) encode(false);
+			int n = Math.min(len, chars.remaining());
+			chars.put(str, off, off + n);
+			off += n;
+			len -= n;
+		}
+	}
+	
+	@Override
+	public Writer append(char c) throws IOException {
+		ensureOpen();
+		write(c);
+		return this;
+	}
+	
+	@Override
+	public Writer append(CharSequence csq) throws IOException {
+		ensureOpen();
+		String s = String.valueOf(csq);
+		write(s, 0, s.length());
+		return this;
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		encode(false);
+		drain();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (bytes == null) return;
+		try {
+			encode(true);
+			while (encoder.flush(bytes) == CoderResult.OVERFLOW) {
+				drain();
+			}
+			drain();
+		}
+		finally {
+			release(bytes);
+			bytes = null;
+			out.close();
+		}
+	}
+	
+	/**
+	 * Encodes the buffered characters, writing out full byte buffers as it
+	 * goes. A trailing high surrogate stays behind for the next call unless
+	 * this is the end of the input.
+	 */
+	private void encode(boolean endOfInput) throws IOException {
+		ensureOpen();
+		chars.flip();
+		for (;;) {
+			CoderResult r = encoder.encode(chars, bytes, endOfInput);
+			if (r.isOverflow()) drain();
+			else if (r.isUnderflow()) break;
+			else r.throwException();
+		}
+		chars.compact();
+	}
+	
+	private void drain() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+	
+	private void ensureOpen() throws IOException {
+		if (bytes == null) throw new IOException("Stream closed");
+	}
+	
+	private static ByteBuffer acquire() {
+		synchronized (pool) {
+			if (!pool.isEmpty()) return pool.remove(pool.size() - 1);
+		}
+		return ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+	}
+	
+	private static void release(ByteBuffer b) {
+		b.clear();
+		synchronized (pool) {
+			if (pool.size() < MAX_POOLED) pool.add(b);
+		}
+	}
+}
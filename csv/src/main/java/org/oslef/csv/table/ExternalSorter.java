@@ -0,0 +1,415 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows of a table by one column using a bounded amount of memory. 
+ * Rows are collected until their estimated size reaches the buffer size, 
+ * sorted, and spilled to a temporary file; the spills are then merged as the
+ * result is iterated. When there are more spills than can be open at once 
+ * they are first merged in passes, a group of consecutive spills at a time.
+ * The sort is stable: rows with equal keys keep the order they had in the 
+ * table.
+ */
+public final class ExternalSorter {
+	
+	public static final long DEFAULT_BUFFER_SIZE = 64 * 1024 * 1024;
+	
+	private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+	
+	// how many spills are open at once while merging
+	static final int DEFAULT_MAX_FAN_IN = 64;
+	
+	private final File tempDir;
+	private final long bufferSize;
+	private final int maxFanIn;
+	
+	public ExternalSorter() {
+		this(null, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * @param tempDir where spill files go, or null for the system default.
+	 * @param bufferSize roughly how many bytes of rows to hold in memory 
+	 * before spilling.
+	 */
+	public ExternalSorter(File tempDir, long bufferSize) {
+		this(tempDir, bufferSize, DEFAULT_MAX_FAN_IN);
+	}
+	
+	ExternalSorter(File tempDir, long bufferSize, int maxFanIn) {
+		if (bufferSize < 1) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		if (maxFanIn < 2) throw new IllegalArgumentException("Fan-in must be at least 2: " + maxFanIn);
+		this.tempDir = tempDir;
+		this.bufferSize = bufferSize;
+		this.maxFanIn = maxFanIn;
+	}
+	
+	/**
+	 * @return the rows of the source ordered by the given column. Closing the
+	 * iterator deletes any spill files.
+	 */
+	public RowIterator sort(RowSource source, String column, Comparator<String> order) throws IOException {
+		HeaderInfo info = source.info();
+		int key = info.indexOf(column);
+		if (key == -1) throw new IllegalArgumentException("No column '" + column + "' in " + info);
+		Comparator<String[]> byKey = new KeyOrder(key, order);
+		
+		List<File> spills = new ArrayList<File>();
+		List<String[]> buffer = new ArrayList<String[]>();
+		long buffered = 0;
+		
+		RowIterator itr = source.iterator();
+		try {
+			while (itr.hasNext()) {
+				String[] values = values(itr.next());
+				buffer.add(values);
+				buffered += estimate(values);
+				if (buffered >= bufferSize) {
+					spills.add(spill(buffer, byKey));
+					buffer.clear();
+					buffered = 0;
+				}
+			}
+		}
+		catch (IOException ex) {
+			delete(spills);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			delete(spills);
+			throw ex;
+		}
+		finally {
+			itr.close();
+		}
+		
+		Collections.sort(buffer, byKey);
+		if (spills.isEmpty()) return new BufferIterator(info, buffer);
+		
+		// the rows still in memory come last in the table, so they merge last
+		try {
+			spills.add(spill(buffer, byKey));
+			buffer = null;
+			while (spills.size() > maxFanIn) {
+				spills = mergePass(info, spills, byKey);
+			}
+		}
+		catch (IOException ex) {
+			delete(spills);
+			throw ex;
+		}
+		return new MergeIterator(info, spills, byKey);
+	}
+	
+	/**
+	 * Merges each run of up to {@link #maxFanIn} consecutive spills into 
+	 * one, which keeps ties in table order.
+	 */
+	private List<File> mergePass(HeaderInfo info, List<File> spills, Comparator<String[]> byKey) throws IOException {
+		List<File> merged = new ArrayList<File>();
+		try {
+			for (int i=0; i<spills.size(); i+=maxFanIn) {
+				List<File> group = new ArrayList<File>(spills.subList(i, Math.min(i + maxFanIn, spills.size())));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				MergeIterator itr = new MergeIterator(info, group, byKey);
+				try {
+					merged.add(write(itr.values()));
+				}
+				finally {
+					itr.close(); // deletes the group
+				}
+			}
+		}
+		catch (IOException ex) {
+			delete(merged);
+			throw ex;
+		}
+		return merged;
+	}
+	
+	private static String[] values(Row row) {
+		String[] values = new String[row.size()];
+		for (int i=0; i<values.length; i++) {
+			values[i] = row.get(i);
+		}
+		return values;
+	}
+	
+	private static long estimate(String[] values) {
+		long size = 16 + 4 * values.length;
+		for (String v : values) {
+			size += 40 + 2 * v.length();
+		}
+		return size;
+	}
+	
+	private File spill(List<String[]> rows, Comparator<String[]> byKey) throws IOException {
+		Collections.sort(rows, byKey);
+		return write(rows.iterator());
+	}
+	
+	private File write(Iterator<String[]> rows) throws IOException {
+		File f = File.createTempFile("oslef-sort", ".spill", tempDir);
+		// in case the JVM goes away before the iterator is closed
+		f.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), SPILL_BUFFER_SIZE));
+		try {
+			while (rows.hasNext()) {
+				String[] values = rows.next();
+				out.writeInt(values.length);
+				for (String v : values) {
+					byte[] b = v.getBytes("UTF8");
+					out.writeInt(b.length);
+					out.write(b);
+				}
+			}
+		}
+		catch (IOException ex) {
+			out.close();
+			f.delete();
+			throw ex;
+		}
+		out.close();
+		return f;
+	}
+	
+	private static void delete(List<File> files) {
+		for (File f : files) {
+			f.delete();
+		}
+	}
+	
+	private static final class KeyOrder implements Comparator<String[]> {
+		
+		private final int key;
+		private final Comparator<String> order;
+		
+		KeyOrder(int key, Comparator<String> order) {
+			this.key = key;
+			this.order = order;
+		}
+		
+		public int compare(String[] a, String[] b) {
+			return order.compare(a[key], b[key]);
+		}
+	}
+	
+	private static final class BufferIterator implements RowIterator {
+		
+		private final HeaderInfo info;
+		private List<String[]> rows;
+		private int next = 0;
+		
+		BufferIterator(HeaderInfo info, List<String[]> rows) {
+			this.info = info;
+			this.rows = rows;
+		}
+		
+		public boolean hasNext() {
+			return rows != null && next < rows.size();
+		}
+		
+		public Row next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			String[] values = rows.get(next);
+			rows.set(next++, null);
+			return new Row(info, values);
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		public void close() {
+			rows = null;
+		}
+	}
+	
+	/**
+	 * A k-way merge over the spill files. Ties go to the earlier spill, 
+	 * which keeps the sort stable.
+	 */
+	private static final class MergeIterator implements RowIterator {
+		
+		private final HeaderInfo info;
+		private final List<File> files;
+		private final PriorityQueue<Spill> heads;
+		
+		MergeIterator(HeaderInfo info, List<File> files, final Comparator<String[]> byKey) throws IOException {
+			this.info = info;
+			this.files = files;
+			this.heads = new PriorityQueue<Spill>(files.size(), new Comparator<Spill>() {
+				public int compare(Spill a, Spill b) {
+					int c = byKey.compare(a.head, b.head);
+					if (c != 0) return c;
+					else return a.index - b.index;
+				}
+			});
+			try {
+				for (int i=0; i<files.size(); i++) {
+					Spill s = new Spill(files.get(i), i);
+					if (s.advance()) heads.add(s);
+				}
+			}
+			catch (IOException ex) {
+				close();
+				throw ex;
+			}
+		}
+		
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+		
+		public Row next() {
+			return new Row(info, nextValues());
+		}
+		
+		private String[] nextValues() {
+			Spill s = heads.poll();
+			if (s == null) throw new NoSuchElementException();
+			String[] values = s.head;
+			try {
+				if (s.advance()) heads.add(s);
+			}
+			catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			return values;
+		}
+		
+		/**
+		 * @return the merged rows without wrapping them in {@link Row}s.
+		 */
+		Iterator<String[]> values() {
+			return new Iterator<String[]>() {
+				public boolean hasNext() {
+					return MergeIterator.this.hasNext();
+				}
+				
+				public String[] next() {
+					return nextValues();
+				}
+				
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		public void close() throws IOException {
+			for (Spill s : heads) {
+				s.in.close();
+			}
+			heads.clear();
+			delete(files);
+		}
+	}
+	
+	private static final class Spill {
+		
+		private final DataInputStream in;
+		private final int index;
+		private String[] head;
+		
+		Spill(File f, int index) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), SPILL_BUFFER_SIZE));
+			this.index = index;
+		}
+		
+		/**
+		 * Reads the next row into {@link #head}, closing the file at its end
+		 * or when it can't be read, since a spill that fails here is no longer
+		 * among the {@link MergeIterator}'s heads and won't be closed with them.
+		 */
+		boolean advance() throws IOException {
+			int count;
+			try {
+				count = in.readInt();
+			}
+			catch (EOFException ex) {
+				in.close();
+				head = null;
+				return false;
+			}
+			catch (IOException ex) {
+				in.close();
+				throw ex;
+			}
+			try {
+				String[] values = new String[count];
+				for (int i=0; i<count; i++) {
+					byte[] b = new byte[in.readInt()];
+					in.readFully(b);
+					values[i] = new String(b, "UTF-8");
+				}
+				head = values;
+				return true;
+			}
+			catch (IOException ex) {
+				in.close();
+				throw ex;
+			}
+		}
+	}
+}
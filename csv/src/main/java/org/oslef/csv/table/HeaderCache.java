@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+/**
+ * Something worked out once per header, such as column positions, kept for
+ * the few headers most recently asked about. Headers are told apart by 
+ * identity: every table has its own {@link HeaderInfo}, and a reader moves 
+ * back and forth between a handful of them (loans, installments, history), 
+ * often on several threads at once. Safe to share between threads; two 
+ * threads may both work out a header that is new to the cache, and either 
+ * answer is kept.
+ */
+public abstract class HeaderCache<T> {
+	
+	public static final int DEFAULT_SIZE = 8;
+	
+	private final int size;
+	
+	// most recently added first
+	private volatile Entry[] entries = new Entry[0];
+	
+	public HeaderCache() {
+		this(DEFAULT_SIZE);
+	}
+	
+	public HeaderCache(int size) {
+		if (size < 1) throw new IllegalArgumentException("Size must be positive: " + size);
+		this.size = size;
+	}
+	
+	/**
+	 * Works out the value for a header that isn't in the cache.
+	 */
+	protected abstract T resolve(HeaderInfo info);
+	
+	@SuppressWarnings("unchecked")
+	public T get(HeaderInfo info) {
+		Entry[] e = entries;
+		for (int i=0; i<e.length; i++) {
+			if (e[i].info == info) return (T) e[i].value;
+		}
+		
+		T value = resolve(info);
+		Entry[] added = new Entry[Math.min(e.length + 1, size)];
+		added[0] = new Entry(info, value);
+		System.arraycopy(e, 0, added, 1, added.length - 1);
+		entries = added;
+		return value;
+	}
+	
+	private static final class Entry {
+		final HeaderInfo info;
+		final Object value;
+		
+		Entry(HeaderInfo info, Object value) {
+			this.info = info;
+			this.value = value;
+		}
+	}
+}
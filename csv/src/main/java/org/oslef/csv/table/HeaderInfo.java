@@ -40,22 +40,55 @@ package org.oslef.csv.table;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public final class HeaderInfo implements Iterable<String> {
 	
 	private final List<String> columns;
+	private final Map<String, Integer> index;
 	
 	public HeaderInfo(String[] columns) {
 		List<String> l = new ArrayList<String>();
 		l.addAll(Arrays.asList(columns));
 		this.columns = Collections.unmodifiableList(l);
+		
+		// the first occurrence wins, as it did with List.indexOf
+		this.index = new HashMap<String, Integer>(columns.length * 2);
+		for (int i=columns.length-1; i>=0; i--) {
+			index.put(columns[i], i);
+		}
 	}
 	
 	public String valueAt(String columnName, String[] data) {
-		int index = columns.indexOf(columnName);
-		return data[index]; 
+		return data[indexOf(columnName)]; 
+	}
+	
+	/**
+	 * @return the position of the named column, or -1 if there is none.
+	 */
+	public int indexOf(String columnName) {
+		Integer i = index.get(columnName);
+		if (i == null) return -1;
+		else return i;
+	}
+	
+	public boolean contains(String columnName) {
+		return index.containsKey(columnName);
+	}
+	
+	public int size() {
+		return columns.size();
+	}
+	
+	/**
+	 * Resolves a column once so that rows of this header can fetch it by 
+	 * position. See {@link Row#get(ColumnHandle)}.
+	 */
+	public ColumnHandle handle(String columnName) {
+		return new ColumnHandle(this, columnName, indexOf(columnName));
 	}
 	
 	@Override
@@ -70,4 +103,4 @@ public final class HeaderInfo implements Iterable<String> {
 	public Iterator<String> iterator() {
 		return columns.iterator();
 	}
-}
\ No newline at end of file
+}
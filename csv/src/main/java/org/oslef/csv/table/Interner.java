@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out one canonical instance of each value of a column, so that rows 
+ * held in memory share the strings of columns that only take a few values 
+ * (loan types, states, pay frequencies...) instead of each keeping its own 
+ * copy.
+ * 
+ * Every column gets a {@link Dictionary} of at most a fixed number of values.
+ * A column with more distinct values than that is taken to be one that 
+ * doesn't repeat (ids, names, amounts): its dictionary is dropped and its 
+ * values are passed through untouched from then on. An interner is safe to 
+ * share between threads.
+ */
+public final class Interner {
+	
+	public static final int DEFAULT_MAX_VALUES = 1024;
+	
+	private final int maxValues;
+	private final ConcurrentMap<String, Dictionary> dictionaries = new ConcurrentHashMap<String, Dictionary>();
+	
+	private final HeaderCache<Dictionary[]> headers = new HeaderCache<Dictionary[]>() {
+		@Override
+		protected Dictionary[] resolve(HeaderInfo info) {
+			Dictionary[] d = new Dictionary[info.size()];
+			for (int i=0; i<d.length; i++) {
+				d[i] = dictionary(info.columns().get(i));
+			}
+			return d;
+		}
+	};
+	
+	public Interner() {
+		this(DEFAULT_MAX_VALUES);
+	}
+	
+	/**
+	 * @param maxValues how many distinct values a column may have before it is 
+	 * no longer interned.
+	 */
+	public Interner(int maxValues) {
+		if (maxValues < 1) throw new IllegalArgumentException("Max values must be positive: " + maxValues);
+		this.maxValues = maxValues;
+	}
+	
+	public String intern(String column, String value) {
+		return dictionary(column).intern(value);
+	}
+	
+	/**
+	 * @return the named column's dictionary, created on first use.
+	 */
+	public Dictionary dictionary(String column) {
+		Dictionary d = dictionaries.get(column);
+		if (d == null) {
+			d = new Dictionary(column, maxValues);
+			Dictionary existing = dictionaries.putIfAbsent(column, d);
+			if (existing != null) d = existing;
+		}
+		return d;
+	}
+	
+	/**
+	 * @return the dictionary of each column of the header, by position.
+	 */
+	public Dictionary[] dictionaries(HeaderInfo info) {
+		return headers.get(info);
+	}
+	
+	/**
+	 * @return every column's dictionary, by column name.
+	 */
+	public Map<String, Dictionary> dictionaries() {
+		return Collections.unmodifiableMap(new TreeMap<String, Dictionary>(dictionaries));
+	}
+	
+	public long hits() {
+		long n = 0;
+		for (Dictionary d : dictionaries.values()) n += d.hits();
+		return n;
+	}
+	
+	public long misses() {
+		long n = 0;
+		for (Dictionary d : dictionaries.values()) n += d.misses();
+		return n;
+	}
+	
+	/**
+	 * @return the share of values, over all columns, that were replaced by a
+	 * canonical instance.
+	 */
+	public double hitRate() {
+		return rate(hits(), misses());
+	}
+	
+	/**
+	 * One line per column: its hit rate, and either its number of values or
+	 * that it is no longer interned.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		for (Dictionary d : dictionaries().values()) {
+			b.append(d).append('\n');
+		}
+		return b.toString();
+	}
+	
+	private static double rate(long hits, long misses) {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+	
+	/**
+	 * The values of one column. Values seen after the dictionary has been 
+	 * dropped count as misses.
+	 */
+	public static final class Dictionary {
+		
+		private final String column;
+		private final int maxValues;
+		private volatile ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+		
+		Dictionary(String column, int maxValues) {
+			this.column = column;
+			this.maxValues = maxValues;
+		}
+		
+		/**
+		 * @return the canonical instance of value, which is value itself the 
+		 * first time it is seen or once the column is no longer interned.
+		 */
+		public String intern(String value) {
+			if (value == null) return null;
+			
+			ConcurrentMap<String, String> v = values;
+			if (v == null) {
+				misses.incrementAndGet();
+				return value;
+			}
+			
+			String canonical = v.get(value);
+			if (canonical != null) {
+				hits.incrementAndGet();
+				return canonical;
+			}
+			
+			misses.incrementAndGet();
+			if (v.size() >= maxValues) {
+				values = null;
+				return value;
+			}
+			canonical = v.putIfAbsent(value, value);
+			return canonical == null ? value : canonical;
+		}
+		
+		public String column() {
+			return column;
+		}
+		
+		/**
+		 * @return false once the column has had too many distinct values to 
+		 * be worth interning.
+		 */
+		public boolean isInterning() {
+			return values != null;
+		}
+		
+		/**
+		 * @return the number of distinct values held, 0 once the column is no
+		 * longer interned.
+		 */
+		public int size() {
+			ConcurrentMap<String, String> v = values;
+			return v == null ? 0 : v.size();
+		}
+		
+		public long hits() {
+			return hits.get();
+		}
+		
+		public long misses() {
+			return misses.get();
+		}
+		
+		public double hitRate() {
+			return rate(hits(), misses());
+		}
+		
+		@Override
+		public String toString() {
+			String state = isInterning() ? size() + " values" : "not interned";
+			return column + ": " + Math.round(hitRate() * 100) + "% hits, " + state;
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Table} alternative that maps the file into memory and parses the
+ * bytes in place instead of decoding every character up front. The rows it
+ * returns only remember where their fields are; a field is turned into a
+ * {@link String} the first time {@link Row#get(String)} asks for it, so columns
+ * nobody reads cost nothing but a pair of offsets.
+ * 
+ * Parsing is byte-for-byte equivalent to {@link TableIterator}, which relies
+ * on the delimiter, quote, backslash and line terminators being single ASCII
+ * bytes. The charset must therefore be one that never uses bytes below 0x80
+ * for anything but ASCII: UTF-8, US-ASCII, ISO-8859-x or windows-125x. Compressed files cannot be mapped; use 
+ * {@link Table} for those.
+ */
+public final class MappedTable implements RowSource {
+	
+	static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+	
+	private final File file;
+	private final String charsetName;
+	private final int windowSize;
+	private final HeaderInfo info;
+	private final long dataStart;
+	
+	public MappedTable(File file) throws IOException {
+		this(file, Charset.defaultCharset());
+	}
+	
+	public MappedTable(File file, Charset charset) throws IOException {
+		this(file, charset, DEFAULT_WINDOW_SIZE);
+	}
+	
+	MappedTable(File file, Charset charset, int windowSize) throws IOException {
+		if (file == null || charset == null) throw new NullPointerException();
+		if (!isAsciiCompatible(charset)) throw new IllegalArgumentException("Not an ASCII-compatible charset: " + charset);
+		if (windowSize < 1) throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+		this.file = file;
+		this.charsetName = charset.name();
+		this.windowSize = windowSize;
+		
+		MappedTableIterator r = new MappedTableIterator(this, 0, Long.MAX_VALUE);
+		try {
+			if (!r.hasNext()) throw new IOException("No header found in " + file);
+			MappedTableIterator.Fields header = r.nextFields();
+			String[] columns = new String[header.count()];
+			for (int i=0; i<columns.length; i++) {
+				columns[i] = header.field(i);
+			}
+			info = new HeaderInfo(columns);
+			dataStart = r.position();
+		}
+		finally {
+			r.close();
+		}
+	}
+	
+	public File file() {
+		return file;
+	}
+	
+	public HeaderInfo info() {
+		return info;
+	}
+	
+	/**
+	 * @return the file offset of the first record after the header.
+	 */
+	public long dataStart() {
+		return dataStart;
+	}
+
+	public MappedTableIterator iterator() {
+		return iterator(dataStart, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * @param from the file offset of a record boundary at or after 
+	 * {@link #dataStart()}.
+	 * @param to iteration stops at the first record that starts at or after 
+	 * this offset.
+	 */
+	public MappedTableIterator iterator(long from, long to) {
+		if (from < dataStart) throw new IllegalArgumentException("Offset " + from + " is inside the header");
+		try {
+			return new MappedTableIterator(this, from, to);
+		}
+		catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	/**
+	 * @param offset the file offset at which a record starts, as reported by
+	 * {@link MappedTableIterator#offset()}.
+	 */
+	public Row rowAt(long offset) throws IOException {
+		MappedTableIterator r = iterator(offset, offset + 1);
+		try {
+			if (!r.hasNext()) throw new IOException("No record at offset " + offset + " in " + file);
+			return r.next();
+		}
+		finally {
+			r.close();
+		}
+	}
+	
+	/**
+	 * Cuts the records into roughly equal byte ranges that can be read 
+	 * independently with {@link #iterator(long, long)}, without reading the
+	 * records in between. Each cut goes at the start of the first line past
+	 * its target that has balanced quotes, which a record on a line of its
+	 * own always has, but so can the middle of a quoted field that spans
+	 * lines. A cut is therefore only a guess: the range before it has to be 
+	 * read first, and unless its last record ends right at the cut (see 
+	 * {@link MappedTableIterator#position()}) the next range must be read 
+	 * again from where it did end.
+	 * 
+	 * @return ascending offsets, starting at {@link #dataStart()} and ending 
+	 * at the file size. Range i runs from element i to element i+1. There 
+	 * may be fewer ranges than asked for.
+	 */
+	public long[] split(int ranges) throws IOException {
+		if (ranges < 1) throw new IllegalArgumentException("Need at least one range: " + ranges);
+		long size = file.length();
+		long step = Math.max(1, (size - dataStart) / ranges);
+		
+		List<Long> cuts = new ArrayList<Long>();
+		cuts.add(dataStart);
+		Bytes in = new Bytes(file);
+		try {
+			for (int i=1; i<ranges; i++) {
+				long target = Math.max(dataStart + i * step, cuts.get(cuts.size() - 1) + 1);
+				long cut = resync(in, target, size);
+				if (cut < 0) break;
+				cuts.add(cut);
+			}
+		}
+		finally {
+			in.close();
+		}
+		
+		long[] result = new long[cuts.size() + 1];
+		for (int i=0; i<cuts.size(); i++) {
+			result[i] = cuts.get(i);
+		}
+		result[cuts.size()] = Math.max(size, dataStart);
+		return result;
+	}
+	
+	// how far past its target a cut looks for a line with balanced quotes
+	private static final int RESYNC_LIMIT = 1024 * 1024;
+	
+	/**
+	 * @return the start of the first line starting at or after the given 
+	 * offset that has an even number of unescaped quotes; failing that 
+	 * within {@link #RESYNC_LIMIT}, the start of the first line. -1 if no 
+	 * line starts before the end of the file.
+	 */
+	private static long resync(Bytes in, long from, long size) throws IOException {
+		long first = -1;
+		long p = from - 1; // from itself may start a line
+		for (;;) {
+			int b;
+			while ((b = in.get(p)) != -1 && b != '\r' && b != '\n') p++;
+			if (b == -1) return first;
+			long line = p + 1;
+			if (b == '\r' && in.get(line) == '\n') line++;
+			if (line >= size) return first;
+			if (first < 0) first = line;
+			if (line - from > RESYNC_LIMIT) return first;
+			
+			int quotes = 0;
+			int prev = 0;
+			for (p = line; (b = in.get(p)) != -1 && b != '\r' && b != '\n'; p++) {
+				if (b == '"' && prev != '\\') quotes++;
+				prev = b;
+			}
+			if (quotes % 2 == 0) return line;
+			if (b == -1) return first;
+		}
+	}
+	
+	/**
+	 * Random access to the bytes of a file, a buffer at a time.
+	 */
+	private static final class Bytes {
+		
+		private final RandomAccessFile raf;
+		private final byte[] buffer = new byte[64 * 1024];
+		private long bufferStart = 0;
+		private int bufferLength = 0;
+		
+		Bytes(File file) throws IOException {
+			raf = new RandomAccessFile(file, "r");
+		}
+		
+		/**
+		 * @return the byte at the offset, or -1 past the end of the file.
+		 */
+		int get(long offset) throws IOException {
+			if (offset < bufferStart || offset >= bufferStart + bufferLength) {
+				raf.seek(offset);
+				bufferStart = offset;
+				bufferLength = Math.max(0, raf.read(buffer));
+				if (bufferLength == 0) return -1;
+			}
+			return buffer[(int)(offset - bufferStart)] & 0xFF;
+		}
+		
+		void close() throws IOException {
+			raf.close();
+		}
+	}
+	
+	int windowSize() {
+		return windowSize;
+	}
+	
+	String decode(byte[] bytes, int offset, int length) {
+		try {
+			return new String(bytes, offset, length, charsetName);
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException(ex); // the charset was resolved in the constructor
+		}
+	}
+	
+	/**
+	 * Checking how the specials encode isn't enough: in charsets such as 
+	 * Shift_JIS the trail byte of a multi-byte character can equal a 
+	 * backslash or a quote. Only charsets known to keep every byte below 
+	 * 0x80 to itself qualify.
+	 */
+	private static boolean isAsciiCompatible(Charset charset) {
+		String name = charset.name();
+		return name.equals("UTF-8") || name.equals("US-ASCII") 
+			|| name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+	}
+}
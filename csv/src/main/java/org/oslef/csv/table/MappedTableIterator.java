@@ -0,0 +1,489 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+import org.oslef.csv.RecordFilter;
+
+/**
+ * Walks the records of a {@link MappedTable}. The file is mapped a window at
+ * a time; a window that ends in the middle of a record is remapped starting
+ * at that record, so any record no larger than the window can be parsed in 
+ * place. Rows keep a reference to the window they were parsed from and remain
+ * readable after the iterator moves on or is closed.
+ */
+public final class MappedTableIterator implements RowIterator {
+	
+	private static final byte DELIMITER = ',';
+	private static final byte QUOTE = '"';
+	private static final byte ESCAPE = '\\';
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+	
+	private static final int CHUNK_SIZE = 64 * 1024;
+	
+	private final MappedTable table;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long size;
+	private final long end;
+	
+	private ByteBuffer window;
+	private long windowStart;
+	private int windowLength;
+	
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private int chunkStart;
+	private int chunkEnd;
+	
+	private long pos;
+	private long offset = -1;
+	private boolean skipLF = false;
+	
+	private int[] bounds = new int[64];
+	private long recordStart;
+	
+	private RecordFilter filter;
+	private final Raw raw = new Raw();
+	// the next matching row, found by hasNext() when there is a filter
+	private Fields pending;
+	private long pendingOffset;
+	
+	MappedTableIterator(MappedTable table, long from, long to) throws IOException {
+		this.table = table;
+		this.raf = new RandomAccessFile(table.file(), "r");
+		this.channel = raf.getChannel();
+		this.size = channel.size();
+		this.end = Math.min(to, size);
+		this.pos = from;
+	}
+	
+	public boolean hasNext() {
+		if (filter != null) return pending != null || advance();
+		return more();
+	}
+	
+	public Row next() {
+		if (filter != null) {
+			if (!hasNext()) throw new NoSuchElementException();
+			Fields f = pending;
+			pending = null;
+			offset = pendingOffset;
+			return new Row(table.info(), f);
+		}
+		return new Row(table.info(), nextFields());
+	}
+	
+	/**
+	 * Skip the rows the predicate doesn't match. They are tested against the
+	 * mapped bytes, before any of their fields are decoded. Null (the 
+	 * default) returns every row.
+	 */
+	public void setFilter(RowPredicate filter) {
+		this.filter = filter == null ? null : filter.bind(table.info());
+		pending = null;
+	}
+	
+	private boolean more() {
+		if (skipLF && pos < size) {
+			skipLF = false;
+			if (byteAt(pos) == LF) pos++;
+		}
+		return pos < end;
+	}
+	
+	/**
+	 * Scans ahead to the next record the filter accepts.
+	 */
+	private boolean advance() {
+		long returned = offset;
+		try {
+			while (more()) {
+				int n = scan();
+				if (filter.accept(raw.reset(n))) {
+					pending = fields(n);
+					pendingOffset = recordStart;
+					return true;
+				}
+			}
+			return false;
+		}
+		catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		finally {
+			offset = returned;
+		}
+	}
+	
+	/**
+	 * @return the file offset at which the row most recently returned by
+	 * {@link #next()} starts, or -1 before the first call.
+	 */
+	public long offset() {
+		return offset;
+	}
+	
+	/**
+	 * Continues at another record, typically one whose {@link #offset()} was
+	 * noted on an earlier pass. Records near the current one are read from the
+	 * window that is already mapped, which makes this much cheaper than 
+	 * {@link MappedTable#rowAt(long)} for repeated lookups.
+	 * 
+	 * @param offset the file offset at which a record starts.
+	 */
+	public void seek(long offset) {
+		if (offset < table.dataStart()) throw new IllegalArgumentException("Offset " + offset + " is inside the header");
+		pos = offset;
+		skipLF = false;
+		pending = null;
+	}
+	
+	/**
+	 * @return the file offset at which the next record starts, past the LF 
+	 * of a CRLF that ended the previous one; once a range is used up, the 
+	 * offset at which its last record ended. Ignores the filter.
+	 */
+	public long position() {
+		more();
+		return pos;
+	}
+	
+	/**
+	 * @return the next record, whether or not the filter accepts it.
+	 */
+	Fields nextFields() {
+		if (!more()) throw new NoSuchElementException();
+		try {
+			return fields(scan());
+		}
+		catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	public void close() throws IOException {
+		window = null;
+		raf.close();
+	}
+	
+	/**
+	 * Finds the bounds of the fields of the record at {@link #pos}.
+	 * 
+	 * @return the number of entries filled in {@link #bounds}
+	 */
+	private int scan() throws IOException {
+		
+		final long start = pos;
+		recordStart = start;
+		int length = table.windowSize();
+		
+		if (!covers(start)) map(start, length);
+		
+		for (;;) {
+			final int limit = windowLength;
+			int i = (int)(start - windowStart);
+			int fieldStart = i;
+			int n = 0;
+			boolean inQuotes = false;
+			byte prev = 0;
+			
+			while (i < limit) {
+				if (i >= chunkEnd || i < chunkStart) load(i);
+				byte b = chunk[i - chunkStart];
+				if (b == CR || b == LF) {
+					if (!inQuotes) {
+						n = bound(n, fieldStart, i);
+						pos = windowStart + i + 1;
+						skipLF = b == CR;
+						return n;
+					}
+					prev = LF;
+				}
+				else {
+					if (b == DELIMITER && !inQuotes) {
+						n = bound(n, fieldStart, i);
+						fieldStart = i + 1;
+					}
+					else if (b == QUOTE) {
+						if (!inQuotes) inQuotes = true;
+						else if (prev != ESCAPE) inQuotes = false;
+					}
+					prev = b;
+				}
+				i++;
+			}
+			
+			if (windowStart + limit >= size) {
+				if (inQuotes) throw new IOException("End of file");
+				n = bound(n, fieldStart, limit);
+				pos = size;
+				return n;
+			}
+			
+			// the record runs past the end of the window
+			if (windowStart == start) {
+				if (length > Integer.MAX_VALUE / 2) throw new IOException("Record at offset " + start + " is too large to map");
+				length *= 2;
+			}
+			map(start, length);
+		}
+	}
+	
+	private int bound(int n, int from, int to) {
+		if (n + 2 > bounds.length) {
+			int[] b = new int[bounds.length * 2];
+			System.arraycopy(bounds, 0, b, 0, bounds.length);
+			bounds = b;
+		}
+		bounds[n] = from;
+		bounds[n + 1] = to;
+		return n + 2;
+	}
+	
+	private Fields fields(int n) {
+		int[] b = new int[n];
+		System.arraycopy(bounds, 0, b, 0, n);
+		offset = recordStart;
+		return new Fields(table, window, b);
+	}
+	
+	/**
+	 * Copies the part of the window starting at the given index into 
+	 * {@link #chunk}; scanning a heap array is a good deal cheaper than 
+	 * reading the mapped buffer a byte at a time.
+	 */
+	private void load(int index) {
+		int length = Math.min(chunk.length, windowLength - index);
+		ByteBuffer b = window.duplicate();
+		b.position(index);
+		b.get(chunk, 0, length);
+		chunkStart = index;
+		chunkEnd = index + length;
+	}
+	
+	private boolean covers(long position) {
+		return window != null && position >= windowStart && position < windowStart + windowLength;
+	}
+	
+	/**
+	 * Maps a new window starting at the given offset.
+	 */
+	private void map(long start, int length) throws IOException {
+		long l = Math.min(length, size - start);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, l);
+		windowStart = start;
+		windowLength = (int)l;
+		chunkStart = chunkEnd = 0;
+	}
+	
+	private byte byteAt(long position) {
+		if (!covers(position)) {
+			try {
+				map(position, table.windowSize());
+			}
+			catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		return window.get((int)(position - windowStart));
+	}
+	
+	/**
+	 * The record just scanned, as the filter sees it. Plain ASCII fields, 
+	 * quoted or not, are read straight from the window; anything else is
+	 * decoded as {@link Fields} would.
+	 */
+	private final class Raw implements RecordFilter.RawRecord, CharSequence {
+		
+		private int count;
+		private int start;
+		private int length;
+		
+		Raw reset(int n) {
+			this.count = n / 2;
+			return this;
+		}
+		
+		public int count() {
+			return count;
+		}
+		
+		public CharSequence field(int index) {
+			if (index >= count) return "";
+			int from = bounds[index * 2];
+			int to = bounds[index * 2 + 1];
+			ByteBuffer w = window;
+			boolean plain = true;
+			int quotes = 0;
+			for (int i=from; i<to && plain; i++) {
+				byte b = w.get(i);
+				if (b == QUOTE) quotes++;
+				else if (b < 0 || b == CR || b == LF) plain = false;
+			}
+			if (quotes == 2 && to - from >= 2 && w.get(from) == QUOTE && w.get(to - 1) == QUOTE) {
+				from++;
+				to--;
+			}
+			else if (quotes > 0) {
+				plain = false;
+			}
+			if (!plain) {
+				return new Fields(table, w, new int[]{from, to}).field(0);
+			}
+			start = from;
+			length = to - from;
+			return this;
+		}
+		
+		public int length() {
+			return length;
+		}
+		
+		public char charAt(int index) {
+			return (char)window.get(start + index);
+		}
+		
+		public CharSequence subSequence(int from, int to) {
+			return toString().substring(from, to);
+		}
+		
+		@Override
+		public String toString() {
+			char[] c = new char[length];
+			for (int i=0; i<length; i++) c[i] = charAt(i);
+			return new String(c);
+		}
+	}
+	
+	/**
+	 * The raw bounds of each field of one record within a mapped window.
+	 */
+	static final class Fields implements Row.FieldSource {
+		
+		private final MappedTable table;
+		private final ByteBuffer window;
+		private final int[] bounds;
+		
+		Fields(MappedTable table, ByteBuffer window, int[] bounds) {
+			this.table = table;
+			this.window = window;
+			this.bounds = bounds;
+		}
+		
+		public int count() {
+			return bounds.length / 2;
+		}
+		
+		public String field(int index) {
+			int from = bounds[index * 2];
+			int length = bounds[index * 2 + 1] - from;
+			byte[] bytes = new byte[length];
+			ByteBuffer w = window.duplicate(); // the window itself is shared between threads
+			w.position(from);
+			w.get(bytes, 0, length);
+			int quotes = 0;
+			boolean breaks = false;
+			for (int i=0; i<length; i++) {
+				byte b = bytes[i];
+				if (b == QUOTE) quotes++;
+				else if (b == CR || b == LF) breaks = true;
+			}
+			if (breaks || quotes > 2 || (quotes > 0 && !wrapped(bytes, length))) {
+				return table.decode(bytes, 0, unescape(bytes, length));
+			}
+			else if (quotes == 2) {
+				// the common "value" case, which just loses its quotes
+				return table.decode(bytes, 1, length - 2);
+			}
+			else {
+				return table.decode(bytes, 0, length);
+			}
+		}
+		
+		private static boolean wrapped(byte[] bytes, int length) {
+			return length >= 2 && bytes[0] == QUOTE && bytes[length - 1] == QUOTE;
+		}
+		
+		/**
+		 * Applies the same quoting rules as the character parsers, in place.
+		 * @return the length of the unescaped value
+		 */
+		private static int unescape(byte[] bytes, int length) {
+			int out = 0;
+			boolean inQuotes = false;
+			boolean skipLF = false;
+			byte prev = 0;
+			for (int i=0; i<length; i++) {
+				byte b = bytes[i];
+				if (skipLF) {
+					skipLF = false;
+					if (b == LF) continue;
+				}
+				if (b == CR || b == LF) {
+					skipLF = b == CR;
+					b = LF;
+				}
+				else if (b == QUOTE) {
+					if (!inQuotes) {
+						inQuotes = true;
+						prev = b;
+						continue;
+					}
+					else if (prev != ESCAPE) {
+						inQuotes = false;
+						prev = b;
+						continue;
+					}
+				}
+				bytes[out++] = b;
+				prev = b;
+			}
+			return out;
+		}
+	}
+}
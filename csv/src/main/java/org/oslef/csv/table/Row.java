@@ -39,20 +39,74 @@ package org.oslef.csv.table;
 
 public final class Row {
 	
+	/**
+	 * Supplies field values on demand, for rows whose values are not turned
+	 * into strings until somebody asks for them.
+	 */
+	interface FieldSource {
+		
+		int count();
+		
+		String field(int index);
+	}
+	
 	private HeaderInfo info;
 	private String[] data;
+	private final FieldSource source;
 	
 	public Row(HeaderInfo info, String[] data) {
 		this.info = info;
 		this.data = data;
+		this.source = null;
+	}
+	
+	Row(HeaderInfo info, FieldSource source) {
+		this.info = info;
+		this.source = source;
 	}
 	
 	public boolean has(String columnName) {
-		return info.columns().contains(columnName);
+		return info.contains(columnName);
 	}
 
 	public String get(String columnName) {
-		return info.valueAt(columnName, data);
+		return get(info.indexOf(columnName));
+	}
+	
+	/**
+	 * @param index the position of the column in {@link #header()}.
+	 */
+	public String get(int index) {
+		if (source == null) return data[index];
+		else return value(index);
+	}
+	
+	/**
+	 * Fetches a column resolved ahead of time. Handles resolved against a 
+	 * different header fall back to a lookup by name.
+	 */
+	public String get(ColumnHandle column) {
+		if (column.info() == info) return get(column.index());
+		else return get(column.name());
+	}
+	
+	private String value(int index) {
+		if (data == null) data = new String[source.count()];
+		String v = data[index];
+		if (v == null) {
+			v = source.field(index);
+			data[index] = v;
+		}
+		return v;
+	}
+	
+	/**
+	 * @return the number of fields in this row, which a malformed file may
+	 * make differ from the number of columns in its header.
+	 */
+	public int size() {
+		if (source == null) return data.length;
+		else return source.count();
 	}
 	
 	public HeaderInfo header() {
@@ -0,0 +1,441 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.oslef.csv.RecordFilter;
+
+/**
+ * A test on the values of a row that the parsers can apply to the raw text of
+ * each record, so that rows which fail it never become {@link Row}s. See 
+ * {@link TableIterator#setFilter(RowPredicate)} and 
+ * {@link MappedTableIterator#setFilter(RowPredicate)}.
+ * <p>
+ * Predicates are immutable and may be shared between threads. A column that
+ * is missing from the header, or from a short record, is tested as an empty
+ * value.
+ */
+public abstract class RowPredicate {
+	
+	private volatile Binding last;
+	
+	RowPredicate() {
+	}
+	
+	/**
+	 * Resolves the columns this predicate reads against a header.
+	 */
+	public abstract RecordFilter bind(HeaderInfo header);
+	
+	/**
+	 * Applies this predicate to a row that has already been read.
+	 */
+	public final boolean matches(Row row) {
+		Binding b = last;
+		if (b == null || b.header != row.header()) {
+			b = new Binding(row.header(), bind(row.header()));
+			last = b;
+		}
+		return b.filter.accept(new RowRecord(row));
+	}
+	
+	/**
+	 * @return a predicate that holds for rows whose value in the column is 
+	 * exactly the given one.
+	 */
+	public static RowPredicate equalTo(String column, final String value) {
+		if (value == null) throw new NullPointerException();
+		return new ColumnTest(column) {
+			boolean test(CharSequence v) {
+				return v.length() == value.length() && regionMatches(v, value);
+			}
+			
+			@Override
+			public String toString() {
+				return column + " = " + value;
+			}
+		};
+	}
+	
+	/**
+	 * @return a predicate that holds for rows whose value in the column is any
+	 * of the given ones.
+	 */
+	public static RowPredicate in(String column, Collection<String> values) {
+		final ValueSet set = new ValueSet(values);
+		return new ColumnTest(column) {
+			boolean test(CharSequence v) {
+				return set.contains(v);
+			}
+			
+			@Override
+			public String toString() {
+				return column + " in " + set.size() + " values";
+			}
+		};
+	}
+	
+	/**
+	 * @return a predicate that holds for rows whose value in the column starts
+	 * with the given prefix.
+	 */
+	public static RowPredicate startsWith(String column, final String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		return new ColumnTest(column) {
+			boolean test(CharSequence v) {
+				return v.length() >= prefix.length() && regionMatches(v, prefix);
+			}
+			
+			@Override
+			public String toString() {
+				return column + " starts with " + prefix;
+			}
+		};
+	}
+	
+	/**
+	 * @return a predicate that holds for rows whose value in the column is a
+	 * number no less than min and no greater than max. Either bound may be 
+	 * null, for no bound. Rows whose value isn't a number don't match.
+	 */
+	public static RowPredicate between(String column, BigDecimal min, BigDecimal max) {
+		return new Range(column, min, max);
+	}
+	
+	/**
+	 * @return a predicate that holds for rows whose value in the column is a 
+	 * date or timestamp falling on or after the day from and on or before the
+	 * day to. Values and bounds are ISO dates (yyyy-MM-dd); anything after the
+	 * date in a value, such as the time of a timestamp, is ignored. Either 
+	 * bound may be null, for no bound.
+	 */
+	public static RowPredicate dateBetween(String column, final String from, final String to) {
+		checkDate(from);
+		checkDate(to);
+		return new ColumnTest(column) {
+			boolean test(CharSequence v) {
+				if (v.length() < DATE_LENGTH) return false;
+				if (from != null && compareDate(v, from) < 0) return false;
+				if (to != null && compareDate(v, to) > 0) return false;
+				return true;
+			}
+			
+			@Override
+			public String toString() {
+				return column + " from " + from + " to " + to;
+			}
+		};
+	}
+	
+	/**
+	 * @return a predicate that holds for rows that match all of the given 
+	 * ones.
+	 */
+	public static RowPredicate and(final RowPredicate... predicates) {
+		for (RowPredicate p : predicates) {
+			if (p == null) throw new NullPointerException();
+		}
+		return new RowPredicate() {
+			@Override
+			public RecordFilter bind(HeaderInfo header) {
+				final RecordFilter[] filters = new RecordFilter[predicates.length];
+				for (int i=0; i<filters.length; i++) {
+					filters[i] = predicates[i].bind(header);
+				}
+				return new RecordFilter() {
+					public boolean accept(RawRecord record) {
+						for (RecordFilter f : filters) {
+							if (!f.accept(record)) return false;
+						}
+						return true;
+					}
+				};
+			}
+			
+			@Override
+			public String toString() {
+				List<RowPredicate> l = new ArrayList<RowPredicate>();
+				for (RowPredicate p : predicates) l.add(p);
+				return "and" + l;
+			}
+		};
+	}
+	
+	/**
+	 * A test on the value of a single column.
+	 */
+	private abstract static class ColumnTest extends RowPredicate {
+		
+		final String column;
+		
+		ColumnTest(String column) {
+			if (column == null) throw new NullPointerException();
+			this.column = column;
+		}
+		
+		abstract boolean test(CharSequence value);
+		
+		@Override
+		public RecordFilter bind(HeaderInfo header) {
+			final int index = header.indexOf(column);
+			return new RecordFilter() {
+				public boolean accept(RawRecord record) {
+					return test(index < 0 ? "" : record.field(index));
+				}
+			};
+		}
+	}
+	
+	private static final class Range extends ColumnTest {
+		
+		// enough to hold any 18 digits
+		private static final int MAX_SCALE = 18;
+		
+		private final BigDecimal min;
+		private final BigDecimal max;
+		
+		// the bounds for values with each number of decimal places, as whole
+		// numbers of that unit; a missing bound, or one too large for a long,
+		// is marked in the flags
+		private final long[] low = new long[MAX_SCALE + 1];
+		private final long[] high = new long[MAX_SCALE + 1];
+		private final boolean[] exact = new boolean[MAX_SCALE + 1];
+		
+		Range(String column, BigDecimal min, BigDecimal max) {
+			super(column);
+			this.min = min;
+			this.max = max;
+			for (int scale=0; scale<=MAX_SCALE; scale++) {
+				low[scale] = Long.MIN_VALUE;
+				high[scale] = Long.MAX_VALUE;
+				exact[scale] = true;
+				if (min != null) {
+					BigDecimal b = min.setScale(scale, RoundingMode.CEILING);
+					if (fits(b)) low[scale] = b.unscaledValue().longValue();
+					else exact[scale] = false;
+				}
+				if (max != null) {
+					BigDecimal b = max.setScale(scale, RoundingMode.FLOOR);
+					if (fits(b)) high[scale] = b.unscaledValue().longValue();
+					else exact[scale] = false;
+				}
+			}
+		}
+		
+		private static boolean fits(BigDecimal b) {
+			return b.unscaledValue().bitLength() < 64;
+		}
+		
+		boolean test(CharSequence v) {
+			int from = 0;
+			int to = v.length();
+			while (from < to && v.charAt(from) == ' ') from++;
+			while (to > from && v.charAt(to - 1) == ' ') to--;
+			
+			int i = from;
+			boolean negative = false;
+			if (i < to && (v.charAt(i) == '-' || v.charAt(i) == '+')) {
+				negative = v.charAt(i) == '-';
+				i++;
+			}
+			
+			long unscaled = 0;
+			int digits = 0;
+			int scale = -1;
+			for (; i<to; i++) {
+				char c = v.charAt(i);
+				if (c >= '0' && c <= '9') {
+					unscaled = unscaled * 10 + (c - '0');
+					if (scale >= 0) scale++;
+					if (++digits > MAX_SCALE) return slow(v, from, to);
+				}
+				else if (c == '.' && scale < 0) {
+					scale = 0;
+				}
+				else {
+					return slow(v, from, to);
+				}
+			}
+			if (digits == 0) return false;
+			if (scale < 0) scale = 0;
+			if (!exact[scale]) return slow(v, from, to);
+			if (negative) unscaled = -unscaled;
+			return unscaled >= low[scale] && unscaled <= high[scale];
+		}
+		
+		/**
+		 * Handles exponents and long values through BigDecimal.
+		 */
+		private boolean slow(CharSequence v, int from, int to) {
+			BigDecimal d;
+			try {
+				d = new BigDecimal(v.subSequence(from, to).toString());
+			}
+			catch (NumberFormatException ex) {
+				return false;
+			}
+			if (min != null && d.compareTo(min) < 0) return false;
+			if (max != null && d.compareTo(max) > 0) return false;
+			return true;
+		}
+		
+		@Override
+		public String toString() {
+			return column + " from " + min + " to " + max;
+		}
+	}
+	
+	/**
+	 * A set of strings that can be probed with any character sequence, using
+	 * the hash {@link String#hashCode()} would give it.
+	 */
+	private static final class ValueSet {
+		
+		private final String[][] buckets;
+		private final int size;
+		
+		ValueSet(Collection<String> values) {
+			int n = 16;
+			while (n < values.size() * 2) n *= 2;
+			
+			int[] counts = new int[n];
+			for (String s : values) counts[s.hashCode() & (n - 1)]++;
+			
+			buckets = new String[n][];
+			int size = 0;
+			for (String s : values) {
+				int b = s.hashCode() & (n - 1);
+				String[] bucket = buckets[b];
+				if (bucket == null) buckets[b] = bucket = new String[counts[b]];
+				for (int i=0; ; i++) {
+					if (bucket[i] == null) {
+						bucket[i] = s;
+						size++;
+						break;
+					}
+					if (bucket[i].equals(s)) break;
+				}
+			}
+			this.size = size;
+		}
+		
+		boolean contains(CharSequence v) {
+			int h = 0;
+			int length = v.length();
+			for (int i=0; i<length; i++) h = 31 * h + v.charAt(i);
+			
+			String[] bucket = buckets[h & (buckets.length - 1)];
+			if (bucket == null) return false;
+			for (String s : bucket) {
+				if (s == null) break;
+				if (s.length() == length && regionMatches(v, s)) return true;
+			}
+			return false;
+		}
+		
+		int size() {
+			return size;
+		}
+	}
+	
+	private static final int DATE_LENGTH = 10;
+	
+	private static void checkDate(String date) {
+		if (date == null) return;
+		boolean ok = date.length() == DATE_LENGTH;
+		for (int i=0; ok && i<DATE_LENGTH; i++) {
+			char c = date.charAt(i);
+			if (i == 4 || i == 7) ok = c == '-';
+			else ok = c >= '0' && c <= '9';
+		}
+		if (!ok) throw new IllegalArgumentException("Not a yyyy-MM-dd date: " + date);
+	}
+	
+	private static int compareDate(CharSequence v, String date) {
+		for (int i=0; i<DATE_LENGTH; i++) {
+			int d = v.charAt(i) - date.charAt(i);
+			if (d != 0) return d;
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return whether the sequence starts with the string.
+	 */
+	private static boolean regionMatches(CharSequence v, String s) {
+		for (int i=s.length()-1; i>=0; i--) {
+			if (v.charAt(i) != s.charAt(i)) return false;
+		}
+		return true;
+	}
+	
+	private static final class Binding {
+		
+		final HeaderInfo header;
+		final RecordFilter filter;
+		
+		Binding(HeaderInfo header, RecordFilter filter) {
+			this.header = header;
+			this.filter = filter;
+		}
+	}
+	
+	private static final class RowRecord implements RecordFilter.RawRecord {
+		
+		private final Row row;
+		
+		RowRecord(Row row) {
+			this.row = row;
+		}
+		
+		public int count() {
+			return row.size();
+		}
+		
+		public CharSequence field(int index) {
+			if (index >= row.size()) return "";
+			String v = row.get(index);
+			return v == null ? "" : v;
+		}
+	}
+}
@@ -38,36 +38,60 @@
 package org.oslef.csv.table;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-
-import org.oslef.csv.CSVReader;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Assumes the first record in a CSV file is the header, each column containing
  * that column's name. Assumes that each column name is unique in a CSV file.
+ * Files whose names end in '.gz' are decompressed as they are read.
  */
-public final class Table implements Iterable<Row> {
+public final class Table implements RowSource {
 
 	private final File file;
+	private final Charset charset;
 	private final HeaderInfo info;
 	
+	/**
+	 * Reads the platform charset.
+	 */
 	public Table(File file) throws IOException {
-		if (file == null) throw new NullPointerException();
+		this(file, Charset.defaultCharset());
+	}
+	
+	public Table(File file, Charset charset) throws IOException {
+		if (file == null || charset == null) throw new NullPointerException();
 		this.file = file;
-		CSVReader r = new CSVReader(file);
-		r.next();
-		info = new HeaderInfo(r.next());
+		this.charset = charset;
+		TableIterator r = new TableIterator(file, charset);
+		info = r.header();
 		r.close();
 	}
 	
+	static InputStream open(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			try {
+				in = new GZIPInputStream(in, 64 * 1024);
+			}
+			catch (IOException ex) {
+				in.close();
+				throw ex;
+			}
+		}
+		return in;
+	}
+	
 	public HeaderInfo info() {
 		return info;
 	}
 
 	public TableIterator iterator() {
 		try {
-			return new TableIterator(new FileReader(file));
+			return new TableIterator(file, charset);
 		}
 		catch (Exception ex) {
 			throw new RuntimeException(ex);
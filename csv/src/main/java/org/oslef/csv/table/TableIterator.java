@@ -38,30 +38,50 @@
 package org.oslef.csv.table;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.Iterator;
+import java.nio.charset.Charset;
 
 import org.oslef.csv.CSVReader;
 
 /**
  * Permits concise and trivial iteration through the rows of a CSV file.
+ * The end of the data is detected by reading ahead, so any stream will do,
+ * including pipes and compressed input.
  */
-public final class TableIterator implements Iterator<Row> {
+public final class TableIterator implements RowIterator {
 
 	private final CSVReader r;
 	private final HeaderInfo headers;
 	
 	private String[] next;
 	
-	public TableIterator(File file) throws FileNotFoundException {
-		this(new FileReader(file));
+	/**
+	 * Files whose names end in '.gz' are decompressed as they are read. Reads
+	 * the platform charset.
+	 */
+	public TableIterator(File file) throws IOException {
+		this(Table.open(file));
+	}
+	
+	public TableIterator(File file, Charset charset) throws IOException {
+		this(Table.open(file), charset);
+	}
+	
+	public TableIterator(InputStream in) {
+		this(new InputStreamReader(in));
+	}
+	
+	public TableIterator(InputStream in, Charset charset) {
+		this(new InputStreamReader(in, charset));
 	}
 
 	public TableIterator(Reader reader) {
 		r = new CSVReader(reader);
+		r.setParserType(CSVReader.ParserType.SINGLE_PASS);
+		r.setLookAhead(true);
 		try {
 			headers = new HeaderInfo(parseRecord());
 		}
@@ -70,15 +90,44 @@ public final class TableIterator implements Iterator<Row> {
 		}
 	}
 	
+	public HeaderInfo header() {
+		return headers;
+	}
+	
+	/**
+	 * @return the line in the file on which the row last returned by 
+	 * {@link #next()} starts; the header is line 1.
+	 */
+	public long line() {
+		return r.getLineNumber();
+	}
+	
+	/**
+	 * Only decode the columns marked true, by position in {@link #header()};
+	 * rows return null for the others. Null (the default) decodes them all.
+	 */
+	public void setProjection(boolean[] columns) {
+		r.setProjection(columns);
+	}
+	
+	/**
+	 * Skip the rows the predicate doesn't match. They are tested before their
+	 * fields are turned into strings. Null (the default) returns every row.
+	 */
+	public void setFilter(RowPredicate filter) {
+		r.setFilter(filter == null ? null : filter.bind(headers));
+	}
+	
 	private String[] parseRecord() throws IOException {
-		r.next();
-		return r.getColumns();
+		return r.next();
 	}
 
 	public boolean hasNext() {
 		if (next == null) {
 			try {
-				return r.hasNext();
+				if (r.getFilter() == null) return r.hasNext();
+				// whether a matching row is left can only be known by finding it
+				if (r.hasNext()) next = parseRecord();
 			}
 			catch (Exception ex) {
 				throw new RuntimeException(ex);
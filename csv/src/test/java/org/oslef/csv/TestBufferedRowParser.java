@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public final class TestBufferedRowParser {
+	
+	private static final String[] INPUTS = {
+		"",
+		"a",
+		"a,b,c",
+		"a,b,c\n",
+		"a,b,c\n\n",
+		"a,,c\r\nd,e,\r\n",
+		"a,b\rc,d\r\n\re",
+		"\"a\",\"b,c\",\"d\"\n\"e\"",
+		"x\"quoted\"y,z",
+		"\"multi\nline\",\"field\"\nnext,row",
+		"\"multi\r\nline\",\"crlf\"\r\nnext,row\r\n",
+		"\"\nstarts with newline\",x",
+		"\"escaped \\\" quote\",\"ends with \\\"\"",
+		"\"a\\\"\nb\",c",
+		"\\\"not escaped outside quotes\",x",
+		"\"\"empty quotes\"\",\"\"",
+		"loan_id,amount\n\"1\",\"100.00\"\n\"2\",\"5,000.00\"\n",
+	};
+	
+	@Test
+	public void sameFieldsAsLineParser() throws IOException {
+		for (String input : INPUTS) {
+			List<String[]> expected = readLines(input);
+			for (int bufferSize : new int[]{1, 2, 3, 7, BufferedRowParser.DEFAULT_BUFFER_SIZE}) {
+				List<String[]> actual = readSinglePass(input, bufferSize);
+				assertSame(input, bufferSize, expected, actual);
+			}
+		}
+	}
+	
+	@Test
+	public void selectableFromCSVReader() throws IOException {
+		for (String input : INPUTS) {
+			CSVReader r = new CSVReader(stream(input));
+			r.setParserType(CSVReader.ParserType.SINGLE_PASS);
+			List<String[]> actual = new ArrayList<String[]>();
+			while (r.hasNext()) {
+				actual.add(r.next());
+			}
+			assertSame(input, BufferedRowParser.DEFAULT_BUFFER_SIZE, readLines(input), actual);
+		}
+	}
+	
+	@Test
+	public void sameLineNumbersAsLineParser() throws IOException {
+		for (String input : INPUTS) {
+			List<Long> expected = new ArrayList<Long>();
+			CSVReader r = new CSVReader(stream(input));
+			while (r.hasNext()) {
+				r.next();
+				expected.add(r.getLineNumber());
+			}
+			for (int bufferSize : new int[]{1, 2, 3, 7, BufferedRowParser.DEFAULT_BUFFER_SIZE}) {
+				List<Long> actual = new ArrayList<Long>();
+				BufferedRowParser p = new BufferedRowParser(new StringReader(input), ',', bufferSize);
+				while (p.next() != null) {
+					actual.add(p.line());
+				}
+				Assert.assertEquals(input + " (" + bufferSize + ")", expected, actual);
+			}
+		}
+		
+		CSVReader r = new CSVReader(stream("\"multi\r\nline\",\"crlf\"\r\nnext,row\r\n"));
+		r.setParserType(CSVReader.ParserType.SINGLE_PASS);
+		r.next();
+		Assert.assertEquals(1, r.getLineNumber());
+		r.next();
+		Assert.assertEquals(3, r.getLineNumber());
+	}
+	
+	@Test(expected=IOException.class)
+	public void unterminatedQuote() throws IOException {
+		BufferedRowParser p = new BufferedRowParser(new StringReader("a,\"b\nc"), ',', 4);
+		p.next();
+	}
+	
+	private static List<String[]> readLines(String input) throws IOException {
+		CSVReader r = new CSVReader(stream(input));
+		List<String[]> rows = new ArrayList<String[]>();
+		while (r.hasNext()) {
+			rows.add(r.next());
+		}
+		return rows;
+	}
+	
+	private static List<String[]> readSinglePass(String input, int bufferSize) throws IOException {
+		BufferedRowParser p = new BufferedRowParser(new StringReader(input), ',', bufferSize);
+		List<String[]> rows = new ArrayList<String[]>();
+		for (String[] row = p.next(); row != null; row = p.next()) {
+			rows.add(row);
+		}
+		return rows;
+	}
+	
+	private static ByteArrayInputStream stream(String s) {
+		try {
+			return new ByteArrayInputStream(s.getBytes("UTF8"));
+		}
+		catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	private static void assertSame(String input, int bufferSize, List<String[]> expected, List<String[]> actual) {
+		String msg = "input '" + input + "' (buffer size " + bufferSize + ")";
+		Assert.assertEquals(msg + ": row count", expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			Assert.assertEquals(msg + ": row " + i, Arrays.asList(expected.get(i)), Arrays.asList(actual.get(i)));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.oslef.csv.CSVReader.ParserType;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.TableIterator;
+
+public final class TestCSVReader {
+	
+	private static final String DATA = "loan_id,amount\n\"1\",\"100.00\"\n\"2\",\"multi\nline\"\n\"3\",\"5.00\"\n";
+	
+	@Test
+	public void lookAheadOnStreamThatIsNeverReady() throws IOException {
+		for (ParserType type : ParserType.values()) {
+			CSVReader r = new CSVReader(new Trickle(new ByteArrayInputStream(DATA.getBytes("UTF8"))));
+			r.setParserType(type);
+			r.setLookAhead(true);
+			int count = 0;
+			while (r.hasNext()) {
+				r.next();
+				count++;
+			}
+			Assert.assertEquals(type + " record count", 4, count);
+		}
+	}
+	
+	@Test
+	public void tableIteratorOverCompressedStream() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream gz = new GZIPOutputStream(bytes);
+		gz.write(DATA.getBytes("UTF8"));
+		gz.close();
+		
+		InputStream in = new Trickle(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		TableIterator itr = new TableIterator(in);
+		int count = 0;
+		String last = null;
+		while (itr.hasNext()) {
+			Row row = itr.next();
+			last = row.get("amount");
+			count++;
+		}
+		itr.close();
+		Assert.assertEquals(3, count);
+		Assert.assertEquals("5.00", last);
+	}
+	
+	/**
+	 * Behaves like a pipe that never has anything buffered: one byte per read
+	 * and nothing ever available without blocking.
+	 */
+	private static final class Trickle extends FilterInputStream {
+		
+		Trickle(InputStream in) {
+			super(in);
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 1));
+		}
+		
+		@Override
+		public int available() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.oslef.csv.CSVWriter.QuoteSpec;
+import org.oslef.csv.CSVWriter.QuoteSpec.Escaping;
+import org.oslef.csv.CSVWriter.QuoteSpec.QuoteMode;
+
+public final class TestCSVWriter {
+	
+	private static final String[] VALUES = {
+		"",
+		"plain",
+		"a,b",
+		"multi\nline",
+		"\"",
+		"\"quoted\"",
+		"say \"hi\", then\nleave",
+		"\"\"",
+		"trailing\"",
+		"ends with comma,",
+	};
+	
+	@Test
+	public void singlePassMatchesRegex() throws IOException {
+		for (QuoteMode mode : QuoteMode.values()) {
+			for (String[] q : new String[][]{{"\"", "'"}, {"\"", "\"\""}, {"''", "'"}}) {
+				String expected = write(new QuoteSpec(q[0], q[1], mode, Escaping.REGEX));
+				String actual = write(new QuoteSpec(q[0], q[1], mode, Escaping.SINGLE_PASS));
+				Assert.assertEquals(mode + " " + q[0], expected, actual);
+			}
+		}
+	}
+	
+	@Test
+	public void singlePassWritesReplacementLiterally() throws IOException {
+		StringWriter out = new StringWriter();
+		CSVWriter w = new CSVWriter(out, new QuoteSpec("\"", "$1\\", QuoteMode.AS_NEEDED, Escaping.SINGLE_PASS));
+		w.write("a\"b");
+		Assert.assertEquals("\"a$1\\b\"", out.toString());
+	}
+	
+	@Test(expected=IOException.class)
+	public void singlePassWithoutQuotes() throws IOException {
+		CSVWriter w = new CSVWriter(new StringWriter(), new QuoteSpec(null, null, QuoteMode.AS_NEEDED, Escaping.SINGLE_PASS));
+		w.write("plain");
+		w.write("a,b");
+	}
+	
+	private static String write(QuoteSpec spec) throws IOException {
+		StringWriter out = new StringWriter();
+		CSVWriter w = new CSVWriter(out, spec);
+		for (String v : VALUES) {
+			w.write(v);
+		}
+		w.newLine();
+		w.close();
+		return out.toString();
+	}
+}
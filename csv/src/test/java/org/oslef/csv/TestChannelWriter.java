@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public final class TestChannelWriter {
+	
+	@Test
+	public void encodesAcrossBufferBoundaries() throws IOException {
+		// long enough to fill the character and byte buffers several times, 
+		// with surrogate pairs straddling the boundaries
+		StringBuilder expected = new StringBuilder();
+		for (int i=0; i<300000; i++) {
+			expected.append(i % 3 == 0 ? "😀" : "ä,").append(i);
+		}
+		
+		File f = File.createTempFile("channel", ".csv");
+		try {
+			ChannelWriter w = new ChannelWriter(f);
+			String s = expected.toString();
+			for (int i=0; i<s.length(); i+=7) {
+				w.append(s, i, Math.min(s.length(), i + 7));
+			}
+			w.close();
+			Assert.assertEquals(s, new String(read(f), "UTF-8"));
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	@Test
+	public void selectableCharset() throws IOException {
+		File f = File.createTempFile("channel", ".csv");
+		try {
+			ChannelWriter w = new ChannelWriter(f, Charset.forName("ISO-8859-1"));
+			w.write("Zürich,€");
+			w.flush();
+			w.close();
+			w.close();
+			Assert.assertEquals("Zürich,?", new String(read(f), "ISO-8859-1"));
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	@Test
+	public void writesFailOnceClosed() throws IOException {
+		File f = File.createTempFile("channel", ".csv");
+		try {
+			ChannelWriter w = new ChannelWriter(f);
+			w.write("abc");
+			w.close();
+			for (int i=0; i<5; i++) {
+				try {
+					switch (i) {
+					case 0: w.write("after close"); break;
+					case 1: w.write('x'); break;
+					case 2: w.write(new char[]{'x'}); break;
+					case 3: w.append('x'); break;
+					case 4: w.append("after close"); break;
+					}
+					Assert.fail("Write " + i + " succeeded");
+				}
+				catch (IOException ex) {}
+			}
+			Assert.assertEquals(3, f.length());
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	private static byte[] read(File f) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream in = new FileInputStream(f);
+		try {
+			byte[] b = new byte[8192];
+			for (int n = in.read(b); n != -1; n = in.read(b)) {
+				out.write(b, 0, n);
+			}
+		}
+		finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+}
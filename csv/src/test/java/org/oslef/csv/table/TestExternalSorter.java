@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class TestExternalSorter {
+	
+	private static final Comparator<String> NUMERIC = new Comparator<String>() {
+		public int compare(String a, String b) {
+			return Integer.valueOf(a).compareTo(Integer.valueOf(b));
+		}
+	};
+	
+	private File tempDir;
+	
+	@Before
+	public void setup() throws IOException {
+		tempDir = File.createTempFile("sorter", "");
+		tempDir.delete();
+		tempDir.mkdir();
+	}
+	
+	@After
+	public void teardown() {
+		for (File f : tempDir.listFiles()) {
+			f.delete();
+		}
+		tempDir.delete();
+	}
+	
+	@Test
+	public void mergesInPassesAndStaysStable() throws IOException {
+		StringBuilder csv = new StringBuilder("key,seq\n");
+		List<String> expected = new ArrayList<String>();
+		for (int i=0; i<2000; i++) {
+			int key = (i * 7919) % 50;
+			csv.append(key).append(",").append(i).append("\n");
+			expected.add(key + "/" + i);
+		}
+		// a stable sort by key keeps seq ascending within each key
+		Collections.sort(expected, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return NUMERIC.compare(a.substring(0, a.indexOf('/')), b.substring(0, b.indexOf('/')));
+			}
+		});
+		final String content = csv.toString();
+		RowSource source = new RowSource() {
+			public HeaderInfo info() {
+				return new TableIterator(new StringReader(content)).header();
+			}
+			
+			public RowIterator iterator() {
+				return new TableIterator(new StringReader(content));
+			}
+		};
+		
+		for (int fanIn : new int[]{2, 3, 1000}) {
+			// a small buffer makes dozens of spills
+			RowIterator itr = new ExternalSorter(tempDir, 2 * 1024, fanIn).sort(source, "key", NUMERIC);
+			List<String> actual = new ArrayList<String>();
+			try {
+				while (itr.hasNext()) {
+					Row row = itr.next();
+					actual.add(row.get("key") + "/" + row.get("seq"));
+				}
+			}
+			finally {
+				itr.close();
+			}
+			Assert.assertEquals("fan-in " + fanIn, expected, actual);
+			Assert.assertEquals("fan-in " + fanIn, 0, tempDir.listFiles().length);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public final class TestInterner {
+	
+	@Test
+	public void repeatedValuesShareOneInstance() {
+		Interner interner = new Interner();
+		String first = interner.intern("loan_type", new String("payday"));
+		String second = interner.intern("loan_type", new String("payday"));
+		Assert.assertSame(first, second);
+		Assert.assertNotSame(first, interner.intern("other", new String("payday")));
+		
+		Interner.Dictionary d = interner.dictionary("loan_type");
+		Assert.assertEquals(1, d.hits());
+		Assert.assertEquals(1, d.misses());
+		Assert.assertEquals(0.5, d.hitRate());
+	}
+	
+	@Test
+	public void columnsWithTooManyValuesStopInterning() {
+		Interner interner = new Interner(3);
+		for (int i=0; i<4; i++) {
+			interner.intern("ssn", "00" + i);
+		}
+		Interner.Dictionary d = interner.dictionary("ssn");
+		Assert.assertFalse(d.isInterning());
+		Assert.assertEquals(0, d.size());
+		
+		String value = new String("000");
+		Assert.assertSame(value, interner.intern("ssn", value));
+	}
+	
+	@Test
+	public void dictionariesFollowTheHeader() {
+		Interner interner = new Interner();
+		HeaderInfo header = new HeaderInfo(new String[]{"loan_id", "action"});
+		Interner.Dictionary[] d = interner.dictionaries(header);
+		Assert.assertSame(interner.dictionary("action"), d[1]);
+		Assert.assertSame(d, interner.dictionaries(header));
+	}
+	
+	@Test
+	public void alternatingHeadersAreEachResolvedOnce() {
+		final HeaderInfo[] headers = new HeaderInfo[3];
+		for (int i=0; i<headers.length; i++) {
+			headers[i] = new HeaderInfo(new String[]{"loan_id", "column" + i});
+		}
+		final int[] resolved = new int[1];
+		HeaderCache<String> cache = new HeaderCache<String>(2) {
+			@Override
+			protected String resolve(HeaderInfo info) {
+				resolved[0]++;
+				return info.columns().get(1);
+			}
+		};
+		
+		for (int i=0; i<10; i++) {
+			Assert.assertEquals("column0", cache.get(headers[0]));
+			Assert.assertEquals("column1", cache.get(headers[1]));
+		}
+		Assert.assertEquals(2, resolved[0]);
+		
+		// a third header pushes out the oldest
+		cache.get(headers[2]);
+		cache.get(headers[1]);
+		Assert.assertEquals(3, resolved[0]);
+		cache.get(headers[0]);
+		Assert.assertEquals(4, resolved[0]);
+		
+		Interner interner = new Interner();
+		Interner.Dictionary[][] d = new Interner.Dictionary[headers.length][];
+		for (int i=0; i<headers.length; i++) {
+			d[i] = interner.dictionaries(headers[i]);
+		}
+		for (int i=0; i<headers.length; i++) {
+			Assert.assertSame(d[i], interner.dictionaries(headers[i]));
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public final class TestMappedTable {
+	
+	private static final Charset CHARSET = Charset.defaultCharset(); // what Table reads with
+	
+	private static final String[] INPUTS = {
+		"a,b,c",
+		"a,b,c\n",
+		"a,b,c\n1,2,3",
+		"a,b,c\n1,2,3\n",
+		"a,b,c\r\n1,,3\r\n,,\r\n",
+		"a,b\r1,2\r3,4",
+		"\"a\",\"b\"\n\"1\",\"2,000.00\"\n\"x\",\"y\"\n",
+		"a,b\n\"multi\nline\",\"field\"\nnext,row\n",
+		"a,b\n\"multi\r\nline\",\"crlf\"\r\nnext,row\r\n",
+		"a,b\n\"escaped \\\" quote\",\"ends with \\\"\"\n",
+		"a,b\nx\"quoted\"y,z\n",
+		"a,b\n\"\"\"\",\"\"\n",
+		"name,city\n\"Zoë\",\"København\"\nÅse,Ørsta\n",
+	};
+	
+	@Test
+	public void sameRowsAsTable() throws IOException {
+		for (String input : INPUTS) {
+			File f = write(input);
+			try {
+				List<List<String>> expected = read(new Table(f));
+				for (int windowSize : new int[]{1, 3, 16, MappedTable.DEFAULT_WINDOW_SIZE}) {
+					List<List<String>> actual = read(new MappedTable(f, CHARSET, windowSize));
+					Assert.assertEquals("input '" + input + "' (window size " + windowSize + ")", expected, actual);
+				}
+			}
+			finally {
+				f.delete();
+			}
+		}
+	}
+	
+	@Test
+	public void rowAtOffset() throws IOException {
+		File f = write("id,v\n1,one\n\"2\",\"two\nlines\"\r\n3,three");
+		try {
+			MappedTable t = new MappedTable(f, CHARSET, 4);
+			List<Long> offsets = new ArrayList<Long>();
+			List<String> values = new ArrayList<String>();
+			MappedTableIterator itr = t.iterator();
+			while (itr.hasNext()) {
+				values.add(itr.next().get("v"));
+				offsets.add(itr.offset());
+			}
+			itr.close();
+			Assert.assertEquals(3, values.size());
+			Assert.assertEquals(Long.valueOf(t.dataStart()), offsets.get(0));
+			
+			for (int i=offsets.size()-1; i>=0; i--) {
+				Assert.assertEquals(values.get(i), t.rowAt(offsets.get(i)).get("v"));
+			}
+			
+			// a range stops at the first record starting at or after its end
+			List<List<String>> tail = read(t.iterator(offsets.get(1), offsets.get(2)), t.info());
+			Assert.assertEquals(2, tail.size());
+			Assert.assertEquals("two\nlines", tail.get(1).get(1));
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	@Test
+	public void onlyAsciiSafeCharsets() throws IOException {
+		File f = write("a,b\n1,2\n");
+		try {
+			for (String name : new String[]{"UTF-8", "US-ASCII", "ISO-8859-1", "ISO-8859-15", "windows-1252"}) {
+				MappedTableIterator itr = new MappedTable(f, Charset.forName(name)).iterator();
+				Assert.assertEquals(name, "2", itr.next().get("b"));
+				itr.close();
+			}
+			// trail bytes of double-byte characters include 0x5C, the escape
+			for (String name : new String[]{"Shift_JIS", "Big5", "UTF-16"}) {
+				if (!Charset.isSupported(name)) continue;
+				try {
+					new MappedTable(f, Charset.forName(name));
+					Assert.fail(name);
+				}
+				catch (IllegalArgumentException ex) {
+					// expected
+				}
+			}
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void unterminatedQuote() throws IOException {
+		File f = write("a,b\n1,\"2\n3");
+		try {
+			read(new MappedTable(f, CHARSET, 2));
+		}
+		catch (RuntimeException ex) {
+			if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+			throw ex;
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	private static List<List<String>> read(RowSource source) throws IOException {
+		return read(source.iterator(), source.info());
+	}
+	
+	private static List<List<String>> read(RowIterator itr, HeaderInfo info) throws IOException {
+		List<List<String>> rows = new ArrayList<List<String>>();
+		try {
+			while (itr.hasNext()) {
+				Row row = itr.next();
+				List<String> values = new ArrayList<String>();
+				for (String column : info) {
+					values.add(row.get(column));
+				}
+				rows.add(values);
+			}
+		}
+		finally {
+			itr.close();
+		}
+		rows.add(0, info.columns());
+		return rows;
+	}
+	
+	private static File write(String content) throws IOException {
+		File f = File.createTempFile("mapped", ".csv");
+		OutputStream out = new FileOutputStream(f);
+		try {
+			out.write(content.getBytes("UTF8"));
+		}
+		finally {
+			out.close();
+		}
+		return f;
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.csv.table;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.oslef.csv.CSVReader;
+
+public final class TestRowPredicate {
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final String INPUT = 
+		"id,type,amount,when\n" +
+		"1,PAYDAY,100.00,2011-02-07T16:29:54.778Z\n" +
+		"\"2\",\"INSTALLMENT\",\"2,000.00\",\"2011-03-01\"\r\n" +
+		"3,\"PAY\nDAY\",-5,2010-12-31\n" +
+		"4,PAYDAY,1e3,2011-02-08\n" +
+		"5,\"PAY\\\"DAY\",99.999,\n" +
+		"6,Zoë,12345678901234567890.5,2011-02-07\n" +
+		"7,PAYDAY\n" +
+		"8,PAYDAY,100.001,2011-02-06\n";
+	
+	@Test
+	public void equality() throws IOException {
+		assertMatches("1 4 7 8", RowPredicate.equalTo("type", "PAYDAY"));
+		assertMatches("6", RowPredicate.equalTo("type", "Zoë"));
+		assertMatches("3", RowPredicate.equalTo("type", "PAY\nDAY"));
+		assertMatches("2", RowPredicate.equalTo("id", "2"));
+		assertMatches("", RowPredicate.equalTo("no such column", "x"));
+		assertMatches("7", RowPredicate.equalTo("amount", ""));
+		assertMatches("1 2 6", RowPredicate.in("id", Arrays.asList("1", "2", "6", "60", "")));
+		assertMatches("", RowPredicate.in("id", new ArrayList<String>()));
+	}
+	
+	@Test
+	public void prefix() throws IOException {
+		assertMatches("1 3 4 5 7 8", RowPredicate.startsWith("type", "PAY"));
+		assertMatches("1 2 3 4 5 6 7 8", RowPredicate.startsWith("type", ""));
+		assertMatches("1 4 7 8", RowPredicate.startsWith("type", "PAYDAY"));
+	}
+	
+	@Test
+	public void numericRange() throws IOException {
+		assertMatches("1 4 5 8", RowPredicate.between("amount", new BigDecimal("99.99"), new BigDecimal("1000")));
+		assertMatches("1 3 5", RowPredicate.between("amount", null, new BigDecimal("100")));
+		assertMatches("1 4 6 8", RowPredicate.between("amount", new BigDecimal("100"), null));
+		assertMatches("6", RowPredicate.between("amount", new BigDecimal("1E19"), null));
+		assertMatches("1 3 4 5 6 8", RowPredicate.between("amount", null, null));
+	}
+	
+	@Test
+	public void dateRange() throws IOException {
+		assertMatches("1 4 6 8", RowPredicate.dateBetween("when", "2011-02-01", "2011-02-28"));
+		assertMatches("3 8", RowPredicate.dateBetween("when", null, "2011-02-06"));
+		assertMatches("1 2 4 6", RowPredicate.dateBetween("when", "2011-02-07", null));
+		try {
+			RowPredicate.dateBetween("when", "2011-2-7", null);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void conjunction() throws IOException {
+		assertMatches("1 8", RowPredicate.and(RowPredicate.equalTo("type", "PAYDAY"), RowPredicate.between("amount", null, new BigDecimal("999"))));
+	}
+	
+	/**
+	 * Checks the ids of the matching rows from every parser, and from rows
+	 * that were already read.
+	 */
+	private static void assertMatches(String ids, RowPredicate predicate) throws IOException {
+		List<String> expected = ids.length() == 0 ? new ArrayList<String>() : Arrays.asList(ids.split(" "));
+		
+		TableIterator itr = new TableIterator(new StringReader(INPUT));
+		itr.setFilter(predicate);
+		Assert.assertEquals(predicate.toString(), expected, ids(itr));
+		
+		List<String> matched = new ArrayList<String>();
+		itr = new TableIterator(new StringReader(INPUT));
+		while (itr.hasNext()) {
+			Row row = itr.next();
+			if (predicate.matches(row)) matched.add(row.get("id"));
+		}
+		Assert.assertEquals(predicate.toString(), expected, matched);
+		
+		CSVReader r = new CSVReader(new StringReader(INPUT));
+		r.setLookAhead(true);
+		HeaderInfo header = new HeaderInfo(r.next());
+		r.setFilter(predicate.bind(header));
+		matched.clear();
+		String[] values;
+		while ((values = r.next()) != null) {
+			matched.add(values[0]);
+		}
+		Assert.assertEquals(predicate.toString(), expected, matched);
+		
+		File f = File.createTempFile("predicate", ".csv");
+		try {
+			OutputStream out = new FileOutputStream(f);
+			try {
+				out.write(INPUT.getBytes(UTF8.name()));
+			}
+			finally {
+				out.close();
+			}
+			for (int windowSize : new int[]{3, 16, MappedTable.DEFAULT_WINDOW_SIZE}) {
+				MappedTable t = new MappedTable(f, UTF8, windowSize);
+				MappedTableIterator m = t.iterator();
+				m.setFilter(predicate);
+				Assert.assertEquals(predicate.toString(), expected, ids(m));
+			}
+		}
+		finally {
+			f.delete();
+		}
+	}
+	
+	private static List<String> ids(RowIterator itr) throws IOException {
+		List<String> ids = new ArrayList<String>();
+		try {
+			while (itr.hasNext()) {
+				ids.add(itr.next().get("id"));
+			}
+		}
+		finally {
+			itr.close();
+		}
+		return ids;
+	}
+}
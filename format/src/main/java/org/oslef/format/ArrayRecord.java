@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Record} that keeps its values in an array indexed by the slots of
+ * a shared {@link ColumnDictionary}, with a bit per slot recording which 
+ * columns have been put (a column can be put with a null value, as in 
+ * {@link MapRecord}). Far smaller than a {@link MapRecord}, which carries a
+ * hash table and an entry object per column. Columns not yet in the 
+ * dictionary are added to it. Keys come back in slot order.
+ * 
+ * Not thread-safe, though records sharing a dictionary can be used from 
+ * different threads.
+ */
+public final class ArrayRecord implements Record {
+	
+	private static final String[] NO_VALUES = new String[0];
+	private static final long[] NO_BITS = new long[0];
+	
+	private final ColumnDictionary dictionary;
+	private String[] values = NO_VALUES;
+	private long[] present = NO_BITS;
+	
+	public ArrayRecord(ColumnDictionary dictionary) {
+		if (dictionary == null) throw new NullPointerException();
+		this.dictionary = dictionary;
+	}
+	
+	/**
+	 * Copies the columns of another record.
+	 */
+	public ArrayRecord(ColumnDictionary dictionary, Record r) {
+		this(dictionary);
+		for (String k : r.keys()) {
+			put(k, r.get(k));
+		}
+	}
+	
+	public ColumnDictionary dictionary() {
+		return dictionary;
+	}
+	
+	public boolean has(String columnName) {
+		return StringUtil.nonEmpty(get(columnName));
+	}
+	
+	public String get(String columnName) {
+		int slot = dictionary.slot(columnName);
+		return slot == -1 ? null : get(slot);
+	}
+	
+	/**
+	 * @return the value in a slot of the dictionary.
+	 */
+	public String get(int slot) {
+		return slot < values.length ? values[slot] : null;
+	}
+	
+	public String put(String k, String v) {
+		int slot = dictionary.intern(k);
+		if (slot >= values.length) grow(slot);
+		String old = values[slot];
+		values[slot] = v;
+		present[slot >>> 6] |= 1L << slot;
+		return old;
+	}
+	
+	public String del(String k) {
+		int slot = dictionary.slot(k);
+		if (slot == -1 || slot >= values.length) return null;
+		String old = values[slot];
+		values[slot] = null;
+		present[slot >>> 6] &= ~(1L << slot);
+		return old;
+	}
+	
+	public Set<String> keys() {
+		return new AbstractSet<String>() {
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private int next = nextSlot(0);
+					public boolean hasNext() {
+						return next != -1;
+					}
+					public String next() {
+						if (next == -1) throw new NoSuchElementException();
+						String column = dictionary.column(next);
+						next = nextSlot(next + 1);
+						return column;
+					}
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+			public int size() {
+				int n = 0;
+				for (long bits : present) {
+					n += Long.bitCount(bits);
+				}
+				return n;
+			}
+			public boolean contains(Object o) {
+				if (!(o instanceof String)) return false;
+				return isPresent(dictionary.slot((String) o));
+			}
+		};
+	}
+	
+	/**
+	 * @return a copy of this record as a {@link MapRecord}.
+	 */
+	public MapRecord toMapRecord() {
+		MapRecord r = new MapRecord();
+		for (int slot = nextSlot(0); slot != -1; slot = nextSlot(slot + 1)) {
+			r.put(dictionary.column(slot), values[slot]);
+		}
+		return r;
+	}
+	
+	private boolean isPresent(int slot) {
+		return slot >= 0 && slot < values.length && (present[slot >>> 6] & (1L << slot)) != 0;
+	}
+	
+	/**
+	 * @return the first slot at or after the given one that has been put, or 
+	 * -1.
+	 */
+	private int nextSlot(int from) {
+		int word = from >>> 6;
+		if (word >= present.length) return -1;
+		long bits = present[word] & (-1L << from);
+		for (;;) {
+			if (bits != 0) {
+				int slot = word * 64 + Long.numberOfTrailingZeros(bits);
+				return slot < values.length ? slot : -1;
+			}
+			if (++word == present.length) return -1;
+			bits = present[word];
+		}
+	}
+	
+	/**
+	 * Makes room for every column in the dictionary so far, which includes 
+	 * the given slot.
+	 */
+	private void grow(int slot) {
+		int size = Math.max(slot + 1, dictionary.size());
+		String[] v = new String[size];
+		System.arraycopy(values, 0, v, 0, values.length);
+		values = v;
+		int words = (size + 63) >>> 6;
+		if (words > present.length) {
+			long[] p = new long[words];
+			System.arraycopy(present, 0, p, 0, present.length);
+			present = p;
+		}
+	}
+}
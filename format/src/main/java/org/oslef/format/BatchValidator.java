@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemListener;
+import org.oslef.format.Validator.SelectiveListener;
+import org.oslef.format.Validator.Severity;
+
+/**
+ * Validates loans on several threads. Loans are handed out in batches; each
+ * worker thread has its own {@link Validator} collecting into its own list, 
+ * so the workers share nothing. Problems are tagged with their loan's id and
+ * position, and handed to the listener in loan order on the thread that 
+ * submits the loans, so the listener needn't be thread-safe. A 
+ * {@link SelectiveListener} is the exception: the workers ask it which 
+ * problems it {@link SelectiveListener#wants(Severity) wants}, so that 
+ * method is called from several threads at once.
+ * 
+ * Either pass everything at once to {@link #validate(Iterable)}, or push 
+ * loans with {@link #submit(Loan)} (e.g. from a database scan) and then call 
+ * {@link #finish()}. An instance validates one run of loans.
+ * 
+ * Checks beyond the lexical ones in {@link Validator} can be run in the same
+ * pass by {@link #add(Stage) adding} {@link Stage}s.
+ */
+public final class BatchValidator {
+	
+	static final int BATCH_SIZE = 128;
+	
+	/**
+	 * A further check run on every loan after the lexical validation. Stages
+	 * are shared by all the worker threads, so must be thread-safe; each call 
+	 * gets the listener of the thread it runs on, which is a 
+	 * {@link SelectiveListener} answering for the caller's listener.
+	 */
+	public static interface Stage {
+		void validate(Loan loan, ProblemListener l);
+	}
+	
+	private final ProblemListener listener;
+	private final int threads;
+	private final ExecutorService pool;
+	private final List<Stage> stages = new CopyOnWriteArrayList<Stage>();
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+		@Override
+		protected Worker initialValue() {
+			return new Worker(listener instanceof SelectiveListener ? (SelectiveListener) listener : null);
+		}
+	};
+	
+	private final LinkedList<Future<List<Problem>>> pending = new LinkedList<Future<List<Problem>>>();
+	private List<Loan> batch = new ArrayList<Loan>(BATCH_SIZE);
+	private long submitted = 0;
+	private boolean finished = false;
+	
+	public BatchValidator(ProblemListener listener) {
+		this(listener, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public BatchValidator(ProblemListener listener, int threads) {
+		if (listener == null) throw new NullPointerException();
+		if (threads < 1) throw new IllegalArgumentException("Need at least one thread: " + threads);
+		this.listener = listener;
+		this.threads = threads;
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "oslef-validator");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * Runs a stage on every loan, after the lexical validation and any stages
+	 * added before it. Must be called before the first loan is submitted.
+	 */
+	public BatchValidator add(Stage stage) {
+		if (stage == null) throw new NullPointerException();
+		if (submitted() > 0 || finished) throw new IllegalStateException("Validation has already started");
+		stages.add(stage);
+		return this;
+	}
+	
+	/**
+	 * Validates every loan, then {@link #finish()}es.
+	 */
+	public void validate(Iterable<Loan> loans) {
+		for (Loan l : loans) {
+			submit(l);
+		}
+		finish();
+	}
+	
+	/**
+	 * Queues a loan for validation, delivering the problems of earlier loans
+	 * that are done. Blocks while the workers are well behind.
+	 */
+	public void submit(Loan loan) {
+		if (finished) throw new IllegalStateException("Already finished");
+		if (loan == null) throw new NullPointerException();
+		batch.add(loan);
+		if (batch.size() == BATCH_SIZE) dispatch();
+		
+		while (!pending.isEmpty() && (pending.size() > threads * 2 || pending.getFirst().isDone())) {
+			deliver(pending.removeFirst());
+		}
+	}
+	
+	/**
+	 * Waits for all submitted loans, delivers their problems and stops the
+	 * worker threads.
+	 */
+	public void finish() {
+		if (finished) return;
+		finished = true;
+		try {
+			if (!batch.isEmpty()) dispatch();
+			while (!pending.isEmpty()) {
+				deliver(pending.removeFirst());
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @return how many loans have been submitted so far.
+	 */
+	public long submitted() {
+		return submitted + batch.size();
+	}
+	
+	private void dispatch() {
+		final List<Loan> loans = batch;
+		final long first = submitted;
+		batch = new ArrayList<Loan>(BATCH_SIZE);
+		submitted += loans.size();
+		pending.add(pool.submit(new Callable<List<Problem>>() {
+			public List<Problem> call() {
+				return workers.get().validate(loans, first, stages);
+			}
+		}));
+	}
+	
+	private void deliver(Future<List<Problem>> f) {
+		List<Problem> problems;
+		try {
+			problems = f.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+		for (Problem p : problems) {
+			listener.problemEncountered(p);
+		}
+	}
+	
+	/**
+	 * Collects one worker's problems, leaving the choice of which ones are 
+	 * wanted to the caller's listener.
+	 */
+	private static final class Collector implements SelectiveListener {
+		
+		final List<Problem> problems = new ArrayList<Problem>();
+		private final SelectiveListener selection;
+		
+		Collector(SelectiveListener selection) {
+			this.selection = selection;
+		}
+		
+		void clear() {
+			problems.clear();
+		}
+		
+		public boolean wants(Severity severity) {
+			return selection == null || selection.wants(severity);
+		}
+		
+		public void problemEncountered(Problem p) {
+			problems.add(p);
+		}
+	}
+	
+	/**
+	 * One worker thread's validator and problem buffer.
+	 */
+	private static final class Worker {
+		
+		private final Collector collected;
+		private final Validator validator;
+		
+		Worker(SelectiveListener selection) {
+			collected = new Collector(selection);
+			validator = new Validator(collected);
+		}
+		
+		List<Problem> validate(List<Loan> loans, long first, List<Stage> stages) {
+			List<Problem> result = new ArrayList<Problem>();
+			for (int i=0; i<loans.size(); i++) {
+				Loan l = loans.get(i);
+				collected.clear();
+				validator.validate(l);
+				for (Stage stage : stages) {
+					stage.validate(l, collected);
+				}
+				String loanId = l.get(Constants.LOAN_ID);
+				for (Problem p : collected.problems) {
+					p.loanId = loanId;
+					p.loanIndex = first + i;
+					result.add(p);
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.MappedTableIterator;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.RowSource;
+
+/**
+ * Finds the rows of a child table (installments or history) that belong to a
+ * loan, without touching the table until the first lookup. A mapped table is 
+ * indexed by the byte offset of each row, so only the loan id of every row is
+ * decoded up front and rows are parsed when they are asked for; any other 
+ * table has to be grouped in memory.
+ */
+final class ChildIndex {
+	
+	private static final long[] NONE = new long[0];
+	
+	private final RowSource table;
+	
+	private Map<String, long[]> offsets;
+	private MappedTableIterator cursor;
+	private Map<String, List<Row>> rows;
+	
+	ChildIndex(RowSource table) {
+		this.table = table;
+	}
+	
+	synchronized List<Row> rows(String loanId) {
+		if (table instanceof MappedTable) {
+			if (offsets == null) offsets = index((MappedTable) table);
+			long[] o = offsets.get(loanId);
+			if (o == null) o = NONE;
+			List<Row> result = new ArrayList<Row>(o.length);
+			for (long offset : o) {
+				cursor.seek(offset);
+				result.add(cursor.next());
+			}
+			return result;
+		}
+		else {
+			if (rows == null) rows = Reader.group(table.iterator());
+			List<Row> result = rows.get(loanId);
+			if (result == null) return Collections.emptyList();
+			else return result;
+		}
+	}
+	
+	synchronized void close() throws IOException {
+		if (cursor != null) cursor.close();
+	}
+	
+	private Map<String, long[]> index(MappedTable t) {
+		Map<String, Offsets> found = new HashMap<String, Offsets>();
+		MappedTableIterator itr = t.iterator();
+		try {
+			while (itr.hasNext()) {
+				String loanId = itr.next().get(Constants.LOAN_ID);
+				Offsets o = found.get(loanId);
+				if (o == null) {
+					o = new Offsets();
+					found.put(loanId, o);
+				}
+				o.add(itr.offset());
+			}
+		}
+		finally {
+			try {
+				itr.close();
+			}
+			catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		
+		Map<String, long[]> result = new HashMap<String, long[]>(found.size() * 2);
+		for (Map.Entry<String, Offsets> e : found.entrySet()) {
+			result.put(e.getKey(), e.getValue().toArray());
+		}
+		cursor = t.iterator();
+		return result;
+	}
+	
+	private static final class Offsets {
+		
+		private long[] values = new long[2];
+		private int size = 0;
+		
+		void add(long offset) {
+			if (size == values.length) {
+				long[] v = new long[size * 2];
+				System.arraycopy(values, 0, v, 0, size);
+				values = v;
+			}
+			values[size++] = offset;
+		}
+		
+		long[] toArray() {
+			long[] v = new long[size];
+			System.arraycopy(values, 0, v, 0, size);
+			return v;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes the values of one column for a run of rows (a row group) as bytes, 
+ * and back. Values are strings, any of which may be null. The encoding is 
+ * picked per chunk, trying each in turn:
+ * 
+ * <ul>
+ * <li>{@link #DECIMAL}: every value is a plain decimal with the same number
+ * of decimal places (amounts, ids, counts), stored as a run-length encoded
+ * fixed-point long</li>
+ * <li>{@link #INSTANT}: every value is a UTC instant such as 
+ * 2011-02-07T16:29:54.778Z, stored as run-length encoded epoch millis</li>
+ * <li>{@link #DICTIONARY}: each distinct value is stored once, followed by 
+ * run-length encoded indexes into that dictionary</li>
+ * <li>{@link #PLAIN}: every value as it is</li>
+ * </ul>
+ * 
+ * A typed encoding is only used if every value comes back as exactly the 
+ * same string, so decoding always gives back what was encoded.
+ */
+final class ColumnChunk {
+	
+	static final byte PLAIN = 0;
+	static final byte DICTIONARY = 1;
+	static final byte DECIMAL = 2;
+	static final byte INSTANT = 3;
+	
+	private static final long NOT_TYPED = Long.MIN_VALUE;
+	
+	private ColumnChunk() {}
+	
+	static byte[] encode(String[] values, int count) {
+		Bytes out = new Bytes();
+		
+		long[] longs = new long[count];
+		int scale = decimals(values, count, longs);
+		if (scale >= 0) {
+			out.put(DECIMAL);
+			out.put((byte) scale);
+			runs(values, longs, count, out);
+			return out.toArray();
+		}
+		
+		if (instants(values, count, longs)) {
+			out.put(INSTANT);
+			runs(values, longs, count, out);
+			return out.toArray();
+		}
+		
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		int nonNull = 0;
+		for (int i=0; i<count; i++) {
+			if (values[i] == null) continue;
+			nonNull++;
+			if (!dictionary.containsKey(values[i])) dictionary.put(values[i], dictionary.size());
+		}
+		
+		if (dictionary.size() * 2 <= nonNull) {
+			out.put(DICTIONARY);
+			String[] entries = new String[dictionary.size()];
+			for (Map.Entry<String, Integer> e : dictionary.entrySet()) entries[e.getValue()] = e.getKey();
+			out.putVarInt(entries.length);
+			for (String s : entries) out.putString(s);
+			// 0 is null, so that index i is stored as i + 1
+			for (int i=0; i<count; i++) longs[i] = values[i] == null ? 0 : dictionary.get(values[i]) + 1;
+			int i = 0;
+			while (i < count) {
+				int run = run(longs, i, count);
+				out.putVarInt(run);
+				out.putVarLong(longs[i]);
+				i += run;
+			}
+			return out.toArray();
+		}
+		
+		out.put(PLAIN);
+		for (int i=0; i<count; i++) {
+			if (values[i] == null) out.putVarInt(0);
+			else {
+				byte[] b = utf8(values[i]);
+				out.putVarInt(b.length + 1);
+				out.put(b, 0, b.length);
+			}
+		}
+		return out.toArray();
+	}
+	
+	static String[] decode(byte[] data, int count) {
+		In in = new In(data);
+		String[] values = new String[count];
+		byte encoding = in.get();
+		
+		switch (encoding) {
+		case DECIMAL:
+		case INSTANT: {
+			int scale = encoding == DECIMAL ? in.get() : 0;
+			int i = 0;
+			while (i < count) {
+				int run = in.getVarInt();
+				String v = null;
+				if (in.get() != 0) {
+					long l = in.getVarLong();
+					if (encoding == DECIMAL) v = BigDecimal.valueOf(l, scale).toPlainString();
+					else v = formatInstant(l);
+				}
+				for (int end=i+run; i<end; i++) values[i] = v;
+			}
+			break;
+		}
+		case DICTIONARY: {
+			String[] entries = new String[in.getVarInt()];
+			for (int j=0; j<entries.length; j++) entries[j] = in.getString();
+			int i = 0;
+			while (i < count) {
+				int run = in.getVarInt();
+				int code = (int) in.getVarLong();
+				String v = code == 0 ? null : entries[code - 1];
+				for (int end=i+run; i<end; i++) values[i] = v;
+			}
+			break;
+		}
+		case PLAIN:
+			for (int i=0; i<count; i++) {
+				int length = in.getVarInt();
+				if (length > 0) values[i] = in.getString(length - 1);
+			}
+			break;
+		default:
+			throw new RuntimeException("Unknown column encoding: " + encoding);
+		}
+		return values;
+	}
+	
+	/**
+	 * Writes runs of equal values: the run's length, whether it is null and
+	 * if not its long value.
+	 */
+	private static void runs(String[] values, long[] longs, int count, Bytes out) {
+		int i = 0;
+		while (i < count) {
+			int run = 1;
+			if (values[i] == null) {
+				while (i + run < count && values[i + run] == null) run++;
+			}
+			else {
+				while (i + run < count && values[i + run] != null && longs[i + run] == longs[i]) run++;
+			}
+			out.putVarInt(run);
+			if (values[i] == null) out.put((byte) 0);
+			else {
+				out.put((byte) 1);
+				out.putVarLong(longs[i]);
+			}
+			i += run;
+		}
+	}
+	
+	private static int run(long[] longs, int from, int count) {
+		int run = 1;
+		while (from + run < count && longs[from + run] == longs[from]) run++;
+		return run;
+	}
+	
+	/**
+	 * @return the scale all values share, filling in their unscaled values, 
+	 * or -1 if they aren't all plain decimals of one scale that fit in a long.
+	 */
+	private static int decimals(String[] values, int count, long[] longs) {
+		int scale = -1;
+		for (int i=0; i<count; i++) {
+			String v = values[i];
+			if (v == null) continue;
+			if (!looksDecimal(v)) return -1;
+			
+			BigDecimal d = new BigDecimal(v);
+			if (scale == -1) {
+				scale = d.scale();
+				if (scale > Byte.MAX_VALUE) return -1;
+			}
+			if (d.scale() != scale) return -1;
+			BigInteger unscaled = d.unscaledValue();
+			if (unscaled.bitLength() > 63) return -1;
+			longs[i] = unscaled.longValue();
+			// rules out what BigDecimal would rewrite, like -0 or leading zeros
+			if (!BigDecimal.valueOf(longs[i], scale).toPlainString().equals(v)) return -1;
+		}
+		return scale == -1 ? 0 : scale;
+	}
+	
+	private static boolean looksDecimal(String v) {
+		int n = v.length();
+		if (n == 0 || n > 40) return false;
+		boolean point = false;
+		for (int i=0; i<n; i++) {
+			char c = v.charAt(i);
+			if (c >= '0' && c <= '9') continue;
+			if (c == '-' && i == 0 && n > 1) continue;
+			if (c == '.' && !point && i > 0 && i < n - 1) {
+				point = true;
+				continue;
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	private static boolean instants(String[] values, int count, long[] longs) {
+		for (int i=0; i<count; i++) {
+			if (values[i] == null) continue;
+			long l = parseInstant(values[i]);
+			if (l == NOT_TYPED) return false;
+			longs[i] = l;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the epoch millis of a yyyy-MM-ddTHH:mm:ss.SSSZ instant, or 
+	 * {@link #NOT_TYPED} if s isn't one (or isn't a real date).
+	 */
+	static long parseInstant(String s) {
+		if (s.length() != 24) return NOT_TYPED;
+		if (s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T' || s.charAt(13) != ':' 
+				|| s.charAt(16) != ':' || s.charAt(19) != '.' || s.charAt(23) != 'Z') return NOT_TYPED;
+		int year = digits(s, 0, 4), month = digits(s, 5, 2), day = digits(s, 8, 2);
+		int hour = digits(s, 11, 2), minute = digits(s, 14, 2), second = digits(s, 17, 2), milli = digits(s, 20, 3);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return NOT_TYPED;
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || milli < 0) return NOT_TYPED;
+		long days = daysFromCivil(year, month, day);
+		return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L + milli;
+	}
+	
+	static String formatInstant(long millis) {
+		long days = millis / 86400000L;
+		long rest = millis % 86400000L;
+		if (rest < 0) {
+			days--;
+			rest += 86400000L;
+		}
+		// civil from days, proleptic Gregorian
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		
+		StringBuilder b = new StringBuilder(24);
+		pad(b, year, 4).append('-');
+		pad(b, month, 2).append('-');
+		pad(b, day, 2).append('T');
+		pad(b, rest / 3600000, 2).append(':');
+		pad(b, rest / 60000 % 60, 2).append(':');
+		pad(b, rest / 1000 % 60, 2).append('.');
+		pad(b, rest % 1000, 3).append('Z');
+		return b.toString();
+	}
+	
+	private static long daysFromCivil(int year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yoe = y - era * 400;
+		long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+	
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2: return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+		case 4: case 6: case 9: case 11: return 30;
+		default: return 31;
+		}
+	}
+	
+	private static int digits(String s, int from, int length) {
+		int n = 0;
+		for (int i=from; i<from+length; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+	
+	private static StringBuilder pad(StringBuilder b, long n, int width) {
+		String s = Long.toString(n);
+		for (int i=s.length(); i<width; i++) b.append('0');
+		return b.append(s);
+	}
+	
+	static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	/**
+	 * A growable byte buffer with variable-length integers.
+	 */
+	static final class Bytes {
+		
+		private byte[] buf = new byte[256];
+		private int size;
+		
+		void put(byte b) {
+			ensure(1);
+			buf[size++] = b;
+		}
+		
+		void put(byte[] b, int off, int len) {
+			ensure(len);
+			System.arraycopy(b, off, buf, size, len);
+			size += len;
+		}
+		
+		void putVarInt(int v) {
+			putVarLong(v & 0xFFFFFFFFL);
+		}
+		
+		/**
+		 * Zig-zag encodes, so that small negative numbers stay short.
+		 */
+		void putVarLong(long v) {
+			long z = (v << 1) ^ (v >> 63);
+			ensure(10);
+			while ((z & ~0x7FL) != 0) {
+				buf[size++] = (byte) ((z & 0x7F) | 0x80);
+				z >>>= 7;
+			}
+			buf[size++] = (byte) z;
+		}
+		
+		void putString(String s) {
+			byte[] b = utf8(s);
+			putVarInt(b.length);
+			put(b, 0, b.length);
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		byte[] toArray() {
+			byte[] b = new byte[size];
+			System.arraycopy(buf, 0, b, 0, size);
+			return b;
+		}
+		
+		private void ensure(int n) {
+			if (size + n > buf.length) {
+				byte[] b = new byte[Math.max(buf.length * 2, size + n)];
+				System.arraycopy(buf, 0, b, 0, size);
+				buf = b;
+			}
+		}
+	}
+	
+	/**
+	 * Reads what a {@link Bytes} wrote.
+	 */
+	static final class In {
+		
+		private final byte[] buf;
+		private int pos;
+		
+		In(byte[] buf) {
+			this.buf = buf;
+		}
+		
+		byte get() {
+			return buf[pos++];
+		}
+		
+		int getVarInt() {
+			return (int) getVarLong();
+		}
+		
+		long getVarLong() {
+			long z = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buf[pos++];
+				z |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return (z >>> 1) ^ -(z & 1);
+		}
+		
+		String getString() {
+			return getString(getVarInt());
+		}
+		
+		String getString(int length) {
+			try {
+				String s = new String(buf, pos, length, "UTF-8");
+				pos += length;
+				return s;
+			}
+			catch (UnsupportedEncodingException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Numbers column names, so that records of the same kind can share one copy
+ * of the names and keep their values in arrays (see {@link ArrayRecord}). 
+ * Slots are handed out in the order columns are first seen and never change;
+ * names not seen before are added as needed. Safe for use by several 
+ * threads.
+ */
+public final class ColumnDictionary {
+	
+	private final Map<String, Integer> slots = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] columns = new String[0];
+	
+	public ColumnDictionary() {}
+	
+	/**
+	 * Starts with the given columns, e.g. one of the lists of a 
+	 * {@link Schema}, in their order.
+	 */
+	public ColumnDictionary(List<String> columns) {
+		for (String c : columns) {
+			intern(c);
+		}
+	}
+	
+	/**
+	 * @return the slot of a column, or -1 if it has not been seen.
+	 */
+	public int slot(String column) {
+		Integer slot = slots.get(column);
+		return slot == null ? -1 : slot.intValue();
+	}
+	
+	/**
+	 * @return the slot of a column, adding it if it has not been seen.
+	 */
+	public int intern(String column) {
+		if (column == null) throw new NullPointerException();
+		Integer slot = slots.get(column);
+		if (slot != null) return slot.intValue();
+		synchronized (this) {
+			slot = slots.get(column);
+			if (slot != null) return slot.intValue();
+			String[] a = columns;
+			String[] b = new String[a.length + 1];
+			System.arraycopy(a, 0, b, 0, a.length);
+			b[a.length] = column;
+			columns = b;
+			slots.put(column, a.length);
+			return a.length;
+		}
+	}
+	
+	/**
+	 * @return the name of the column in a slot.
+	 */
+	public String column(int slot) {
+		return columns[slot];
+	}
+	
+	public int size() {
+		return columns.length;
+	}
+}
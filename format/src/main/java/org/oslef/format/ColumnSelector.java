@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.oslef.csv.table.HeaderCache;
+import org.oslef.csv.table.HeaderInfo;
+
+/**
+ * Chooses the columns to read, by exact name or by prefix, e.g. 
+ * <pre>
+ * ColumnSelector.of(Constants.LOAN_ID, Constants.STRUCT_LOAN_AMOUNT, Constants.STRUCT_FINANCED_FEE_PREFIX)
+ * </pre>
+ * Records read through a selector only hold the columns it selects, and 
+ * where the parser allows it the other fields aren't even turned into 
+ * strings. See {@link Inspector#records(String, ColumnSelector)} and
+ * {@link Reader.Options#setColumns(ColumnSelector)}.
+ */
+public final class ColumnSelector {
+	
+	private final Set<String> names;
+	private final String[] prefixes;
+	
+	private final HeaderCache<Resolved> resolved = new HeaderCache<Resolved>() {
+		@Override
+		protected Resolved resolve(HeaderInfo info) {
+			return new Resolved(info);
+		}
+	};
+	
+	private ColumnSelector(Set<String> names, String[] prefixes) {
+		this.names = names;
+		this.prefixes = prefixes;
+	}
+	
+	/**
+	 * @param columns column names, or prefixes if they end in ':' like the
+	 * prefixes in {@link Constants}
+	 */
+	public static ColumnSelector of(String... columns) {
+		return of(Arrays.asList(columns));
+	}
+	
+	public static ColumnSelector of(Iterable<String> columns) {
+		Set<String> names = new HashSet<String>();
+		List<String> prefixes = new ArrayList<String>();
+		for (String c : columns) {
+			if (c == null) throw new NullPointerException();
+			if (c.endsWith(":")) prefixes.add(c);
+			else names.add(c);
+		}
+		return new ColumnSelector(Collections.unmodifiableSet(names), prefixes.toArray(new String[prefixes.size()]));
+	}
+	
+	/**
+	 * @return a selector for these columns as well as this one's.
+	 */
+	public ColumnSelector and(String... columns) {
+		List<String> all = new ArrayList<String>(names);
+		all.addAll(Arrays.asList(prefixes));
+		all.addAll(Arrays.asList(columns));
+		return of(all);
+	}
+	
+	public boolean selects(String column) {
+		if (names.contains(column)) return true;
+		for (String p : prefixes) {
+			if (column.startsWith(p)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return whether each column of the header, by position, is selected.
+	 */
+	public boolean[] mask(HeaderInfo info) {
+		return resolved.get(info).mask;
+	}
+	
+	/**
+	 * @return the positions of the selected columns of the header, in order.
+	 */
+	int[] positions(HeaderInfo info) {
+		return resolved.get(info).positions;
+	}
+	
+	@Override
+	public String toString() {
+		List<String> all = new ArrayList<String>(names);
+		for (String p : prefixes) all.add(p + "*");
+		Collections.sort(all);
+		return all.toString();
+	}
+	
+	private final class Resolved {
+		final boolean[] mask;
+		final int[] positions;
+		
+		Resolved(HeaderInfo info) {
+			List<String> columns = info.columns();
+			mask = new boolean[columns.size()];
+			int n = 0;
+			for (int i=0; i<mask.length; i++) {
+				mask[i] = selects(columns.get(i));
+				if (mask[i]) n++;
+			}
+			positions = new int[n];
+			n = 0;
+			for (int i=0; i<mask.length; i++) {
+				if (mask[i]) positions[n++] = i;
+			}
+		}
+	}
+}
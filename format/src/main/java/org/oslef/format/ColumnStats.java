@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+/**
+ * What a {@link SchemaScanner} learned about the values of one column: how
+ * many rows it saw, how many were blank, the longest value and roughly how
+ * many distinct values there are. Enough to size fields or decide whether a
+ * column is worth a dictionary before writing it.
+ */
+public final class ColumnStats {
+	
+	private final String name;
+	private long count;
+	private long nulls;
+	private int maxLength;
+	private final HyperLogLog distinct = new HyperLogLog();
+	
+	ColumnStats(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * @param value a value of this column; null for a row that doesn't reach
+	 * it.
+	 */
+	void add(String value) {
+		count++;
+		if (value == null || value.trim().length() == 0) {
+			nulls++;
+			return;
+		}
+		if (value.length() > maxLength) maxLength = value.length();
+		distinct.add(value);
+	}
+	
+	void merge(ColumnStats other) {
+		count += other.count;
+		nulls += other.nulls;
+		maxLength = Math.max(maxLength, other.maxLength);
+		distinct.merge(other.distinct);
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	/**
+	 * @return the number of rows seen.
+	 */
+	public long count() {
+		return count;
+	}
+	
+	/**
+	 * @return the number of rows in which the column was blank or missing.
+	 */
+	public long nulls() {
+		return nulls;
+	}
+	
+	/**
+	 * @return the length of the longest value, in characters.
+	 */
+	public int maxLength() {
+		return maxLength;
+	}
+	
+	/**
+	 * @return an estimate of the number of distinct non-blank values, good 
+	 * to within a couple of percent.
+	 */
+	public long distinct() {
+		return distinct.estimate();
+	}
+	
+	@Override
+	public String toString() {
+		return name + ": " + count + " rows, " + nulls + " blank, max length " + maxLength + ", ~" + distinct() + " distinct";
+	}
+}
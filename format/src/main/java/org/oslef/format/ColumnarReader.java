@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a directory written by {@link ColumnarWriter}, in the order the loans
+ * were written. A reader can be limited to some columns, in which case only 
+ * those columns are read from disk and the records hold nothing else.
+ */
+public final class ColumnarReader implements Iterator<Loan>, Iterable<Loan> {
+	
+	private final ColumnarTableReader loansTable;
+	private final ColumnarTableReader installmentsTable;
+	private final ColumnarTableReader historyTable;
+	
+	private final Part loans;
+	private final Part installments;
+	private final Part history;
+	
+	public ColumnarReader(File dir) throws IOException {
+		this(dir, null);
+	}
+	
+	/**
+	 * @param columns the columns to read, from whichever tables have them, or 
+	 * null for all of them. All three files are opened, for their columns, 
+	 * but if none of a child table's columns are wanted no data is read from
+	 * it and the loans' lists for it stay empty.
+	 */
+	public ColumnarReader(File dir, Collection<String> columns) throws IOException {
+		if (dir == null) throw new NullPointerException();
+		ColumnarTableReader l = null, i = null, h = null;
+		boolean opened = false;
+		try {
+			l = new ColumnarTableReader(new File(dir, ColumnarWriter.LOANS_FILE));
+			i = new ColumnarTableReader(new File(dir, ColumnarWriter.INSTALLMENTS_FILE));
+			h = new ColumnarTableReader(new File(dir, ColumnarWriter.HISTORY_FILE));
+			
+			loans = new Part(l, columns, true);
+			installments = new Part(i, columns, false);
+			history = new Part(h, columns, false);
+			opened = true;
+		}
+		finally {
+			if (!opened) {
+				try {
+					close(l, i, h);
+				}
+				catch (IOException ex) {
+					// the failure to open is the one to report
+				}
+			}
+		}
+		loansTable = l;
+		installmentsTable = i;
+		historyTable = h;
+	}
+	
+	/**
+	 * @return the columns of each table, as they were written.
+	 */
+	public Schema schema() {
+		Schema s = new Schema();
+		for (String c : loansTable.columns()) {
+			if (!c.equals(ColumnarWriter.INSTALLMENT_COUNT) && !c.equals(ColumnarWriter.HISTORY_COUNT)) s.loan().add(c);
+		}
+		s.installmentPlan().addAll(installmentsTable.columns());
+		s.history().addAll(historyTable.columns());
+		return s;
+	}
+	
+	/**
+	 * @return the number of loans.
+	 */
+	public long size() {
+		return loansTable.rows();
+	}
+	
+	public boolean hasNext() {
+		return loans.cursor.hasNext();
+	}
+	
+	public Loan next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		try {
+			Loan l = new Loan();
+			loans.cursor.next();
+			loans.read(l.loan);
+			
+			int i = Integer.parseInt(loans.cursor.get(loans.names.length));
+			int h = Integer.parseInt(loans.cursor.get(loans.names.length + 1));
+			installments.children(i, l.installments);
+			history.children(h, l.history);
+			return l;
+		}
+		catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	public Iterator<Loan> iterator() {
+		return this;
+	}
+	
+	public void close() throws IOException {
+		close(loansTable, installmentsTable, historyTable);
+	}
+	
+	/**
+	 * Closes every table that was opened, even if closing one of them fails.
+	 */
+	private static void close(ColumnarTableReader... tables) throws IOException {
+		IOException failure = null;
+		for (ColumnarTableReader t : tables) {
+			if (t == null) continue;
+			try {
+				t.close();
+			}
+			catch (IOException ex) {
+				if (failure == null) failure = ex;
+			}
+		}
+		if (failure != null) throw failure;
+	}
+	
+	/**
+	 * The wanted columns of one table and a cursor over them. For loans.col
+	 * the child counts follow the wanted columns.
+	 */
+	private static final class Part {
+		
+		final String[] names;
+		final ColumnarTableReader.Cursor cursor;
+		
+		Part(ColumnarTableReader table, Collection<String> wanted, boolean counts) {
+			List<String> all = table.columns();
+			List<String> names = new ArrayList<String>();
+			List<Integer> positions = new ArrayList<Integer>();
+			for (int i=0; i<all.size(); i++) {
+				String c = all.get(i);
+				if (c.equals(ColumnarWriter.INSTALLMENT_COUNT) || c.equals(ColumnarWriter.HISTORY_COUNT)) continue;
+				if (wanted == null || wanted.contains(c)) {
+					names.add(c);
+					positions.add(i);
+				}
+			}
+			this.names = names.toArray(new String[names.size()]);
+			if (counts) {
+				positions.add(all.indexOf(ColumnarWriter.INSTALLMENT_COUNT));
+				positions.add(all.indexOf(ColumnarWriter.HISTORY_COUNT));
+			}
+			
+			int[] p = new int[positions.size()];
+			for (int i=0; i<p.length; i++) p[i] = positions.get(i);
+			this.cursor = names.isEmpty() && !counts ? null : table.cursor(p);
+		}
+		
+		void read(Record r) {
+			for (int i=0; i<names.length; i++) {
+				String v = cursor.get(i);
+				if (v != null) r.put(names[i], v);
+			}
+		}
+		
+		void children(int count, List<MapRecord> records) throws IOException {
+			if (cursor == null) return;
+			for (int i=0; i<count; i++) {
+				cursor.next();
+				MapRecord r = new MapRecord();
+				read(r);
+				records.add(r);
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a table written by {@link ColumnarTableWriter}. Only the chunks of 
+ * the columns asked for are read from disk.
+ */
+final class ColumnarTableReader {
+	
+	private final File file;
+	private final RandomAccessFile in;
+	private final List<String> columns;
+	private final int[] groupRows;
+	private final long[][] offsets;
+	private final int[][] lengths;
+	
+	ColumnarTableReader(File file) throws IOException {
+		this.file = file;
+		this.in = new RandomAccessFile(file, "r");
+		try {
+			long length = in.length();
+			byte[] magic = new byte[4];
+			in.readFully(magic);
+			if (length < 17 || !Arrays.equals(magic, ColumnarTableWriter.MAGIC)) throw new IOException("Not a columnar oslef file: " + file);
+			byte version = in.readByte();
+			if (version != ColumnarTableWriter.VERSION) throw new IOException("Unsupported version " + version + ": " + file);
+			
+			in.seek(length - 12);
+			long footerOffset = in.readLong();
+			in.readFully(magic);
+			if (!Arrays.equals(magic, ColumnarTableWriter.MAGIC)) throw new IOException("Truncated columnar oslef file: " + file);
+			
+			byte[] footer = new byte[(int) (length - 12 - footerOffset)];
+			in.seek(footerOffset);
+			in.readFully(footer);
+			ColumnChunk.In f = new ColumnChunk.In(footer);
+			
+			String[] names = new String[f.getVarInt()];
+			for (int i=0; i<names.length; i++) names[i] = f.getString();
+			columns = Collections.unmodifiableList(Arrays.asList(names));
+			
+			int groups = f.getVarInt();
+			groupRows = new int[groups];
+			offsets = new long[groups][names.length];
+			lengths = new int[groups][names.length];
+			for (int g=0; g<groups; g++) {
+				groupRows[g] = f.getVarInt();
+				for (int c=0; c<names.length; c++) {
+					offsets[g][c] = f.getVarLong();
+					lengths[g][c] = f.getVarInt();
+				}
+			}
+		}
+		catch (IOException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+	
+	List<String> columns() {
+		return columns;
+	}
+	
+	long rows() {
+		long n = 0;
+		for (int r : groupRows) n += r;
+		return n;
+	}
+	
+	private String[] chunk(int group, int column) throws IOException {
+		byte[] b = new byte[lengths[group][column]];
+		in.seek(offsets[group][column]);
+		in.readFully(b);
+		return ColumnChunk.decode(b, groupRows[group]);
+	}
+	
+	/**
+	 * @param columns positions in {@link #columns()} of the columns to read
+	 */
+	Cursor cursor(int[] columns) {
+		return new Cursor(columns);
+	}
+	
+	void close() throws IOException {
+		in.close();
+	}
+	
+	/**
+	 * Steps through the rows of a table, a group of the chosen columns at a 
+	 * time.
+	 */
+	final class Cursor {
+		
+		private final int[] columns;
+		private final String[][] values;
+		private int group = -1;
+		private int row;
+		
+		Cursor(int[] columns) {
+			this.columns = columns;
+			this.values = new String[columns.length][];
+		}
+		
+		boolean hasNext() {
+			int g = group, r = row;
+			if (g == -1) g = 0;
+			else if (r == groupRows[g]) {
+				g++;
+				r = 0;
+			}
+			while (g < groupRows.length && groupRows[g] == 0) g++;
+			return g < groupRows.length;
+		}
+		
+		/**
+		 * Moves to the next row.
+		 */
+		void next() throws IOException {
+			if (group == -1 || row == groupRows[group]) {
+				do {
+					group++;
+					if (group >= groupRows.length) throw new IOException("Read past the end of " + file);
+				} while (groupRows[group] == 0);
+				for (int i=0; i<columns.length; i++) {
+					values[i] = chunk(group, columns[i]);
+				}
+				row = 0;
+			}
+			row++;
+		}
+		
+		/**
+		 * @param i the position of the column among those the cursor reads
+		 * @return its value in the current row, possibly null.
+		 */
+		String get(int i) {
+			return values[i][row - 1];
+		}
+	}
+}
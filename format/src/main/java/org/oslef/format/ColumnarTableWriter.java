@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one table of a columnar OSLEF directory. Rows are buffered a group at
+ * a time; each full group is written as one {@link ColumnChunk} per column.
+ * The file ends with a footer giving the columns and where each group's 
+ * chunks are, so that a reader can fetch just the columns it wants:
+ * 
+ * <pre>
+ * magic, version
+ * chunks...
+ * footer: column count, names; group count, per group its row count and
+ *         each column chunk's offset and length
+ * footer offset (8 bytes), magic
+ * </pre>
+ */
+final class ColumnarTableWriter {
+	
+	static final byte[] MAGIC = {'O', 'S', 'L', 'C'};
+	static final byte VERSION = 1;
+	
+	private final String[] columns;
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
+	private final int groupSize;
+	private final OutputStream out;
+	private final ColumnChunk.Bytes footer = new ColumnChunk.Bytes();
+	
+	private String[][] group;
+	private int rows;
+	private int groups;
+	private long position;
+	
+	ColumnarTableWriter(File file, List<String> columns, int groupSize) throws IOException {
+		this.columns = columns.toArray(new String[columns.size()]);
+		for (int i=0; i<this.columns.length; i++) {
+			if (index.put(this.columns[i], i) != null) throw new IllegalArgumentException("Duplicate column: " + this.columns[i]);
+		}
+		this.groupSize = groupSize;
+		this.group = new String[this.columns.length][groupSize];
+		this.out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		write(MAGIC);
+		write(new byte[]{VERSION});
+	}
+	
+	/**
+	 * Sets a value of the row being written.
+	 */
+	void set(String column, String value) {
+		Integer i = index.get(column);
+		if (i == null) throw new IllegalArgumentException("Column not in the schema: " + column);
+		group[i][rows] = value;
+	}
+	
+	/**
+	 * Finishes the row being written; values not set are null.
+	 */
+	void endRow() throws IOException {
+		rows++;
+		if (rows == groupSize) flush();
+	}
+	
+	private void flush() throws IOException {
+		if (rows == 0) return;
+		footer.putVarInt(rows);
+		for (int c=0; c<columns.length; c++) {
+			byte[] chunk = ColumnChunk.encode(group[c], rows);
+			footer.putVarLong(position);
+			footer.putVarInt(chunk.length);
+			write(chunk);
+		}
+		groups++;
+		rows = 0;
+		group = new String[columns.length][groupSize];
+	}
+	
+	private void write(byte[] b) throws IOException {
+		out.write(b);
+		position += b.length;
+	}
+	
+	void close() throws IOException {
+		try {
+			flush();
+			
+			long footerOffset = position;
+			ColumnChunk.Bytes head = new ColumnChunk.Bytes();
+			head.putVarInt(columns.length);
+			for (String c : columns) head.putString(c);
+			head.putVarInt(groups);
+			write(head.toArray());
+			write(footer.toArray());
+			
+			byte[] trailer = new byte[8];
+			for (int i=0; i<8; i++) trailer[i] = (byte) (footerOffset >>> (56 - 8 * i));
+			write(trailer);
+			write(MAGIC);
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.oslef.csv.table.Table;
+
+/**
+ * Writes loans in the columnar OSLEF format: a directory holding loans.col,
+ * installments.col and history.col, one table each like the csv files, but 
+ * stored column by column so that a {@link ColumnarReader} neither re-parses
+ * text nor reads columns it doesn't need. See {@link ColumnChunk} for how 
+ * the values of a column are encoded.
+ * 
+ * Records are stored as they are, so reading them back gives equal 
+ * {@link Loan}s: missing fields stay missing and empty ones stay empty, and
+ * children are not given a loan id they don't already have. Every column of
+ * every record has to be in the {@link Schema}.
+ */
+public final class ColumnarWriter {
+	
+	public static final String
+		LOANS_FILE = "loans.col",
+		INSTALLMENTS_FILE = "installments.col",
+		HISTORY_FILE = "history.col";
+	
+	/**
+	 * How many rows are encoded together. Bigger groups compress better and 
+	 * take more memory to write and read.
+	 */
+	public static final int DEFAULT_GROUP_SIZE = 64 * 1024;
+	
+	/**
+	 * Columns of loans.col holding each loan's number of installment and 
+	 * history rows; a {@link ColumnarReader} does not return them.
+	 */
+	static final String 
+		INSTALLMENT_COUNT = "#installments",
+		HISTORY_COUNT = "#history";
+	
+	private final ColumnarTableWriter loans;
+	private final ColumnarTableWriter installments;
+	private final ColumnarTableWriter history;
+	
+	public ColumnarWriter(Schema schema, File dir) throws IOException {
+		this(schema, dir, DEFAULT_GROUP_SIZE);
+	}
+	
+	public ColumnarWriter(Schema schema, File dir, int groupSize) throws IOException {
+		if (schema == null || dir == null) throw new NullPointerException();
+		if (groupSize < 1) throw new IllegalArgumentException("Group size must be positive: " + groupSize);
+		
+		List<String> loanColumns = new ArrayList<String>(schema.loan());
+		if (loanColumns.contains(INSTALLMENT_COUNT) || loanColumns.contains(HISTORY_COUNT)) {
+			throw new IllegalArgumentException("Reserved column names: " + INSTALLMENT_COUNT + ", " + HISTORY_COUNT);
+		}
+		loanColumns.add(INSTALLMENT_COUNT);
+		loanColumns.add(HISTORY_COUNT);
+		
+		dir = dir.getAbsoluteFile();
+		loans = new ColumnarTableWriter(new File(dir, LOANS_FILE), loanColumns, groupSize);
+		installments = new ColumnarTableWriter(new File(dir, INSTALLMENTS_FILE), schema.installmentPlan(), groupSize);
+		history = new ColumnarTableWriter(new File(dir, HISTORY_FILE), schema.history(), groupSize);
+	}
+	
+	public void write(Loan loan) throws IOException {
+		
+		write(loan.loan, loans);
+		loans.set(INSTALLMENT_COUNT, Integer.toString(loan.installments.size()));
+		loans.set(HISTORY_COUNT, Integer.toString(loan.history.size()));
+		loans.endRow();
+		
+		for (Record i : loan.installments) {
+			write(i, installments);
+			installments.endRow();
+		}
+		
+		for (Record h : loan.history) {
+			write(h, history);
+			history.endRow();
+		}
+	}
+	
+	private static void write(Record r, ColumnarTableWriter w) {
+		for (String key : r.keys()) {
+			w.set(key, r.get(key));
+		}
+	}
+	
+	public void close() throws IOException {
+		try {
+			loans.close();
+		}
+		finally {
+			try {
+				installments.close();
+			}
+			finally {
+				history.close();
+			}
+		}
+	}
+	
+	/**
+	 * Converts a csv OSLEF directory. The columns are those of the csv 
+	 * headers, in the same order.
+	 */
+	public static void convert(File oslefDir, File columnarDir) throws IOException {
+		Schema schema = new Schema();
+		schema.loan().addAll(new Table(Inspector.locate(oslefDir, Inspector.LOANS_FILE), Inspector.CHARSET).info().columns());
+		schema.installmentPlan().addAll(new Table(Inspector.locate(oslefDir, Inspector.INSTALLMENTS_FILE), Inspector.CHARSET).info().columns());
+		schema.history().addAll(new Table(Inspector.locate(oslefDir, Inspector.HISTORY_FILE), Inspector.CHARSET).info().columns());
+		
+		Reader r = new Reader(oslefDir);
+		try {
+			ColumnarWriter w = new ColumnarWriter(schema, columnarDir);
+			try {
+				for (Loan l : r) {
+					w.write(l);
+				}
+			}
+			finally {
+				w.close();
+			}
+		}
+		finally {
+			r.close();
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: ColumnarWriter <oslef dir> <columnar dir>");
+			System.exit(1);
+		}
+		File out = new File(args[1]);
+		if (!out.isDirectory() && !out.mkdirs()) throw new IOException("Can't create " + out);
+		convert(new File(args[0]), out);
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds many loans in memory as {@link ArrayRecord}s, with one 
+ * {@link ColumnDictionary} each for loan, installment and history records, 
+ * at a fraction of the heap the same {@link Loan}s take. Loans are turned 
+ * back into {@link Loan}s when asked for, so hold on to those only as long as
+ * needed.
+ * 
+ * Not thread-safe.
+ */
+public final class CompactLoans implements Iterable<Loan> {
+	
+	private static final ArrayRecord[] NONE = new ArrayRecord[0];
+	
+	private final ColumnDictionary loanColumns;
+	private final ColumnDictionary installmentColumns;
+	private final ColumnDictionary historyColumns;
+	
+	private final List<ArrayRecord> loans = new ArrayList<ArrayRecord>();
+	private final List<ArrayRecord[]> installments = new ArrayList<ArrayRecord[]>();
+	private final List<ArrayRecord[]> history = new ArrayList<ArrayRecord[]>();
+	
+	public CompactLoans() {
+		this(new Schema());
+	}
+	
+	/**
+	 * Starts the dictionaries with the columns of a schema, so records keep 
+	 * their values in schema order. Columns the schema lacks are still 
+	 * accepted.
+	 */
+	public CompactLoans(Schema schema) {
+		loanColumns = new ColumnDictionary(schema.loan());
+		installmentColumns = new ColumnDictionary(schema.installmentPlan());
+		historyColumns = new ColumnDictionary(schema.history());
+	}
+	
+	public void add(Loan l) {
+		loans.add(new ArrayRecord(loanColumns, l.loan));
+		installments.add(copy(l.installments, installmentColumns));
+		history.add(copy(l.history, historyColumns));
+	}
+	
+	public Loan get(int index) {
+		Loan l = new Loan();
+		l.loan = loans.get(index).toMapRecord();
+		for (ArrayRecord r : installments.get(index)) {
+			l.installments.add(r.toMapRecord());
+		}
+		for (ArrayRecord r : history.get(index)) {
+			l.history.add(r.toMapRecord());
+		}
+		return l;
+	}
+	
+	/**
+	 * @return the loan record of a loan, without copying it.
+	 */
+	public ArrayRecord loan(int index) {
+		return loans.get(index);
+	}
+	
+	public int size() {
+		return loans.size();
+	}
+	
+	public Iterator<Loan> iterator() {
+		return new Iterator<Loan>() {
+			private int next = 0;
+			public boolean hasNext() {
+				return next < loans.size();
+			}
+			public Loan next() {
+				if (next >= loans.size()) throw new NoSuchElementException();
+				return get(next++);
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	private static ArrayRecord[] copy(List<? extends Record> records, ColumnDictionary columns) {
+		if (records.isEmpty()) return NONE;
+		ArrayRecord[] copies = new ArrayRecord[records.size()];
+		for (int i=0; i<copies.length; i++) {
+			copies[i] = new ArrayRecord(columns, records.get(i));
+		}
+		return copies;
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+/**
+ * Estimates the number of distinct strings added to it in a fixed 4KB, to 
+ * within a couple of percent. Small counts are close to exact. Estimators
+ * fed different parts of the same data can be merged.
+ */
+final class HyperLogLog {
+	
+	private static final int PRECISION = 12;
+	private static final int REGISTERS = 1 << PRECISION;
+	private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+	
+	private final byte[] registers = new byte[REGISTERS];
+	
+	void add(String value) {
+		long h = hash(value);
+		int index = (int)(h >>> (64 - PRECISION));
+		// the marker bit caps the rank once the remaining bits run out
+		int rank = Long.numberOfLeadingZeros((h << PRECISION) | (1L << (PRECISION - 1))) + 1;
+		if (rank > registers[index]) registers[index] = (byte) rank;
+	}
+	
+	void merge(HyperLogLog other) {
+		for (int i=0; i<REGISTERS; i++) {
+			if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+		}
+	}
+	
+	long estimate() {
+		double sum = 0;
+		int zeros = 0;
+		for (byte r : registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0) zeros++;
+		}
+		double e = ALPHA * REGISTERS * REGISTERS / sum;
+		if (e <= 2.5 * REGISTERS && zeros > 0) {
+			// linear counting is more accurate while many registers are empty
+			e = REGISTERS * Math.log((double) REGISTERS / zeros);
+		}
+		return Math.round(e);
+	}
+	
+	/**
+	 * FNV-1a over the characters, then the MurmurHash3 finalizer to spread
+	 * the bits.
+	 */
+	private static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i=0, n=s.length(); i<n; i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -39,9 +39,12 @@ package org.oslef.format;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.Iterator;
 
-import org.oslef.csv.table.Row;
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.RowIterator;
 import org.oslef.csv.table.TableIterator;
 
 /**
@@ -55,26 +58,99 @@ public final class Inspector {
 		INSTALLMENTS_FILE = "installments.csv",
 		HISTORY_FILE = "history.csv";
 	
+	/**
+	 * The charset {@link Writer} writes by default, which is also what 
+	 * everything in this package reads unless told otherwise.
+	 */
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+	
 	private final File oslefDir;
+	private boolean mapped = false;
+	private Charset charset = CHARSET;
 
 	public Inspector(File oslefDir) throws IOException {
 		if (oslefDir == null) throw new NullPointerException();
 		this.oslefDir = oslefDir;
 	}
 	
+	/**
+	 * Read files through {@link MappedTable}, which parses the bytes in place
+	 * and only decodes the fields that end up in a record. Compressed files 
+	 * are always streamed.
+	 */
+	public Inspector setMapped(boolean mapped) {
+		this.mapped = mapped;
+		return this;
+	}
+	
+	public Inspector setCharset(Charset charset) {
+		if (charset == null) throw new NullPointerException();
+		this.charset = charset;
+		return this;
+	}
+	
 	public RecordIterator records(String fileName) throws IOException {
+		return records(fileName, null);
+	}
+	
+	/**
+	 * @param columns the columns the records hold, or null for all of them. 
+	 * Other fields are skipped rather than decoded.
+	 */
+	public RecordIterator records(String fileName, ColumnSelector columns) throws IOException {
+		File f = locate(oslefDir, fileName);
+		RowIterator itr;
+		if (mapped && canMap(f)) itr = new MappedTable(f, charset).iterator();
+		else itr = new TableIterator(f, charset);
+		return new RecordIterator(itr, columns);
+	}
+	
+	/**
+	 * Reads records from any stream, e.g. a pipe or a decompressing stream,
+	 * in {@link #CHARSET}.
+	 */
+	public static RecordIterator records(InputStream in) {
+		return records(in, null);
+	}
+	
+	public static RecordIterator records(InputStream in, ColumnSelector columns) {
+		return new RecordIterator(new TableIterator(in, CHARSET), columns);
+	}
+	
+	/**
+	 * @return the named file in the given directory, or its gzipped sibling
+	 * (e.g. 'loans.csv.gz') if only that exists.
+	 */
+	static File locate(File oslefDir, String fileName) {
 		File f = new File(oslefDir, fileName);
-		TableIterator itr = new TableIterator(f);
-		return new RecordIterator(itr);
+		if (!f.exists()) {
+			File gz = new File(oslefDir, fileName + ".gz");
+			if (gz.exists()) return gz;
+		}
+		return f;
+	}
+	
+	static boolean canMap(File f) {
+		return !f.getName().endsWith(".gz");
 	}
 	
 	public static final class RecordIterator implements Iterator<Record>, Iterable<Record> {
 		
-		private final TableIterator itr;
+		private final RowIterator itr;
+		private final ColumnSelector columns;
+		
+		public RecordIterator(RowIterator itr) {
+			this(itr, null);
+		}
 		
-		public RecordIterator(TableIterator itr) {
+		public RecordIterator(RowIterator itr, ColumnSelector columns) {
 			super();
 			this.itr = itr;
+			this.columns = columns;
+			if (columns != null && itr instanceof TableIterator) {
+				TableIterator t = (TableIterator) itr;
+				t.setProjection(columns.mask(t.header()));
+			}
 		}
 
 		public boolean hasNext() {
@@ -82,12 +158,8 @@ public final class Inspector {
 		}
 		
 		public Record next() {
-			Row row = itr.next();
 			Record record = new MapRecord();
-			for (String k : row.header()) {
-				String v = row.get(k);
-				if (StringUtil.nonEmpty(v)) record.put(k, v);
-			}
+			Reader.read(itr.next(), record, null, columns);
 			return record;
 		}
 		
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.oslef.csv.table.Interner;
+import org.oslef.csv.table.Row;
+
+/**
+ * The installments or history of one loan, read from a {@link ChildIndex} the
+ * first time the list is used. Once loaded it behaves like any other list of
+ * records, including changes.
+ */
+final class LazyRecords extends AbstractList<MapRecord> {
+	
+	private final ChildIndex index;
+	private final String loanId;
+	private final Interner interner;
+	private final ColumnSelector selector;
+	private List<MapRecord> records;
+	
+	LazyRecords(ChildIndex index, String loanId, Interner interner, ColumnSelector selector) {
+		this.index = index;
+		this.loanId = loanId;
+		this.interner = interner;
+		this.selector = selector;
+	}
+	
+	@Override
+	public MapRecord get(int i) {
+		return load().get(i);
+	}
+	
+	@Override
+	public int size() {
+		return load().size();
+	}
+	
+	@Override
+	public MapRecord set(int i, MapRecord record) {
+		return load().set(i, record);
+	}
+	
+	@Override
+	public void add(int i, MapRecord record) {
+		load().add(i, record);
+		modCount++;
+	}
+	
+	@Override
+	public MapRecord remove(int i) {
+		MapRecord r = load().remove(i);
+		modCount++;
+		return r;
+	}
+	
+	boolean isLoaded() {
+		return records != null;
+	}
+	
+	private List<MapRecord> load() {
+		if (records == null) {
+			List<Row> rows = index.rows(loanId);
+			List<MapRecord> l = new ArrayList<MapRecord>(rows.size());
+			for (Row row : rows) {
+				MapRecord r = new MapRecord();
+				Reader.read(row, r, interner, selector);
+				l.add(r);
+			}
+			records = l;
+		}
+		return records;
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+
+import org.oslef.csv.table.Interner;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.RowIterator;
+
+/**
+ * Assembles loans from three row streams that are all ordered by loan id, 
+ * holding no more than one loan's rows at a time. The order is checked as the
+ * streams are read; a stream that goes backwards fails with an exception
+ * rather than silently losing rows. As with the hash join, children whose 
+ * loan isn't in loans.csv are skipped.
+ */
+final class MergeJoin {
+	
+	private final Comparator<String> order;
+	private final Stream loans;
+	private final Stream installments;
+	private final Stream history;
+	private final Interner interner;
+	private final ColumnSelector selector;
+	
+	MergeJoin(RowIterator loans, RowIterator installments, RowIterator history, Comparator<String> order, 
+			Interner interner, ColumnSelector selector) {
+		this.order = order;
+		this.interner = interner;
+		this.selector = selector;
+		this.loans = new Stream(Inspector.LOANS_FILE, loans);
+		this.installments = new Stream(Inspector.INSTALLMENTS_FILE, installments);
+		this.history = new Stream(Inspector.HISTORY_FILE, history);
+	}
+	
+	boolean hasNext() {
+		if (loans.peek() != null) return true;
+		// the rest of the children belong to no loan, but are still checked 
+		// for order; a row out of order may have hidden rows behind it
+		installments.drain();
+		history.drain();
+		return false;
+	}
+	
+	Loan next() {
+		Row loanRow = loans.take();
+		Loan l = new Loan();
+		l.loan = new MapRecord();
+		Reader.read(loanRow, l.loan, interner, selector);
+		
+		String loanId = loanRow.get(Constants.LOAN_ID);
+		children(installments, loanId, l.installments);
+		children(history, loanId, l.history);
+		return l;
+	}
+	
+	private void children(Stream stream, String loanId, List<MapRecord> records) {
+		for (Row row = stream.peek(); row != null; row = stream.peek()) {
+			int c = order.compare(stream.key, loanId);
+			if (c > 0) break;
+			stream.take();
+			if (c == 0) {
+				MapRecord r = new MapRecord();
+				Reader.read(row, r, interner, selector);
+				records.add(r);
+			}
+		}
+	}
+	
+	void close() throws IOException {
+		try {
+			loans.itr.close();
+		}
+		finally {
+			try {
+				installments.itr.close();
+			}
+			finally {
+				history.itr.close();
+			}
+		}
+	}
+	
+	/**
+	 * One row of look-ahead over a file, checking that loan ids never 
+	 * decrease.
+	 */
+	private final class Stream {
+		
+		private final String name;
+		private final RowIterator itr;
+		private Row head;
+		private String key;
+		private String previous;
+		
+		Stream(String name, RowIterator itr) {
+			this.name = name;
+			this.itr = itr;
+		}
+		
+		Row peek() {
+			if (head == null && itr.hasNext()) {
+				head = itr.next();
+				key = head.get(Constants.LOAN_ID);
+				if (previous != null && order.compare(previous, key) > 0) {
+					throw new RuntimeException(name + " is not ordered by " + Constants.LOAN_ID + ": '" + key + "' follows '" + previous + "'");
+				}
+				previous = key;
+			}
+			return head;
+		}
+		
+		Row take() {
+			Row row = peek();
+			head = null;
+			return row;
+		}
+		
+		void drain() {
+			while (take() != null);
+		}
+	}
+}
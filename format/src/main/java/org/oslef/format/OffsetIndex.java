@@ -0,0 +1,341 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.MappedTableIterator;
+
+/**
+ * A sidecar file that records, for every loan id in an OSLEF directory, where 
+ * its rows are in loans.csv, installments.csv and history.csv. Rows of one 
+ * loan that sit next to each other in a file are stored as a single run of an
+ * offset and a row count, so an export written one loan at a time costs one 
+ * run per loan per file.
+ * 
+ * The size and modification time of each file are stored with the index; if 
+ * any file has changed since, the index is stale and {@link #open(File)} 
+ * rebuilds it. Only uncompressed files can be indexed.
+ */
+public final class OffsetIndex {
+	
+	public static final String INDEX_FILE = "oslef.idx";
+	
+	public static final int LOANS = 0, INSTALLMENTS = 1, HISTORY = 2;
+	
+	private static final String[] FILES = {
+		Inspector.LOANS_FILE, 
+		Inspector.INSTALLMENTS_FILE, 
+		Inspector.HISTORY_FILE
+	};
+	
+	private static final int MAGIC = 0x4f534c58; // "OSLX"
+	private static final int VERSION = 1;
+	private static final long[] NONE = new long[0];
+	
+	private final File oslefDir;
+	private final long[] sizes;
+	private final long[] lastModified;
+	private final Map<String, long[][]> runs;
+	
+	private OffsetIndex(File oslefDir, long[] sizes, long[] lastModified, Map<String, long[][]> runs) {
+		this.oslefDir = oslefDir;
+		this.sizes = sizes;
+		this.lastModified = lastModified;
+		this.runs = runs;
+	}
+	
+	/**
+	 * @return the directory's index, built and written first if it is 
+	 * missing or stale.
+	 */
+	public static OffsetIndex open(File oslefDir) throws IOException {
+		OffsetIndex index = load(oslefDir);
+		if (index == null) {
+			index = build(oslefDir);
+			index.write();
+		}
+		return index;
+	}
+	
+	/**
+	 * @return the directory's index, or null if there is none or it is stale
+	 * or damaged.
+	 */
+	public static OffsetIndex load(File oslefDir) throws IOException {
+		if (oslefDir == null) throw new NullPointerException();
+		File f = new File(oslefDir, INDEX_FILE);
+		if (!f.exists()) return null;
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 64 * 1024));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+			long[] sizes = new long[FILES.length];
+			long[] lastModified = new long[FILES.length];
+			for (int i=0; i<FILES.length; i++) {
+				sizes[i] = in.readLong();
+				lastModified[i] = in.readLong();
+			}
+			if (changed(oslefDir, sizes, lastModified)) return null;
+			
+			int count = in.readInt();
+			if (count < 0) return null;
+			Map<String, long[][]> runs = new LinkedHashMap<String, long[][]>(Math.min(count, 64 * 1024) * 2);
+			for (int n=0; n<count; n++) {
+				String loanId = in.readUTF();
+				long[][] r = new long[FILES.length][];
+				for (int i=0; i<FILES.length; i++) {
+					int length = in.readInt();
+					if (length < 0) return null;
+					r[i] = length == 0 ? NONE : new long[length];
+					for (int j=0; j<length; j++) {
+						r[i][j] = in.readLong();
+					}
+				}
+				runs.put(loanId, r);
+			}
+			return new OffsetIndex(oslefDir, sizes, lastModified, runs);
+		}
+		catch (EOFException ex) {
+			// cut short, e.g. by a crash while it was written; rebuild it
+			return null;
+		}
+		catch (UTFDataFormatException ex) {
+			return null;
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Scans the three files and indexes them, without writing the index.
+	 */
+	public static OffsetIndex build(File oslefDir) throws IOException {
+		if (oslefDir == null) throw new NullPointerException();
+		long[] sizes = new long[FILES.length];
+		long[] lastModified = new long[FILES.length];
+		Map<String, Runs[]> found = new LinkedHashMap<String, Runs[]>();
+		
+		for (int i=0; i<FILES.length; i++) {
+			File f = file(oslefDir, i);
+			sizes[i] = f.length();
+			lastModified[i] = f.lastModified();
+			
+			MappedTableIterator itr = new MappedTable(f, Inspector.CHARSET).iterator();
+			try {
+				Runs previous = null;
+				while (itr.hasNext()) {
+					String loanId = itr.next().get(Constants.LOAN_ID);
+					Runs[] r = found.get(loanId);
+					if (r == null) {
+						r = new Runs[FILES.length];
+						found.put(loanId, r);
+					}
+					if (r[i] == null) r[i] = new Runs();
+					r[i].add(itr.offset(), r[i] == previous);
+					previous = r[i];
+				}
+			}
+			finally {
+				itr.close();
+			}
+		}
+		
+		Map<String, long[][]> runs = new LinkedHashMap<String, long[][]>(found.size() * 2);
+		for (Map.Entry<String, Runs[]> e : found.entrySet()) {
+			long[][] r = new long[FILES.length][];
+			for (int i=0; i<FILES.length; i++) {
+				Runs x = e.getValue()[i];
+				r[i] = x == null ? NONE : x.toArray();
+			}
+			runs.put(e.getKey(), r);
+		}
+		return new OffsetIndex(oslefDir, sizes, lastModified, runs);
+	}
+	
+	/**
+	 * Writes the index next to the files it describes, replacing any older one.
+	 */
+	public void write() throws IOException {
+		File f = new File(oslefDir, INDEX_FILE);
+		File tmp = new File(oslefDir, INDEX_FILE + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for (int i=0; i<FILES.length; i++) {
+				out.writeLong(sizes[i]);
+				out.writeLong(lastModified[i]);
+			}
+			out.writeInt(runs.size());
+			for (Map.Entry<String, long[][]> e : runs.entrySet()) {
+				out.writeUTF(e.getKey());
+				for (long[] r : e.getValue()) {
+					out.writeInt(r.length);
+					for (long v : r) {
+						out.writeLong(v);
+					}
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		if (f.exists() && !f.delete()) throw new IOException("Cannot replace " + f);
+		if (!tmp.renameTo(f)) throw new IOException("Cannot rename " + tmp + " to " + f);
+	}
+	
+	/**
+	 * @return true if any of the indexed files has changed size or 
+	 * modification time since the index was built.
+	 */
+	public boolean isStale() {
+		return changed(oslefDir, sizes, lastModified);
+	}
+	
+	public File oslefDir() {
+		return oslefDir;
+	}
+	
+	/**
+	 * @return every loan id found in any of the files, those in loans.csv 
+	 * first and in file order.
+	 */
+	public Set<String> loanIds() {
+		return Collections.unmodifiableSet(runs.keySet());
+	}
+	
+	public boolean contains(String loanId) {
+		return runs.containsKey(loanId);
+	}
+	
+	/**
+	 * @param file one of {@link #LOANS}, {@link #INSTALLMENTS} or {@link #HISTORY}.
+	 * @return how many rows the loan has in that file.
+	 */
+	public int rowCount(String loanId, int file) {
+		long[] r = runs(loanId, file);
+		int count = 0;
+		for (int i=1; i<r.length; i+=2) {
+			count += r[i];
+		}
+		return count;
+	}
+	
+	/**
+	 * @return alternating run offsets and row counts, in file order.
+	 */
+	long[] runs(String loanId, int file) {
+		long[][] r = runs.get(loanId);
+		if (r == null) return NONE;
+		else return r[file];
+	}
+	
+	/**
+	 * @return false if any of the files is compressed, and so can't be 
+	 * indexed.
+	 */
+	public static boolean canIndex(File oslefDir) {
+		for (String name : FILES) {
+			if (!Inspector.canMap(Inspector.locate(oslefDir, name))) return false;
+		}
+		return true;
+	}
+	
+	static File file(File oslefDir, int file) throws IOException {
+		File f = Inspector.locate(oslefDir, FILES[file]);
+		if (!Inspector.canMap(f)) throw new IOException("Cannot index a compressed file: " + f);
+		return f;
+	}
+	
+	private static boolean changed(File oslefDir, long[] sizes, long[] lastModified) {
+		for (int i=0; i<FILES.length; i++) {
+			File f = new File(oslefDir, FILES[i]);
+			if (f.length() != sizes[i] || f.lastModified() != lastModified[i]) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * The runs of one loan in one file while the index is being built.
+	 */
+	private static final class Runs {
+		
+		private long[] values = new long[2];
+		private int size = 0;
+		
+		/**
+		 * @param adjacent whether the row directly follows this loan's 
+		 * previous one in the file.
+		 */
+		void add(long offset, boolean adjacent) {
+			if (adjacent) {
+				values[size - 1]++;
+				return;
+			}
+			if (size == values.length) {
+				long[] v = new long[size * 2];
+				System.arraycopy(values, 0, v, 0, size);
+				values = v;
+			}
+			values[size++] = offset;
+			values[size++] = 1;
+		}
+		
+		long[] toArray() {
+			long[] v = new long[size];
+			System.arraycopy(values, 0, v, 0, size);
+			return v;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.MappedTableIterator;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.RowIterator;
+import org.oslef.csv.table.RowPredicate;
+import org.oslef.csv.table.RowSource;
+
+/**
+ * The thread pool and chunking behind a parallel {@link Reader}. Mapped files
+ * are cut into byte ranges at likely record boundaries, without a pass over
+ * the file, and each range is parsed on its own pool thread. Callers put the
+ * results back together in file order through {@link Results}, which re-reads
+ * any range whose cut turned out to be inside a record, so a parallel reader
+ * returns exactly what a sequential one does.
+ */
+final class ParallelLoader {
+	
+	/**
+	 * Roughly how many bytes of loans.csv go into one batch of loans. Only 
+	 * a couple of batches per thread are in flight at a time.
+	 */
+	static final long LOAN_CHUNK_SIZE = 4 * 1024 * 1024;
+	
+	private final int parallelism;
+	private final ExecutorService pool;
+	
+	ParallelLoader(int parallelism) {
+		this.parallelism = parallelism;
+		this.pool = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "oslef-reader");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	int parallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * @return the source cut into about the given number of ranges, or a 
+	 * single range if it can't be split.
+	 */
+	List<Range> ranges(RowSource source, int count) throws IOException {
+		List<Range> ranges = new ArrayList<Range>();
+		if (source instanceof MappedTable) {
+			MappedTable t = (MappedTable) source;
+			long[] cuts = t.split(count);
+			for (int i=0; i<cuts.length-1; i++) {
+				ranges.add(new Range(t, cuts[i], cuts[i+1]));
+			}
+		}
+		else {
+			ranges.add(new Range(source, -1, -1));
+		}
+		return ranges;
+	}
+	
+	/**
+	 * Starts grouping the rows of a child table by loan id, a few ranges 
+	 * per thread. Pass the result to {@link #merge(List)}.
+	 * 
+	 * @param filter the rows to keep; null for all of them.
+	 */
+	List<Future<Part<Map<String, List<Row>>>>> group(RowSource source, final RowPredicate filter) throws IOException {
+		List<Future<Part<Map<String, List<Row>>>>> parts = new ArrayList<Future<Part<Map<String, List<Row>>>>>();
+		Task<Map<String, List<Row>>> task = new Task<Map<String, List<Row>>>() {
+			public Map<String, List<Row>> run(RowIterator rows) {
+				return Reader.group(Reader.open(rows, null, filter));
+			}
+		};
+		for (Range range : ranges(source, parallelism * 4)) {
+			parts.add(submit(range, task));
+		}
+		return parts;
+	}
+	
+	/**
+	 * Combines grouped ranges in file order, so each loan's rows stay in the 
+	 * order they appear in the file.
+	 */
+	static Map<String, List<Row>> merge(List<Future<Part<Map<String, List<Row>>>>> parts) {
+		Results<Map<String, List<Row>>> results = new Results<Map<String, List<Row>>>();
+		Map<String, List<Row>> merged = null;
+		for (Future<Part<Map<String, List<Row>>>> f : parts) {
+			Map<String, List<Row>> part = results.take(f);
+			if (merged == null) {
+				merged = part;
+				continue;
+			}
+			for (Map.Entry<String, List<Row>> e : part.entrySet()) {
+				List<Row> list = merged.get(e.getKey());
+				if (list == null) merged.put(e.getKey(), e.getValue());
+				else list.addAll(e.getValue());
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * Runs a task over the rows of a range on the pool. Take the results 
+	 * through {@link Results}, which checks the range really started at a 
+	 * record.
+	 */
+	<T> Future<Part<T>> submit(final Range range, final Task<T> task) {
+		return pool.submit(new Callable<Part<T>>() {
+			public Part<T> call() {
+				return range.run(task);
+			}
+		});
+	}
+	
+	static <T> T get(Future<T> f) {
+		try {
+			return f.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		catch (ExecutionException ex) {
+			throw rethrow(ex.getCause());
+		}
+	}
+	
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException) throw (RuntimeException) t;
+		if (t instanceof Error) throw (Error) t;
+		throw new RuntimeException(t);
+	}
+	
+	void close() {
+		pool.shutdownNow();
+	}
+	
+	/**
+	 * A run of records that can be read independently of the rest of its file.
+	 */
+	static final class Range {
+		
+		private final RowSource source;
+		private final long from;
+		private final long to;
+		
+		Range(RowSource source, long from, long to) {
+			this.source = source;
+			this.from = from;
+			this.to = to;
+		}
+		
+		RowIterator iterator() {
+			if (from < 0) return source.iterator();
+			else return ((MappedTable) source).iterator(from, to);
+		}
+		
+		<T> Part<T> run(Task<T> task) {
+			Part<T> part = new Part<T>(this, task);
+			RowIterator itr = iterator();
+			try {
+				part.result = task.run(itr);
+				if (itr instanceof MappedTableIterator) part.end = ((MappedTableIterator) itr).position();
+			}
+			catch (Throwable t) {
+				// may just mean the range started inside a record
+				part.failure = t;
+			}
+			finally {
+				try {
+					itr.close();
+				}
+				catch (IOException ex) {
+					if (part.failure == null) part.failure = ex;
+				}
+			}
+			return part;
+		}
+	}
+	
+	/**
+	 * Work done on the rows of one range. It must read them until 
+	 * {@link RowIterator#hasNext()} is false.
+	 */
+	interface Task<T> {
+		T run(RowIterator rows) throws IOException;
+	}
+	
+	/**
+	 * What a task made of a range, and where the range's last record ended.
+	 */
+	static final class Part<T> {
+		
+		private final Range range;
+		private final Task<T> task;
+		private T result;
+		private Throwable failure;
+		private long end = -1;
+		
+		Part(Range range, Task<T> task) {
+			this.range = range;
+			this.task = task;
+		}
+	}
+	
+	/**
+	 * Takes the parts of consecutive ranges in file order. The cuts between
+	 * ranges are guesses (see {@link MappedTable#split(int)}); a range that
+	 * didn't start where the one before it really ended is run again, on the
+	 * calling thread, from that point.
+	 */
+	static final class Results<T> {
+		
+		private long end = -1;
+		
+		T take(Future<Part<T>> f) {
+			Part<T> part = get(f);
+			Range range = part.range;
+			if (end >= 0 && range.from >= 0 && range.from != end) {
+				part = new Range(range.source, end, range.to).run(part.task);
+			}
+			if (part.failure != null) rethrow(part.failure);
+			end = part.end;
+			return part.result;
+		}
+	}
+}
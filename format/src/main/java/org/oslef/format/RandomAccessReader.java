@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.MappedTableIterator;
+import org.oslef.csv.table.Row;
+
+/**
+ * Fetches single loans from an OSLEF directory by loan id, using its 
+ * {@link OffsetIndex} to go straight to the rows involved instead of reading
+ * the files from the start. Records come out exactly as {@link Reader} makes
+ * them.
+ */
+public final class RandomAccessReader {
+	
+	private final OffsetIndex index;
+	private final MappedTableIterator[] cursors = new MappedTableIterator[3];
+	
+	/**
+	 * Opens the directory's index, building it first if it is missing or 
+	 * stale.
+	 */
+	public RandomAccessReader(File oslefDir) throws IOException {
+		this(OffsetIndex.open(oslefDir));
+	}
+	
+	public RandomAccessReader(OffsetIndex index) throws IOException {
+		if (index == null) throw new NullPointerException();
+		if (index.isStale()) throw new IOException("The index of " + index.oslefDir() + " is stale");
+		this.index = index;
+		try {
+			for (int i=0; i<cursors.length; i++) {
+				cursors[i] = new MappedTable(OffsetIndex.file(index.oslefDir(), i), Inspector.CHARSET).iterator();
+			}
+		}
+		catch (IOException ex) {
+			close();
+			throw ex;
+		}
+	}
+	
+	public OffsetIndex index() {
+		return index;
+	}
+	
+	/**
+	 * @return the loan with the given id, or null if loans.csv has no such
+	 * loan. If the id appears more than once in loans.csv, the first one wins.
+	 */
+	public synchronized Loan get(String loanId) {
+		long[] loanRuns = index.runs(loanId, OffsetIndex.LOANS);
+		if (loanRuns.length == 0) return null;
+		
+		Loan l = new Loan();
+		cursors[OffsetIndex.LOANS].seek(loanRuns[0]);
+		Reader.read(cursors[OffsetIndex.LOANS].next(), l.loan);
+		read(loanId, OffsetIndex.INSTALLMENTS, l.installments);
+		read(loanId, OffsetIndex.HISTORY, l.history);
+		return l;
+	}
+	
+	private void read(String loanId, int file, List<MapRecord> records) {
+		long[] runs = index.runs(loanId, file);
+		MappedTableIterator cursor = cursors[file];
+		for (int i=0; i<runs.length; i+=2) {
+			cursor.seek(runs[i]);
+			for (long n=runs[i+1]; n>0; n--) {
+				Row row = cursor.next();
+				MapRecord r = new MapRecord();
+				Reader.read(row, r);
+				records.add(r);
+			}
+		}
+	}
+	
+	public synchronized void close() throws IOException {
+		IOException failure = null;
+		for (MappedTableIterator c : cursors) {
+			if (c == null) continue;
+			try {
+				c.close();
+			}
+			catch (IOException ex) {
+				failure = ex;
+			}
+		}
+		if (failure != null) throw failure;
+	}
+}
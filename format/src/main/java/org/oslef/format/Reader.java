@@ -39,89 +39,250 @@ package org.oslef.format;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Future;
 
+import org.oslef.csv.table.ExternalSorter;
+import org.oslef.csv.table.Interner;
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.MappedTableIterator;
 import org.oslef.csv.table.Row;
+import org.oslef.csv.table.RowIterator;
+import org.oslef.csv.table.RowPredicate;
+import org.oslef.csv.table.RowSource;
 import org.oslef.csv.table.Table;
 import org.oslef.csv.table.TableIterator;
 
 /**
- * Merges the oslef data in memory and iterates over it. Only useful
+ * Merges the oslef data in memory and iterates over it. By default only useful
  * if you can fit all the supporting details for the OSLEF data you want
- * to read in memory.
+ * to read in memory; see {@link Join} for the streaming alternatives.
  */
 public final class Reader implements Iterator<Loan>, Iterable<Loan> {
 	
-	private final Table loansTable;
-	private final TableIterator loansIterator;
-	private final Table historyTable;
-	private final Table installmentsTable;
+	private final RowSource loansTable;
+	private final RowIterator loansIterator;
+	private final RowSource historyTable;
+	private final RowSource installmentsTable;
+	
+	// null unless interning
+	private final Interner interner;
+	
+	// null unless reading only some columns
+	private final ColumnSelector selector;
+	
+	// null unless reading only some loans
+	private final RowPredicate filter;
+	// matches the children of the loans the filter accepts
+	private RowPredicate childFilter;
 	
 	private Map<String, List<Row>> installmentRecords;
 	private Map<String, List<Row>> historyRecords;
 	
+	// only in lazy mode
+	private final ChildIndex installmentIndex;
+	private final ChildIndex historyIndex;
+	
+	// only for merge joins
+	private final MergeJoin join;
+	
+	// only in parallel mode
+	private final ParallelLoader loader;
+	private Iterator<ParallelLoader.Range> loanRanges;
+	private final LinkedList<Future<ParallelLoader.Part<List<Loan>>>> pending = new LinkedList<Future<ParallelLoader.Part<List<Loan>>>>();
+	private final ParallelLoader.Results<List<Loan>> batches = new ParallelLoader.Results<List<Loan>>();
+	private Iterator<Loan> batch;
+	
 	public Reader(File oslefDir) throws IOException {
+		this(oslefDir, new Options());
+	}
+	
+	public Reader(File oslefDir, Options options) throws IOException {
 		if (oslefDir == null) throw new NullPointerException();
-		loansTable = new Table(new File(oslefDir, "loans.csv"));
-		loansIterator = loansTable.iterator();
-		historyTable = new Table(new File(oslefDir, "history.csv"));
-		installmentsTable = new Table(new File(oslefDir, "installments.csv"));
+		if (options == null) throw new NullPointerException();
+		loansTable = open(Inspector.locate(oslefDir, Inspector.LOANS_FILE), options);
+		historyTable = open(Inspector.locate(oslefDir, Inspector.HISTORY_FILE), options);
+		installmentsTable = open(Inspector.locate(oslefDir, Inspector.INSTALLMENTS_FILE), options);
+		interner = options.interning ? new Interner(options.internMaxValues) : null;
+		// loans are matched to their children by id
+		selector = options.columns == null ? null : options.columns.and(Constants.LOAN_ID);
+		filter = options.filter;
+		
+		if (options.join != Join.HASH && options.parallelism > 1) {
+			throw new IllegalArgumentException("A " + options.join + " join runs on a single thread");
+		}
+		if (options.join != Join.HASH && options.lazy) {
+			throw new IllegalArgumentException("A " + options.join + " join can't load children lazily");
+		}
+		
+		if (options.lazy) {
+			installmentIndex = new ChildIndex(installmentsTable);
+			historyIndex = new ChildIndex(historyTable);
+		}
+		else {
+			installmentIndex = null;
+			historyIndex = null;
+		}
+		
+		if (options.parallelism > 1) loader = new ParallelLoader(options.parallelism);
+		else loader = null;
+		
+		switch (options.join) {
+		case MERGE:
+			// children of loans that were filtered out find no loan to join
+			join = new MergeJoin(iterator(loansTable, filter), iterator(installmentsTable, null), iterator(historyTable, null), LOAN_ID_ORDER, interner, selector);
+			break;
+		case SORT_MERGE:
+			join = sortedJoin(options);
+			break;
+		default:
+			join = null;
+		}
+		
+		if (join != null || (loader != null && loansTable instanceof MappedTable)) loansIterator = null;
+		else loansIterator = iterator(loansTable, filter);
+	}
+	
+	private MergeJoin sortedJoin(Options options) throws IOException {
+		ExternalSorter sorter = new ExternalSorter(options.tempDir, options.sortBufferSize);
+		List<RowIterator> sorted = new ArrayList<RowIterator>();
+		try {
+			for (RowSource table : new RowSource[]{loansTable, installmentsTable, historyTable}) {
+				sorted.add(sorter.sort(table, Constants.LOAN_ID, LOAN_ID_ORDER));
+			}
+		}
+		catch (IOException ex) {
+			for (RowIterator itr : sorted) {
+				itr.close();
+			}
+			throw ex;
+		}
+		RowIterator loans = open(sorted.get(0), null, filter);
+		return new MergeJoin(loans, sorted.get(1), sorted.get(2), LOAN_ID_ORDER, interner, selector);
+	}
+	
+	private static RowSource open(File f, Options options) throws IOException {
+		// parallel and lazy reading need byte offsets to split and index files
+		boolean mapped = options.mapped || options.parallelism > 1 || options.lazy;
+		if (mapped && Inspector.canMap(f)) return new MappedTable(f, options.charset);
+		return new Table(f, options.charset);
 	}
 
 	public boolean hasNext() {
-		return loansIterator.hasNext();
+		if (join != null) return join.hasNext();
+		if (loansIterator != null) return loansIterator.hasNext();
+		else return fillBatch();
 	}
 	
 	public Loan next() {
+		if (join != null) {
+			if (!join.hasNext()) throw new NoSuchElementException();
+			return join.next();
+		}
+		if (loansIterator == null) {
+			if (!fillBatch()) throw new NoSuchElementException();
+			return batch.next();
+		}
+		loadChildren();
+		return assemble(loansIterator.next());
+	}
+	
+	private void loadChildren() {
+		if (installmentIndex != null) return;
+		if (installmentRecords != null && historyRecords != null) return;
+		
+		if (filter != null && childFilter == null) {
+			childFilter = RowPredicate.in(Constants.LOAN_ID, acceptedLoanIds());
+		}
+		
+		if (loader != null) {
+			try {
+				List<Future<ParallelLoader.Part<Map<String, List<Row>>>>> i = loader.group(installmentsTable, childFilter);
+				List<Future<ParallelLoader.Part<Map<String, List<Row>>>>> h = loader.group(historyTable, childFilter);
+				installmentRecords = ParallelLoader.merge(i);
+				historyRecords = ParallelLoader.merge(h);
+			}
+			catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			return;
+		}
 		
 		if (installmentRecords == null) {
-			installmentRecords = new HashMap<String, List<Row>>();
-			
 			System.out.println("Loading installment records");
-			
-			List<Row> list;
-			for (Row row : installmentsTable) {
-				String loanId = row.get(Constants.LOAN_ID);
-				list = installmentRecords.get(loanId);
-				if (list == null) {
-					list = new ArrayList<Row>();
-					installmentRecords.put(loanId, list);
-				}
-				list.add(row);
-			}
+			installmentRecords = group(iterator(installmentsTable, childFilter));
 		}
 		
 		if (historyRecords == null) {
-			historyRecords = new HashMap<String, List<Row>>();
-			
 			System.out.println("Loading history records");
-			
-			List<Row> list;
-			for (Row row : historyTable) {
-				String loanId = row.get(Constants.LOAN_ID);
-				list = historyRecords.get(loanId);
-				if (list == null) {
-					list = new ArrayList<Row>();
-					historyRecords.put(loanId, list);
+			historyRecords = group(iterator(historyTable, childFilter));
+		}
+	}
+	
+	/**
+	 * Makes sure {@link #batch} has a loan left, assembling further ranges of
+	 * loans.csv on the pool as needed. Loans come out in file order.
+	 */
+	private boolean fillBatch() {
+		while (batch == null || !batch.hasNext()) {
+			if (loanRanges == null) {
+				loadChildren();
+				try {
+					long size = ((MappedTable) loansTable).file().length();
+					int count = (int) Math.max(loader.parallelism(), size / ParallelLoader.LOAN_CHUNK_SIZE);
+					loanRanges = loader.ranges(loansTable, count).iterator();
 				}
-				list.add(row);
+				catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+			while (pending.size() < loader.parallelism() * 2 && loanRanges.hasNext()) {
+				pending.add(loader.submit(loanRanges.next(), assembly));
 			}
+			if (pending.isEmpty()) return false;
+			batch = batches.take(pending.removeFirst()).iterator();
 		}
-		
-		Row loanRow = loansIterator.next();
+		return true;
+	}
+	
+	private final ParallelLoader.Task<List<Loan>> assembly = new ParallelLoader.Task<List<Loan>>() {
+		public List<Loan> run(RowIterator rows) {
+			List<Loan> loans = new ArrayList<Loan>();
+			RowIterator itr = open(rows, null, filter);
+			while (itr.hasNext()) {
+				loans.add(assemble(itr.next()));
+			}
+			return loans;
+		}
+	};
+	
+	private Loan assemble(Row loanRow) {
 		Loan l = new Loan();
 		l.loan = new MapRecord();
-		read(loanRow, l.loan);
+		read(loanRow, l.loan, interner, selector);
+		
+		if (installmentIndex != null) {
+			String loanId = loanRow.get(Constants.LOAN_ID);
+			l.installments = new LazyRecords(installmentIndex, loanId, interner, selector);
+			l.history = new LazyRecords(historyIndex, loanId, interner, selector);
+			return l;
+		}
 		
 		List<Row> iRecords = installmentRecords.get(l.loan.get(Constants.LOAN_ID));
 		if (iRecords == null) iRecords = new ArrayList<Row>();
 		for (Row row : iRecords) {
 			MapRecord r = new MapRecord();
-			read(row, r);
+			read(row, r, interner, selector);
 			l.installments.add(r);
 		}
 		
@@ -129,18 +290,194 @@ public final class Reader implements Iterator<Loan>, Iterable<Loan> {
 		if (hRecords == null) hRecords = new ArrayList<Row>();
 		for (Row row : hRecords) {
 			MapRecord r = new MapRecord();
-			read(row, r);
+			read(row, r, interner, selector);
 			l.history.add(r);
 		}
 		
 		return l;
 	}
 	
-	private static void read(Row row, Record record) {
-		for (String k : row.header()) {
-			String v = row.get(k);
-			if (StringUtil.nonEmpty(v)) record.put(k, v);
+	/**
+	 * @return the rows grouped by loan id, in file order within each loan.
+	 */
+	static Map<String, List<Row>> group(RowIterator itr) {
+		Map<String, List<Row>> records = new HashMap<String, List<Row>>();
+		try {
+			List<Row> list;
+			while (itr.hasNext()) {
+				Row row = itr.next();
+				String loanId = row.get(Constants.LOAN_ID);
+				list = records.get(loanId);
+				if (list == null) {
+					list = new ArrayList<Row>();
+					records.put(loanId, list);
+				}
+				list.add(row);
+			}
+		}
+		finally {
+			try {
+				itr.close();
+			}
+			catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		return records;
+	}
+	
+	static void read(Row row, Record record) {
+		read(row, record, null, null);
+	}
+	
+	/**
+	 * @param interner shares the values of repetitive columns; may be null.
+	 * @param selector the columns to copy; null for all of them.
+	 */
+	static void read(Row row, Record record, Interner interner, ColumnSelector selector) {
+		List<String> columns = row.header().columns();
+		Interner.Dictionary[] dictionaries = interner == null ? null : interner.dictionaries(row.header());
+		if (selector != null) {
+			for (int i : selector.positions(row.header())) {
+				String v = row.get(i);
+				if (StringUtil.nonEmpty(v)) {
+					if (dictionaries != null) v = dictionaries[i].intern(v);
+					record.put(columns.get(i), v);
+				}
+			}
+			return;
+		}
+		for (int i=0, n=columns.size(); i<n; i++) {
+			String v = row.get(i);
+			if (StringUtil.nonEmpty(v)) {
+				if (dictionaries != null) v = dictionaries[i].intern(v);
+				record.put(columns.get(i), v);
+			}
+		}
+	}
+	
+	/**
+	 * Opens a table, only decoding the selected columns if it is streamed.
+	 * 
+	 * @param filter the rows to return; null for all of them.
+	 */
+	private RowIterator iterator(RowSource table, RowPredicate filter) {
+		return open(table.iterator(), selector, filter);
+	}
+	
+	/**
+	 * Applies a projection and a filter to a fresh iterator. The parsers test
+	 * the filter on raw records; rows from anywhere else are tested once they
+	 * have been read.
+	 */
+	static RowIterator open(RowIterator itr, ColumnSelector selector, RowPredicate filter) {
+		if (selector != null && itr instanceof TableIterator) {
+			TableIterator t = (TableIterator) itr;
+			t.setProjection(selector.mask(t.header()));
+		}
+		if (filter == null) return itr;
+		if (itr instanceof TableIterator) {
+			((TableIterator) itr).setFilter(filter);
+			return itr;
 		}
+		if (itr instanceof MappedTableIterator) {
+			((MappedTableIterator) itr).setFilter(filter);
+			return itr;
+		}
+		return new FilteredRows(itr, filter);
+	}
+	
+	/**
+	 * Reads just the loan ids of the loans the filter accepts, so that the 
+	 * child files can skip the rows of all the others.
+	 */
+	private Set<String> acceptedLoanIds() {
+		final ColumnSelector ids = ColumnSelector.of(Constants.LOAN_ID);
+		Set<String> accepted = new HashSet<String>();
+		try {
+			if (loader == null) {
+				addLoanIds(open(loansTable.iterator(), ids, filter), accepted);
+				return accepted;
+			}
+			ParallelLoader.Task<Set<String>> task = new ParallelLoader.Task<Set<String>>() {
+				public Set<String> run(RowIterator rows) throws IOException {
+					Set<String> part = new HashSet<String>();
+					addLoanIds(open(rows, ids, filter), part);
+					return part;
+				}
+			};
+			List<Future<ParallelLoader.Part<Set<String>>>> parts = new ArrayList<Future<ParallelLoader.Part<Set<String>>>>();
+			for (ParallelLoader.Range range : loader.ranges(loansTable, loader.parallelism() * 4)) {
+				parts.add(loader.submit(range, task));
+			}
+			ParallelLoader.Results<Set<String>> results = new ParallelLoader.Results<Set<String>>();
+			for (Future<ParallelLoader.Part<Set<String>>> f : parts) {
+				accepted.addAll(results.take(f));
+			}
+			return accepted;
+		}
+		catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	private static void addLoanIds(RowIterator itr, Set<String> ids) throws IOException {
+		try {
+			while (itr.hasNext()) {
+				ids.add(itr.next().get(Constants.LOAN_ID));
+			}
+		}
+		finally {
+			itr.close();
+		}
+	}
+	
+	/**
+	 * Tests rows that have already been read, for iterators the parsers can't
+	 * filter themselves, such as the runs of an {@link ExternalSorter}.
+	 */
+	private static final class FilteredRows implements RowIterator {
+		
+		private final RowIterator rows;
+		private final RowPredicate filter;
+		private Row next;
+		
+		FilteredRows(RowIterator rows, RowPredicate filter) {
+			this.rows = rows;
+			this.filter = filter;
+		}
+		
+		public boolean hasNext() {
+			while (next == null && rows.hasNext()) {
+				Row row = rows.next();
+				if (filter.matches(row)) next = row;
+			}
+			return next != null;
+		}
+		
+		public Row next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			Row row = next;
+			next = null;
+			return row;
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		public void close() throws IOException {
+			rows.close();
+		}
+	}
+	
+	/**
+	 * @return the interner sharing repeated values between the records read,
+	 * with its hit rates, or null if {@link Options#setInterning(boolean)} is
+	 * off.
+	 */
+	public Interner interner() {
+		return interner;
 	}
 	
 	public void remove() {
@@ -152,6 +489,255 @@ public final class Reader implements Iterator<Loan>, Iterable<Loan> {
 	}
 	
 	public void close() throws IOException {
-		loansIterator.close();
+		if (loader != null) loader.close();
+		if (join != null) join.close();
+		if (installmentIndex != null) {
+			installmentIndex.close();
+			historyIndex.close();
+		}
+		if (loansIterator != null) loansIterator.close();
+	}
+	
+	/**
+	 * The order a {@link Join#MERGE} join expects loan ids in: ids made only 
+	 * of digits come first, in numeric order, followed by all other ids in 
+	 * {@link String} order. Sequentially numbered loans, as written by 
+	 * {@link Writer}, are therefore already in order.
+	 */
+	public static final Comparator<String> LOAN_ID_ORDER = new Comparator<String>() {
+		public int compare(String a, String b) {
+			boolean numericA = isDigits(a);
+			boolean numericB = isDigits(b);
+			if (numericA && numericB) {
+				String strippedA = stripZeros(a);
+				String strippedB = stripZeros(b);
+				if (strippedA.length() != strippedB.length()) return strippedA.length() - strippedB.length();
+				int c = strippedA.compareTo(strippedB);
+				if (c != 0) return c;
+				// '010' and '10' are different loans
+			}
+			else if (numericA != numericB) {
+				return numericA ? -1 : 1;
+			}
+			return a.compareTo(b);
+		}
+	};
+	
+	private static boolean isDigits(String s) {
+		if (s.length() == 0) return false;
+		for (int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+		return true;
+	}
+	
+	private static String stripZeros(String s) {
+		int i = 0;
+		while (i < s.length() - 1 && s.charAt(i) == '0') i++;
+		return s.substring(i);
+	}
+	
+	/**
+	 * How a {@link Reader} matches installment and history rows to loans.
+	 */
+	public enum Join {
+		/**
+		 * Holds every installment and history row in memory, grouped by loan 
+		 * id. Files may be in any order.
+		 */
+		HASH,
+		/**
+		 * Streams all three files side by side, one loan at a time. Every file
+		 * must already be ordered by {@link Reader#LOAN_ID_ORDER}; reading 
+		 * fails as soon as one isn't.
+		 */
+		MERGE,
+		/**
+		 * Sorts all three files on disk with an {@link ExternalSorter} and 
+		 * then merges them. Loans come out in loan id order rather than file
+		 * order.
+		 */
+		SORT_MERGE
+	}
+	
+	/**
+	 * Tuning knobs for a {@link Reader}. The defaults read every file as a 
+	 * buffered stream on the calling thread.
+	 */
+	public static final class Options {
+		
+		private boolean mapped = false;
+		private int parallelism = 1;
+		private Join join = Join.HASH;
+		private long sortBufferSize = ExternalSorter.DEFAULT_BUFFER_SIZE;
+		private File tempDir = null;
+		private boolean lazy = false;
+		private boolean interning = false;
+		private int internMaxValues = Interner.DEFAULT_MAX_VALUES;
+		private ColumnSelector columns = null;
+		private RowPredicate filter = null;
+		private Charset charset = Inspector.CHARSET;
+		
+		/**
+		 * Memory-map uncompressed files instead of streaming them. Rows are 
+		 * parsed in place and fields are only decoded when read, which saves 
+		 * most of the copying on large files.
+		 */
+		public Options setMapped(boolean mapped) {
+			this.mapped = mapped;
+			return this;
+		}
+		
+		public boolean isMapped() {
+			return mapped;
+		}
+		
+		/**
+		 * Parse and assemble on this many threads. Above one, uncompressed 
+		 * files are mapped and split at record boundaries, the child files 
+		 * are grouped by loan id a range at a time, and loans are assembled
+		 * in batches; they still come out in file order. Compressed files
+		 * can't be split and are read whole by a single thread.
+		 */
+		public Options setParallelism(int parallelism) {
+			if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+			this.parallelism = parallelism;
+			return this;
+		}
+		
+		public int getParallelism() {
+			return parallelism;
+		}
+		
+		/**
+		 * Only {@link Join#HASH} can be combined with a parallelism above one.
+		 */
+		public Options setJoin(Join join) {
+			if (join == null) throw new NullPointerException();
+			this.join = join;
+			return this;
+		}
+		
+		public Join getJoin() {
+			return join;
+		}
+		
+		/**
+		 * Roughly how many bytes of rows a {@link Join#SORT_MERGE} join holds
+		 * in memory before spilling them to disk.
+		 */
+		public Options setSortBufferSize(long sortBufferSize) {
+			if (sortBufferSize < 1) throw new IllegalArgumentException("Sort buffer size must be positive: " + sortBufferSize);
+			this.sortBufferSize = sortBufferSize;
+			return this;
+		}
+		
+		public long getSortBufferSize() {
+			return sortBufferSize;
+		}
+		
+		/**
+		 * Where sort spill files go; null (the default) means the system's 
+		 * temporary directory.
+		 */
+		public Options setTempDir(File tempDir) {
+			this.tempDir = tempDir;
+			return this;
+		}
+		
+		public File getTempDir() {
+			return tempDir;
+		}
+		
+		/**
+		 * Leave each loan's installments and history unread until its lists 
+		 * are first used. Uncompressed child files are indexed by byte offset
+		 * on that first use, so a pass that only looks at {@link Loan#loan} 
+		 * never parses them. The lists have to be used before the reader is
+		 * closed. Only works with a {@link Join#HASH} join.
+		 */
+		public Options setLazy(boolean lazy) {
+			this.lazy = lazy;
+			return this;
+		}
+		
+		public boolean isLazy() {
+			return lazy;
+		}
+		
+		/**
+		 * Share one instance of each value of columns that only take a few 
+		 * values, such as loan types, states and history actions, between 
+		 * all the records read. Worth turning on when many loans are kept in
+		 * memory at once; see {@link Reader#interner()} for how well it did.
+		 */
+		public Options setInterning(boolean interning) {
+			this.interning = interning;
+			return this;
+		}
+		
+		public boolean isInterning() {
+			return interning;
+		}
+		
+		/**
+		 * How many distinct values a column may have before it is no longer
+		 * interned.
+		 */
+		public Options setInternMaxValues(int internMaxValues) {
+			if (internMaxValues < 1) throw new IllegalArgumentException("Intern max values must be positive: " + internMaxValues);
+			this.internMaxValues = internMaxValues;
+			return this;
+		}
+		
+		public int getInternMaxValues() {
+			return internMaxValues;
+		}
+		
+		/**
+		 * Only read these columns, plus the loan id, into the records of all
+		 * three files; null (the default) reads them all. Streamed files 
+		 * skip decoding the other fields altogether.
+		 */
+		public Options setColumns(ColumnSelector columns) {
+			this.columns = columns;
+			return this;
+		}
+		
+		public ColumnSelector getColumns() {
+			return columns;
+		}
+		
+		/**
+		 * Only read the loans whose rows in loans.csv match, along with their
+		 * installments and history; null (the default) reads every loan. 
+		 * The parsers test each record before decoding it, so the other 
+		 * loans cost little more than a scan. Without a join the loan ids
+		 * are read in a first pass over loans.csv so that the rows of the
+		 * child files can be skipped the same way.
+		 */
+		public Options setFilter(RowPredicate filter) {
+			this.filter = filter;
+			return this;
+		}
+		
+		public RowPredicate getFilter() {
+			return filter;
+		}
+		
+		/**
+		 * The charset of the files; by default {@link Inspector#CHARSET}, the
+		 * one {@link Writer} writes.
+		 */
+		public Options setCharset(Charset charset) {
+			if (charset == null) throw new NullPointerException();
+			this.charset = charset;
+			return this;
+		}
+		
+		public Charset getCharset() {
+			return charset;
+		}
 	}
 }
@@ -38,13 +38,22 @@
 package org.oslef.format;
 
 import java.math.BigDecimal;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
-
+/**
+ * The columns of each of the three OSLEF files. Build one up from loans with
+ * {@link #consider(Loan)}, or from existing files with a {@link SchemaScanner},
+ * which also gathers {@link ColumnStats} for every column.
+ */
 public final class Schema implements Constants {
 
 	private boolean includeEmptyFields = false;
@@ -53,10 +62,14 @@ public final class Schema implements Constants {
 	private List<String> installments;
 	private List<String> history;
 	
+	private final Map<String, ColumnStats> loanStats = new LinkedHashMap<String, ColumnStats>();
+	private final Map<String, ColumnStats> installmentStats = new LinkedHashMap<String, ColumnStats>();
+	private final Map<String, ColumnStats> historyStats = new LinkedHashMap<String, ColumnStats>();
+	
 	public Schema() {
-		loan = new ArrayList<String>();
-		installments = new ArrayList<String>();
-		history = new ArrayList<String>();
+		loan = new ColumnList();
+		installments = new ColumnList();
+		history = new ColumnList();
 	}
 	
 	public Schema setIncludeEmptyFields(boolean b) {
@@ -103,6 +116,75 @@ public final class Schema implements Constants {
 		return history;
 	}
 	
+	/**
+	 * @return the statistics gathered for each column of loans.csv by a 
+	 * {@link SchemaScanner}, by column name; empty for schemas built up from
+	 * loans.
+	 */
+	public Map<String, ColumnStats> loanStats() {
+		return Collections.unmodifiableMap(loanStats);
+	}
+	
+	public Map<String, ColumnStats> installmentPlanStats() {
+		return Collections.unmodifiableMap(installmentStats);
+	}
+	
+	public Map<String, ColumnStats> historyStats() {
+		return Collections.unmodifiableMap(historyStats);
+	}
+	
+	/**
+	 * Adds the columns of another schema that this one lacks, after its own,
+	 * and combines the statistics of the columns they share.
+	 */
+	public void merge(Schema other) {
+		merge(other.loan, other.loanStats, loan, loanStats);
+		merge(other.installments, other.installmentStats, installments, installmentStats);
+		merge(other.history, other.historyStats, history, historyStats);
+	}
+	
+	private static void merge(List<String> fromColumns, Map<String, ColumnStats> fromStats, List<String> columns, Map<String, ColumnStats> stats) {
+		for (String c : fromColumns) {
+			if (!columns.contains(c)) columns.add(c);
+		}
+		for (ColumnStats s : fromStats.values()) {
+			ColumnStats mine = stats.get(s.name());
+			if (mine == null) {
+				mine = new ColumnStats(s.name());
+				stats.put(s.name(), mine);
+			}
+			mine.merge(s);
+		}
+	}
+	
+	/**
+	 * Adds the columns a {@link SchemaScanner} found in loans.csv.
+	 */
+	void addLoanColumns(ColumnStats[] stats) {
+		add(stats, loan, loanStats);
+	}
+	
+	void addInstallmentPlanColumns(ColumnStats[] stats) {
+		add(stats, installments, installmentStats);
+		addIfMissing(LOAN_ID, installments);
+	}
+	
+	void addHistoryColumns(ColumnStats[] stats) {
+		add(stats, history, historyStats);
+		addIfMissing(LOAN_ID, history);
+	}
+	
+	private void add(ColumnStats[] stats, List<String> headerGroup, Map<String, ColumnStats> groupStats) {
+		for (ColumnStats s : stats) {
+			if (s.nulls() < s.count() || includeEmptyFields) {
+				addIfMissing(s.name(), headerGroup);
+			}
+			ColumnStats mine = groupStats.get(s.name());
+			if (mine == null) groupStats.put(s.name(), s);
+			else mine.merge(s);
+		}
+	}
+	
 	public void sort() {
 		sortLoan(loan);
 		sortInstallment(installments);
@@ -121,6 +203,66 @@ public final class Schema implements Constants {
 		}
 	}
 	
+	/**
+	 * A list of column names that also keeps a count of each name, so that 
+	 * {@link #contains(Object)} doesn't have to walk the list. Callers add to
+	 * the lists directly, so every change goes through here.
+	 */
+	private static final class ColumnList extends AbstractList<String> implements RandomAccess {
+		
+		private final List<String> columns = new ArrayList<String>();
+		private final Map<String, Integer> counts = new HashMap<String, Integer>();
+		
+		@Override
+		public String get(int index) {
+			return columns.get(index);
+		}
+		
+		@Override
+		public int size() {
+			return columns.size();
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return counts.containsKey(o);
+		}
+		
+		@Override
+		public String set(int index, String column) {
+			String old = columns.set(index, column);
+			forget(old);
+			remember(column);
+			return old;
+		}
+		
+		@Override
+		public void add(int index, String column) {
+			columns.add(index, column);
+			remember(column);
+			modCount++;
+		}
+		
+		@Override
+		public String remove(int index) {
+			String old = columns.remove(index);
+			forget(old);
+			modCount++;
+			return old;
+		}
+		
+		private void remember(String column) {
+			Integer n = counts.get(column);
+			counts.put(column, n == null ? 1 : n + 1);
+		}
+		
+		private void forget(String column) {
+			Integer n = counts.get(column);
+			if (n == 1) counts.remove(column);
+			else counts.put(column, n - 1);
+		}
+	}
+	
 	private void sortLoan(List<String> columnNames) {
 
 		final List<String> cols = new ArrayList<String>();
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.oslef.csv.table.HeaderInfo;
+import org.oslef.csv.table.MappedTable;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.RowIterator;
+import org.oslef.csv.table.RowSource;
+import org.oslef.csv.table.Table;
+
+/**
+ * Infers the {@link Schema} of an existing OSLEF directory in one pass over 
+ * the rows of each file, without assembling any loans. A column is part of
+ * the schema if it has a non-blank value in some row, which is what 
+ * {@link Schema#consider(Loan)} would decide for the same loans. Every column
+ * of the headers also gets its {@link ColumnStats}.
+ * <p>
+ * With a parallelism above one, uncompressed files are mapped and cut into
+ * ranges that are scanned on separate threads; the partial statistics are 
+ * merged at the end.
+ */
+public final class SchemaScanner {
+	
+	private int parallelism = 1;
+	private boolean mapped = false;
+	private boolean includeEmptyFields = false;
+	private Charset charset = Inspector.CHARSET;
+	
+	/**
+	 * Scan on this many threads.
+	 */
+	public SchemaScanner setParallelism(int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Memory-map uncompressed files instead of streaming them; always done
+	 * with a parallelism above one.
+	 */
+	public SchemaScanner setMapped(boolean mapped) {
+		this.mapped = mapped;
+		return this;
+	}
+	
+	public boolean isMapped() {
+		return mapped;
+	}
+	
+	/**
+	 * Keep columns that are blank in every row. See 
+	 * {@link Schema#setIncludeEmptyFields(boolean)}.
+	 */
+	public SchemaScanner setIncludeEmptyFields(boolean includeEmptyFields) {
+		this.includeEmptyFields = includeEmptyFields;
+		return this;
+	}
+	
+	public boolean isIncludeEmptyFields() {
+		return includeEmptyFields;
+	}
+	
+	/**
+	 * The charset of the files; by default {@link Inspector#CHARSET}.
+	 */
+	public SchemaScanner setCharset(Charset charset) {
+		if (charset == null) throw new NullPointerException();
+		this.charset = charset;
+		return this;
+	}
+	
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	public Schema scan(File oslefDir) throws IOException {
+		if (oslefDir == null) throw new NullPointerException();
+		Schema schema = new Schema().setIncludeEmptyFields(includeEmptyFields);
+		ParallelLoader loader = parallelism > 1 ? new ParallelLoader(parallelism) : null;
+		try {
+			schema.addLoanColumns(scan(open(Inspector.locate(oslefDir, Inspector.LOANS_FILE)), loader));
+			schema.addInstallmentPlanColumns(scan(open(Inspector.locate(oslefDir, Inspector.INSTALLMENTS_FILE)), loader));
+			schema.addHistoryColumns(scan(open(Inspector.locate(oslefDir, Inspector.HISTORY_FILE)), loader));
+		}
+		finally {
+			if (loader != null) loader.close();
+		}
+		return schema;
+	}
+	
+	private RowSource open(File f) throws IOException {
+		if ((mapped || parallelism > 1) && Inspector.canMap(f)) return new MappedTable(f, charset);
+		return new Table(f, charset);
+	}
+	
+	private static ColumnStats[] scan(final RowSource table, ParallelLoader loader) throws IOException {
+		if (loader == null) return stats(table.info(), table.iterator());
+		
+		ParallelLoader.Task<ColumnStats[]> task = new ParallelLoader.Task<ColumnStats[]>() {
+			public ColumnStats[] run(RowIterator rows) throws IOException {
+				return stats(table.info(), rows);
+			}
+		};
+		List<Future<ParallelLoader.Part<ColumnStats[]>>> parts = new ArrayList<Future<ParallelLoader.Part<ColumnStats[]>>>();
+		for (ParallelLoader.Range range : loader.ranges(table, loader.parallelism() * 4)) {
+			parts.add(loader.submit(range, task));
+		}
+		
+		ParallelLoader.Results<ColumnStats[]> results = new ParallelLoader.Results<ColumnStats[]>();
+		ColumnStats[] merged = null;
+		for (Future<ParallelLoader.Part<ColumnStats[]>> f : parts) {
+			ColumnStats[] part = results.take(f);
+			if (merged == null) {
+				merged = part;
+				continue;
+			}
+			for (int i=0; i<merged.length; i++) {
+				merged[i].merge(part[i]);
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * @return the statistics of each column of the header, in its order.
+	 */
+	static ColumnStats[] stats(HeaderInfo header, RowIterator itr) throws IOException {
+		ColumnStats[] stats = new ColumnStats[header.size()];
+		for (int i=0; i<stats.length; i++) {
+			stats[i] = new ColumnStats(header.columns().get(i));
+		}
+		try {
+			while (itr.hasNext()) {
+				Row row = itr.next();
+				int size = row.size();
+				for (int i=0; i<stats.length; i++) {
+					stats[i].add(i < size ? row.get(i) : null);
+				}
+			}
+		}
+		finally {
+			itr.close();
+		}
+		return stats;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: SchemaScanner <oslef dir> [parallelism]");
+			System.exit(1);
+		}
+		SchemaScanner scanner = new SchemaScanner();
+		if (args.length > 1) scanner.setParallelism(Integer.parseInt(args[1]));
+		Schema schema = scanner.scan(new File(args[0]));
+		print(Inspector.LOANS_FILE, schema.loan(), schema.loanStats().values());
+		print(Inspector.INSTALLMENTS_FILE, schema.installmentPlan(), schema.installmentPlanStats().values());
+		print(Inspector.HISTORY_FILE, schema.history(), schema.historyStats().values());
+	}
+	
+	private static void print(String file, List<String> columns, Iterable<ColumnStats> stats) {
+		System.out.println(file + ": " + columns);
+		for (ColumnStats s : stats) {
+			System.out.println("  " + s);
+		}
+	}
+}
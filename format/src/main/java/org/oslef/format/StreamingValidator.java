@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.oslef.csv.table.HeaderInfo;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.TableIterator;
+import org.oslef.format.Validator.LexicalProblem;
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemListener;
+import org.oslef.format.Validator.ProblemLocation;
+import org.oslef.format.Validator.RowValidator;
+import org.oslef.format.Validator.SelectiveListener;
+import org.oslef.format.Validator.Severity;
+
+/**
+ * Validates the files of an OSLEF directory row by row as they are read, 
+ * without assembling {@link Record}s or {@link Loan}s, so any size of upload
+ * can be checked in constant memory. Every {@link LexicalProblem} carries the 
+ * file, line and column it was found at, as well as the loan id of its row.
+ * 
+ * Installment and history rows are indexed by their position among the 
+ * consecutive rows for the same loan, which is their index in the 
+ * {@link Loan} when the file is grouped by loan as {@link Writer} writes it.
+ * 
+ * Usage: StreamingValidator oslefDir
+ */
+public final class StreamingValidator {
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: StreamingValidator oslefDir");
+			System.exit(1);
+		}
+		final int[] errors = new int[1];
+		long rows = new StreamingValidator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				LexicalProblem lp = (LexicalProblem) p;
+				System.out.println(lp.file + ":" + lp.line + ":" + lp.column + ": " + lp.severity + " " + lp.description);
+				if (lp.severity == Severity.ERROR) errors[0]++;
+			}
+		}).validate(new File(args[0]));
+		System.out.println(rows + " rows, " + errors[0] + " errors");
+		if (errors[0] > 0) System.exit(2);
+	}
+	
+	private final Tagger tagger;
+	private final Validator validator;
+	
+	public StreamingValidator(ProblemListener l) {
+		this(l, Validator.Engine.SCANNER);
+	}
+	
+	public StreamingValidator(ProblemListener l, Validator.Engine engine) {
+		if (l == null) throw new NullPointerException();
+		this.tagger = new Tagger(l);
+		this.validator = new Validator(tagger, engine);
+	}
+	
+	/**
+	 * Validates loans.csv, installments.csv and history.csv, or their 
+	 * compressed versions, in that order.
+	 * 
+	 * @return the number of rows validated.
+	 */
+	public long validate(File oslefDir) throws IOException {
+		if (oslefDir == null) throw new NullPointerException();
+		long rows = 0;
+		rows += validate(Inspector.locate(oslefDir, Inspector.LOANS_FILE), ProblemLocation.LOAN);
+		rows += validate(Inspector.locate(oslefDir, Inspector.INSTALLMENTS_FILE), ProblemLocation.INSTALLMENT);
+		rows += validate(Inspector.locate(oslefDir, Inspector.HISTORY_FILE), ProblemLocation.HISTORY);
+		return rows;
+	}
+	
+	/**
+	 * Validates one file holding the given kind of record.
+	 * 
+	 * @return the number of rows validated.
+	 */
+	public long validate(File file, ProblemLocation location) throws IOException {
+		if (file == null) throw new NullPointerException();
+		if (location == null) throw new NullPointerException();
+		
+		TableIterator itr = new TableIterator(file, Inspector.CHARSET);
+		try {
+			HeaderInfo header = itr.header();
+			RowValidator rv = validator.compile(location, header.columns());
+			int loanIdColumn = header.indexOf(Constants.LOAN_ID);
+			
+			tagger.file = file.getName();
+			tagger.header = header;
+			
+			long rows = 0;
+			String previousLoanId = null;
+			int index = -1;
+			while (itr.hasNext()) {
+				Row row = itr.next();
+				String loanId = loanIdColumn == -1 || loanIdColumn >= row.size() ? null : row.get(loanIdColumn);
+				if (location != ProblemLocation.LOAN) {
+					if (loanId != null && loanId.equals(previousLoanId)) index++;
+					else index = 0;
+					previousLoanId = loanId;
+				}
+				tagger.line = itr.line();
+				tagger.loanId = loanId;
+				rv.validate(row, index);
+				rows++;
+			}
+			return rows;
+		}
+		finally {
+			tagger.header = null;
+			itr.close();
+		}
+	}
+	
+	/**
+	 * Stamps each problem with where the row being validated came from.
+	 */
+	private static final class Tagger implements SelectiveListener {
+		
+		private final ProblemListener l;
+		private final SelectiveListener selective;
+		
+		String file;
+		HeaderInfo header;
+		long line;
+		String loanId;
+		
+		Tagger(ProblemListener l) {
+			this.l = l;
+			this.selective = l instanceof SelectiveListener ? (SelectiveListener) l : null;
+		}
+		
+		public boolean wants(Severity severity) {
+			return selective == null || selective.wants(severity);
+		}
+		
+		public void problemEncountered(Problem p) {
+			p.loanId = loanId;
+			if (p instanceof LexicalProblem) {
+				LexicalProblem lp = (LexicalProblem) p;
+				lp.file = file;
+				lp.line = line;
+				if (header != null && lp.fieldName != null) lp.column = header.indexOf(lp.fieldName) + 1;
+			}
+			l.problemEncountered(p);
+		}
+	}
+}
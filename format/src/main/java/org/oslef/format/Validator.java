@@ -41,12 +41,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.oslef.csv.table.Row;
 import org.oslef.format.Validator.LexicalProblem;
 import org.oslef.format.Validator.ProblemListener;
 import org.oslef.format.Validator.ProblemLocation;
+import org.oslef.format.Validator.SelectiveListener;
 import org.oslef.format.Validator.Severity;
 
 
@@ -62,6 +65,18 @@ public final class Validator implements Constants {
 		public Severity severity;
 		public String description;
 		
+		/**
+		 * The loan_id of the loan the problem was found in, when validated by a
+		 * {@link BatchValidator}.
+		 */
+		public String loanId;
+		
+		/**
+		 * The position of that loan among all those given to the
+		 * {@link BatchValidator}, or -1.
+		 */
+		public long loanIndex = -1;
+		
 		public Problem() {}
 
 		public Problem(Severity severity, String description) {
@@ -93,6 +108,15 @@ public final class Validator implements Constants {
 		 * Names the specific field that is in question.
 		 */
 		public String fieldName;
+		
+		/**
+		 * When validated by a {@link StreamingValidator}: the name of the file,
+		 * the 1-based line the row starts on, and the 1-based column of the 
+		 * field (0 when the column is missing altogether).
+		 */
+		public String file;
+		public long line;
+		public int column;
 
 		public LexicalProblem() {}
 
@@ -105,6 +129,14 @@ public final class Validator implements Constants {
 		void problemEncountered(Problem p);
 	}
 	
+	/**
+	 * A listener that only cares about some problems. The validator asks 
+	 * before building a problem, so unwanted problems cost nothing.
+	 */
+	public static interface SelectiveListener extends ProblemListener {
+		boolean wants(Severity severity);
+	}
+	
 	public static final class CollectingListener implements ProblemListener {
 		public final List<Problem> problems = new ArrayList<Problem>();
 		public CollectingListener clear() {
@@ -116,77 +148,92 @@ public final class Validator implements Constants {
 		}
 	}
 	
+	/**
+	 * How field formats are checked. {@link #SCANNER} walks each value once
+	 * with hand-written code for the fixed formats (digits, amounts, dates, 
+	 * states, keywords) and allocates nothing for valid values. 
+	 * {@link #REGEX} uses {@link Pattern}s throughout, as earlier versions 
+	 * did. Both report the same problems with the same messages.
+	 */
+	public static enum Engine {
+		SCANNER,
+		REGEX
+	}
+	
 	private final RecordValidator lv, iv, hv;
 	
 	public Validator(ProblemListener l) {
+		this(l, Engine.SCANNER);
+	}
+	
+	public Validator(ProblemListener l, Engine engine) {
 
 		if (l == null) throw new NullPointerException();
+		if (engine == null) throw new NullPointerException();
 		
-		final String statesRegex = 
-			"AK|AL|AR|AZ|CA|CO|CT|DC|DE|FG|" +
-			"FL|GA|HI|IA|ID|IL|IN|KS|KY|LA|" +
-			"MA|MD|ME|MI|MN|MO|MS|MT|NC|ND|" +
-			"NE|NH|NJ|NM|NV|NY|OH|OK|OR|PA|" +
-			"RI|SC|SD|TN|TX|UT|VA|VT|WA|WI|" +
-			"WV|WY";
+		final boolean scan = engine == Engine.SCANNER;
 		
-		final Pattern phoneRegex = Pattern.compile("[0-9]{10}");
-		final Pattern intRegex = Pattern.compile("[0-9]+");
-		final Pattern amountRegex = Pattern.compile("(-)?([0-9]+)(\\.[0-9]+)?");
+		final FieldValidator phone = pick(engine, new DigitsScanner(10));
+		final FieldValidator integer = pick(engine, new DigitsScanner());
+		final FieldValidator amount = pick(engine, new AmountScanner());
 		
-		final YMDValidator ymdValidator = new YMDValidator();
-		final InstantValidator instantValidator = new InstantValidator();
+		final YMDValidator ymdValidator = new YMDValidator(scan);
+		final InstantValidator instantValidator = new InstantValidator(scan);
 	
 		lv = new RecordValidator(l)
 		.req(LOAN_ID)
-		.op(APP_SSN, "[0-9]{9}")
+		.op(APP_SSN, pick(engine, new DigitsScanner(9)))
 		.op(APP_FIRST_NAME)
 		.op(APP_MIDDLE_INITIAL, ".?")
 		.op(APP_LAST_NAME)
 		.op(APP_DATE_OF_BIRTH, ymdValidator)
-		.op(APP_DRIVERS_LICENSE_NUMBER, Pattern.compile("(" + statesRegex + ")([a-zA-Z0-9]+)", Pattern.CASE_INSENSITIVE))
+		.op(APP_DRIVERS_LICENSE_NUMBER, pick(engine, new StateScanner(true)))
 		.op(APP_EMAIL_ADDRESS, ".+@.+")
-		.op(APP_HEIGHT_INCHES, intRegex)
-		.op(APP_GENDER, Pattern.compile("MALE|FEMALE", Pattern.CASE_INSENSITIVE))
-		.op(APP_PHONE_PREFIX, phoneRegex)
-		.op(APP_RES_STATE_PREFIX, Pattern.compile(statesRegex, Pattern.CASE_INSENSITIVE))
-		.op(APP_RES_ZIP5_PREFIX, "[0-9]{5}")
-		.op(APP_RES_ZIP4_PREFIX, "[0-9]{4}")
-		.op(APP_REF_HOME_PHONE_PREFIX, phoneRegex)
-		.op(APP_REF_WORK_PHONE_PREFIX, phoneRegex)
-		.op(APP_INC_PAY_FREQUENCY_PREFIX, Pattern.compile("WEEKLY|BIWEEKLY|SEMIMONTHLY|MONTHLY", Pattern.CASE_INSENSITIVE))
-		.op(APP_INC_AMOUNT_PREFIX, amountRegex)
-		.op(APP_INC_NEXT_PAY_DATE_PREFIX, "[0-9]{4}-[0-9]{2}-[0-9]{2}")
+		.op(APP_HEIGHT_INCHES, integer)
+		.op(APP_GENDER, pick(engine, new KeywordScanner(true, "MALE", "FEMALE")))
+		.op(APP_PHONE_PREFIX, phone)
+		.op(APP_RES_STATE_PREFIX, pick(engine, new StateScanner(false)))
+		.op(APP_RES_ZIP5_PREFIX, pick(engine, new DigitsScanner(5)))
+		.op(APP_RES_ZIP4_PREFIX, pick(engine, new DigitsScanner(4)))
+		.op(APP_REF_HOME_PHONE_PREFIX, phone)
+		.op(APP_REF_WORK_PHONE_PREFIX, phone)
+		.op(APP_INC_PAY_FREQUENCY_PREFIX, pick(engine, new KeywordScanner(true, "WEEKLY", "BIWEEKLY", "SEMIMONTHLY", "MONTHLY")))
+		.op(APP_INC_AMOUNT_PREFIX, amount)
+		.op(APP_INC_NEXT_PAY_DATE_PREFIX, pick(engine, new DateScanner()))
 		.op(APP_INC_SHIFT_HOURS_PREFIX)
-		.op(APP_INC_MONTHS_OF_SERVICE_PREFIX, intRegex)
-		.op(APP_INC_HAS_DIRECT_DEPOSIT_PREFIX, "true|false")
+		.op(APP_INC_MONTHS_OF_SERVICE_PREFIX, integer)
+		.op(APP_INC_HAS_DIRECT_DEPOSIT_PREFIX, pick(engine, new KeywordScanner(false, "true", "false")))
 		.op(STRUCT_TYPE)
 		.req(STRUCT_WHEN_EXECUTED, instantValidator)
-		.req(STRUCT_LOAN_AMOUNT, amountRegex)
-		.op(STRUCT_DISCLOSED_APR, amountRegex)
-		.op(STRUCT_INTEREST_RATE, amountRegex)
-		.op(STRUCT_FINANCED_FEE_PREFIX, amountRegex)
+		.req(STRUCT_LOAN_AMOUNT, amount)
+		.op(STRUCT_DISCLOSED_APR, amount)
+		.op(STRUCT_INTEREST_RATE, amount)
+		.op(STRUCT_FINANCED_FEE_PREFIX, amount)
 		.op(TA_CHECK_BANK_NAME_PREFIX)
-		.op(TA_CHECK_ROUTING_NUMBER_PREFIX, new RoutingNumberValidator())
-		.op(TA_CHECK_ACCOUNT_NUMBER_PREFIX, intRegex)
-		.op(TA_CHECK_NUMBER_PREFIX, intRegex)
-		.op(TA_CHECK_AMOUNT_PREFIX, amountRegex)
+		.op(TA_CHECK_ROUTING_NUMBER_PREFIX, new RoutingNumberValidator(scan))
+		.op(TA_CHECK_ACCOUNT_NUMBER_PREFIX, integer)
+		.op(TA_CHECK_NUMBER_PREFIX, integer)
+		.op(TA_CHECK_AMOUNT_PREFIX, amount)
 		.op(TA_CHECK_DATE_PREFIX, ymdValidator)
 		.op(COL_VTITLE_YEAR_PREFIX, ymdValidator)
 		;
 		
 		iv = new RecordValidator(l)
 		.req(INST_DUE_DATE, ymdValidator)
-		.req(INST_DUE_AMOUNT, amountRegex)
-		.op(INST_ACCOUNT_PREFIX, amountRegex)
+		.req(INST_DUE_AMOUNT, amount)
+		.op(INST_ACCOUNT_PREFIX, amount)
 		;
 	
 		hv = new RecordValidator(l)
-		.req(HIST_ACTION, Pattern.compile("DRAW|DEPOSIT|BOUNCE|PAYMENT|ACCRUAL|EXEMPTION|INTEREST_HALT|INTEREST_RESUME|PAYMENT_DEADLINE|CHARGE|WRITE_OFF|EXTENDED_PAYMENT_PLAN_EXECUTION", Pattern.CASE_INSENSITIVE))
+		.req(HIST_ACTION, pick(engine, new KeywordScanner(true, "DRAW", "DEPOSIT", "BOUNCE", "PAYMENT", "ACCRUAL", "EXEMPTION", "INTEREST_HALT", "INTEREST_RESUME", "PAYMENT_DEADLINE", "CHARGE", "WRITE_OFF", "EXTENDED_PAYMENT_PLAN_EXECUTION")))
 		.req(HIST_WHEN_HAPPENED, instantValidator)
 		.op(HIST_WHEN_VOIDED, instantValidator)
-		.req(HIST_AMOUNT, amountRegex)
-		.op(HIST_ACCOUNT_PREFIX, amountRegex);
+		.req(HIST_AMOUNT, amount)
+		.op(HIST_ACCOUNT_PREFIX, amount);
+	}
+	
+	private static FieldValidator pick(Engine engine, FieldScanner scanner) {
+		return engine == Engine.REGEX ? new RegexValidator(scanner.pattern(), null) : scanner;
 	}
 
 	public void validate(Loan loan) {
@@ -196,10 +243,94 @@ public final class Validator implements Constants {
 		 */
 		
 		lv.validate(loan.loan, ProblemLocation.LOAN, -1);
+		int index = 0;
 		for (Record r : loan.installments) 
-			iv.validate(r, ProblemLocation.INSTALLMENT, loan.installments.indexOf(r));
+			iv.validate(r, ProblemLocation.INSTALLMENT, index++);
+		index = 0;
 		for (Record r : loan.history) 
-			hv.validate(r, ProblemLocation.HISTORY, loan.history.indexOf(r));
+			hv.validate(r, ProblemLocation.HISTORY, index++);
+	}
+	
+	/**
+	 * Resolves the rules for one kind of record against a fixed set of 
+	 * columns, e.g. a {@link Schema} list or a CSV header, so that rows can be
+	 * validated by position.
+	 */
+	public RowValidator compile(ProblemLocation location, List<String> columns) {
+		switch (location) {
+		case LOAN: return new RowValidator(lv, location, columns);
+		case INSTALLMENT: return new RowValidator(iv, location, columns);
+		case HISTORY: return new RowValidator(hv, location, columns);
+		default: throw new RuntimeException("Unsupported location: " + location);
+		}
+	}
+	
+	/**
+	 * Validates raw rows laid out in a known column order, without any map 
+	 * lookups. A row is judged the way {@link Reader} would turn it into a 
+	 * {@link Record}: blank values count as missing.
+	 */
+	public static final class RowValidator {
+		
+		private final RecordValidator rv;
+		private final ProblemLocation location;
+		private final String[] columns;
+		private final FieldReqirements[] rules;
+		private final String[] required;
+		private final int[] requiredColumns;
+		
+		RowValidator(RecordValidator rv, ProblemLocation location, List<String> columns) {
+			this.rv = rv;
+			this.location = location;
+			this.columns = columns.toArray(new String[columns.size()]);
+			this.rules = new FieldReqirements[this.columns.length];
+			for (int i=0; i<rules.length; i++) {
+				FieldReqirements fq = rv.resolve(this.columns[i]);
+				if (fq != null && fq.validator != null) rules[i] = fq;
+			}
+			this.required = rv.required();
+			this.requiredColumns = new int[required.length];
+			for (int r=0; r<required.length; r++) {
+				requiredColumns[r] = columns.indexOf(required[r]);
+			}
+		}
+		
+		/**
+		 * @param index the row's position among its loan's installments or 
+		 * history, or -1 for a loan row.
+		 */
+		public void validate(String[] values, int index) {
+			for (int r=0; r<required.length; r++) {
+				int c = requiredColumns[r];
+				if (c == -1 || c >= values.length || StringUtil.isEmpty(values[c])) {
+					rv.missing(required[r], location, index);
+				}
+			}
+			int n = Math.min(rules.length, values.length);
+			for (int c=0; c<n; c++) {
+				FieldReqirements fq = rules[c];
+				if (fq != null && StringUtil.nonEmpty(values[c])) {
+					rv.check(fq, columns[c], values[c], location, index);
+				}
+			}
+		}
+		
+		public void validate(Row row, int index) {
+			for (int r=0; r<required.length; r++) {
+				int c = requiredColumns[r];
+				if (c == -1 || c >= row.size() || StringUtil.isEmpty(row.get(c))) {
+					rv.missing(required[r], location, index);
+				}
+			}
+			int n = Math.min(rules.length, row.size());
+			for (int c=0; c<n; c++) {
+				FieldReqirements fq = rules[c];
+				if (fq != null) {
+					String v = row.get(c);
+					if (StringUtil.nonEmpty(v)) rv.check(fq, columns[c], v, location, index);
+				}
+			}
+		}
 	}
 }
 
@@ -210,12 +341,18 @@ final class FieldReqirements {
 
 final class RecordValidator {
 	
+	private static final FieldReqirements NONE = new FieldReqirements();
+	
 	final ProblemListener l;
+	final SelectiveListener selective;
 	final Map<String, FieldReqirements> reqs = new HashMap<String, FieldReqirements>();
+	private final Map<String, FieldReqirements> resolved = new ConcurrentHashMap<String, FieldReqirements>();
+	private volatile String[] required;
 	
 	RecordValidator(ProblemListener l) {
 		if (l == null) throw new NullPointerException();
 		this.l = l;
+		this.selective = l instanceof SelectiveListener ? (SelectiveListener) l : null;
 	}
 	
 	RecordValidator req(String k) {
@@ -284,6 +421,8 @@ final class RecordValidator {
 	
 	RecordValidator add(String k, boolean optional, FieldValidator v) {
 		checkDup(k);
+		resolved.clear();
+		required = null;
 		FieldReqirements fq = new FieldReqirements();
 		fq.optional = optional;
 		fq.validator = v;
@@ -291,29 +430,20 @@ final class RecordValidator {
 		return this;
 	}
 	
+	/**
+	 * Validates a record by name: each field still costs a lookup in the 
+	 * record and one in the cache behind {@link #resolve(String)}. Rows with a
+	 * known column order should go through a {@link Validator.RowValidator}.
+	 */
 	RecordValidator validate(Record r, ProblemLocation loc, int index) {
 		
-		for (String k : reqs.keySet()) {
-			FieldReqirements fq = reqs.get(k);
-			if (!fq.optional && !r.has(k)) {
-				LexicalProblem p = new LexicalProblem(Severity.ERROR, "Field '" + k + "' not found, field is required");
-				p.location = loc;
-				p.index = index;
-				p.fieldName = k;
-				l.problemEncountered(p);
-			}
+		for (String k : required()) {
+			if (!r.has(k)) missing(k, loc, index);
 		}
 		
 		for (String fieldName : r.keys()) {
 			
-			String k;
-			int prefixEnd = fieldName.indexOf(":");
-			if (prefixEnd > -1) {
-				k = fieldName.substring(0, prefixEnd + 1);
-			}
-			else k = fieldName;
-			
-			FieldReqirements fq = reqs.get(k);
+			FieldReqirements fq = resolve(fieldName);
 			
 			if (fq != null) {
 				
@@ -322,7 +452,7 @@ final class RecordValidator {
 				boolean empty = StringUtil.isEmpty(v);
 				
 				if (empty) {
-					if (!fq.optional) {
+					if (!fq.optional && wants(Severity.ERROR)) {
 						LexicalProblem p = new LexicalProblem(Severity.ERROR, "Field '" + fieldName + "' cannot be empty, field is required");
 						p.location = loc;
 						p.index = index;
@@ -332,25 +462,7 @@ final class RecordValidator {
 					else; // ignore it
 				}
 				else if (fq.validator != null) {
-					try {
-						List<String> result = fq.validator.validate(v);
-						if (result != null) {
-							for (String warning : result) {
-								LexicalProblem p = new LexicalProblem(Severity.WARNING, "Value '" + v + "' for field '" + fieldName + "': " + warning);
-								p.location = loc;
-								p.index = index;
-								p.fieldName = fieldName;
-								l.problemEncountered(p);
-							}
-						}
-					}
-					catch (InvalidFieldError err) {
-						LexicalProblem p = new LexicalProblem(Severity.ERROR, "Value '" + v + "' for field '" + fieldName + "' is not valid: " + err.getMessage());
-						p.location = loc;
-						p.index = index;
-						p.fieldName = fieldName;
-						l.problemEncountered(p);
-					}
+					check(fq, fieldName, v, loc, index);
 				}
 			}
 		}
@@ -358,6 +470,81 @@ final class RecordValidator {
 		return this;
 	}
 	
+	/**
+	 * @return the requirements for a field name, looking up its prefix 
+	 * (everything up to and including the first ':') only the first time the
+	 * name is seen.
+	 */
+	FieldReqirements resolve(String fieldName) {
+		FieldReqirements fq = resolved.get(fieldName);
+		if (fq == null) {
+			String k;
+			int prefixEnd = fieldName.indexOf(":");
+			if (prefixEnd > -1) {
+				k = fieldName.substring(0, prefixEnd + 1);
+			}
+			else k = fieldName;
+			
+			fq = reqs.get(k);
+			if (fq == null) fq = NONE;
+			resolved.put(fieldName, fq);
+		}
+		return fq == NONE ? null : fq;
+	}
+	
+	/**
+	 * @return the keys of the required fields, in the order they have always
+	 * been reported in.
+	 */
+	String[] required() {
+		String[] r = required;
+		if (r == null) {
+			List<String> keys = new ArrayList<String>();
+			for (Map.Entry<String, FieldReqirements> e : reqs.entrySet()) {
+				if (!e.getValue().optional) keys.add(e.getKey());
+			}
+			r = keys.toArray(new String[keys.size()]);
+			required = r;
+		}
+		return r;
+	}
+	
+	void missing(String k, ProblemLocation loc, int index) {
+		if (!wants(Severity.ERROR)) return;
+		LexicalProblem p = new LexicalProblem(Severity.ERROR, "Field '" + k + "' not found, field is required");
+		p.location = loc;
+		p.index = index;
+		p.fieldName = k;
+		l.problemEncountered(p);
+	}
+	
+	void check(FieldReqirements fq, String fieldName, String v, ProblemLocation loc, int index) {
+		try {
+			List<String> result = fq.validator.validate(v);
+			if (result != null && wants(Severity.WARNING)) {
+				for (String warning : result) {
+					LexicalProblem p = new LexicalProblem(Severity.WARNING, "Value '" + v + "' for field '" + fieldName + "': " + warning);
+					p.location = loc;
+					p.index = index;
+					p.fieldName = fieldName;
+					l.problemEncountered(p);
+				}
+			}
+		}
+		catch (InvalidFieldError err) {
+			if (!wants(Severity.ERROR)) return;
+			LexicalProblem p = new LexicalProblem(Severity.ERROR, "Value '" + v + "' for field '" + fieldName + "' is not valid: " + err.getMessage());
+			p.location = loc;
+			p.index = index;
+			p.fieldName = fieldName;
+			l.problemEncountered(p);
+		}
+	}
+	
+	private boolean wants(Severity severity) {
+		return selective == null || selective.wants(severity);
+	}
+	
 	void checkDup(String k) {
 		if (reqs.containsKey(k)) throw new RuntimeException("Duplicate requirement: " + k);
 	}
@@ -376,39 +563,74 @@ interface FieldValidator {
 final class YMDValidator implements FieldValidator {
 	
 	private final Pattern p = Pattern.compile("([0-9]{4})-([0-9]{2})-([0-9]{2})");
+	private final boolean scan;
+	
+	YMDValidator(boolean scan) {
+		this.scan = scan;
+	}
 	
 	public List<String> validate(String s) {
-		Matcher m = p.matcher(s);
-		if (!m.matches()) throw new InvalidFieldError("A year-month-day must match the regex '" + p + "'");
-		
-		int year = Integer.parseInt(m.group(1));
-		int month = Integer.parseInt(m.group(2));
-		int day = Integer.parseInt(m.group(3));
+		int year, month, day;
+		if (scan) {
+			if (!DateScanner.matches(s, 0, s.length())) throw new InvalidFieldError("A year-month-day must match the regex '" + p + "'");
+			year = FieldScanner.digits(s, 0, 4);
+			month = FieldScanner.digits(s, 5, 7);
+			day = FieldScanner.digits(s, 8, 10);
+		}
+		else {
+			Matcher m = p.matcher(s);
+			if (!m.matches()) throw new InvalidFieldError("A year-month-day must match the regex '" + p + "'");
+			
+			year = Integer.parseInt(m.group(1));
+			month = Integer.parseInt(m.group(2));
+			day = Integer.parseInt(m.group(3));
+		}
 		
 		if (month < 1 || month > 12) throw new InvalidFieldError("Not a valid month");
 		if (day < 1 || month > 31) throw new InvalidFieldError("Not a valid day");
 		
-		List<String> msg = new ArrayList<String>();
-		if (year < 1900) msg.add("Year < 1900");
-		return msg;
+		if (year < 1900) {
+			List<String> msg = new ArrayList<String>();
+			msg.add("Year < 1900");
+			return msg;
+		}
+		return null;
 	}
 }
 
 final class InstantValidator implements FieldValidator {
 	
 	private final Pattern p = Pattern.compile("([0-9]{4})-([0-9]{2})-([0-9]{2})T([0-9]{2})\\:([0-9]{2})\\:([0-9]{2})\\.([0-9]{3})Z");
+	private final boolean scan;
+	
+	InstantValidator(boolean scan) {
+		this.scan = scan;
+	}
 	
 	public List<String> validate(String s) {
-		Matcher m = p.matcher(s);
-		if (!m.matches()) throw new InvalidFieldError("A year-month-day must match the regex '" + p + "'");
-		
-		int year = Integer.parseInt(m.group(1));
-		int month = Integer.parseInt(m.group(2));
-		int day = Integer.parseInt(m.group(3));
-		int hours = Integer.parseInt(m.group(4));
-		int minutes = Integer.parseInt(m.group(5));
-		int seconds = Integer.parseInt(m.group(6));
-		int millis = Integer.parseInt(m.group(7));
+		int year, month, day, hours, minutes, seconds, millis;
+		if (scan) {
+			if (!matches(s)) throw new InvalidFieldError("A year-month-day must match the regex '" + p + "'");
+			year = FieldScanner.digits(s, 0, 4);
+			month = FieldScanner.digits(s, 5, 7);
+			day = FieldScanner.digits(s, 8, 10);
+			hours = FieldScanner.digits(s, 11, 13);
+			minutes = FieldScanner.digits(s, 14, 16);
+			seconds = FieldScanner.digits(s, 17, 19);
+			millis = FieldScanner.digits(s, 20, 23);
+		}
+		else {
+			Matcher m = p.matcher(s);
+			if (!m.matches()) throw new InvalidFieldError("A year-month-day must match the regex '" + p + "'");
+			
+			year = Integer.parseInt(m.group(1));
+			month = Integer.parseInt(m.group(2));
+			day = Integer.parseInt(m.group(3));
+			hours = Integer.parseInt(m.group(4));
+			minutes = Integer.parseInt(m.group(5));
+			seconds = Integer.parseInt(m.group(6));
+			millis = Integer.parseInt(m.group(7));
+		}
 		
 		if (month < 1 || month > 12) throw new InvalidFieldError("Not a valid month");
 		if (day < 1 || month > 31) throw new InvalidFieldError("Not a valid day");
@@ -417,9 +639,25 @@ final class InstantValidator implements FieldValidator {
 		if (seconds > 59) throw new InvalidFieldError("Not a valid second");
 		if (millis > 999) throw new InvalidFieldError("Not a valid millis"); // not going to happen since the regex prevents this
 		
-		List<String> msg = new ArrayList<String>();
-		if (year < 1900) msg.add("Year < 1900");
-		return msg;
+		if (year < 1900) {
+			List<String> msg = new ArrayList<String>();
+			msg.add("Year < 1900");
+			return msg;
+		}
+		return null;
+	}
+	
+	/**
+	 * yyyy-MM-ddTHH:mm:ss.SSSZ
+	 */
+	private static boolean matches(String s) {
+		return s.length() == 24
+			&& DateScanner.matches(s, 0, 10)
+			&& s.charAt(10) == 'T'
+			&& FieldScanner.isDigits(s, 11, 13) && s.charAt(13) == ':'
+			&& FieldScanner.isDigits(s, 14, 16) && s.charAt(16) == ':'
+			&& FieldScanner.isDigits(s, 17, 19) && s.charAt(19) == '.'
+			&& FieldScanner.isDigits(s, 20, 23) && s.charAt(23) == 'Z';
 	}
 }
 
@@ -446,17 +684,20 @@ final class RegexValidator implements FieldValidator {
 final class RoutingNumberValidator implements FieldValidator {
 	
 	private final Pattern p;
+	private final boolean scan;
 	
-	public RoutingNumberValidator() {
+	public RoutingNumberValidator(boolean scan) {
 		p = Pattern.compile("[0-9]{9}");
+		this.scan = scan;
 	}
 	
 	public List<String> validate(String s) {
-		if (!p.matcher(s).matches()) throw new InvalidFieldError("A bank routing number must match the following regex: " + p);
+		boolean matches = scan ? s.length() == 9 && FieldScanner.isDigits(s, 0, 9) : p.matcher(s).matches();
+		if (!matches) throw new InvalidFieldError("A bank routing number must match the following regex: " + p);
 		
 		int[] digits = new int[s.length()];
 		for (int i=0; i<s.length(); i++) {
-			digits[i] = Integer.parseInt(s.substring(i, i + 1));
+			digits[i] = s.charAt(i) - '0';
 		}
 		
 		int check = checksumAlgorithm(digits);
@@ -496,3 +737,243 @@ final class RoutingNumberValidator implements FieldValidator {
 
 
 
+
+/**
+ * A hand-written check for a fixed format. Each scanner also knows the 
+ * regex it stands in for, which is what problems quote and what 
+ * {@link Validator.Engine#REGEX} falls back to.
+ */
+abstract class FieldScanner implements FieldValidator {
+	
+	private final Pattern p;
+	
+	FieldScanner(Pattern p) {
+		this.p = p;
+	}
+	
+	final Pattern pattern() {
+		return p;
+	}
+	
+	abstract boolean matches(String s);
+	
+	public final List<String> validate(String s) {
+		if (!matches(s)) throw new InvalidFieldError("Must match regex '" + p + "'");
+		return null;
+	}
+	
+	/**
+	 * @return whether s[start, end) is all ASCII digits, as [0-9] is.
+	 */
+	static boolean isDigits(String s, int start, int end) {
+		for (int i=start; i<end; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the value of s[start, end), which must be all digits.
+	 */
+	static int digits(String s, int start, int end) {
+		int n = 0;
+		for (int i=start; i<end; i++) {
+			n = n * 10 + (s.charAt(i) - '0');
+		}
+		return n;
+	}
+	
+	/**
+	 * ASCII-only upper casing, which is all {@link Pattern#CASE_INSENSITIVE}
+	 * does without {@link Pattern#UNICODE_CASE}.
+	 */
+	static char upper(char c) {
+		return c >= 'a' && c <= 'z' ? (char)(c - ('a' - 'A')) : c;
+	}
+}
+
+/**
+ * [0-9]{n} or [0-9]+
+ */
+final class DigitsScanner extends FieldScanner {
+	
+	private final int count;
+	
+	DigitsScanner() {
+		super(Pattern.compile("[0-9]+"));
+		this.count = -1;
+	}
+	
+	DigitsScanner(int count) {
+		super(Pattern.compile("[0-9]{" + count + "}"));
+		this.count = count;
+	}
+	
+	boolean matches(String s) {
+		int length = s.length();
+		if (count == -1 ? length == 0 : length != count) return false;
+		return isDigits(s, 0, length);
+	}
+}
+
+/**
+ * (-)?([0-9]+)(\.[0-9]+)?
+ */
+final class AmountScanner extends FieldScanner {
+	
+	AmountScanner() {
+		super(Pattern.compile("(-)?([0-9]+)(\\.[0-9]+)?"));
+	}
+	
+	boolean matches(String s) {
+		int length = s.length();
+		int i = 0;
+		if (i < length && s.charAt(i) == '-') i++;
+		
+		int start = i;
+		while (i < length && isDigit(s.charAt(i))) i++;
+		if (i == start) return false;
+		if (i == length) return true;
+		
+		if (s.charAt(i++) != '.') return false;
+		start = i;
+		while (i < length && isDigit(s.charAt(i))) i++;
+		return i > start && i == length;
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
+
+/**
+ * [0-9]{4}-[0-9]{2}-[0-9]{2}, the shape of a date without any range checks.
+ */
+final class DateScanner extends FieldScanner {
+	
+	DateScanner() {
+		super(Pattern.compile("[0-9]{4}-[0-9]{2}-[0-9]{2}"));
+	}
+	
+	boolean matches(String s) {
+		return s.length() == 10 && matches(s, 0, 10);
+	}
+	
+	/**
+	 * @return whether s[start, end) is a yyyy-MM-dd.
+	 */
+	static boolean matches(String s, int start, int end) {
+		return end - start == 10
+			&& isDigits(s, start, start + 4) && s.charAt(start + 4) == '-'
+			&& isDigits(s, start + 5, start + 7) && s.charAt(start + 7) == '-'
+			&& isDigits(s, start + 8, end);
+	}
+}
+
+/**
+ * A two letter state or territory code, ignoring case, optionally followed 
+ * by one or more letters and digits as in a driver's license number.
+ */
+final class StateScanner extends FieldScanner {
+	
+	private static final String[] STATES = {
+		"AK", "AL", "AR", "AZ", "CA", "CO", "CT", "DC", "DE", "FG",
+		"FL", "GA", "HI", "IA", "ID", "IL", "IN", "KS", "KY", "LA",
+		"MA", "MD", "ME", "MI", "MN", "MO", "MS", "MT", "NC", "ND",
+		"NE", "NH", "NJ", "NM", "NV", "NY", "OH", "OK", "OR", "PA",
+		"RI", "SC", "SD", "TN", "TX", "UT", "VA", "VT", "WA", "WI",
+		"WV", "WY"
+	};
+	
+	/**
+	 * Indexed by (first - 'A') * 26 + (second - 'A'), a perfect hash of 
+	 * every pair of upper case letters.
+	 */
+	private static final boolean[] CODES = new boolean[26 * 26];
+	
+	static {
+		for (String state : STATES) {
+			CODES[code(state.charAt(0), state.charAt(1))] = true;
+		}
+	}
+	
+	private final boolean license;
+	
+	StateScanner(boolean license) {
+		super(license ? 
+			Pattern.compile("(" + states() + ")([a-zA-Z0-9]+)", Pattern.CASE_INSENSITIVE) : 
+			Pattern.compile(states(), Pattern.CASE_INSENSITIVE));
+		this.license = license;
+	}
+	
+	boolean matches(String s) {
+		int length = s.length();
+		if (license ? length < 3 : length != 2) return false;
+		
+		char first = upper(s.charAt(0));
+		char second = upper(s.charAt(1));
+		if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') return false;
+		if (!CODES[code(first, second)]) return false;
+		
+		for (int i=2; i<length; i++) {
+			char c = upper(s.charAt(i));
+			if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) return false;
+		}
+		return true;
+	}
+	
+	private static int code(char first, char second) {
+		return (first - 'A') * 26 + (second - 'A');
+	}
+	
+	private static String states() {
+		StringBuilder sb = new StringBuilder();
+		for (String state : STATES) {
+			if (sb.length() > 0) sb.append('|');
+			sb.append(state);
+		}
+		return sb.toString();
+	}
+}
+
+/**
+ * One of a fixed set of words, optionally ignoring (ASCII) case.
+ */
+final class KeywordScanner extends FieldScanner {
+	
+	private final boolean ignoreCase;
+	private final String[] words;
+	
+	KeywordScanner(boolean ignoreCase, String... words) {
+		super(Pattern.compile(join(words), ignoreCase ? Pattern.CASE_INSENSITIVE : 0));
+		this.ignoreCase = ignoreCase;
+		this.words = words.clone();
+	}
+	
+	boolean matches(String s) {
+		int length = s.length();
+		for (String word : words) {
+			if (word.length() == length && matches(word, s)) return true;
+		}
+		return false;
+	}
+	
+	private boolean matches(String word, String s) {
+		for (int i=0; i<word.length(); i++) {
+			char w = word.charAt(i);
+			char c = s.charAt(i);
+			if (w != c && !(ignoreCase && upper(w) == upper(c))) return false;
+		}
+		return true;
+	}
+	
+	private static String join(String[] words) {
+		StringBuilder sb = new StringBuilder();
+		for (String word : words) {
+			if (sb.length() > 0) sb.append('|');
+			sb.append(word);
+		}
+		return sb.toString();
+	}
+}
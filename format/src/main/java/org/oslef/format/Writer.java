@@ -38,35 +38,49 @@
 package org.oslef.format;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 import org.oslef.csv.CSVWriter;
+import org.oslef.csv.ChannelWriter;
 import org.oslef.csv.RowWriter;
+import org.oslef.csv.CSVWriter.QuoteSpec;
+import org.oslef.csv.CSVWriter.QuoteSpec.Escaping;
+import org.oslef.csv.CSVWriter.QuoteSpec.QuoteMode;
 
 public final class Writer {
 
+	private static final QuoteSpec QUOTING = new QuoteSpec("\"", "'", QuoteMode.EVERYTHING, Escaping.SINGLE_PASS);
+	
 	private RowWriter loanWriter;
 	private RowWriter historyWriter;
 	private RowWriter installmentWriter;
 
+	/**
+	 * Writes {@link Inspector#CHARSET}, UTF-8, which is what the readers in 
+	 * this package expect by default.
+	 */
 	public Writer(Schema schema, File oslefDir) throws IOException {
+		this(schema, oslefDir, Inspector.CHARSET);
+	}
+	
+	public Writer(Schema schema, File oslefDir, Charset charset) throws IOException {
 		{
 			File file = new File(oslefDir.getAbsoluteFile(), "loans.csv");
-			java.io.Writer w = new FileWriter(file);
-			loanWriter = new RowWriter(schema.loan(), new CSVWriter(w));
+			java.io.Writer w = new ChannelWriter(file, charset);
+			loanWriter = new RowWriter(schema.loan(), new CSVWriter(w, QUOTING));
 			loanWriter.writeHeader();
 		}
 		{
 			File file = new File(oslefDir.getAbsoluteFile(), "installments.csv");
-			java.io.Writer w = new FileWriter(file);
-			installmentWriter = new RowWriter(schema.installmentPlan(), new CSVWriter(w));
+			java.io.Writer w = new ChannelWriter(file, charset);
+			installmentWriter = new RowWriter(schema.installmentPlan(), new CSVWriter(w, QUOTING));
 			installmentWriter.writeHeader();
 		}
 		{
 			File file = new File(oslefDir.getAbsoluteFile(), "history.csv");
-			java.io.Writer w = new FileWriter(file);
-			historyWriter = new RowWriter(schema.history(), new CSVWriter(w));
+			java.io.Writer w = new ChannelWriter(file, charset);
+			historyWriter = new RowWriter(schema.history(), new CSVWriter(w, QUOTING));
 			historyWriter.writeHeader();
 		}
 	}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public final class TestArrayRecord implements Constants {
+	
+	@Test
+	public void behavesLikeMapRecord() {
+		ColumnDictionary columns = new ColumnDictionary(Arrays.asList("a", "b"));
+		ArrayRecord r = new ArrayRecord(columns);
+		MapRecord m = new MapRecord();
+		
+		for (Record x : new Record[]{r, m}) {
+			Assert.assertNull(x.put("b", "1"));
+			Assert.assertEquals("1", x.put("b", "2"));
+			x.put("blank", " ");
+			x.put("null", null);
+			for (int i=0; i<70; i++) {
+				x.put("c" + i, Integer.toString(i));
+			}
+			Assert.assertEquals("5", x.del("c5"));
+			Assert.assertNull(x.del("c5"));
+			Assert.assertNull(x.del("unknown"));
+		}
+		
+		Assert.assertEquals(m.keys(), new HashSet<String>(r.keys()));
+		Assert.assertEquals(m.keys().size(), r.keys().size());
+		for (String k : new String[]{"a", "b", "blank", "null", "c5", "c6", "c69", "unknown"}) {
+			Assert.assertEquals(k, m.get(k), r.get(k));
+			Assert.assertEquals(k, m.has(k), r.has(k));
+			Assert.assertEquals(k, m.keys().contains(k), r.keys().contains(k));
+		}
+		Assert.assertEquals(m, r.toMapRecord());
+		
+		// slot order, not hash order
+		List<String> keys = new ArrayList<String>(r.keys());
+		Assert.assertEquals(Arrays.asList("b", "blank", "null", "c0"), keys.subList(0, 4));
+		Assert.assertEquals("c69", keys.get(keys.size() - 1));
+	}
+	
+	@Test
+	public void compactLoansRoundTrip() {
+		CompactLoans loans = new CompactLoans();
+		List<Loan> expected = new ArrayList<Loan>();
+		for (int i=0; i<10; i++) {
+			Loan l = new Loan()
+			.put(LOAN_ID, Integer.toString(i))
+			.put(STRUCT_LOAN_AMOUNT, "100.00");
+			if (i % 2 == 0) l.put(APP_PHONE_PREFIX + i, "6155551212");
+			for (int j=0; j<i % 3; j++) {
+				MapRecord r = new MapRecord();
+				r.put(INST_DUE_AMOUNT, j + ".00");
+				l.installments.add(r);
+				l.history.add(r);
+			}
+			expected.add(l);
+			loans.add(l);
+		}
+		
+		Assert.assertEquals(expected.size(), loans.size());
+		int i = 0;
+		for (Loan l : loans) {
+			Assert.assertEquals(expected.get(i).loan, l.loan);
+			Assert.assertEquals(expected.get(i).installments, l.installments);
+			Assert.assertEquals(expected.get(i).history, l.history);
+			i++;
+		}
+	}
+}
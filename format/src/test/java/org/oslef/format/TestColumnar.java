@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class TestColumnar {
+	
+	private File dir;
+	
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("oslef", "");
+		dir.delete();
+		dir.mkdir();
+	}
+	
+	@After
+	public void teardown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void chunksRoundTripInEachEncoding() {
+		assertChunk(ColumnChunk.DECIMAL, "100.00", "100.00", null, "-0.50", "0.00", "92233720368547758.07");
+		assertChunk(ColumnChunk.DECIMAL, "1", "2", "3", null);
+		assertChunk(ColumnChunk.INSTANT, "2011-02-07T16:29:54.778Z", null, "1969-12-31T23:59:59.999Z", "2000-02-29T00:00:00.000Z");
+		assertChunk(ColumnChunk.DICTIONARY, "PAY", "DRAW", "PAY", "PAY", null, "PAY");
+		assertChunk(ColumnChunk.PLAIN, "a", "b\nc", "", null, "été");
+		// not exactly what a decimal or instant would give back
+		assertChunk(ColumnChunk.PLAIN, "010", "1.0", "11");
+		assertChunk(ColumnChunk.PLAIN, "1.5", "1.50", "2");
+		assertChunk(ColumnChunk.PLAIN, "-0", "1E3", "+1");
+		assertChunk(ColumnChunk.PLAIN, "2011-02-30T00:00:00.000Z", "2011-02-07T16:29:54.778Z");
+		assertChunk(ColumnChunk.PLAIN, "9223372036854775808", "1");
+	}
+	
+	@Test
+	public void instantsFormatLikeSimpleDateFormat() {
+		SimpleDateFormat f = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		f.setTimeZone(TimeZone.getTimeZone("UTC"));
+		Random random = new Random(1);
+		for (int i=0; i<10000; i++) {
+			// 1900 through 2100, where both use the Gregorian calendar
+			long millis = (long) ((random.nextDouble() - 0.5) * 2 * 3155760000000L) + 946684800000L;
+			String s = f.format(new Date(millis));
+			Assert.assertEquals(s, ColumnChunk.formatInstant(millis));
+			Assert.assertEquals(millis, ColumnChunk.parseInstant(s));
+		}
+	}
+	
+	@Test
+	public void loansRoundTripExactly() throws IOException {
+		List<Loan> loans = loans(50);
+		write(loans, 7);
+		
+		ColumnarReader r = new ColumnarReader(dir);
+		try {
+			Assert.assertEquals(loans.size(), r.size());
+			Assert.assertEquals(schema().loan(), r.schema().loan());
+			assertSame(loans, read(r));
+		}
+		finally {
+			r.close();
+		}
+	}
+	
+	@Test
+	public void readsOnlyTheColumnsAskedFor() throws IOException {
+		List<Loan> loans = loans(20);
+		write(loans, 6);
+		
+		ColumnarReader r = new ColumnarReader(dir, Arrays.asList(Constants.STRUCT_WHEN_EXECUTED, Constants.STRUCT_LOAN_AMOUNT, Constants.HIST_ACTION));
+		try {
+			List<Loan> read = read(r);
+			for (int i=0; i<loans.size(); i++) {
+				Loan expected = loans.get(i), actual = read.get(i);
+				Assert.assertEquals(2, actual.loan.size());
+				Assert.assertEquals(expected.loan.get(Constants.STRUCT_WHEN_EXECUTED), actual.loan.get(Constants.STRUCT_WHEN_EXECUTED));
+				Assert.assertEquals(expected.loan.get(Constants.STRUCT_LOAN_AMOUNT), actual.loan.get(Constants.STRUCT_LOAN_AMOUNT));
+				Assert.assertTrue(actual.installments.isEmpty());
+				Assert.assertEquals(expected.history.size(), actual.history.size());
+				for (int j=0; j<expected.history.size(); j++) {
+					Assert.assertEquals(1, actual.history.get(j).size());
+					Assert.assertEquals(expected.history.get(j).get(Constants.HIST_ACTION), actual.history.get(j).get(Constants.HIST_ACTION));
+				}
+			}
+		}
+		finally {
+			r.close();
+		}
+	}
+	
+	@Test
+	public void convertsCsv() throws IOException {
+		File csv = new File(dir, "csv");
+		File columnar = new File(dir, "columnar");
+		csv.mkdir();
+		columnar.mkdir();
+		try {
+			text(new File(csv, Inspector.LOANS_FILE), "\"loan_id\",\"loan_amount\",\"first_name\"\n\"1\",\"100.00\",\"a\"\n\"2\",\"\",\"b\nc\"\n");
+			text(new File(csv, Inspector.INSTALLMENTS_FILE), "loan_id,due_amount,due_date\n2,50.00,2011-01-01\n1,10.00,2011-01-01\n2,50.00,2011-02-01\n");
+			text(new File(csv, Inspector.HISTORY_FILE), "loan_id,amount,action\n1,100.00,DRAW\n");
+			
+			ColumnarWriter.convert(csv, columnar);
+			
+			Reader expected = new Reader(csv);
+			ColumnarReader actual = new ColumnarReader(columnar);
+			try {
+				assertSame(read(expected), read(actual));
+			}
+			finally {
+				expected.close();
+				actual.close();
+			}
+		}
+		finally {
+			for (File d : new File[]{csv, columnar}) {
+				for (File f : d.listFiles()) f.delete();
+				d.delete();
+			}
+		}
+	}
+	
+	@Test
+	public void damagedFileClosesTheOthers() throws IOException {
+		write(loans(5), 10);
+		text(new File(dir, ColumnarWriter.HISTORY_FILE), "not columnar");
+		
+		// open file handles can only be counted where /proc is
+		File fds = new File("/proc/self/fd");
+		int before = fds.isDirectory() ? fds.list().length : 0;
+		for (int i=0; i<20; i++) {
+			try {
+				new ColumnarReader(dir);
+				Assert.fail();
+			}
+			catch (IOException ex) {}
+		}
+		if (fds.isDirectory()) Assert.assertTrue(fds.list().length < before + 20);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void columnsMustBeInTheSchema() throws IOException {
+		Loan l = new Loan().put(Constants.LOAN_ID, "1").put("not in schema", "x");
+		write(Arrays.asList(l), 10);
+	}
+	
+	private static void assertChunk(byte encoding, String... values) {
+		byte[] chunk = ColumnChunk.encode(values, values.length);
+		Assert.assertEquals(encoding, chunk[0]);
+		Assert.assertEquals(Arrays.asList(values), Arrays.asList(ColumnChunk.decode(chunk, values.length)));
+	}
+	
+	private static Schema schema() {
+		Schema s = new Schema();
+		s.loan().addAll(Arrays.asList(Constants.LOAN_ID, Constants.STRUCT_LOAN_AMOUNT, Constants.STRUCT_WHEN_EXECUTED, Constants.APP_FIRST_NAME, Constants.APP_SSN));
+		s.installmentPlan().addAll(Arrays.asList(Constants.LOAN_ID, Constants.INST_DUE_DATE, Constants.INST_DUE_AMOUNT));
+		s.history().addAll(Arrays.asList(Constants.LOAN_ID, Constants.HIST_ACTION, Constants.HIST_AMOUNT, Constants.HIST_WHEN_HAPPENED));
+		return s;
+	}
+	
+	private static List<Loan> loans(int count) {
+		Random random = new Random(7);
+		List<Loan> loans = new ArrayList<Loan>();
+		for (int i=0; i<count; i++) {
+			Loan l = new Loan()
+				.put(Constants.LOAN_ID, Integer.toString(i))
+				.put(Constants.STRUCT_LOAN_AMOUNT, i % 9 == 0 ? "1.5" : (random.nextInt(100000) / 100) + ".00")
+				.put(Constants.STRUCT_WHEN_EXECUTED, i % 11 == 0 ? "2011-02-07" : "2011-02-07T16:29:54.77" + (i % 10) + "Z")
+				.put(Constants.APP_FIRST_NAME, i % 5 == 0 ? "" : "name " + (i % 3));
+			if (i % 4 != 0) l.put(Constants.APP_SSN, String.format("%09d", i));
+			for (int j=0; j<i % 4; j++) {
+				MapRecord r = new MapRecord();
+				r.put(Constants.LOAN_ID, l.get(Constants.LOAN_ID));
+				r.put(Constants.INST_DUE_DATE, "2011-0" + (j + 1) + "-01");
+				r.put(Constants.INST_DUE_AMOUNT, j + ".00");
+				l.installments.add(r);
+			}
+			for (int j=0; j<i % 3; j++) {
+				MapRecord r = new MapRecord();
+				if (j == 0) r.put(Constants.LOAN_ID, l.get(Constants.LOAN_ID));
+				r.put(Constants.HIST_ACTION, j == 0 ? "DRAW" : "PAY");
+				r.put(Constants.HIST_AMOUNT, "-" + j + ".25");
+				r.put(Constants.HIST_WHEN_HAPPENED, "2011-02-08T00:00:00.00" + j + "Z");
+				l.history.add(r);
+			}
+			loans.add(l);
+		}
+		return loans;
+	}
+	
+	private void write(List<Loan> loans, int groupSize) throws IOException {
+		ColumnarWriter w = new ColumnarWriter(schema(), dir, groupSize);
+		try {
+			for (Loan l : loans) {
+				w.write(l);
+			}
+		}
+		finally {
+			w.close();
+		}
+	}
+	
+	private static List<Loan> read(Iterable<Loan> r) {
+		List<Loan> loans = new ArrayList<Loan>();
+		for (Loan l : r) {
+			loans.add(l);
+		}
+		return loans;
+	}
+	
+	private static void assertSame(List<Loan> expected, List<Loan> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).loan, actual.get(i).loan);
+			Assert.assertEquals(expected.get(i).installments, actual.get(i).installments);
+			Assert.assertEquals(expected.get(i).history, actual.get(i).history);
+		}
+	}
+	
+	private static void text(File f, String content) throws IOException {
+		OutputStream out = new FileOutputStream(f);
+		try {
+			out.write(content.getBytes("UTF8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
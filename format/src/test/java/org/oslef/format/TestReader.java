@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oslef.csv.table.RowPredicate;
+
+public final class TestReader {
+	
+	private static final int LOANS = 200;
+	
+	private File dir;
+	
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("oslef", "");
+		dir.delete();
+		dir.mkdir();
+		
+		StringBuilder loans = new StringBuilder("\"loan_id\",\"struct:loan_amount\",\"app:first_name\"\n");
+		StringBuilder installments = new StringBuilder("\"loan_id\",\"amount\",\"due_date\"\n");
+		StringBuilder history = new StringBuilder("\"loan_id\",\"amount\",\"action\"\r\n");
+		for (int i=0; i<LOANS; i++) {
+			loans.append("\"").append(i).append("\",\"").append(i * 100).append(".00\",\"")
+				.append(i % 7 == 0 ? "multi\nline" : "name " + i).append("\"\n");
+			// children out of loan order, some loans without any
+			int loan = (i * 31) % LOANS;
+			for (int j=0; j<loan % 4; j++) {
+				installments.append(loan).append(",").append(j).append(".00,2011-02-0").append(j + 1).append("\n");
+				history.append("\"").append(loan).append("\",\"").append(j).append(".50\",\"PAY\"\r\n");
+			}
+		}
+		write(Inspector.LOANS_FILE, loans);
+		write(Inspector.INSTALLMENTS_FILE, installments);
+		write(Inspector.HISTORY_FILE, history);
+	}
+	
+	@After
+	public void teardown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void modesReadTheSameLoans() throws IOException {
+		List<Loan> expected = read(new Reader.Options());
+		Assert.assertEquals(LOANS, expected.size());
+		Assert.assertEquals("multi\nline", expected.get(7).get("app:first_name"));
+		Assert.assertEquals(3, expected.get(3).installments.size());
+		Assert.assertEquals("2.50", expected.get(3).history.get(2).get("amount"));
+		
+		assertSame(expected, read(new Reader.Options().setMapped(true)));
+		for (int parallelism : new int[]{2, 3, 8}) {
+			assertSame(expected, read(new Reader.Options().setParallelism(parallelism)));
+		}
+	}
+	
+	@Test
+	public void parallelCutsInsideQuotedLines() throws IOException {
+		// the middle line of each note has balanced quotes, so cuts can land there
+		StringBuilder loans = new StringBuilder("loan_id,note\n");
+		StringBuilder history = new StringBuilder("loan_id,note\r\n");
+		for (int i=0; i<LOANS; i++) {
+			String note = i % 3 == 0 ? "\"line one\nsay \\\"hi\\\" to " + i + "\nline three\"" : "plain " + i;
+			loans.append(i).append(",").append(note).append("\n");
+			history.append(i).append(",").append(note).append("\r\n");
+		}
+		write(Inspector.LOANS_FILE, loans);
+		write(Inspector.INSTALLMENTS_FILE, "loan_id,amount\n");
+		write(Inspector.HISTORY_FILE, history);
+		
+		List<Loan> expected = read(new Reader.Options());
+		Assert.assertEquals(LOANS, expected.size());
+		Assert.assertEquals("line one\nsay \\\"hi\\\" to 3\nline three", expected.get(3).get("note"));
+		for (int parallelism : new int[]{2, 3, 8, 16}) {
+			assertSame(expected, read(new Reader.Options().setParallelism(parallelism)));
+		}
+	}
+	
+	@Test
+	public void writtenFilesReadBackInTheirCharset() throws IOException {
+		Schema schema = new Schema();
+		Loan loan = new Loan().put(Constants.LOAN_ID, "1").put(Constants.APP_RES_CITY_PREFIX + "default", "Z\u00fcrich");
+		MapRecord h = new MapRecord();
+		h.put(Constants.HIST_ACTION, "\u00c9CHANGE");
+		loan.history.add(h);
+		schema.consider(loan);
+		
+		for (Charset charset : new Charset[]{null, Charset.forName("ISO-8859-1")}) {
+			Writer w = charset == null ? new Writer(schema, dir) : new Writer(schema, dir, charset);
+			w.write(loan);
+			w.close();
+			
+			Reader.Options options = new Reader.Options();
+			if (charset != null) options.setCharset(charset);
+			for (boolean mapped : new boolean[]{false, true}) {
+				List<Loan> read = read(options.setMapped(mapped));
+				Assert.assertEquals(1, read.size());
+				Assert.assertEquals("Z\u00fcrich", read.get(0).get(Constants.APP_RES_CITY_PREFIX + "default"));
+				Assert.assertEquals("\u00c9CHANGE", read.get(0).history.get(0).get(Constants.HIST_ACTION));
+			}
+		}
+	}
+	
+	@Test
+	public void lazyChildren() throws IOException {
+		List<Loan> expected = read(new Reader.Options());
+		assertSame(expected, read(new Reader.Options().setLazy(true)));
+		assertSame(expected, read(new Reader.Options().setLazy(true).setParallelism(3)));
+	}
+	
+	@Test
+	public void lazyLoanOnlyPassSkipsChildFiles() throws IOException {
+		// would fail with 'End of file' if anything parsed past the header
+		write(Inspector.HISTORY_FILE, "loan_id,amount\n\"1,never closed\n");
+		Reader r = new Reader(dir, new Reader.Options().setLazy(true));
+		int count = 0;
+		try {
+			for (Loan l : r) {
+				Assert.assertNotNull(l.get(Constants.LOAN_ID));
+				count++;
+			}
+		}
+		finally {
+			r.close();
+		}
+		Assert.assertEquals(LOANS, count);
+	}
+	
+	@Test
+	public void randomAccessByIndex() throws IOException {
+		List<Loan> expected = read(new Reader.Options());
+		
+		Assert.assertNull(OffsetIndex.load(dir));
+		RandomAccessReader r = new RandomAccessReader(dir);
+		Assert.assertTrue(new File(dir, OffsetIndex.INDEX_FILE).exists());
+		try {
+			for (int i=expected.size()-1; i>=0; i--) {
+				Loan l = r.get(expected.get(i).get(Constants.LOAN_ID));
+				Assert.assertEquals(expected.get(i).loan, l.loan);
+				Assert.assertEquals(expected.get(i).installments, l.installments);
+				Assert.assertEquals(expected.get(i).history, l.history);
+			}
+			Assert.assertNull(r.get("no such loan"));
+		}
+		finally {
+			r.close();
+		}
+		
+		OffsetIndex index = OffsetIndex.load(dir);
+		Assert.assertNotNull(index);
+		Assert.assertEquals(LOANS, index.loanIds().size());
+		Assert.assertEquals(3, index.rowCount("3", OffsetIndex.INSTALLMENTS));
+		
+		// a truncated index is rebuilt like a stale one
+		File f = new File(dir, OffsetIndex.INDEX_FILE);
+		for (long length : new long[]{f.length() / 2, 6}) {
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			raf.setLength(length);
+			raf.close();
+			Assert.assertNull(OffsetIndex.load(dir));
+			Assert.assertEquals(3, OffsetIndex.open(dir).rowCount("3", OffsetIndex.INSTALLMENTS));
+		}
+		
+		write(Inspector.HISTORY_FILE, "loan_id,amount\n1,1.00\n");
+		Assert.assertTrue(index.isStale());
+		Assert.assertNull(OffsetIndex.load(dir));
+		Assert.assertEquals(1, OffsetIndex.open(dir).rowCount("1", OffsetIndex.HISTORY));
+	}
+	
+	@Test
+	public void sortMergeJoinSpillsAndMatchesHashJoin() throws IOException {
+		List<Loan> expected = read(new Reader.Options());
+		assertSame(expected, read(new Reader.Options().setJoin(Reader.Join.SORT_MERGE).setSortBufferSize(4 * 1024)));
+		assertSame(expected, read(new Reader.Options().setJoin(Reader.Join.SORT_MERGE).setMapped(true)));
+	}
+	
+	@Test
+	public void mergeJoinOverOrderedFiles() throws IOException {
+		StringBuilder loans = new StringBuilder("loan_id,amount\n");
+		StringBuilder installments = new StringBuilder("loan_id,amount\n");
+		StringBuilder history = new StringBuilder("loan_id,amount\n");
+		for (int i=1; i<=20; i++) {
+			loans.append(i).append(",").append(i).append("00.00\n");
+			for (int j=0; j<i % 3; j++) {
+				installments.append(i).append(",").append(j).append(".00\n");
+			}
+			history.append(i).append(",1.00\n");
+		}
+		history.append("21,1.00\n"); // no such loan
+		write(Inspector.LOANS_FILE, loans);
+		write(Inspector.INSTALLMENTS_FILE, installments);
+		write(Inspector.HISTORY_FILE, history);
+		
+		List<Loan> expected = read(new Reader.Options());
+		Assert.assertEquals(20, expected.size());
+		assertSame(expected, read(new Reader.Options().setJoin(Reader.Join.MERGE)));
+	}
+	
+	@Test(expected=RuntimeException.class)
+	public void mergeJoinRejectsUnorderedFiles() throws IOException {
+		read(new Reader.Options().setJoin(Reader.Join.MERGE));
+	}
+	
+	@Test
+	public void mergeJoinRejectsRowsHiddenAfterTheLastLoan() throws IOException {
+		write(Inspector.LOANS_FILE, "loan_id,amount\n1,100.00\n2,200.00\n");
+		write(Inspector.INSTALLMENTS_FILE, "loan_id,amount\n1,1.00\n9,9.00\n2,2.00\n");
+		write(Inspector.HISTORY_FILE, "loan_id,amount\n");
+		
+		int installments = 0;
+		for (Loan l : read(new Reader.Options())) {
+			installments += l.installments.size();
+		}
+		Assert.assertEquals(2, installments);
+		try {
+			read(new Reader.Options().setJoin(Reader.Join.MERGE));
+			Assert.fail();
+		}
+		catch (RuntimeException ex) {
+			Assert.assertTrue(ex.getMessage(), ex.getMessage().contains(Inspector.INSTALLMENTS_FILE));
+		}
+	}
+	
+	@Test
+	public void interningSharesRepeatedValues() throws IOException {
+		List<Loan> expected = read(new Reader.Options());
+		Reader.Options options = new Reader.Options().setInterning(true).setInternMaxValues(50);
+		List<Loan> interned = read(options);
+		assertSame(expected, interned);
+		assertSame(expected, read(options.setParallelism(3)));
+		
+		List<MapRecord> history = new ArrayList<MapRecord>();
+		for (Loan l : interned) history.addAll(l.history);
+		Assert.assertSame(history.get(0).get("action"), history.get(history.size() - 1).get("action"));
+		
+		Reader r = new Reader(dir, new Reader.Options().setInterning(true).setInternMaxValues(50));
+		try {
+			for (Loan l : r) l.history.size();
+			Assert.assertTrue(r.interner().dictionary("action").isInterning());
+			Assert.assertFalse(r.interner().dictionary("app:first_name").isInterning());
+			Assert.assertTrue(r.interner().hitRate() > 0);
+		}
+		finally {
+			r.close();
+		}
+	}
+	
+	@Test
+	public void projectionKeepsOnlySelectedColumns() throws IOException {
+		ColumnSelector columns = ColumnSelector.of("struct:", "amount");
+		List<Loan> expected = read(new Reader.Options());
+		for (Loan l : expected) {
+			project(l.loan, columns.and(Constants.LOAN_ID));
+			for (MapRecord r : l.installments) project(r, columns.and(Constants.LOAN_ID));
+			for (MapRecord r : l.history) project(r, columns.and(Constants.LOAN_ID));
+		}
+		assertSame(expected, read(new Reader.Options().setColumns(columns)));
+		assertSame(expected, read(new Reader.Options().setColumns(columns).setMapped(true)));
+		assertSame(expected, read(new Reader.Options().setColumns(columns).setParallelism(3)));
+		assertSame(expected, read(new Reader.Options().setColumns(columns).setLazy(true)));
+		assertSame(expected, read(new Reader.Options().setColumns(columns).setJoin(Reader.Join.SORT_MERGE)));
+		
+		for (boolean mapped : new boolean[]{false, true}) {
+			Inspector.RecordIterator itr = new Inspector(dir).setMapped(mapped).records(Inspector.HISTORY_FILE, columns);
+			try {
+				for (Record r : itr) {
+					Assert.assertEquals(Collections.singleton("amount"), r.keys());
+				}
+			}
+			finally {
+				itr.close();
+			}
+		}
+	}
+	
+	@Test
+	public void filterSkipsLoansAndTheirChildren() throws IOException {
+		RowPredicate filter = RowPredicate.and(
+				RowPredicate.between("struct:loan_amount", new BigDecimal("1000"), new BigDecimal("15000.5")),
+				RowPredicate.startsWith("app:first_name", "name 1"));
+		List<Loan> expected = new ArrayList<Loan>();
+		for (Loan l : read(new Reader.Options())) {
+			String name = l.get("app:first_name");
+			BigDecimal amount = new BigDecimal(l.get("struct:loan_amount"));
+			if (name.startsWith("name 1") && amount.compareTo(new BigDecimal("1000")) >= 0 && amount.compareTo(new BigDecimal("15000.5")) <= 0) {
+				expected.add(l);
+			}
+		}
+		Assert.assertEquals(53, expected.size());
+		
+		assertSame(expected, read(new Reader.Options().setFilter(filter)));
+		assertSame(expected, read(new Reader.Options().setFilter(filter).setMapped(true)));
+		assertSame(expected, read(new Reader.Options().setFilter(filter).setParallelism(3)));
+		assertSame(expected, read(new Reader.Options().setFilter(filter).setLazy(true)));
+		assertSame(expected, read(new Reader.Options().setFilter(filter).setJoin(Reader.Join.SORT_MERGE)));
+		
+		Assert.assertEquals(0, read(new Reader.Options().setFilter(RowPredicate.equalTo(Constants.LOAN_ID, "none"))).size());
+	}
+	
+	private static void project(MapRecord r, ColumnSelector columns) {
+		for (String k : new ArrayList<String>(r.keys())) {
+			if (!columns.selects(k)) r.del(k);
+		}
+	}
+	
+	@Test
+	public void loanIdOrder() {
+		String[] ids = {"2", "10", "010", "a", "B", "", "1"};
+		List<String> sorted = new ArrayList<String>(Arrays.asList(ids));
+		Collections.sort(sorted, Reader.LOAN_ID_ORDER);
+		Assert.assertEquals(Arrays.asList("1", "2", "010", "10", "", "B", "a"), sorted);
+	}
+	
+	private List<Loan> read(Reader.Options options) throws IOException {
+		Reader r = new Reader(dir, options);
+		List<Loan> loans = new ArrayList<Loan>();
+		try {
+			for (Loan l : r) {
+				loans.add(l);
+			}
+		}
+		finally {
+			r.close();
+		}
+		return loans;
+	}
+	
+	private static void assertSame(List<Loan> expected, List<Loan> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).loan, actual.get(i).loan);
+			Assert.assertEquals(expected.get(i).installments, actual.get(i).installments);
+			Assert.assertEquals(expected.get(i).history, actual.get(i).history);
+		}
+	}
+	
+	private void write(String name, CharSequence content) throws IOException {
+		OutputStream out = new FileOutputStream(new File(dir, name));
+		try {
+			out.write(content.toString().getBytes("UTF8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
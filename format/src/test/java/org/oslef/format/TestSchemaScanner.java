@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class TestSchemaScanner {
+	
+	private static final int LOANS = 3000;
+	
+	private File dir;
+	
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("oslef", "");
+		dir.delete();
+		dir.mkdir();
+		
+		StringBuilder loans = new StringBuilder("loan_id,loan_type,middle_initial,first_name,loan_amount\n");
+		StringBuilder installments = new StringBuilder("loan_id,due_date,due_amount\n");
+		StringBuilder history = new StringBuilder("loan_id,action,amount,account:fee\n");
+		for (int i=0; i<LOANS; i++) {
+			loans.append(i).append(",").append(i % 2 == 0 ? "PAYDAY" : "INSTALLMENT").append(", ,\"name ")
+				.append(i % 1000).append("\"");
+			loans.append(",");
+			if (i % 10 != 0) loans.append(i).append(".00");
+			loans.append("\n");
+			installments.append(i).append(",2011-02-01,").append(i).append(".00\n");
+			history.append(i).append(",PAY,1.00,\n");
+		}
+		write(Inspector.LOANS_FILE, loans);
+		write(Inspector.INSTALLMENTS_FILE, installments);
+		write(Inspector.HISTORY_FILE, history);
+	}
+	
+	@After
+	public void teardown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void sameColumnsAsConsideringLoans() throws IOException {
+		Schema expected = new Schema();
+		Reader r = new Reader(dir);
+		try {
+			for (Loan l : r) {
+				expected.consider(l);
+			}
+		}
+		finally {
+			r.close();
+		}
+		
+		for (int parallelism : new int[]{1, 3}) {
+			Schema actual = new SchemaScanner().setParallelism(parallelism).scan(dir);
+			Assert.assertEquals(new HashSet<String>(expected.loan()), new HashSet<String>(actual.loan()));
+			Assert.assertEquals(new HashSet<String>(expected.installmentPlan()), new HashSet<String>(actual.installmentPlan()));
+			Assert.assertEquals(new HashSet<String>(expected.history()), new HashSet<String>(actual.history()));
+			Assert.assertFalse(actual.loan().contains(Constants.APP_MIDDLE_INITIAL));
+			Assert.assertTrue(actual.installmentPlan().contains(Constants.LOAN_ID));
+		}
+		
+		Schema all = new SchemaScanner().setIncludeEmptyFields(true).scan(dir);
+		Assert.assertTrue(all.loan().contains(Constants.APP_MIDDLE_INITIAL));
+		Assert.assertTrue(all.history().contains("account:fee"));
+	}
+	
+	@Test
+	public void columnStats() throws IOException {
+		for (int parallelism : new int[]{1, 4}) {
+			Schema s = new SchemaScanner().setParallelism(parallelism).scan(dir);
+			
+			ColumnStats type = s.loanStats().get(Constants.STRUCT_TYPE);
+			Assert.assertEquals(LOANS, type.count());
+			Assert.assertEquals(0, type.nulls());
+			Assert.assertEquals("INSTALLMENT".length(), type.maxLength());
+			Assert.assertEquals(2, type.distinct());
+			
+			ColumnStats amount = s.loanStats().get(Constants.STRUCT_LOAN_AMOUNT);
+			Assert.assertEquals(LOANS / 10, amount.nulls());
+			Assert.assertEquals("2999.00".length(), amount.maxLength());
+			
+			Assert.assertEquals(LOANS, s.loanStats().get(Constants.APP_MIDDLE_INITIAL).nulls());
+			assertAbout(1000, s.loanStats().get(Constants.APP_FIRST_NAME).distinct());
+			assertAbout(LOANS, s.loanStats().get(Constants.LOAN_ID).distinct());
+			assertAbout(LOANS, s.installmentPlanStats().get("due_amount").distinct());
+			Assert.assertEquals(1, s.historyStats().get("action").distinct());
+		}
+	}
+	
+	@Test
+	public void mergeAddsMissingColumnsAndStats() throws IOException {
+		Schema s = new SchemaScanner().scan(dir);
+		Schema other = new Schema();
+		other.loan().add("struct:extra");
+		other.merge(s);
+		other.merge(s);
+		
+		List<String> loan = other.loan();
+		Assert.assertEquals("struct:extra", loan.get(0));
+		Assert.assertEquals(s.loan().size() + 1, loan.size());
+		Assert.assertEquals(LOANS * 2, other.loanStats().get(Constants.LOAN_ID).count());
+		Assert.assertEquals(s.loanStats().get(Constants.LOAN_ID).distinct(), other.loanStats().get(Constants.LOAN_ID).distinct());
+		
+		loan.remove("struct:extra");
+		Assert.assertFalse(loan.contains("struct:extra"));
+		loan.set(0, "struct:extra");
+		Assert.assertTrue(loan.contains("struct:extra"));
+	}
+	
+	private static void assertAbout(long expected, long actual) {
+		Assert.assertTrue("expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected * 0.05);
+	}
+	
+	private void write(String name, CharSequence content) throws IOException {
+		OutputStream out = new FileOutputStream(new File(dir, name));
+		try {
+			out.write(content.toString().getBytes("UTF8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
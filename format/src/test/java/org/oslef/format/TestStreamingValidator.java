@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.format;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oslef.format.Validator.LexicalProblem;
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemListener;
+import org.oslef.format.Validator.ProblemLocation;
+
+public final class TestStreamingValidator implements Constants {
+	
+	private File dir;
+	
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("oslef", "");
+		dir.delete();
+		dir.mkdir();
+		
+		write(Inspector.LOANS_FILE, 
+			LOAN_ID + "," + STRUCT_LOAN_AMOUNT + "," + APP_FIRST_NAME + "," + STRUCT_WHEN_EXECUTED + "\n" +
+			"1,100.00,\"multi\nline\",2011-02-07T16:29:54.778Z\n" +
+			"2,\"1,000.00\",name,2011-02-07T16:29:54.778Z\n");
+		write(Inspector.INSTALLMENTS_FILE, 
+			LOAN_ID + "," + INST_DUE_DATE + "," + INST_DUE_AMOUNT + "\r\n" +
+			"1,2011-02-01,10.00\r\n" +
+			"1,2011-13-01,10.00\r\n" +
+			"2,2011-02-01,\r\n");
+		write(Inspector.HISTORY_FILE, 
+			LOAN_ID + "," + HIST_ACTION + "," + HIST_WHEN_HAPPENED + "," + HIST_AMOUNT + "\n" +
+			"2,NOPE,2011-02-07T16:29:54.778Z,1.00\n");
+	}
+	
+	@After
+	public void teardown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void reportsFileLineAndColumn() throws IOException {
+		final List<LexicalProblem> problems = new ArrayList<LexicalProblem>();
+		long rows = new StreamingValidator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				problems.add((LexicalProblem) p);
+			}
+		}).validate(dir);
+		
+		Assert.assertEquals(6, rows);
+		Assert.assertEquals(4, problems.size());
+		assertProblem(problems.get(0), Inspector.LOANS_FILE, 4, 2, "2", ProblemLocation.LOAN, -1);
+		assertProblem(problems.get(1), Inspector.INSTALLMENTS_FILE, 3, 2, "1", ProblemLocation.INSTALLMENT, 1);
+		assertProblem(problems.get(2), Inspector.INSTALLMENTS_FILE, 4, 3, "2", ProblemLocation.INSTALLMENT, 0);
+		assertProblem(problems.get(3), Inspector.HISTORY_FILE, 2, 2, "2", ProblemLocation.HISTORY, 0);
+	}
+	
+	@Test
+	public void sameProblemsAsLoadedLoans() throws IOException {
+		final List<String> expected = new ArrayList<String>();
+		Validator v = new Validator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				LexicalProblem lp = (LexicalProblem) p;
+				expected.add(lp.location + " " + lp.index + " " + lp.description);
+			}
+		});
+		Reader r = new Reader(dir);
+		for (Loan l : r) {
+			v.validate(l);
+		}
+		r.close();
+		
+		final List<String> actual = new ArrayList<String>();
+		new StreamingValidator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				LexicalProblem lp = (LexicalProblem) p;
+				actual.add(lp.location + " " + lp.index + " " + lp.description);
+			}
+		}).validate(dir);
+		
+		Collections.sort(expected);
+		Collections.sort(actual);
+		Assert.assertEquals(expected, actual);
+	}
+	
+	private static void assertProblem(LexicalProblem p, String file, long line, int column, String loanId, ProblemLocation location, int index) {
+		String where = p.file + ":" + p.line + ":" + p.column + " " + p.description;
+		Assert.assertEquals(where, file, p.file);
+		Assert.assertEquals(where, line, p.line);
+		Assert.assertEquals(where, column, p.column);
+		Assert.assertEquals(where, loanId, p.loanId);
+		Assert.assertEquals(where, location, p.location);
+		Assert.assertEquals(where, index, p.index);
+	}
+	
+	private void write(String name, CharSequence content) throws IOException {
+		OutputStream out = new FileOutputStream(new File(dir, name));
+		try {
+			out.write(content.toString().getBytes("UTF8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -38,6 +38,7 @@
 package org.oslef.format;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import junit.framework.Assert;
@@ -55,6 +56,7 @@ import org.oslef.format.Validator.LexicalProblem;
 import org.oslef.format.Validator.Problem;
 import org.oslef.format.Validator.ProblemListener;
 import org.oslef.format.Validator.ProblemLocation;
+import org.oslef.format.Validator.Severity;
 
 
 public final class TestValidator implements Constants {
@@ -219,6 +221,231 @@ public final class TestValidator implements Constants {
 //		print(problems);
 	}
 	
+	@Test
+	public void compiledRowsMatchRecords() {
+		MapRecord loan = new MapRecord();
+		loan.put(APP_SSN, "23434234");
+		loan.put(APP_DATE_OF_BIRTH, "1810-02-01");
+		loan.put(APP_PHONE_PREFIX + "default", "23423423444");
+		loan.put(APP_PHONE_PREFIX + "work", "2342342342");
+		loan.put(STRUCT_LOAN_AMOUNT, "(100.00)");
+		loan.put(APP_FIRST_NAME, "First");
+		
+		Loan l = new Loan();
+		l.loan = loan;
+		v.validate(l);
+		List<String> expected = describe(problems);
+		Assert.assertEquals(6, expected.size());
+		problems.clear();
+		
+		List<String> columns = new ArrayList<String>(loan.keySet());
+		columns.add("unknown");
+		columns.add(LOAN_ID);
+		String[] values = new String[columns.size()];
+		for (int i=0; i<values.length; i++) {
+			values[i] = loan.get(columns.get(i));
+			if (values[i] == null) values[i] = " ";
+		}
+		v.compile(ProblemLocation.LOAN, columns).validate(values, -1);
+		Assert.assertEquals(expected, describe(problems));
+	}
+	
+	@Test
+	public void selectiveListenerSkipsUnwantedProblems() {
+		final List<Problem> errors = new ArrayList<Problem>();
+		Validator sv = new Validator(new Validator.SelectiveListener() {
+			public boolean wants(Severity severity) {
+				return severity == Severity.ERROR;
+			}
+			public void problemEncountered(Problem p) {
+				errors.add(p);
+			}
+		});
+		Loan l = new Loan()
+		.put(LOAN_ID, "1")
+		.put(STRUCT_LOAN_AMOUNT, "100.00")
+		.put(STRUCT_WHEN_EXECUTED, "1811-02-07T16:29:54.778Z") // a warning
+		.put(APP_SSN, "1"); // an error
+		sv.validate(l);
+		Assert.assertEquals(1, errors.size());
+		Assert.assertEquals(APP_SSN, ((LexicalProblem)errors.get(0)).fieldName);
+	}
+	
+	@Test
+	public void batchMatchesSequential() {
+		List<Loan> loans = new ArrayList<Loan>();
+		for (int i=0; i<1000; i++) {
+			Loan l = new Loan()
+			.put(LOAN_ID, Integer.toString(i))
+			.put(STRUCT_LOAN_AMOUNT, i % 3 == 0 ? "bad" : "100.00")
+			.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z");
+			if (i % 7 == 0) l.put(APP_SSN, "1");
+			loans.add(l);
+		}
+		
+		List<String> expected = new ArrayList<String>();
+		for (Loan l : loans) {
+			problems.clear();
+			v.validate(l);
+			for (Problem p : problems) {
+				expected.add(l.get(LOAN_ID) + " " + p.description);
+			}
+		}
+		
+		final List<String> actual = new ArrayList<String>();
+		final List<Long> indices = new ArrayList<Long>();
+		new BatchValidator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				actual.add(p.loanId + " " + p.description);
+				indices.add(p.loanIndex);
+			}
+		}, 4).validate(loans);
+		
+		Assert.assertEquals(expected, actual);
+		for (int i=0; i<indices.size(); i++) {
+			Assert.assertEquals(actual.get(i).substring(0, actual.get(i).indexOf(' ')), indices.get(i).toString());
+		}
+	}
+	
+	@Test
+	public void batchAsksSelectiveListener() {
+		List<Loan> loans = new ArrayList<Loan>();
+		for (int i=0; i<300; i++) {
+			loans.add(new Loan()
+			.put(LOAN_ID, Integer.toString(i))
+			.put(STRUCT_LOAN_AMOUNT, "100.00")
+			.put(STRUCT_WHEN_EXECUTED, "1811-02-07T16:29:54.778Z") // a warning
+			.put(APP_SSN, "1")); // an error
+		}
+		
+		final List<Problem> errors = new ArrayList<Problem>();
+		final int[] asked = new int[1];
+		new BatchValidator(new Validator.SelectiveListener() {
+			public boolean wants(Severity severity) {
+				synchronized (asked) {
+					asked[0]++;
+				}
+				return severity == Severity.ERROR;
+			}
+			public void problemEncountered(Problem p) {
+				errors.add(p);
+			}
+		}, 3).validate(loans);
+		
+		Assert.assertTrue(asked[0] > 0);
+		Assert.assertEquals(loans.size(), errors.size());
+		for (Problem p : errors) {
+			Assert.assertEquals(Severity.ERROR, p.severity);
+			Assert.assertEquals(APP_SSN, ((LexicalProblem)p).fieldName);
+		}
+	}
+	
+	@Test
+	public void scannersMatchRegexes() {
+		String[] values = {
+			"1", "12", "1234", "12345", "123456789", "0123456789", "012345678", "1234567890 ", "\u0663\u0663",
+			"-1", "-1.5", "1.", ".5", "-", "1.2.3", "10,00", "-.5",
+			"tn", "TN", "Tn", "tnx", "TN123", "tn-12", "zz", "DC9", "FG", "t",
+			"male", "FEMALE", "FEMALE ", "weekly", "BiWeekly", "B\u0131WEEKLY", "draw", "write_off", "true", "True", "false",
+			"2011-02-07", "2011-13-07", "2011-02-00", "0011-02-07", "2011-2-07", "20110207", "2011-02-07x",
+			"2011-02-07T16:29:54.778Z", "1811-02-07T24:29:54.778Z", "2011-02-07T16:60:54.778Z", "2011-02-07T16:29:54.77Z", "2011-02-07 16:29:54.778Z"
+		};
+		String[] loanFields = {
+			APP_SSN, APP_DATE_OF_BIRTH, APP_DRIVERS_LICENSE_NUMBER, APP_HEIGHT_INCHES, APP_GENDER, APP_PHONE_PREFIX + "home", 
+			APP_RES_STATE_PREFIX + "home", APP_RES_ZIP5_PREFIX + "home", APP_RES_ZIP4_PREFIX + "home", APP_INC_PAY_FREQUENCY_PREFIX + "job", 
+			APP_INC_AMOUNT_PREFIX + "job", APP_INC_NEXT_PAY_DATE_PREFIX + "job", APP_INC_HAS_DIRECT_DEPOSIT_PREFIX + "job", 
+			STRUCT_WHEN_EXECUTED, STRUCT_LOAN_AMOUNT, TA_CHECK_ROUTING_NUMBER_PREFIX + "check"
+		};
+		
+		Validator regex = new Validator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				problems.add(p);
+			}
+		}, Validator.Engine.REGEX);
+		
+		for (String value : values) {
+			Loan l = new Loan().put(LOAN_ID, "1");
+			for (String k : loanFields) {
+				l.put(k, value);
+			}
+			MapRecord i = new MapRecord();
+			i.put(INST_DUE_DATE, value);
+			i.put(INST_DUE_AMOUNT, value);
+			l.installments.add(i);
+			MapRecord h = new MapRecord();
+			h.put(HIST_ACTION, value);
+			h.put(HIST_WHEN_HAPPENED, value);
+			h.put(HIST_AMOUNT, value);
+			l.history.add(h);
+			
+			problems.clear();
+			regex.validate(l);
+			List<String> expected = describe(problems);
+			
+			problems.clear();
+			v.validate(l);
+			Assert.assertEquals("'" + value + "'", expected, describe(problems));
+		}
+	}
+	
+	@Test
+	public void identicalRecordsKeepTheirOwnIndex() {
+		Loan l = new Loan()
+		.put(LOAN_ID, "1")
+		.put(STRUCT_LOAN_AMOUNT, "100.00")
+		.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z");
+		for (int i=0; i<10000; i++) {
+			MapRecord h = new MapRecord();
+			h.put(HIST_ACTION, "PAYMENT");
+			h.put(HIST_WHEN_HAPPENED, "2011-02-07T16:29:54.778Z");
+			h.put(HIST_AMOUNT, "1,000.00");
+			l.history.add(h);
+		}
+		
+		v.validate(l);
+		assertProblems(l.history.size());
+		for (int i=0; i<problems.size(); i++) {
+			Assert.assertEquals(i, ((LexicalProblem)problems.get(i)).index);
+		}
+	}
+	
+	@Test
+	public void batchRunsStagesAfterLexicalValidation() {
+		List<Loan> loans = new ArrayList<Loan>();
+		for (int i=0; i<300; i++) {
+			loans.add(new Loan()
+			.put(LOAN_ID, Integer.toString(i))
+			.put(STRUCT_LOAN_AMOUNT, "bad")
+			.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z"));
+		}
+		
+		final List<String> actual = new ArrayList<String>();
+		new BatchValidator(new ProblemListener() {
+			public void problemEncountered(Problem p) {
+				actual.add(p.loanId + " " + p.severity);
+			}
+		}, 3).add(new BatchValidator.Stage() {
+			public void validate(Loan loan, ProblemListener l) {
+				l.problemEncountered(new Problem(Severity.WARNING, "stage"));
+			}
+		}).validate(loans);
+		
+		Assert.assertEquals(loans.size() * 2, actual.size());
+		for (int i=0; i<loans.size(); i++) {
+			Assert.assertEquals(i + " " + Severity.ERROR, actual.get(i * 2));
+			Assert.assertEquals(i + " " + Severity.WARNING, actual.get(i * 2 + 1));
+		}
+	}
+	
+	private static List<String> describe(List<Problem> problems) {
+		List<String> d = new ArrayList<String>();
+		for (Problem p : problems) {
+			d.add(p.severity + " " + ((LexicalProblem)p).fieldName + " " + p.description);
+		}
+		Collections.sort(d);
+		return d;
+	}
+	
 	private LexicalProblem forLoan(String fieldName) {
 		return problemWith(ProblemLocation.LOAN, -1, fieldName);
 	}
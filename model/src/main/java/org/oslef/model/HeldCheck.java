@@ -47,4 +47,10 @@ public final class HeldCheck implements FundsTransferAuth {
 	public String checkNumber;
 	public BigDecimal amount;
 	public SimpleYMD date;
+	
+	/**
+	 * Filled instead of {@link #amount} when parsed with 
+	 * {@link Translator.Amounts#MONEY}.
+	 */
+	public Money amountMoney;
 }
\ No newline at end of file
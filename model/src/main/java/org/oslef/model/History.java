@@ -69,4 +69,11 @@ public final class History {
 	public SimpleInstant whenVoided;
 	public BigDecimal amount;
 	public Map<String, BigDecimal> accounts;
+	
+	/**
+	 * Filled instead of {@link #amount} and {@link #accounts} when parsed with
+	 * {@link Translator.Amounts#MONEY}.
+	 */
+	public Money amountMoney;
+	public Map<String, Money> accountsMoney;
 }
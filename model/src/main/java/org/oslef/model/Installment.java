@@ -45,4 +45,11 @@ public final class Installment {
 	public SimpleYMD dueDate;
 	public BigDecimal amount;
 	public Map<String, BigDecimal> accounts;
+	
+	/**
+	 * Filled instead of {@link #amount} and {@link #accounts} when parsed with
+	 * {@link Translator.Amounts#MONEY}.
+	 */
+	public Money amountMoney;
+	public Map<String, Money> accountsMoney;
 }
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import java.math.BigDecimal;
+
+/**
+ * An exact amount of money held as a whole number of cents. Cheaper to parse,
+ * compare and add than {@link BigDecimal}, and every operation either gives 
+ * the exact answer or throws {@link ArithmeticException}: amounts that are 
+ * not a whole number of cents are refused rather than rounded, and sums that
+ * overflow a long are refused rather than wrapped.
+ * 
+ * The static methods work on plain cents, for totals that are kept in a 
+ * long and never need an object.
+ */
+public final class Money implements Comparable<Money> {
+	
+	public static final Money ZERO = new Money(0);
+	
+	private final long cents;
+	
+	private Money(long cents) {
+		this.cents = cents;
+	}
+	
+	public static Money ofCents(long cents) {
+		return cents == 0 ? ZERO : new Money(cents);
+	}
+	
+	/**
+	 * Reads an amount in the OSLEF format, (-)?([0-9]+)(\.[0-9]+)?, e.g. 
+	 * "1500", "-10.5" or "0.25".
+	 * 
+	 * @throws NumberFormatException if the amount is not in that format
+	 * @throws ArithmeticException if the amount is not a whole number of cents
+	 * or is too large
+	 */
+	public static Money parse(String s) {
+		return ofCents(parseCents(s));
+	}
+	
+	/**
+	 * @see #parse(String)
+	 */
+	public static long parseCents(CharSequence s) {
+		int length = s.length();
+		int i = 0;
+		boolean negative = false;
+		if (i < length && s.charAt(i) == '-') {
+			negative = true;
+			i++;
+		}
+		
+		// accumulate negatively so that Long.MIN_VALUE cents can be read
+		long cents = 0;
+		int start = i;
+		for (; i < length && s.charAt(i) != '.'; i++) {
+			cents = subtract(multiply10(cents, s), digit(s, i));
+		}
+		if (i == start) throw new NumberFormatException("Not an amount: " + s);
+		
+		int fraction = 0;
+		if (i < length) {
+			i++; // the '.'
+			if (i == length) throw new NumberFormatException("Not an amount: " + s);
+			for (; i < length; i++) {
+				int d = digit(s, i);
+				if (fraction < 2) cents = subtract(multiply10(cents, s), d);
+				else if (d != 0) throw new ArithmeticException("Not a whole number of cents: " + s);
+				fraction++;
+			}
+		}
+		for (; fraction < 2; fraction++) {
+			cents = multiply10(cents, s);
+		}
+		
+		if (negative) return cents;
+		if (cents == Long.MIN_VALUE) throw new ArithmeticException("Amount too large: " + s);
+		return -cents;
+	}
+	
+	public long cents() {
+		return cents;
+	}
+	
+	public int signum() {
+		return cents > 0 ? 1 : cents < 0 ? -1 : 0;
+	}
+	
+	public Money plus(Money m) {
+		return ofCents(add(cents, m.cents));
+	}
+	
+	public Money minus(Money m) {
+		return ofCents(subtract(cents, m.cents));
+	}
+	
+	public Money negate() {
+		return ofCents(subtract(0, cents));
+	}
+	
+	/**
+	 * @throws ArithmeticException if the sum overflows
+	 */
+	public static long add(long a, long b) {
+		long r = a + b;
+		if (((a ^ r) & (b ^ r)) < 0) throw new ArithmeticException("Overflow adding " + a + " and " + b + " cents");
+		return r;
+	}
+	
+	/**
+	 * @throws ArithmeticException if the difference overflows
+	 */
+	public static long subtract(long a, long b) {
+		long r = a - b;
+		if (((a ^ b) & (a ^ r)) < 0) throw new ArithmeticException("Overflow subtracting " + b + " from " + a + " cents");
+		return r;
+	}
+	
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(cents, 2);
+	}
+	
+	public int compareTo(Money m) {
+		return cents < m.cents ? -1 : cents > m.cents ? 1 : 0;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Money && ((Money) o).cents == cents;
+	}
+	
+	@Override
+	public int hashCode() {
+		return (int) (cents ^ (cents >>> 32));
+	}
+	
+	/**
+	 * @return the amount with two decimal places, e.g. "-10.50".
+	 */
+	@Override
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+	
+	private static int digit(CharSequence s, int i) {
+		char c = s.charAt(i);
+		if (c < '0' || c > '9') throw new NumberFormatException("Not an amount: " + s);
+		return c - '0';
+	}
+	
+	private static long multiply10(long negativeCents, CharSequence s) {
+		if (negativeCents < Long.MIN_VALUE / 10) throw new ArithmeticException("Amount too large: " + s);
+		return negativeCents * 10;
+	}
+}
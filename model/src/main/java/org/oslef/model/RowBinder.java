@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.oslef.csv.table.HeaderCache;
+import org.oslef.csv.table.HeaderInfo;
+import org.oslef.csv.table.Row;
+import org.oslef.format.Constants;
+import org.oslef.format.Loan;
+import org.oslef.model.Application.Income;
+import org.oslef.model.Application.Reference;
+import org.oslef.model.Application.UsaAddress;
+import org.oslef.model.History.HistoryAction;
+import org.oslef.model.Translator.Amounts;
+import org.oslef.model.Translator.Column;
+import org.oslef.model.Translator.Field;
+
+/**
+ * Fills a {@link LoanModel} straight from the csv rows of a loan, for jobs that
+ * only ever look at the typed model. The result is the same as reading the 
+ * rows into a {@link Loan} and handing it to {@link Translator#parse(Loan)}, 
+ * without first copying every value into a map.
+ * 
+ * Which column sets which field is worked out once per header and reused for
+ * every row that shares it. A binder can be shared between threads.
+ */
+public final class RowBinder implements Constants {
+	
+	private final boolean money;
+	
+	private final HeaderCache<LoanPlan> loanPlans = new HeaderCache<LoanPlan>() {
+		@Override
+		protected LoanPlan resolve(HeaderInfo info) {
+			return new LoanPlan(info);
+		}
+	};
+	private final HeaderCache<ChildPlan> installmentPlans = new HeaderCache<ChildPlan>() {
+		@Override
+		protected ChildPlan resolve(HeaderInfo info) {
+			return new ChildPlan(info, INST_DUE_DATE, INST_DUE_AMOUNT, null, null, INST_ACCOUNT_PREFIX);
+		}
+	};
+	private final HeaderCache<ChildPlan> historyPlans = new HeaderCache<ChildPlan>() {
+		@Override
+		protected ChildPlan resolve(HeaderInfo info) {
+			return new ChildPlan(info, HIST_WHEN_HAPPENED, HIST_AMOUNT, HIST_ACTION, HIST_WHEN_VOIDED, HIST_ACCOUNT_PREFIX);
+		}
+	};
+	
+	public RowBinder() {
+		this(Amounts.DECIMAL);
+	}
+	
+	public RowBinder(Amounts amounts) {
+		if (amounts == null) throw new NullPointerException();
+		this.money = amounts == Amounts.MONEY;
+	}
+	
+	public LoanModel bind(Row loan, List<Row> installments, List<Row> history) {
+		return bind(loan, installments, history, null);
+	}
+	
+	/**
+	 * @param loan the loan's row from loans.csv
+	 * @param installments its rows from installments.csv, in file order, or 
+	 * null if it has none
+	 * @param history its rows from history.csv, in file order, or null if it
+	 * has none
+	 */
+	public LoanModel bind(Row loan, List<Row> installments, List<Row> history, LoanModel target) {
+		
+		if (loan == null) throw new NullPointerException();
+		if (target == null) target = new LoanModel();
+		if (installments == null) installments = Collections.emptyList();
+		if (history == null) history = Collections.emptyList();
+		
+		LoanPlan plan = loanPlans.get(loan.header());
+		
+		Application app = new Application();
+		app.phoneNumbers = new HashMap<String, String>();
+		app.residences = new HashMap<String, UsaAddress>();
+		app.references = new HashMap<String, Reference>();
+		app.incomes = new HashMap<String, Income>();
+		
+		Structure struct = new Structure();
+		struct.type = value(loan, plan.type);
+		struct.whenExecuted = new SimpleInstant(value(loan, plan.whenExecuted));
+		if (money) struct.loanAmountMoney = Money.parse(value(loan, plan.loanAmount));
+		else struct.loanAmount = new BigDecimal(value(loan, plan.loanAmount));
+		struct.financedFees = new HashMap<String, BigDecimal>();
+		struct.financedFeesMoney = new HashMap<String, Money>();
+		struct.installmentPlan = new ArrayList<Installment>();
+		
+		Map<String, HeldCheck> heldChecks = new HashMap<String, HeldCheck>();
+		Map<String, VehicleTitle> vehicleTitles = new HashMap<String, VehicleTitle>();
+		
+		for (int i=0; i<plan.columns.length; i++) {
+			String value = value(loan, plan.indexes[i]);
+			if (value != null) Translator.set(plan.columns[i], value, app, struct, heldChecks, vehicleTitles, money);
+		}
+		
+		if (!installments.isEmpty()) {
+			ChildPlan p = installmentPlans.get(installments.get(0).header());
+			for (Row r : installments) {
+				if (r.header() != p.info) p = installmentPlans.get(r.header());
+				
+				Installment i = new Installment();
+				i.dueDate = new SimpleYMD(value(r, p.date));
+				if (money) i.amountMoney = Money.parse(value(r, p.amount));
+				else i.amount = new BigDecimal(value(r, p.amount));
+				i.accounts = new HashMap<String, BigDecimal>();
+				i.accountsMoney = new HashMap<String, Money>();
+				accounts(r, p, i.accounts, i.accountsMoney);
+				
+				struct.installmentPlan.add(i);
+			}
+		}
+		
+		List<History> hist = new ArrayList<History>();
+		if (!history.isEmpty()) {
+			ChildPlan p = historyPlans.get(history.get(0).header());
+			for (Row r : history) {
+				if (r.header() != p.info) p = historyPlans.get(r.header());
+				
+				History h = new History();
+				h.action = HistoryAction.valueOf(value(r, p.action).toUpperCase());
+				if (money) h.amountMoney = Money.parse(value(r, p.amount));
+				else h.amount = new BigDecimal(value(r, p.amount));
+				h.whenHappened = new SimpleInstant(value(r, p.date));
+				String voided = value(r, p.voided);
+				if (voided != null) h.whenVoided = new SimpleInstant(voided);
+				h.accounts = new HashMap<String, BigDecimal>();
+				h.accountsMoney = new HashMap<String, Money>();
+				accounts(r, p, h.accounts, h.accountsMoney);
+				
+				hist.add(h);
+			}
+		}
+		
+		target.id = value(loan, plan.id);
+		target.app = app;
+		target.struct = struct;
+		target.heldChecks = heldChecks;
+		target.vehicleTitles = vehicleTitles;
+		target.history = hist;
+		
+		return target;
+	}
+	
+	private void accounts(Row r, ChildPlan p, Map<String, BigDecimal> decimals, Map<String, Money> amounts) {
+		for (int i=0; i<p.accounts.length; i++) {
+			String value = value(r, p.accounts[i]);
+			if (value == null) continue;
+			if (money) amounts.put(p.names[i], Money.parse(value));
+			else decimals.put(p.names[i], new BigDecimal(value));
+		}
+	}
+	
+	/**
+	 * @return the value at index, or null if the column is missing (index -1)
+	 * or blank, just as a {@link Loan} record would have it.
+	 */
+	private static String value(Row row, int index) {
+		if (index == -1) return null;
+		String v = row.get(index);
+		if (v == null || v.trim().length() == 0) return null;
+		return v;
+	}
+	
+	private static int indexOf(HeaderInfo info, String column) {
+		return info.contains(column) ? info.indexOf(column) : -1;
+	}
+	
+	/**
+	 * Where a loans.csv header keeps the columns {@link Translator} reads 
+	 * directly, and the fields its other columns set.
+	 */
+	private static final class LoanPlan {
+		final HeaderInfo info;
+		final int id;
+		final int type;
+		final int whenExecuted;
+		final int loanAmount;
+		final int[] indexes;
+		final Column[] columns;
+		
+		LoanPlan(HeaderInfo info) {
+			this.info = info;
+			id = indexOf(info, LOAN_ID);
+			type = indexOf(info, STRUCT_TYPE);
+			whenExecuted = indexOf(info, STRUCT_WHEN_EXECUTED);
+			loanAmount = indexOf(info, STRUCT_LOAN_AMOUNT);
+			
+			List<String> names = info.columns();
+			List<Integer> found = new ArrayList<Integer>();
+			List<Column> mapped = new ArrayList<Column>();
+			for (int i=0; i<names.size(); i++) {
+				Column c = Translator.column(names.get(i));
+				if (c.field == Field.NONE) continue;
+				found.add(i);
+				mapped.add(c);
+			}
+			indexes = new int[found.size()];
+			for (int i=0; i<indexes.length; i++) indexes[i] = found.get(i);
+			columns = mapped.toArray(new Column[mapped.size()]);
+		}
+	}
+	
+	/**
+	 * Where an installments.csv or history.csv header keeps its columns. 
+	 * Installments have no action or voided date, so those are always -1.
+	 */
+	private static final class ChildPlan {
+		final HeaderInfo info;
+		final int date;
+		final int amount;
+		final int action;
+		final int voided;
+		final int[] accounts;
+		final String[] names;
+		
+		ChildPlan(HeaderInfo info, String date, String amount, String action, String voided, String accountPrefix) {
+			this.info = info;
+			this.date = indexOf(info, date);
+			this.amount = indexOf(info, amount);
+			this.action = action == null ? -1 : indexOf(info, action);
+			this.voided = voided == null ? -1 : indexOf(info, voided);
+			
+			List<String> columns = info.columns();
+			List<Integer> found = new ArrayList<Integer>();
+			for (int i=0; i<columns.size(); i++) {
+				if (columns.get(i).startsWith(accountPrefix)) found.add(i);
+			}
+			accounts = new int[found.size()];
+			names = new String[found.size()];
+			for (int i=0; i<accounts.length; i++) {
+				accounts[i] = found.get(i);
+				names[i] = columns.get(accounts[i]).substring(accountPrefix.length());
+			}
+		}
+	}
+}
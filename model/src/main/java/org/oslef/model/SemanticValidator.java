@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.oslef.format.BatchValidator;
+import org.oslef.format.Loan;
+import org.oslef.format.Validator;
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemListener;
+import org.oslef.format.Validator.ProblemLocation;
+import org.oslef.format.Validator.SelectiveListener;
+import org.oslef.format.Validator.Severity;
+import org.oslef.model.History.HistoryAction;
+
+/**
+ * Checks that the records of a loan agree with each other, where 
+ * {@link Validator} only checks that each field is well formed:
+ * 
+ * <ul>
+ * <li>installment and history sub-account amounts add up to their totals</li>
+ * <li>installments fall due in order, after the loan was executed</li>
+ * <li>history happens in order, after the loan was executed, and is voided 
+ * after it happened</li>
+ * <li>the installment plan covers the loan amount, and no more than the loan
+ * amount is drawn</li>
+ * </ul>
+ * 
+ * Amounts are read from the {@link BigDecimal} fields, or from the 
+ * {@link Money} ones for a model parsed with 
+ * {@link Translator.Amounts#MONEY}, which are totalled in cents.
+ * 
+ * Each list is walked once, keeping running totals as it goes. A validator
+ * keeps no state between loans, so one instance can be shared by threads that
+ * share a thread-safe listener; see {@link #stage()} for running it on a 
+ * {@link BatchValidator}.
+ */
+public final class SemanticValidator {
+	
+	public static class SemanticProblem extends Problem {
+		
+		/**
+		 * Indicates which record the problem was found in.
+		 */
+		public ProblemLocation location;
+		
+		/**
+		 * For problems with the loan as a whole, this is -1. Otherwise it is
+		 * the position of the installment or history record in question.
+		 */
+		public int index;
+		
+		public SemanticProblem() {}
+		
+		public SemanticProblem(Severity severity, String description) {
+			super(severity, description);
+		}
+	}
+	
+	/**
+	 * @return a stage that translates each loan to a {@link LoanModel} and 
+	 * validates it. A loan that can't be translated (nearly always because of
+	 * a field the lexical validation has already reported) isn't checked;
+	 * a warning saying so is reported in its place.
+	 */
+	public static BatchValidator.Stage stage() {
+		return new BatchValidator.Stage() {
+			public void validate(Loan loan, ProblemListener l) {
+				LoanModel model;
+				try {
+					model = Translator.parse(loan);
+				}
+				catch (RuntimeException ex) {
+					if (wants(l, Severity.WARNING)) {
+						SemanticProblem p = new SemanticProblem(Severity.WARNING, "Loan could not be translated, so was not checked: " + ex);
+						p.location = ProblemLocation.LOAN;
+						p.index = -1;
+						l.problemEncountered(p);
+					}
+					return;
+				}
+				new SemanticValidator(l).validate(model);
+			}
+		};
+	}
+	
+	private final ProblemListener l;
+	
+	public SemanticValidator(ProblemListener l) {
+		if (l == null) throw new NullPointerException();
+		this.l = l;
+	}
+	
+	public void validate(LoanModel loan) {
+		Structure struct = loan.struct;
+		if (struct == null) {
+			if (wants(Severity.ERROR)) report(Severity.ERROR, ProblemLocation.LOAN, -1, "Loan has no structure");
+			return;
+		}
+		
+		if (struct.loanAmount != null && struct.loanAmount.signum() <= 0) {
+			if (wants(Severity.ERROR)) report(Severity.ERROR, ProblemLocation.LOAN, -1, "Loan amount " + struct.loanAmount + " must be positive");
+		}
+		if (struct.loanAmountMoney != null && struct.loanAmountMoney.signum() <= 0) {
+			if (wants(Severity.ERROR)) report(Severity.ERROR, ProblemLocation.LOAN, -1, "Loan amount " + struct.loanAmountMoney + " must be positive");
+		}
+		
+		int executed = struct.whenExecuted == null ? 0 : ymd(struct.whenExecuted.toDateTime(DateTimeZone.UTC));
+		long executedMillis = struct.whenExecuted == null ? Long.MIN_VALUE : struct.whenExecuted.getMillis();
+		
+		validateInstallments(struct, executed);
+		validateHistory(loan.history, struct, executedMillis);
+	}
+	
+	private void validateInstallments(Structure struct, int executed) {
+		List<Installment> plan = struct.installmentPlan;
+		if (plan == null || plan.isEmpty()) return;
+		
+		BigDecimal total = BigDecimal.ZERO;
+		long totalCents = 0;
+		int previousDue = 0;
+		for (int i=0, n=plan.size(); i<n; i++) {
+			Installment inst = plan.get(i);
+			
+			if (inst.amount != null) {
+				total = total.add(inst.amount);
+				checkAccounts(inst.accounts, inst.amount, ProblemLocation.INSTALLMENT, i, "due amount");
+			}
+			if (inst.amountMoney != null) {
+				totalCents = add(totalCents, inst.amountMoney.cents());
+				checkMoneyAccounts(inst.accountsMoney, inst.amountMoney, ProblemLocation.INSTALLMENT, i, "due amount");
+			}
+			
+			if (inst.dueDate != null) {
+				int due = ymd(inst.dueDate);
+				if (i == 0 && executed != 0 && due < executed) {
+					if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.INSTALLMENT, i, "Installment is due on " + inst.dueDate + ", before the loan was executed");
+				}
+				if (previousDue != 0 && due <= previousDue) {
+					if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.INSTALLMENT, i, "Installment is due on " + inst.dueDate + ", not after the previous installment");
+				}
+				previousDue = due;
+			}
+		}
+		
+		if (struct.loanAmount != null && total.compareTo(struct.loanAmount) < 0) {
+			if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.LOAN, -1, "Installments add up to " + total + ", less than the loan amount " + struct.loanAmount);
+		}
+		if (struct.loanAmountMoney != null && totalCents < struct.loanAmountMoney.cents()) {
+			if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.LOAN, -1, "Installments add up to " + Money.ofCents(totalCents) + ", less than the loan amount " + struct.loanAmountMoney);
+		}
+	}
+	
+	private void validateHistory(List<History> history, Structure struct, long executed) {
+		if (history == null || history.isEmpty()) return;
+		
+		BigDecimal drawn = BigDecimal.ZERO;
+		long drawnCents = 0;
+		boolean anyDraw = false;
+		long previous = Long.MIN_VALUE;
+		for (int i=0, n=history.size(); i<n; i++) {
+			History h = history.get(i);
+			
+			if (h.amount != null) {
+				checkAccounts(h.accounts, h.amount, ProblemLocation.HISTORY, i, "amount");
+			}
+			if (h.amountMoney != null) {
+				checkMoneyAccounts(h.accountsMoney, h.amountMoney, ProblemLocation.HISTORY, i, "amount");
+			}
+			
+			if (h.whenHappened != null) {
+				long happened = h.whenHappened.getMillis();
+				if (happened < executed) {
+					if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.HISTORY, i, "Happened at " + h.whenHappened + ", before the loan was executed");
+				}
+				if (happened < previous) {
+					if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.HISTORY, i, "Happened at " + h.whenHappened + ", before the previous event");
+				}
+				previous = happened;
+				
+				if (h.whenVoided != null && h.whenVoided.getMillis() < happened) {
+					if (wants(Severity.ERROR)) report(Severity.ERROR, ProblemLocation.HISTORY, i, "Voided at " + h.whenVoided + ", before it happened");
+				}
+			}
+			
+			if (h.action == HistoryAction.DRAW && h.whenVoided == null) {
+				anyDraw = true;
+				if (h.amount != null) drawn = drawn.add(h.amount);
+				if (h.amountMoney != null) drawnCents = add(drawnCents, h.amountMoney.cents());
+			}
+		}
+		
+		if (!anyDraw) {
+			if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.LOAN, -1, "History has no draw");
+			return;
+		}
+		if (struct.loanAmount != null && drawn.compareTo(struct.loanAmount) > 0) {
+			if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.LOAN, -1, "Draws add up to " + drawn + ", more than the loan amount " + struct.loanAmount);
+		}
+		if (struct.loanAmountMoney != null && drawnCents > struct.loanAmountMoney.cents()) {
+			if (wants(Severity.WARNING)) report(Severity.WARNING, ProblemLocation.LOAN, -1, "Draws add up to " + Money.ofCents(drawnCents) + ", more than the loan amount " + struct.loanAmountMoney);
+		}
+	}
+	
+	/**
+	 * Sub-accounts are optional, but when given must add up to the total.
+	 */
+	private void checkAccounts(Map<String, BigDecimal> accounts, BigDecimal total, ProblemLocation location, int index, String totalName) {
+		if (accounts == null || accounts.isEmpty()) return;
+		BigDecimal sum = BigDecimal.ZERO;
+		for (BigDecimal amount : accounts.values()) {
+			sum = sum.add(amount);
+		}
+		if (sum.compareTo(total) != 0) {
+			if (wants(Severity.ERROR)) report(Severity.ERROR, location, index, "Accounts add up to " + sum + ", not the " + totalName + " " + total);
+		}
+	}
+	
+	/**
+	 * @see #checkAccounts(Map, BigDecimal, ProblemLocation, int, String)
+	 */
+	private void checkMoneyAccounts(Map<String, Money> accounts, Money total, ProblemLocation location, int index, String totalName) {
+		if (accounts == null || accounts.isEmpty()) return;
+		long sum = 0;
+		for (Money amount : accounts.values()) {
+			sum = add(sum, amount.cents());
+		}
+		if (sum != total.cents()) {
+			if (wants(Severity.ERROR)) report(Severity.ERROR, location, index, "Accounts add up to " + Money.ofCents(sum) + ", not the " + totalName + " " + total);
+		}
+	}
+	
+	/**
+	 * Adds cents, sticking at the largest or smallest long rather than 
+	 * throwing on overflow: a total that large disagrees with any amount it
+	 * is checked against, and is reported as such.
+	 */
+	private static long add(long a, long b) {
+		long r = a + b;
+		if (((a ^ r) & (b ^ r)) < 0) return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		return r;
+	}
+	
+	private void report(Severity severity, ProblemLocation location, int index, String description) {
+		SemanticProblem p = new SemanticProblem(severity, description);
+		p.location = location;
+		p.index = index;
+		l.problemEncountered(p);
+	}
+	
+	/**
+	 * Asked before a problem's description is built, so that problems a 
+	 * {@link SelectiveListener} doesn't want cost nothing.
+	 */
+	private boolean wants(Severity severity) {
+		return wants(l, severity);
+	}
+	
+	private static boolean wants(ProblemListener l, Severity severity) {
+		return !(l instanceof SelectiveListener) || ((SelectiveListener) l).wants(severity);
+	}
+	
+	private static int ymd(SimpleYMD d) {
+		return d.getYear() * 10000 + d.getMonthOfYear() * 100 + d.getDayOfMonth();
+	}
+	
+	private static int ymd(DateTime d) {
+		return d.getYear() * 10000 + d.getMonthOfYear() * 100 + d.getDayOfMonth();
+	}
+}
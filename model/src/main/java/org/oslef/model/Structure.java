@@ -49,6 +49,14 @@ public final class Structure {
 	public BigDecimal disclosedApr;
 	public BigDecimal interestRate;
 	public Map<String, BigDecimal> financedFees;
+	
+	/**
+	 * Filled instead of {@link #loanAmount} and {@link #financedFees} when 
+	 * parsed with {@link Translator.Amounts#MONEY}.
+	 */
+	public Money loanAmountMoney;
+	public Map<String, Money> financedFeesMoney;
+	
 	public List<Installment> installmentPlan;
 	
 	public Installment lastInstallment() {
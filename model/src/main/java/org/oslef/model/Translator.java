@@ -42,6 +42,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.oslef.format.Constants;
 import org.oslef.format.Loan;
@@ -57,11 +58,35 @@ import org.oslef.model.History.HistoryAction;
 
 public final class Translator implements Constants {
 	
+	/**
+	 * How amounts of money are parsed. Rates, percentages and the like are
+	 * always {@link BigDecimal}s.
+	 */
+	public static enum Amounts {
+		/**
+		 * Into the {@link BigDecimal} fields, as always.
+		 */
+		DECIMAL,
+		
+		/**
+		 * Into the {@link Money} fields (e.g. {@link Structure#loanAmountMoney}),
+		 * leaving the {@link BigDecimal} ones null or empty. Amounts that are 
+		 * not a whole number of cents fail with an {@link ArithmeticException}.
+		 */
+		MONEY
+	}
+	
 	public static LoanModel parse(Loan source) {
 		return parse(source, null);
 	}
 	
 	public static LoanModel parse(Loan source, LoanModel target) {
+		return parse(source, target, Amounts.DECIMAL);
+	}
+	
+	public static LoanModel parse(Loan source, LoanModel target, Amounts amounts) {
+		
+		final boolean money = amounts == Amounts.MONEY;
 		
 		Record loanRecord = source.loan;
 		
@@ -73,466 +98,66 @@ public final class Translator implements Constants {
 		if (loanRecord.has(LOAN_ID)) 
 			loanId = loanRecord.get(LOAN_ID);
 		
-		Application app;
-		{
-			app = new Application();
-			
-			if (loanRecord.has(APP_CUSTOMER_ID)) 
-				app.customerId = loanRecord.get(APP_CUSTOMER_ID);
-			
-			if (loanRecord.has(APP_SSN))
-				app.ssn = loanRecord.get(APP_SSN);
-			
-			if (loanRecord.has(APP_FIRST_NAME))
-				app.firstName = loanRecord.get(APP_FIRST_NAME);
-			
-			if (loanRecord.has(APP_MIDDLE_INITIAL))
-				app.middleInitial = loanRecord.get(APP_MIDDLE_INITIAL);
-			
-			if (loanRecord.has(APP_LAST_NAME))
-				app.lastName = loanRecord.get(APP_LAST_NAME);
-			
-			if (loanRecord.has(APP_DRIVERS_LICENSE_NUMBER))
-				app.driversLicenseNumber = loanRecord.get(APP_DRIVERS_LICENSE_NUMBER);
-			
-			if (loanRecord.has(APP_DATE_OF_BIRTH))
-				app.dateOfBirth = new SimpleYMD(loanRecord.get(APP_DATE_OF_BIRTH));
-			
-			if (loanRecord.has(APP_EMAIL_ADDRESS))
-				app.emailAddress = loanRecord.get(APP_EMAIL_ADDRESS);
-			
-			if (loanRecord.has(APP_RACE))
-				app.race = loanRecord.get(APP_RACE);
+		Application app = new Application();
+		app.phoneNumbers = new HashMap<String, String>();
+		app.residences = new HashMap<String, UsaAddress>();
+		app.references = new HashMap<String, Reference>();
+		app.incomes = new HashMap<String, Income>();
+		
+		Structure struct = new Structure();
+		struct.type = loanRecord.get(Constants.STRUCT_TYPE);
+		struct.whenExecuted = new SimpleInstant(loanRecord.get(STRUCT_WHEN_EXECUTED));
+		if (money) struct.loanAmountMoney = Money.parse(loanRecord.get(STRUCT_LOAN_AMOUNT));
+		else struct.loanAmount = new BigDecimal(loanRecord.get(STRUCT_LOAN_AMOUNT));
+		struct.financedFees = new HashMap<String, BigDecimal>();
+		struct.financedFeesMoney = new HashMap<String, Money>();
+		struct.installmentPlan = new ArrayList<Installment>();
+		
+		Map<String, HeldCheck> heldChecks = new HashMap<String, HeldCheck>();
+		Map<String, VehicleTitle> vehicleTitles = new HashMap<String, VehicleTitle>();
+		
+		/*
+		 * One pass over the loan record, each column dispatched on its
+		 * resolved field. Blank (or whitespace-only) values are skipped, 
+		 * except for phone numbers, which are kept as given; this is what the
+		 * separate per-column checks did before.
+		 */
+		for (String col : loanRecord.keys()) {
 			
-			if (loanRecord.has(APP_HEIGHT_INCHES))
-				app.heightInches = new BigDecimal(loanRecord.get(APP_HEIGHT_INCHES));
+			Column c = column(col);
+			if (c.field == Field.NONE) continue;
 			
-			if (loanRecord.has(APP_GENDER))
-				app.gender = Gender.valueOf(loanRecord.get(APP_GENDER).toUpperCase());
+			String value = loanRecord.get(col);
 			
-			app.phoneNumbers = new HashMap<String, String>();
-			app.residences = new HashMap<String, UsaAddress>();
-			app.references = new HashMap<String, Reference>();
-			app.incomes = new HashMap<String, Income>();
+			if (c.field != Field.PHONE && isEmpty(value)) continue;
 			
-			for (String col : loanRecord.keys()) {
-				
-				if (col.startsWith(APP_PHONE_PREFIX)) {
-					String name = col.substring(APP_PHONE_PREFIX.length());
-					if (app.phoneNumbers.containsKey(name))
-						throw new RuntimeException("Key already exists: " + name);
-					app.phoneNumbers.put(name, loanRecord.get(col));
-				}
-				else if (col.startsWith(APP_RES_LINE_ONE_PREFIX)) {
-					String name = col.substring(APP_RES_LINE_ONE_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						UsaAddress res = app.residences.get(name);
-						if (res == null) {
-							res = new UsaAddress();
-							app.residences.put(name, res);
-						}
-						res.lineOne = value;
-					}
-				}
-				else if (col.startsWith(APP_RES_LINE_TWO_PREFIX)) {
-					String name = col.substring(APP_RES_LINE_TWO_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						UsaAddress res = app.residences.get(name);
-						if (res == null) {
-							res = new UsaAddress();
-							app.residences.put(name, res);
-						}
-						res.lineTwo = value;
-					}
-				}
-				else if (col.startsWith(APP_RES_CITY_PREFIX)) {
-					String name = col.substring(APP_RES_CITY_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						UsaAddress res = app.residences.get(name);
-						if (res == null) {
-							res = new UsaAddress();
-							app.residences.put(name, res);
-						}
-						res.city = value;
-					}
-				}
-				else if (col.startsWith(APP_RES_STATE_PREFIX)) {
-					String name = col.substring(APP_RES_STATE_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						UsaAddress res = app.residences.get(name);
-						if (res == null) {
-							res = new UsaAddress();
-							app.residences.put(name, res);
-						}
-						res.state = value;
-					}
-				}
-				else if (col.startsWith(APP_RES_ZIP5_PREFIX)) {
-					String name = col.substring(APP_RES_ZIP5_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						UsaAddress res = app.residences.get(name);
-						if (res == null) {
-							res = new UsaAddress();
-							app.residences.put(name, res);
-						}
-						res.zip5 = value;
-					}
-				}
-				else if (col.startsWith(APP_RES_ZIP4_PREFIX)) {
-					String name = col.substring(APP_RES_ZIP4_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						UsaAddress res = app.residences.get(name);
-						if (res == null) {
-							res = new UsaAddress();
-							app.residences.put(name, res);
-						}
-						res.zip4 = value;
-					}
-				}
-				else if (col.startsWith(APP_REF_NAME_PREFIX)) {
-					String name = col.substring(APP_REF_NAME_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Reference r = app.references.get(name);
-						if (r == null) {
-							r = new Reference();
-							app.references.put(name, r);
-						}
-						r.name = value;
-					}
-				}
-				else if (col.startsWith(APP_REF_HOME_PHONE_PREFIX)) {
-					String name = col.substring(APP_REF_HOME_PHONE_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Reference r = app.references.get(name);
-						if (r == null) {
-							r = new Reference();
-							app.references.put(name, r);
-						}
-						r.homePhoneNumber = value;
-					}
-				}
-				else if (col.startsWith(APP_REF_WORK_PHONE_PREFIX)) {
-					String name = col.substring(APP_REF_WORK_PHONE_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Reference r = app.references.get(name);
-						if (r == null) {
-							r = new Reference();
-							app.references.put(name, r);
-						}
-						r.workPhoneNumber = value;
-					}
-				}
-				
-				///////////////////////////////////////////////////////////////
-				
-				else if (col.startsWith(APP_INC_EMPLOYER_NAME_PREFIX)) {
-					String name = col.substring(APP_INC_EMPLOYER_NAME_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						i.employerName = value;
-					}
-				}
-				else if (col.startsWith(APP_INC_PAY_FREQUENCY_PREFIX)) {
-					String name = col.substring(APP_INC_PAY_FREQUENCY_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						if (nonEmpty(value)) 
-							i.payFrequency = PayFrequency.valueOf(value.toUpperCase());
-					}
-				}
-				else if (col.startsWith(APP_INC_AMOUNT_PREFIX)) {
-					String name = col.substring(APP_INC_AMOUNT_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						i.amount = new BigDecimal(value);
-					}
-				}
-				else if (col.startsWith(APP_INC_NEXT_PAY_DATE_PREFIX)) {
-					String name = col.substring(APP_INC_NEXT_PAY_DATE_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						i.nextPayDate = new SimpleYMD(value);
-					}
-				}
-				else if (col.startsWith(APP_INC_SHIFT_HOURS_PREFIX)) {
-					String name = col.substring(APP_INC_SHIFT_HOURS_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						i.workShiftHours = value;
-					}
-				}
-				else if (col.startsWith(APP_INC_MONTHS_OF_SERVICE_PREFIX)) {
-					String name = col.substring(APP_INC_MONTHS_OF_SERVICE_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						i.monthsOfService = Integer.valueOf(value);
-					}
-				}
-				else if (col.startsWith(APP_INC_HAS_DIRECT_DEPOSIT_PREFIX)) {
-					String name = col.substring(APP_INC_HAS_DIRECT_DEPOSIT_PREFIX.length());
-					String value = loanRecord.get(col);
-					
-					if (value != null && value.trim().length() > 0) {
-						Income i = app.incomes.get(name);
-						if (i == null) {
-							i = new Income();
-							app.incomes.put(name, i);
-						}
-						i.hasDirectDeposit = Boolean.valueOf(value);
-					}
-				}
-			}
+			set(c, value, app, struct, heldChecks, vehicleTitles, money);
 		}
 		
-		Structure struct;
-		{
-			struct = new Structure();
-			struct.type = loanRecord.get(Constants.STRUCT_TYPE);
-			struct.whenExecuted = new SimpleInstant(loanRecord.get(STRUCT_WHEN_EXECUTED));
-			struct.loanAmount = new BigDecimal(loanRecord.get(STRUCT_LOAN_AMOUNT));
-			struct.financedFees = new HashMap<String, BigDecimal>();
-			struct.installmentPlan = new ArrayList<Installment>();
-			
-			if (nonEmpty(loanRecord.get(STRUCT_DISCLOSED_APR))) {
-				struct.disclosedApr = new BigDecimal(loanRecord.get(STRUCT_DISCLOSED_APR));
-			}
-			
-			if (nonEmpty(loanRecord.get(STRUCT_INTEREST_RATE))) {
-				struct.interestRate = new BigDecimal(loanRecord.get(STRUCT_INTEREST_RATE));
-			}
+		for (Record r : source.installments) {
+
+			Installment i = new Installment();
+			i.dueDate = new SimpleYMD(r.get(INST_DUE_DATE));
+			if (money) i.amountMoney = Money.parse(r.get(INST_DUE_AMOUNT));
+			else i.amount = new BigDecimal(r.get(INST_DUE_AMOUNT));
+			i.accounts = new HashMap<String, BigDecimal>();
+			i.accountsMoney = new HashMap<String, Money>();
 			
-			for (String col : loanRecord.keys()) {
+			for (String col : r.keys()) {
 				
-				if (col.startsWith(STRUCT_FINANCED_FEE_PREFIX)) {
-					String name = col.substring(STRUCT_FINANCED_FEE_PREFIX.length());
-					if (struct.financedFees.containsKey(name))
+				if (col.startsWith(INST_ACCOUNT_PREFIX)) {
+					String name = col.substring(INST_ACCOUNT_PREFIX.length());
+					if (i.accounts.containsKey(name) || i.accountsMoney.containsKey(name))
 						throw new RuntimeException("Key already exists: " + name);
-					String value = loanRecord.get(col);
+					String value = r.get(col);
 					if (value != null && value.trim().length() > 0) {
-						struct.financedFees.put(name, new BigDecimal(value));
+						if (money) i.accountsMoney.put(name, Money.parse(value));
+						else i.accounts.put(name, new BigDecimal(value));	
 					}
 				}
 			}
 			
-			struct.installmentPlan = new ArrayList<Installment>();
-			
-			for (Record r : source.installments) {
-
-				Installment i = new Installment();
-				i.dueDate = new SimpleYMD(r.get(INST_DUE_DATE));
-				i.amount = new BigDecimal(r.get(INST_DUE_AMOUNT));
-				i.accounts = new HashMap<String, BigDecimal>();
-				
-				for (String col : r.keys()) {
-					
-					if (col.startsWith(INST_ACCOUNT_PREFIX)) {
-						String name = col.substring(INST_ACCOUNT_PREFIX.length());
-						if (i.accounts.containsKey(name))
-							throw new RuntimeException("Key already exists: " + name);
-						String value = r.get(col);
-						if (value != null && value.trim().length() > 0) {
-							i.accounts.put(name, new BigDecimal(value));	
-						}
-					}
-				}
-				
-				struct.installmentPlan.add(i);
-			}
-		}
-		
-		Map<String, HeldCheck> heldChecks;
-		{
-			heldChecks = new HashMap<String, HeldCheck>();
-			
-			for (String col : loanRecord.keys()) {
-				
-				String value = loanRecord.get(col);
-				if (isEmpty(value)) continue;
-				
-				if (col.startsWith(TA_CHECK_BANK_NAME_PREFIX)) {
-					String name = col.substring(TA_CHECK_BANK_NAME_PREFIX.length());
-					HeldCheck c = heldChecks.get(name);
-					if (c == null) {
-						c = new HeldCheck();
-						heldChecks.put(name, c);
-					}
-					c.bankName = loanRecord.get(col);
-				}
-				else if (col.startsWith(TA_CHECK_ROUTING_NUMBER_PREFIX)) {
-					String name = col.substring(TA_CHECK_ROUTING_NUMBER_PREFIX.length());
-					HeldCheck c = heldChecks.get(name);
-					if (c == null) {
-						c = new HeldCheck();
-						heldChecks.put(name, c);
-					}
-					c.routingNumber = loanRecord.get(col);
-				}
-				else if (col.startsWith(TA_CHECK_ACCOUNT_NUMBER_PREFIX)) {
-					String name = col.substring(TA_CHECK_ACCOUNT_NUMBER_PREFIX.length());
-					HeldCheck c = heldChecks.get(name);
-					if (c == null) {
-						c = new HeldCheck();
-						heldChecks.put(name, c);
-					}
-					c.accountNumber = loanRecord.get(col);
-				}
-				else if (col.startsWith(TA_CHECK_NUMBER_PREFIX)) {
-					String name = col.substring(TA_CHECK_NUMBER_PREFIX.length());
-					HeldCheck c = heldChecks.get(name);
-					if (c == null) {
-						c = new HeldCheck();
-						heldChecks.put(name, c);
-					}
-					c.checkNumber = loanRecord.get(col);
-				}
-				else if (col.startsWith(TA_CHECK_AMOUNT_PREFIX)) {
-					String name = col.substring(TA_CHECK_AMOUNT_PREFIX.length());
-					HeldCheck c = heldChecks.get(name);
-					if (c == null) {
-						c = new HeldCheck();
-						heldChecks.put(name, c);
-					}
-					c.amount = new BigDecimal(loanRecord.get(col));
-				}
-				else if (col.startsWith(TA_CHECK_DATE_PREFIX)) {
-					String name = col.substring(TA_CHECK_DATE_PREFIX.length());
-					HeldCheck c = heldChecks.get(name);
-					if (c == null) {
-						c = new HeldCheck();
-						heldChecks.put(name, c);
-					}
-					c.date = new SimpleYMD(loanRecord.get(col));
-				}
-			}
-		}
-		
-		Map<String, VehicleTitle> vehicleTitles;
-		{
-			vehicleTitles = new HashMap<String, VehicleTitle>();
-			
-			for (String col : loanRecord.keys()) {
-				
-				String value = loanRecord.get(col);
-				if (isEmpty(value)) continue;
-				
-				if (col.startsWith(COL_VTITLE_YEAR_PREFIX)) {
-					String name = col.substring(COL_VTITLE_YEAR_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.year = new Integer(value);
-				}
-				else if (col.startsWith(COL_VTITLE_COLOR_PREFIX)) {
-					String name = col.substring(COL_VTITLE_YEAR_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.color = value;
-				}
-				else if (col.startsWith(COL_VTITLE_MAKE_PREFIX)) {
-					String name = col.substring(COL_VTITLE_MAKE_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.make = value;
-				}
-				else if (col.startsWith(COL_VTITLE_MODEL_PREFIX)) {
-					String name = col.substring(COL_VTITLE_MODEL_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.model = value;
-				}
-				else if (col.startsWith(COL_VTITLE_LICENSE_NUMBER_PREFIX)) {
-					String name = col.substring(COL_VTITLE_LICENSE_NUMBER_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.licenseNumber = value;
-				}
-				else if (col.startsWith(COL_VTITLE_VIN_PREFIX)) {
-					String name = col.substring(COL_VTITLE_VIN_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.vin = value;
-				}
-				else if (col.startsWith(COL_VTITLE_CERT_NUMBER_PREFIX)) {
-					String name = col.substring(COL_VTITLE_CERT_NUMBER_PREFIX.length());
-					VehicleTitle t = vehicleTitles.get(name);
-					if (t == null) {
-						t = new VehicleTitle();
-						vehicleTitles.put(name, t);
-					}
-					t.certNumber = value;
-				}
-			}
+			struct.installmentPlan.add(i);
 		}
 		
 		List<History> history;
@@ -543,21 +168,24 @@ public final class Translator implements Constants {
 				
 				History h = new History();
 				h.action = HistoryAction.valueOf(r.get(HIST_ACTION).toUpperCase());
-				h.amount = new BigDecimal(r.get(HIST_AMOUNT));
+				if (money) h.amountMoney = Money.parse(r.get(HIST_AMOUNT));
+				else h.amount = new BigDecimal(r.get(HIST_AMOUNT));
 				h.whenHappened = new SimpleInstant(r.get(HIST_WHEN_HAPPENED));
 				if (r.has(HIST_WHEN_VOIDED))
 					h.whenVoided = new SimpleInstant(r.get(HIST_WHEN_VOIDED));
 				h.accounts = new HashMap<String, BigDecimal>();
+				h.accountsMoney = new HashMap<String, Money>();
 				
 				for (String col : r.keys()) {
 					
 					if (col.startsWith(HIST_ACCOUNT_PREFIX)) {
 						String name = col.substring(HIST_ACCOUNT_PREFIX.length());
-						if (h.accounts.containsKey(name))
+						if (h.accounts.containsKey(name) || h.accountsMoney.containsKey(name))
 							throw new RuntimeException("Key already exists: " + name);
 						String value = r.get(col);
 						if (value != null && value.trim().length() > 0) {
-							h.accounts.put(name, new BigDecimal(value));	
+							if (money) h.accountsMoney.put(name, Money.parse(value));
+							else h.accounts.put(name, new BigDecimal(value));	
 						}
 					}
 				}
@@ -570,6 +198,7 @@ public final class Translator implements Constants {
 		target.app = app;
 		target.struct = struct;
 		target.heldChecks = heldChecks;
+		target.vehicleTitles = vehicleTitles;
 		target.history = history;
 		
 		return target;
@@ -634,7 +263,7 @@ public final class Translator implements Constants {
 
 		loan.put(STRUCT_TYPE, source.struct.type);
 		loan.put(STRUCT_WHEN_EXECUTED, source.struct.whenExecuted.toString());
-		loan.put(STRUCT_LOAN_AMOUNT, source.struct.loanAmount.toString());
+		loan.put(STRUCT_LOAN_AMOUNT, amount(source.struct.loanAmount, source.struct.loanAmountMoney));
 		
 		if (source.struct.disclosedApr != null) {
 			loan.put(STRUCT_DISCLOSED_APR, source.struct.disclosedApr.toString());
@@ -647,16 +276,26 @@ public final class Translator implements Constants {
 		for (String name : source.struct.financedFees.keySet()) {
 			loan.put(STRUCT_FINANCED_FEE_PREFIX + name, source.struct.financedFees.get(name).toString());
 		}
+		if (source.struct.financedFeesMoney != null) {
+			for (String name : source.struct.financedFeesMoney.keySet()) {
+				loan.put(STRUCT_FINANCED_FEE_PREFIX + name, source.struct.financedFeesMoney.get(name).toString());
+			}
+		}
 		
 		for (Installment i : source.struct.installmentPlan) {
 			
 			MapRecord r = new MapRecord();
 			r.put(INST_DUE_DATE, i.dueDate.toString());
-			r.put(INST_DUE_AMOUNT, i.amount.toString());
+			r.put(INST_DUE_AMOUNT, amount(i.amount, i.amountMoney));
 
 			for (String name : i.accounts.keySet()) {
 				r.put(INST_ACCOUNT_PREFIX + name, i.accounts.get(name).toString());
 			}
+			if (i.accountsMoney != null) {
+				for (String name : i.accountsMoney.keySet()) {
+					r.put(INST_ACCOUNT_PREFIX + name, i.accountsMoney.get(name).toString());
+				}
+			}
 			
 			target.installments.add(r);
 		}
@@ -667,7 +306,7 @@ public final class Translator implements Constants {
 			loan.put(TA_CHECK_ROUTING_NUMBER_PREFIX + name, c.routingNumber);
 			loan.put(TA_CHECK_ACCOUNT_NUMBER_PREFIX + name, c.accountNumber);
 			loan.put(TA_CHECK_NUMBER_PREFIX + name, c.checkNumber);
-			loan.put(TA_CHECK_AMOUNT_PREFIX + name, c.amount.toString());
+			loan.put(TA_CHECK_AMOUNT_PREFIX + name, amount(c.amount, c.amountMoney));
 			loan.put(TA_CHECK_DATE_PREFIX + name, c.date.toString());
 		}
 		
@@ -677,7 +316,7 @@ public final class Translator implements Constants {
 			loan.put(TA_CHECK_ROUTING_NUMBER_PREFIX + name, c.routingNumber);
 			loan.put(TA_CHECK_ACCOUNT_NUMBER_PREFIX + name, c.accountNumber);
 			loan.put(TA_CHECK_NUMBER_PREFIX + name, c.checkNumber);
-			loan.put(TA_CHECK_AMOUNT_PREFIX + name, c.amount.toString());
+			loan.put(TA_CHECK_AMOUNT_PREFIX + name, amount(c.amount, c.amountMoney));
 			loan.put(TA_CHECK_DATE_PREFIX + name, c.date.toString());
 		}
 		
@@ -698,11 +337,16 @@ public final class Translator implements Constants {
 			r.put(HIST_ACTION, h.action.toString().toLowerCase());
 			r.put(HIST_WHEN_HAPPENED, h.whenHappened.toString());
 			if (h.whenVoided != null) r.put(HIST_WHEN_VOIDED, h.whenVoided.toString());
-			r.put(HIST_AMOUNT, h.amount.toString());
+			r.put(HIST_AMOUNT, amount(h.amount, h.amountMoney));
 
 			for (String name : h.accounts.keySet()) {
 				r.put(HIST_ACCOUNT_PREFIX + name, h.accounts.get(name).toString());
 			}
+			if (h.accountsMoney != null) {
+				for (String name : h.accountsMoney.keySet()) {
+					r.put(HIST_ACCOUNT_PREFIX + name, h.accountsMoney.get(name).toString());
+				}
+			}
 			
 			target.history.add(r);
 		}
@@ -710,6 +354,240 @@ public final class Translator implements Constants {
 		return target;
 	}
 	
+	/**
+	 * What a loan record column sets on the model. Columns that
+	 * {@link #parse(Loan, LoanModel, Amounts)} reads directly (the id, type,
+	 * execution date and amount) or does not know are {@link #NONE}.
+	 */
+	static enum Field {
+		NONE, 
+		CUSTOMER_ID, SSN, FIRST_NAME, MIDDLE_INITIAL, LAST_NAME, DRIVERS_LICENSE_NUMBER,
+		DATE_OF_BIRTH, EMAIL_ADDRESS, RACE, HEIGHT_INCHES, GENDER, PHONE,
+		RES_LINE_ONE, RES_LINE_TWO, RES_CITY, RES_STATE, RES_ZIP5, RES_ZIP4,
+		REF_NAME, REF_HOME_PHONE, REF_WORK_PHONE,
+		INC_EMPLOYER_NAME, INC_PAY_FREQUENCY, INC_AMOUNT, INC_NEXT_PAY_DATE, INC_SHIFT_HOURS,
+		INC_MONTHS_OF_SERVICE, INC_HAS_DIRECT_DEPOSIT,
+		DISCLOSED_APR, INTEREST_RATE, FINANCED_FEE,
+		CHECK_BANK_NAME, CHECK_ROUTING_NUMBER, CHECK_ACCOUNT_NUMBER, CHECK_NUMBER, CHECK_AMOUNT, CHECK_DATE,
+		VTITLE_YEAR, VTITLE_COLOR, VTITLE_MAKE, VTITLE_MODEL, VTITLE_LICENSE_NUMBER, VTITLE_VIN, VTITLE_CERT_NUMBER
+	}
+	
+	/**
+	 * A resolved column: the field it sets and, for prefixed columns, the 
+	 * name after the prefix (e.g. "home" for "phone:home").
+	 */
+	static final class Column {
+		final Field field;
+		final String key;
+		
+		Column(Field field, String key) {
+			this.field = field;
+			this.key = key;
+		}
+	}
+	
+	/**
+	 * Exact column names and prefixes (which all end in ':') to fields.
+	 */
+	private static final Map<String, Field> FIELDS = new HashMap<String, Field>();
+	
+	/**
+	 * Column names seen so far, resolved. Files share a small set of 
+	 * headers, so each column is matched against the prefixes once rather 
+	 * than once per loan. Past {@link #MAX_COLUMNS} names, as with records 
+	 * whose keys are data rather than a header, new names are resolved every
+	 * time instead of held for the life of the class.
+	 */
+	private static final Map<String, Column> COLUMNS = new ConcurrentHashMap<String, Column>();
+	
+	private static final int MAX_COLUMNS = 4096;
+	
+	static {
+		FIELDS.put(APP_CUSTOMER_ID, Field.CUSTOMER_ID);
+		FIELDS.put(APP_SSN, Field.SSN);
+		FIELDS.put(APP_FIRST_NAME, Field.FIRST_NAME);
+		FIELDS.put(APP_MIDDLE_INITIAL, Field.MIDDLE_INITIAL);
+		FIELDS.put(APP_LAST_NAME, Field.LAST_NAME);
+		FIELDS.put(APP_DRIVERS_LICENSE_NUMBER, Field.DRIVERS_LICENSE_NUMBER);
+		FIELDS.put(APP_DATE_OF_BIRTH, Field.DATE_OF_BIRTH);
+		FIELDS.put(APP_EMAIL_ADDRESS, Field.EMAIL_ADDRESS);
+		FIELDS.put(APP_RACE, Field.RACE);
+		FIELDS.put(APP_HEIGHT_INCHES, Field.HEIGHT_INCHES);
+		FIELDS.put(APP_GENDER, Field.GENDER);
+		FIELDS.put(APP_PHONE_PREFIX, Field.PHONE);
+		
+		FIELDS.put(APP_RES_LINE_ONE_PREFIX, Field.RES_LINE_ONE);
+		FIELDS.put(APP_RES_LINE_TWO_PREFIX, Field.RES_LINE_TWO);
+		FIELDS.put(APP_RES_CITY_PREFIX, Field.RES_CITY);
+		FIELDS.put(APP_RES_STATE_PREFIX, Field.RES_STATE);
+		FIELDS.put(APP_RES_ZIP5_PREFIX, Field.RES_ZIP5);
+		FIELDS.put(APP_RES_ZIP4_PREFIX, Field.RES_ZIP4);
+		
+		FIELDS.put(APP_REF_NAME_PREFIX, Field.REF_NAME);
+		FIELDS.put(APP_REF_HOME_PHONE_PREFIX, Field.REF_HOME_PHONE);
+		FIELDS.put(APP_REF_WORK_PHONE_PREFIX, Field.REF_WORK_PHONE);
+		
+		FIELDS.put(APP_INC_EMPLOYER_NAME_PREFIX, Field.INC_EMPLOYER_NAME);
+		FIELDS.put(APP_INC_PAY_FREQUENCY_PREFIX, Field.INC_PAY_FREQUENCY);
+		FIELDS.put(APP_INC_AMOUNT_PREFIX, Field.INC_AMOUNT);
+		FIELDS.put(APP_INC_NEXT_PAY_DATE_PREFIX, Field.INC_NEXT_PAY_DATE);
+		FIELDS.put(APP_INC_SHIFT_HOURS_PREFIX, Field.INC_SHIFT_HOURS);
+		FIELDS.put(APP_INC_MONTHS_OF_SERVICE_PREFIX, Field.INC_MONTHS_OF_SERVICE);
+		FIELDS.put(APP_INC_HAS_DIRECT_DEPOSIT_PREFIX, Field.INC_HAS_DIRECT_DEPOSIT);
+		
+		FIELDS.put(STRUCT_DISCLOSED_APR, Field.DISCLOSED_APR);
+		FIELDS.put(STRUCT_INTEREST_RATE, Field.INTEREST_RATE);
+		FIELDS.put(STRUCT_FINANCED_FEE_PREFIX, Field.FINANCED_FEE);
+		
+		FIELDS.put(TA_CHECK_BANK_NAME_PREFIX, Field.CHECK_BANK_NAME);
+		FIELDS.put(TA_CHECK_ROUTING_NUMBER_PREFIX, Field.CHECK_ROUTING_NUMBER);
+		FIELDS.put(TA_CHECK_ACCOUNT_NUMBER_PREFIX, Field.CHECK_ACCOUNT_NUMBER);
+		FIELDS.put(TA_CHECK_NUMBER_PREFIX, Field.CHECK_NUMBER);
+		FIELDS.put(TA_CHECK_AMOUNT_PREFIX, Field.CHECK_AMOUNT);
+		FIELDS.put(TA_CHECK_DATE_PREFIX, Field.CHECK_DATE);
+		
+		FIELDS.put(COL_VTITLE_YEAR_PREFIX, Field.VTITLE_YEAR);
+		FIELDS.put(COL_VTITLE_COLOR_PREFIX, Field.VTITLE_COLOR);
+		FIELDS.put(COL_VTITLE_MAKE_PREFIX, Field.VTITLE_MAKE);
+		FIELDS.put(COL_VTITLE_MODEL_PREFIX, Field.VTITLE_MODEL);
+		FIELDS.put(COL_VTITLE_LICENSE_NUMBER_PREFIX, Field.VTITLE_LICENSE_NUMBER);
+		FIELDS.put(COL_VTITLE_VIN_PREFIX, Field.VTITLE_VIN);
+		FIELDS.put(COL_VTITLE_CERT_NUMBER_PREFIX, Field.VTITLE_CERT_NUMBER);
+	}
+	
+	static Column column(String name) {
+		Column c = COLUMNS.get(name);
+		if (c == null) {
+			int colon = name.indexOf(':');
+			Field f = FIELDS.get(colon == -1 ? name : name.substring(0, colon + 1));
+			if (f == null) c = new Column(Field.NONE, null);
+			else if (colon == -1) c = new Column(f, null);
+			else c = new Column(f, name.substring(colon + 1));
+			if (COLUMNS.size() < MAX_COLUMNS) COLUMNS.put(name, c);
+		}
+		return c;
+	}
+	
+	/**
+	 * Sets the field a loan record column maps to. Only phone numbers are 
+	 * set when blank; callers skip other blank values.
+	 */
+	static void set(Column c, String value, Application app, Structure struct, 
+			Map<String, HeldCheck> heldChecks, Map<String, VehicleTitle> vehicleTitles, boolean money) {
+		
+		switch (c.field) {
+		case PHONE: app.phoneNumbers.put(c.key, value); break;
+		
+		case CUSTOMER_ID: app.customerId = value; break;
+		case SSN: app.ssn = value; break;
+		case FIRST_NAME: app.firstName = value; break;
+		case MIDDLE_INITIAL: app.middleInitial = value; break;
+		case LAST_NAME: app.lastName = value; break;
+		case DRIVERS_LICENSE_NUMBER: app.driversLicenseNumber = value; break;
+		case DATE_OF_BIRTH: app.dateOfBirth = new SimpleYMD(value); break;
+		case EMAIL_ADDRESS: app.emailAddress = value; break;
+		case RACE: app.race = value; break;
+		case HEIGHT_INCHES: app.heightInches = new BigDecimal(value); break;
+		case GENDER: app.gender = Gender.valueOf(value.toUpperCase()); break;
+		
+		case RES_LINE_ONE: residence(app, c.key).lineOne = value; break;
+		case RES_LINE_TWO: residence(app, c.key).lineTwo = value; break;
+		case RES_CITY: residence(app, c.key).city = value; break;
+		case RES_STATE: residence(app, c.key).state = value; break;
+		case RES_ZIP5: residence(app, c.key).zip5 = value; break;
+		case RES_ZIP4: residence(app, c.key).zip4 = value; break;
+		
+		case REF_NAME: reference(app, c.key).name = value; break;
+		case REF_HOME_PHONE: reference(app, c.key).homePhoneNumber = value; break;
+		case REF_WORK_PHONE: reference(app, c.key).workPhoneNumber = value; break;
+		
+		case INC_EMPLOYER_NAME: income(app, c.key).employerName = value; break;
+		case INC_PAY_FREQUENCY: income(app, c.key).payFrequency = PayFrequency.valueOf(value.toUpperCase()); break;
+		case INC_AMOUNT: income(app, c.key).amount = new BigDecimal(value); break;
+		case INC_NEXT_PAY_DATE: income(app, c.key).nextPayDate = new SimpleYMD(value); break;
+		case INC_SHIFT_HOURS: income(app, c.key).workShiftHours = value; break;
+		case INC_MONTHS_OF_SERVICE: income(app, c.key).monthsOfService = Integer.valueOf(value); break;
+		case INC_HAS_DIRECT_DEPOSIT: income(app, c.key).hasDirectDeposit = Boolean.valueOf(value); break;
+		
+		case DISCLOSED_APR: struct.disclosedApr = new BigDecimal(value); break;
+		case INTEREST_RATE: struct.interestRate = new BigDecimal(value); break;
+		case FINANCED_FEE:
+			if (money) struct.financedFeesMoney.put(c.key, Money.parse(value));
+			else struct.financedFees.put(c.key, new BigDecimal(value));
+			break;
+		
+		case CHECK_BANK_NAME: heldCheck(heldChecks, c.key).bankName = value; break;
+		case CHECK_ROUTING_NUMBER: heldCheck(heldChecks, c.key).routingNumber = value; break;
+		case CHECK_ACCOUNT_NUMBER: heldCheck(heldChecks, c.key).accountNumber = value; break;
+		case CHECK_NUMBER: heldCheck(heldChecks, c.key).checkNumber = value; break;
+		case CHECK_AMOUNT:
+			if (money) heldCheck(heldChecks, c.key).amountMoney = Money.parse(value);
+			else heldCheck(heldChecks, c.key).amount = new BigDecimal(value);
+			break;
+		case CHECK_DATE: heldCheck(heldChecks, c.key).date = new SimpleYMD(value); break;
+		
+		case VTITLE_YEAR: vehicleTitle(vehicleTitles, c.key).year = Integer.valueOf(value); break;
+		case VTITLE_COLOR: vehicleTitle(vehicleTitles, c.key).color = value; break;
+		case VTITLE_MAKE: vehicleTitle(vehicleTitles, c.key).make = value; break;
+		case VTITLE_MODEL: vehicleTitle(vehicleTitles, c.key).model = value; break;
+		case VTITLE_LICENSE_NUMBER: vehicleTitle(vehicleTitles, c.key).licenseNumber = value; break;
+		case VTITLE_VIN: vehicleTitle(vehicleTitles, c.key).vin = value; break;
+		case VTITLE_CERT_NUMBER: vehicleTitle(vehicleTitles, c.key).certNumber = value; break;
+		
+		default: throw new RuntimeException("Unhandled field: " + c.field);
+		}
+	}
+	
+	private static UsaAddress residence(Application app, String name) {
+		UsaAddress res = app.residences.get(name);
+		if (res == null) {
+			res = new UsaAddress();
+			app.residences.put(name, res);
+		}
+		return res;
+	}
+	
+	private static Reference reference(Application app, String name) {
+		Reference r = app.references.get(name);
+		if (r == null) {
+			r = new Reference();
+			app.references.put(name, r);
+		}
+		return r;
+	}
+	
+	private static Income income(Application app, String name) {
+		Income i = app.incomes.get(name);
+		if (i == null) {
+			i = new Income();
+			app.incomes.put(name, i);
+		}
+		return i;
+	}
+	
+	private static HeldCheck heldCheck(Map<String, HeldCheck> heldChecks, String name) {
+		HeldCheck c = heldChecks.get(name);
+		if (c == null) {
+			c = new HeldCheck();
+			heldChecks.put(name, c);
+		}
+		return c;
+	}
+	
+	private static VehicleTitle vehicleTitle(Map<String, VehicleTitle> vehicleTitles, String name) {
+		VehicleTitle t = vehicleTitles.get(name);
+		if (t == null) {
+			t = new VehicleTitle();
+			vehicleTitles.put(name, t);
+		}
+		return t;
+	}
+	
+	private static String amount(BigDecimal decimal, Money money) {
+		if (decimal != null) return decimal.toString();
+		return money == null ? null : money.toString();
+	}
+	
 	private static boolean isEmpty(Object o) {
 		if (o == null) return true;
 		else if (o instanceof String) return ((String)o).trim().length() == 0;
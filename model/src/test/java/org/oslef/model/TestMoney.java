@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import java.math.BigDecimal;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public final class TestMoney {
+	
+	@Test
+	public void parse() {
+		Assert.assertEquals(150000, Money.parseCents("1500"));
+		Assert.assertEquals(-1050, Money.parseCents("-10.5"));
+		Assert.assertEquals(25, Money.parseCents("0.25"));
+		Assert.assertEquals(7, Money.parseCents("00.07"));
+		Assert.assertEquals(0, Money.parseCents("-0"));
+		Assert.assertEquals("-10.50", Money.parse("-10.5").toString());
+		Assert.assertEquals(new BigDecimal("1500.00"), Money.parse("1500").toBigDecimal());
+	}
+	
+	@Test
+	public void malformed() {
+		for (String s : new String[] { "", "-", ".", "1.", ".5", "-.5", "1.2.3", "10,00", "+1", " 1", "1 ", "1e2", "\u0663" }) {
+			try {
+				Money.parseCents(s);
+				Assert.fail("Parsed '" + s + "'");
+			}
+			catch (NumberFormatException ex) {}
+		}
+	}
+	
+	@Test
+	public void subCentAmountsRefused() {
+		Assert.assertEquals(123, Money.parseCents("1.230000"));
+		for (String s : new String[] { "1.231", "0.001", "-0.005", "1.2300001" }) {
+			try {
+				Money.parseCents(s);
+				Assert.fail("Parsed '" + s + "'");
+			}
+			catch (ArithmeticException ex) {}
+		}
+	}
+	
+	@Test
+	public void limits() {
+		Assert.assertEquals(Long.MAX_VALUE, Money.parseCents("92233720368547758.07"));
+		Assert.assertEquals(Long.MIN_VALUE, Money.parseCents("-92233720368547758.08"));
+		Assert.assertEquals(Long.MIN_VALUE, Money.parse("-92233720368547758.08").cents());
+		Assert.assertEquals("-92233720368547758.08", Money.ofCents(Long.MIN_VALUE).toString());
+		for (String s : new String[] { "92233720368547758.08", "-92233720368547758.09", "100000000000000000", "-922337203685477580.8" }) {
+			try {
+				Money.parseCents(s);
+				Assert.fail("Parsed '" + s + "'");
+			}
+			catch (ArithmeticException ex) {}
+		}
+	}
+	
+	@Test
+	public void overflow() {
+		Money max = Money.ofCents(Long.MAX_VALUE);
+		Money min = Money.ofCents(Long.MIN_VALUE);
+		Money cent = Money.ofCents(1);
+		
+		Assert.assertEquals(Long.MAX_VALUE, max.minus(cent).plus(cent).cents());
+		Assert.assertEquals(-Long.MAX_VALUE, max.negate().cents());
+		Assert.assertEquals(Long.MIN_VALUE, min.plus(cent).minus(cent).cents());
+		
+		assertOverflows(max, "plus", cent);
+		assertOverflows(min, "plus", cent.negate());
+		assertOverflows(min, "minus", cent);
+		assertOverflows(max, "minus", cent.negate());
+		assertOverflows(min, "negate", null);
+		
+		Assert.assertEquals(-1, Money.add(Long.MAX_VALUE, Long.MIN_VALUE));
+		try {
+			Money.add(Long.MIN_VALUE, -1);
+			Assert.fail();
+		}
+		catch (ArithmeticException ex) {}
+		try {
+			Money.subtract(0, Long.MIN_VALUE);
+			Assert.fail();
+		}
+		catch (ArithmeticException ex) {}
+	}
+	
+	@Test
+	public void comparison() {
+		Assert.assertSame(Money.ZERO, Money.parse("0.00"));
+		Assert.assertEquals(Money.parse("1.5"), Money.parse("1.50"));
+		Assert.assertEquals(Money.parse("1.5").hashCode(), Money.parse("1.50").hashCode());
+		Assert.assertTrue(Money.parse("-1").compareTo(Money.parse("0.99")) < 0);
+		Assert.assertTrue(Money.ofCents(Long.MAX_VALUE).compareTo(Money.ofCents(Long.MIN_VALUE)) > 0);
+		Assert.assertEquals(-1, Money.parse("-0.01").signum());
+	}
+	
+	private static void assertOverflows(Money a, String op, Money b) {
+		try {
+			if (op.equals("plus")) a.plus(b);
+			else if (op.equals("minus")) a.minus(b);
+			else a.negate();
+			Assert.fail(a + " " + op + " " + b);
+		}
+		catch (ArithmeticException ex) {}
+	}
+}
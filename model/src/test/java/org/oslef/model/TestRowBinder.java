@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oslef.csv.table.Row;
+import org.oslef.csv.table.TableIterator;
+import org.oslef.format.Inspector;
+import org.oslef.format.Loan;
+import org.oslef.format.Reader;
+import org.oslef.model.Translator.Amounts;
+
+public final class TestRowBinder {
+	
+	private static final int LOANS = 60;
+	
+	private File dir;
+	
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("oslef", "");
+		dir.delete();
+		dir.mkdir();
+	}
+	
+	@After
+	public void teardown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void bindsWhatParseReads() throws IOException {
+		write(true);
+		for (Amounts amounts : Amounts.values()) {
+			assertSameModels(amounts);
+		}
+	}
+	
+	@Test
+	public void bindsWithoutVoidedColumn() throws IOException {
+		write(false);
+		for (Amounts amounts : Amounts.values()) {
+			assertSameModels(amounts);
+		}
+	}
+	
+	private void assertSameModels(Amounts amounts) throws IOException {
+		List<LoanModel> expected = new ArrayList<LoanModel>();
+		Reader reader = new Reader(dir);
+		try {
+			for (Loan l : reader) {
+				expected.add(Translator.parse(l, null, amounts));
+			}
+		}
+		finally {
+			reader.close();
+		}
+		
+		Map<String, List<Row>> installments = children(Inspector.INSTALLMENTS_FILE);
+		Map<String, List<Row>> history = children(Inspector.HISTORY_FILE);
+		RowBinder binder = new RowBinder(amounts);
+		List<LoanModel> actual = new ArrayList<LoanModel>();
+		TableIterator loans = new TableIterator(new File(dir, Inspector.LOANS_FILE));
+		try {
+			while (loans.hasNext()) {
+				Row r = loans.next();
+				String id = r.get("loan_id");
+				actual.add(binder.bind(r, installments.get(id), history.get(id)));
+			}
+		}
+		finally {
+			loans.close();
+		}
+		
+		Assert.assertEquals(LOANS, expected.size());
+		for (int i=0; i<LOANS; i++) {
+			assertSame(amounts + " loan " + i, expected.get(i), actual.get(i));
+		}
+	}
+	
+	private Map<String, List<Row>> children(String file) throws IOException {
+		Map<String, List<Row>> children = new HashMap<String, List<Row>>();
+		TableIterator rows = new TableIterator(new File(dir, file));
+		try {
+			while (rows.hasNext()) {
+				Row r = rows.next();
+				List<Row> list = children.get(r.get("loan_id"));
+				if (list == null) {
+					list = new ArrayList<Row>();
+					children.put(r.get("loan_id"), list);
+				}
+				list.add(r);
+			}
+		}
+		finally {
+			rows.close();
+		}
+		return children;
+	}
+	
+	/**
+	 * Compares every public field, all the way down.
+	 */
+	private static void assertSame(String path, Object expected, Object actual) {
+		if (expected == null || actual == null) {
+			Assert.assertEquals(path, expected, actual);
+		}
+		else if (expected instanceof Map) {
+			Map<?, ?> e = (Map<?, ?>) expected;
+			Map<?, ?> a = (Map<?, ?>) actual;
+			Assert.assertEquals(path, e.keySet(), a.keySet());
+			for (Object k : e.keySet()) {
+				assertSame(path + "[" + k + "]", e.get(k), a.get(k));
+			}
+		}
+		else if (expected instanceof List) {
+			List<?> e = (List<?>) expected;
+			List<?> a = (List<?>) actual;
+			Assert.assertEquals(path, e.size(), a.size());
+			for (int i=0; i<e.size(); i++) {
+				assertSame(path + "[" + i + "]", e.get(i), a.get(i));
+			}
+		}
+		else if (expected.getClass().getName().startsWith("org.oslef.model.") 
+				&& !(expected instanceof Enum) && !(expected instanceof Money) 
+				&& !(expected instanceof SimpleInstant) && !(expected instanceof SimpleYMD)) {
+			Assert.assertEquals(path, expected.getClass(), actual.getClass());
+			for (Field f : expected.getClass().getFields()) {
+				if (Modifier.isStatic(f.getModifiers())) continue;
+				try {
+					assertSame(path + "." + f.getName(), f.get(expected), f.get(actual));
+				}
+				catch (IllegalAccessException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		}
+		else {
+			Assert.assertEquals(path, expected, actual);
+		}
+	}
+	
+	/**
+	 * Loans with blank phones, blank and whitespace-only optional columns, 
+	 * and sub-accounts; every third loan has no children.
+	 */
+	private void write(boolean voidedColumn) throws IOException {
+		StringBuilder loans = new StringBuilder("loan_id,loan_type,when_executed,loan_amount,first_name,phone:home,phone:work,"
+				+ "residence.city:home,income.pay_frequency:job,financed_fee:origination,disclosed_apr,held_check.amount:check,vtitle.make:car\n");
+		StringBuilder installments = new StringBuilder("loan_id,due_date,due_amount,account:principal,account:fee\n");
+		StringBuilder history = new StringBuilder(voidedColumn 
+				? "loan_id,action,when_happened,when_voided,amount,account:principal,account:fee\n"
+				: "loan_id,action,when_happened,amount,account:principal,account:fee\n");
+		for (int i=0; i<LOANS; i++) {
+			String blank = i % 2 == 0 ? "" : " ";
+			loans.append(i).append(",payday,2011-02-07T16:29:54.778Z,").append(100 + i).append(".50,")
+				.append(i % 5 == 0 ? blank : "First").append(",")
+				.append(i % 3 == 0 ? blank : "2342342342").append(",")
+				.append(blank).append(",")
+				.append(i % 4 == 0 ? blank : "Nashville").append(",")
+				.append(i % 6 == 0 ? blank : "weekly").append(",")
+				.append(i % 2 == 0 ? "10" : blank).append(",")
+				.append(i % 7 == 0 ? "390.5" : blank).append(",")
+				.append(i % 8 == 0 ? "110.00" : blank).append(",")
+				.append(i % 9 == 0 ? "Ford" : blank).append("\n");
+			if (i % 3 == 0) continue;
+			for (int j=0; j<i % 4 + 1; j++) {
+				installments.append(i).append(",2011-03-0").append(j + 1).append(",").append(10 + j).append(".00,")
+					.append(j == 0 ? blank : "5.00").append(",")
+					.append(j % 2 == 0 ? "5" : blank).append("\n");
+				history.append(i).append(",").append(j == 0 ? "DRAW" : "payment").append(",2011-02-1").append(j).append("T17:00:00.000Z,");
+				if (voidedColumn) history.append(j == 2 ? "2011-02-20T00:00:00.000Z" : blank).append(",");
+				history.append(j).append(".25,").append(j).append(".25,").append(j % 2 == 0 ? blank : "0.00").append("\n");
+			}
+		}
+		write(Inspector.LOANS_FILE, loans);
+		write(Inspector.INSTALLMENTS_FILE, installments);
+		write(Inspector.HISTORY_FILE, history);
+	}
+	
+	private void write(String name, CharSequence content) throws IOException {
+		OutputStream out = new FileOutputStream(new File(dir, name));
+		try {
+			out.write(content.toString().getBytes("UTF8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
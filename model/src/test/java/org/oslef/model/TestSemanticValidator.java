@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.oslef.format.Constants;
+import org.oslef.format.Loan;
+import org.oslef.format.MapRecord;
+import org.oslef.format.Validator.CollectingListener;
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemLocation;
+import org.oslef.format.Validator.SelectiveListener;
+import org.oslef.format.Validator.Severity;
+import org.oslef.model.SemanticValidator.SemanticProblem;
+import org.oslef.model.Translator.Amounts;
+
+public final class TestSemanticValidator implements Constants {
+	
+	@Test
+	public void consistentLoan() {
+		Assert.assertEquals(0, problems(loan(), Amounts.DECIMAL).size());
+		Assert.assertEquals(0, problems(loan(), Amounts.MONEY).size());
+	}
+	
+	@Test
+	public void noStructure() {
+		CollectingListener l = new CollectingListener();
+		new SemanticValidator(l).validate(new LoanModel());
+		Assert.assertEquals(1, l.problems.size());
+		Assert.assertEquals(Severity.ERROR, l.problems.get(0).severity);
+	}
+	
+	@Test
+	public void loanAmountNotPositive() {
+		Loan l = loan();
+		l.put(STRUCT_LOAN_AMOUNT, "0.00");
+		l.history.get(0).put(HIST_AMOUNT, "0.00");
+		l.history.get(0).put(HIST_ACCOUNT_PREFIX + "principal", "0.00");
+		assertOnly(l, Severity.ERROR, ProblemLocation.LOAN, -1, "Loan amount 0.00 must be positive");
+	}
+	
+	@Test
+	public void installmentAccountsDisagree() {
+		Loan l = loan();
+		l.installments.get(0).put(INST_ACCOUNT_PREFIX + "fee", "9.99");
+		assertOnly(l, Severity.ERROR, ProblemLocation.INSTALLMENT, 0, "Accounts add up to 109.99, not the due amount 110.00");
+	}
+	
+	@Test
+	public void installmentDueBeforeExecution() {
+		Loan l = loan();
+		l.installments.get(0).put(INST_DUE_DATE, "2011-02-06");
+		assertOnly(l, Severity.WARNING, ProblemLocation.INSTALLMENT, 0, "Installment is due on 2011-02-06, before the loan was executed");
+	}
+	
+	@Test
+	public void installmentsOutOfOrder() {
+		Loan l = loan();
+		l.installments.add(installment("2011-03-01", "10.00"));
+		assertOnly(l, Severity.WARNING, ProblemLocation.INSTALLMENT, 1, "Installment is due on 2011-03-01, not after the previous installment");
+	}
+	
+	@Test
+	public void installmentsShort() {
+		Loan l = loan();
+		l.put(STRUCT_LOAN_AMOUNT, "110.01");
+		assertOnly(l, Severity.WARNING, ProblemLocation.LOAN, -1, "Installments add up to 110.00, less than the loan amount 110.01");
+	}
+	
+	@Test
+	public void historyAccountsDisagree() {
+		Loan l = loan();
+		l.history.get(0).put(HIST_ACCOUNT_PREFIX + "fee", "0.01");
+		assertOnly(l, Severity.ERROR, ProblemLocation.HISTORY, 0, "Accounts add up to 100.01, not the amount 100.00");
+	}
+	
+	@Test
+	public void historyBeforeExecution() {
+		Loan l = loan();
+		l.history.get(0).put(HIST_WHEN_HAPPENED, "2011-02-07T16:29:54.777Z");
+		assertOnly(l, Severity.WARNING, ProblemLocation.HISTORY, 0, "Happened at ");
+	}
+	
+	@Test
+	public void historyOutOfOrder() {
+		Loan l = loan();
+		l.history.add(history("PAYMENT", "2011-02-07T16:59:59.999Z", "10.00"));
+		assertOnly(l, Severity.WARNING, ProblemLocation.HISTORY, 1, "Happened at ");
+	}
+	
+	@Test
+	public void voidedBeforeHappening() {
+		Loan l = loan();
+		l.history.add(history("PAYMENT", "2011-03-01T00:00:00.000Z", "10.00"));
+		l.history.get(1).put(HIST_WHEN_VOIDED, "2011-02-28T00:00:00.000Z");
+		assertOnly(l, Severity.ERROR, ProblemLocation.HISTORY, 1, "Voided at ");
+	}
+	
+	@Test
+	public void noDraw() {
+		Loan l = loan();
+		l.history.get(0).put(HIST_WHEN_VOIDED, "2011-02-08T00:00:00.000Z");
+		assertOnly(l, Severity.WARNING, ProblemLocation.LOAN, -1, "History has no draw");
+	}
+	
+	@Test
+	public void overdrawn() {
+		Loan l = loan();
+		l.history.add(history("DRAW", "2011-02-08T00:00:00.000Z", "0.01"));
+		assertOnly(l, Severity.WARNING, ProblemLocation.LOAN, -1, "Draws add up to 100.01, more than the loan amount 100.00");
+	}
+	
+	@Test
+	public void stageReportsUntranslatableLoans() {
+		CollectingListener l = new CollectingListener();
+		Loan loan = loan();
+		loan.put(STRUCT_LOAN_AMOUNT, "a lot");
+		SemanticValidator.stage().validate(loan, l);
+		Assert.assertEquals(1, l.problems.size());
+		Assert.assertEquals(Severity.WARNING, l.problems.get(0).severity);
+		
+		l.clear();
+		SemanticValidator.stage().validate(loan(), l);
+		Assert.assertEquals(0, l.problems.size());
+	}
+	
+	@Test
+	public void selectiveListenerSkipsUnwantedProblems() {
+		final List<Problem> errors = new ArrayList<Problem>();
+		SelectiveListener l = new SelectiveListener() {
+			public boolean wants(Severity severity) {
+				return severity == Severity.ERROR;
+			}
+			public void problemEncountered(Problem p) {
+				errors.add(p);
+			}
+		};
+		
+		Loan loan = loan();
+		loan.history.get(0).put(HIST_WHEN_VOIDED, "2011-02-08T00:00:00.000Z"); // a warning
+		loan.installments.get(0).put(INST_ACCOUNT_PREFIX + "fee", "9.99"); // an error
+		for (Amounts amounts : Amounts.values()) {
+			errors.clear();
+			new SemanticValidator(l).validate(Translator.parse(loan, null, amounts));
+			Assert.assertEquals(1, errors.size());
+			Assert.assertEquals(Severity.ERROR, errors.get(0).severity);
+		}
+		
+		errors.clear();
+		loan.put(STRUCT_LOAN_AMOUNT, "a lot");
+		SemanticValidator.stage().validate(loan, l);
+		Assert.assertEquals(0, errors.size());
+	}
+	
+	/**
+	 * Checks that the loan has just the one problem, and the same one whether 
+	 * its amounts are parsed as BigDecimals or as Money.
+	 */
+	private static void assertOnly(Loan l, Severity severity, ProblemLocation location, int index, String description) {
+		List<String> expected = null;
+		for (Amounts amounts : Amounts.values()) {
+			List<Problem> problems = problems(l, amounts);
+			Assert.assertEquals(describe(problems).toString(), 1, problems.size());
+			SemanticProblem p = (SemanticProblem) problems.get(0);
+			Assert.assertEquals(severity, p.severity);
+			Assert.assertEquals(location, p.location);
+			Assert.assertEquals(index, p.index);
+			Assert.assertTrue(p.description, p.description.startsWith(description));
+			if (expected == null) expected = describe(problems);
+			else Assert.assertEquals(expected, describe(problems));
+		}
+	}
+	
+	private static List<Problem> problems(Loan l, Amounts amounts) {
+		CollectingListener listener = new CollectingListener();
+		new SemanticValidator(listener).validate(Translator.parse(l, null, amounts));
+		return listener.problems;
+	}
+	
+	private static List<String> describe(List<Problem> problems) {
+		List<String> d = new ArrayList<String>();
+		for (Problem p : problems) {
+			d.add(p.severity + " " + p.description);
+		}
+		return d;
+	}
+	
+	private static Loan loan() {
+		Loan l = new Loan()
+		.put(LOAN_ID, "1")
+		.put(STRUCT_TYPE, "payday")
+		.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z")
+		.put(STRUCT_LOAN_AMOUNT, "100.00");
+		
+		MapRecord i = installment("2011-03-01", "110.00");
+		i.put(INST_ACCOUNT_PREFIX + "principal", "100.00");
+		i.put(INST_ACCOUNT_PREFIX + "fee", "10.00");
+		l.installments.add(i);
+		
+		MapRecord h = history("DRAW", "2011-02-07T17:00:00.000Z", "100.00");
+		h.put(HIST_ACCOUNT_PREFIX + "principal", "100.00");
+		l.history.add(h);
+		return l;
+	}
+	
+	private static MapRecord installment(String dueDate, String amount) {
+		MapRecord i = new MapRecord();
+		i.put(INST_DUE_DATE, dueDate);
+		i.put(INST_DUE_AMOUNT, amount);
+		return i;
+	}
+	
+	private static MapRecord history(String action, String whenHappened, String amount) {
+		MapRecord h = new MapRecord();
+		h.put(HIST_ACTION, action);
+		h.put(HIST_WHEN_HAPPENED, whenHappened);
+		h.put(HIST_AMOUNT, amount);
+		return h;
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.model;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.oslef.format.Constants;
+import org.oslef.format.Loan;
+import org.oslef.format.MapRecord;
+import org.oslef.model.Application.PayFrequency;
+import org.oslef.model.Translator.Amounts;
+
+/**
+ * Blank and whitespace-only values are skipped, as they always have been, 
+ * except for phone numbers, which are kept as they are.
+ */
+public final class TestTranslator implements Constants {
+	
+	private static final String[] BLANKS = { "", " ", "\t", "  \t " };
+	
+	private static final String[] COLUMNS = {
+		APP_CUSTOMER_ID, APP_SSN, APP_FIRST_NAME, APP_MIDDLE_INITIAL, APP_LAST_NAME, APP_DATE_OF_BIRTH,
+		APP_DRIVERS_LICENSE_NUMBER, APP_EMAIL_ADDRESS, APP_RACE, APP_HEIGHT_INCHES, APP_GENDER,
+		APP_RES_LINE_ONE_PREFIX + "home", APP_RES_LINE_TWO_PREFIX + "home", APP_RES_CITY_PREFIX + "home",
+		APP_RES_STATE_PREFIX + "home", APP_RES_ZIP5_PREFIX + "home", APP_RES_ZIP4_PREFIX + "home",
+		APP_REF_NAME_PREFIX + "mom", APP_REF_HOME_PHONE_PREFIX + "mom", APP_REF_WORK_PHONE_PREFIX + "mom",
+		APP_INC_EMPLOYER_NAME_PREFIX + "job", APP_INC_PAY_FREQUENCY_PREFIX + "job", APP_INC_AMOUNT_PREFIX + "job",
+		APP_INC_NEXT_PAY_DATE_PREFIX + "job", APP_INC_SHIFT_HOURS_PREFIX + "job", 
+		APP_INC_MONTHS_OF_SERVICE_PREFIX + "job", APP_INC_HAS_DIRECT_DEPOSIT_PREFIX + "job",
+		STRUCT_DISCLOSED_APR, STRUCT_INTEREST_RATE, STRUCT_FINANCED_FEE_PREFIX + "fee",
+		TA_CHECK_BANK_NAME_PREFIX + "check", TA_CHECK_ROUTING_NUMBER_PREFIX + "check", TA_CHECK_ACCOUNT_NUMBER_PREFIX + "check",
+		TA_CHECK_NUMBER_PREFIX + "check", TA_CHECK_AMOUNT_PREFIX + "check", TA_CHECK_DATE_PREFIX + "check",
+		COL_VTITLE_YEAR_PREFIX + "car", COL_VTITLE_COLOR_PREFIX + "car", COL_VTITLE_MAKE_PREFIX + "car",
+		COL_VTITLE_MODEL_PREFIX + "car", COL_VTITLE_LICENSE_NUMBER_PREFIX + "car", COL_VTITLE_VIN_PREFIX + "car",
+		COL_VTITLE_CERT_NUMBER_PREFIX + "car"
+	};
+	
+	@Test
+	public void blankColumnsAreSkipped() {
+		for (Amounts amounts : Amounts.values()) {
+			for (String blank : BLANKS) {
+				Loan l = loan();
+				for (String col : COLUMNS) {
+					l.put(col, blank);
+				}
+				l.put(APP_PHONE_PREFIX + "home", blank);
+				l.installments.get(0).put(INST_ACCOUNT_PREFIX + "fee", blank);
+				l.history.get(0).put(HIST_ACCOUNT_PREFIX + "fee", blank);
+				l.history.get(0).put(HIST_WHEN_VOIDED, blank);
+				
+				LoanModel m = Translator.parse(l, null, amounts);
+				Application app = m.app;
+				Assert.assertNull(app.customerId);
+				Assert.assertNull(app.ssn);
+				Assert.assertNull(app.firstName);
+				Assert.assertNull(app.middleInitial);
+				Assert.assertNull(app.lastName);
+				Assert.assertNull(app.dateOfBirth);
+				Assert.assertNull(app.driversLicenseNumber);
+				Assert.assertNull(app.emailAddress);
+				Assert.assertNull(app.race);
+				Assert.assertNull(app.heightInches);
+				Assert.assertNull(app.gender);
+				Assert.assertTrue(app.residences.isEmpty());
+				Assert.assertTrue(app.references.isEmpty());
+				Assert.assertTrue(app.incomes.isEmpty());
+				Assert.assertEquals(1, app.phoneNumbers.size());
+				Assert.assertEquals(blank, app.phoneNumbers.get("home"));
+				
+				Assert.assertNull(m.struct.disclosedApr);
+				Assert.assertNull(m.struct.interestRate);
+				Assert.assertTrue(m.struct.financedFees.isEmpty());
+				Assert.assertTrue(m.struct.financedFeesMoney.isEmpty());
+				Assert.assertTrue(m.heldChecks.isEmpty());
+				Assert.assertTrue(m.vehicleTitles.isEmpty());
+				
+				Installment i = m.struct.installmentPlan.get(0);
+				Assert.assertEquals(1, i.accounts.size() + i.accountsMoney.size());
+				History h = m.history.get(0);
+				Assert.assertEquals(1, h.accounts.size() + h.accountsMoney.size());
+				Assert.assertNull(h.whenVoided);
+			}
+		}
+	}
+	
+	@Test
+	public void blankColumnsDontHideOthers() {
+		for (String blank : BLANKS) {
+			Loan l = loan()
+			.put(APP_RES_LINE_ONE_PREFIX + "home", blank)
+			.put(APP_RES_CITY_PREFIX + "home", "Nashville")
+			.put(APP_INC_PAY_FREQUENCY_PREFIX + "job", "weekly")
+			.put(APP_INC_AMOUNT_PREFIX + "job", blank)
+			.put(STRUCT_FINANCED_FEE_PREFIX + "fee", "10.00")
+			.put(STRUCT_FINANCED_FEE_PREFIX + "tax", blank)
+			.put(TA_CHECK_NUMBER_PREFIX + "check", "346")
+			.put(TA_CHECK_AMOUNT_PREFIX + "check", blank)
+			.put(COL_VTITLE_MAKE_PREFIX + "car", "Ford")
+			.put(COL_VTITLE_YEAR_PREFIX + "car", blank)
+			.put(APP_PHONE_PREFIX + "work", "2342342342");
+			
+			LoanModel m = Translator.parse(l);
+			Assert.assertEquals(1, m.app.residences.size());
+			Assert.assertNull(m.app.residences.get("home").lineOne);
+			Assert.assertEquals("Nashville", m.app.residences.get("home").city);
+			Assert.assertEquals(PayFrequency.WEEKLY, m.app.incomes.get("job").payFrequency);
+			Assert.assertNull(m.app.incomes.get("job").amount);
+			Assert.assertEquals(1, m.struct.financedFees.size());
+			Assert.assertEquals("346", m.heldChecks.get("check").checkNumber);
+			Assert.assertNull(m.heldChecks.get("check").amount);
+			Assert.assertEquals("Ford", m.vehicleTitles.get("car").make);
+			Assert.assertNull(m.vehicleTitles.get("car").year);
+			Assert.assertEquals("2342342342", m.app.phoneNumbers.get("work"));
+		}
+	}
+	
+	private static Loan loan() {
+		Loan l = new Loan()
+		.put(LOAN_ID, "1")
+		.put(STRUCT_TYPE, "payday")
+		.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z")
+		.put(STRUCT_LOAN_AMOUNT, "100.00");
+		
+		MapRecord i = new MapRecord();
+		i.put(INST_DUE_DATE, "2011-03-01");
+		i.put(INST_DUE_AMOUNT, "110.00");
+		i.put(INST_ACCOUNT_PREFIX + "principal", "110.00");
+		l.installments.add(i);
+		
+		MapRecord h = new MapRecord();
+		h.put(HIST_ACTION, "DRAW");
+		h.put(HIST_WHEN_HAPPENED, "2011-02-07T17:00:00.000Z");
+		h.put(HIST_AMOUNT, "100.00");
+		h.put(HIST_ACCOUNT_PREFIX + "principal", "100.00");
+		l.history.add(h);
+		return l;
+	}
+}
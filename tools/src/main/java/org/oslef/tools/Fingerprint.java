@@ -45,10 +45,19 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectWriter;
 import org.oslef.model.History;
 import org.oslef.model.LoanModel;
+import org.oslef.model.Money;
 import org.oslef.model.Translator;
 import org.oslef.tools.db.DbLoan;
 
 
+/**
+ * Portfolio totals. By default amounts are read and summed as 
+ * {@link BigDecimal}s. With {@link Translator.Amounts#MONEY} they are read as
+ * {@link Money} and summed into longs, exact to the cent, without allocating
+ * anything once every fee and account name has been seen; the public totals 
+ * are then brought up to date by {@link #settle()}, which 
+ * {@link FingerprintBuilder#fp()} and {@link #toString()} call.
+ */
 public final class Fingerprint {
 
 	public int loanCount = 0;
@@ -56,11 +65,37 @@ public final class Fingerprint {
 	public final Map<String, BigDecimal> totalFinancedFees = new HashMap<String, BigDecimal>();
 	public final Map<String, BigDecimal> totalBalances = new HashMap<String, BigDecimal>();
 	
+	private final Translator.Amounts amounts;
+	
+	// only with Amounts.MONEY
+	private long proceedsCents = 0;
+	private final Map<String, long[]> financedFeeCents = new HashMap<String, long[]>();
+	private final Map<String, long[]> balanceCents = new HashMap<String, long[]>();
+	
+	public Fingerprint() {
+		this(Translator.Amounts.DECIMAL);
+	}
+	
+	public Fingerprint(Translator.Amounts amounts) {
+		if (amounts == null) throw new NullPointerException();
+		this.amounts = amounts;
+	}
+	
 	public void update(DbLoan s) {
 		
-		LoanModel loan = Translator.parse(s, null);
+		LoanModel loan = Translator.parse(s, null, amounts);
 		
 		loanCount++;
+		
+		if (amounts == Translator.Amounts.MONEY) {
+			proceedsCents = Money.add(proceedsCents, loan.struct.loanAmountMoney.cents());
+			add(loan.struct.financedFeesMoney, financedFeeCents);
+			for (History h : loan.history) {
+				add(h.accountsMoney, balanceCents);
+			}
+			return;
+		}
+		
 		totalProceeds = totalProceeds.add(loan.struct.loanAmount);
 		
 		for (String name : loan.struct.financedFees.keySet()) {
@@ -82,6 +117,35 @@ public final class Fingerprint {
 		}
 	}
 	
+	/**
+	 * Copies the running totals into the public fields. Only needed with 
+	 * {@link Translator.Amounts#MONEY}.
+	 */
+	public Fingerprint settle() {
+		if (amounts != Translator.Amounts.MONEY) return this;
+		totalProceeds = BigDecimal.valueOf(proceedsCents, 2);
+		settle(financedFeeCents, totalFinancedFees);
+		settle(balanceCents, totalBalances);
+		return this;
+	}
+	
+	private static void add(Map<String, Money> values, Map<String, long[]> totals) {
+		for (Map.Entry<String, Money> e : values.entrySet()) {
+			long[] total = totals.get(e.getKey());
+			if (total == null) {
+				total = new long[1];
+				totals.put(e.getKey(), total);
+			}
+			total[0] = Money.add(total[0], e.getValue().cents());
+		}
+	}
+	
+	private static void settle(Map<String, long[]> cents, Map<String, BigDecimal> totals) {
+		for (Map.Entry<String, long[]> e : cents.entrySet()) {
+			totals.put(e.getKey(), BigDecimal.valueOf(e.getValue()[0], 2));
+		}
+	}
+	
 	private static ObjectWriter w;
 	{
 		ObjectMapper m = new ObjectMapper();
@@ -90,6 +154,7 @@ public final class Fingerprint {
 	
 	@Override
 	public String toString() {
+		settle();
 		try { return w.writeValueAsString(this); } 
 		catch (Exception ex) { throw new RuntimeException(ex); }
 	}
@@ -37,20 +37,29 @@
  */
 package org.oslef.tools;
 
+import org.oslef.model.Translator;
 import org.oslef.tools.db.DbLoan;
 import org.oslef.tools.db.OslefDb;
 import org.oslef.tools.db.Scanner;
 
 public final class FingerprintBuilder implements Scanner<DbLoan> {
 	
-	private final Fingerprint fp = new Fingerprint();
+	private final Fingerprint fp;
+	
+	public FingerprintBuilder() {
+		this(Translator.Amounts.DECIMAL);
+	}
+	
+	public FingerprintBuilder(Translator.Amounts amounts) {
+		fp = new Fingerprint(amounts);
+	}
 
 	public void inspect(DbLoan next) {
 		fp.update(next);
 	}
 	
 	public Fingerprint fp() {
-		return fp;
+		return fp.settle();
 	}
 	
 	public void build(OslefDb db) {
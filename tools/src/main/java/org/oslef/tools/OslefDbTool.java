@@ -38,17 +38,24 @@
 package org.oslef.tools;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectWriter;
 import org.oslef.format.Constants;
 import org.oslef.format.Inspector;
+import org.oslef.format.Loan;
 import org.oslef.format.MapRecord;
+import org.oslef.format.OffsetIndex;
+import org.oslef.format.RandomAccessReader;
 import org.oslef.format.Record;
-import org.oslef.format.Validator;
+import org.oslef.format.BatchValidator;
 import org.oslef.format.Inspector.RecordIterator;
-import org.oslef.format.Validator.CollectingListener;
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemListener;
+import org.oslef.model.SemanticValidator;
 import org.oslef.tools.db.DbLoan;
 import org.oslef.tools.db.OslefBdbDb;
 import org.oslef.tools.db.OslefDb;
@@ -65,6 +72,50 @@ public final class OslefDbTool {
 	}
 
 	public void populate(File oslefDir) throws Exception {
+		if (OffsetIndex.canIndex(oslefDir)) populateIndexed(oslefDir);
+		else populateScanned(oslefDir);
+	}
+	
+	/**
+	 * Puts each loan in the database once, complete with its installments and
+	 * history, instead of updating it for every child row.
+	 */
+	private void populateIndexed(File oslefDir) throws Exception {
+		
+		System.out.println("Indexing");
+		
+		RandomAccessReader r = new RandomAccessReader(oslefDir);
+		
+		System.out.println("Reading Loans");
+		
+		try {
+			for (String loanId : r.index().loanIds()) {
+				Loan l = r.get(loanId);
+				if (l == null) throw new RuntimeException("No loan record for installment: " + loanId);
+				
+				DbLoan s = new DbLoan();
+				s.id = UUID.randomUUID().toString();
+				s.loan.putAll(l.loan);
+				for (MapRecord i : l.installments) {
+					i.del(Constants.LOAN_ID); // skip redundant loan ids
+					s.installments.add(i);
+				}
+				for (MapRecord h : l.history) {
+					h.del(Constants.LOAN_ID);
+					s.history.add(h);
+				}
+				
+				db.putNoOverwrite(s);
+			}
+		}
+		finally {
+			r.close();
+		}
+		
+		db.sync();
+	}
+	
+	private void populateScanned(File oslefDir) throws Exception {
 		
 		System.out.println("Reading Loans");
 		
@@ -146,6 +197,27 @@ public final class OslefDbTool {
 		}
 	}
 	
+	/**
+	 * Prints the problems of each loan together. Problems arrive in loan 
+	 * order, so a loan is complete once the next one's problems start.
+	 */
+	private static final class LoanProblemPrinter implements ProblemListener {
+		
+		private final List<Problem> problems = new ArrayList<Problem>();
+		
+		public void problemEncountered(Problem p) {
+			if (!problems.isEmpty() && problems.get(0).loanIndex != p.loanIndex) flush();
+			problems.add(p);
+		}
+		
+		void flush() {
+			if (problems.isEmpty()) return;
+			System.out.println("-- Found " + problems.size() + " problems for loan " + problems.get(0).loanId + " ---------------------");
+			System.out.println(stringify(problems));
+			problems.clear();
+		}
+	}
+	
 	private static boolean deleteDir(File dir) {
 		if (dir.isDirectory()) {
 			String[] children = dir.list();
@@ -175,18 +247,15 @@ public final class OslefDbTool {
 		OslefDbTool tool = new OslefDbTool(db);
 		if (reset) tool.populate(oslefDir);
 		
+		final LoanProblemPrinter printer = new LoanProblemPrinter();
+		final BatchValidator v = new BatchValidator(printer).add(SemanticValidator.stage());
 		db.scan(new Scanner<DbLoan>() {
-			final CollectingListener l = new CollectingListener();
-			final Validator v = new Validator(l);
 			public void inspect(DbLoan next) {
-				l.clear();
-				v.validate(next);
-				if (l.problems.size() > 0) {
-					System.out.println("-- Found " + l.problems.size() + " problems for loan " + next.id + " ---------------------");
-					System.out.println(stringify(l.problems));
-				}
+				v.submit(next);
 			}
 		});
+		v.finish();
+		printer.flush();
 		
 		System.out.println("Building Fingerprint");
 		
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.tools.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.oslef.csv.CSVWriter;
+import org.oslef.csv.RowWriter;
+import org.oslef.format.Constants;
+import org.oslef.format.Loan;
+import org.oslef.format.MapRecord;
+import org.oslef.format.Record;
+import org.oslef.format.Schema;
+import org.oslef.format.Writer;
+
+/**
+ * Times an export of synthetic loans through the old {@link FileWriter} path
+ * and through {@link Writer}, which encodes into pooled direct buffers.
+ * 
+ * Usage: ExportBenchmark [outputDir] [loanCount] [rounds]
+ */
+public final class ExportBenchmark implements Constants {
+	
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "oslef-export-bench");
+		int loanCount = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+		
+		Loan[] loans = new Loan[1000];
+		Schema schema = new Schema();
+		for (int i=0; i<loans.length; i++) {
+			loans[i] = loan(i);
+			schema.consider(loans[i]);
+		}
+		
+		for (int round=0; round<rounds; round++) {
+			long before = time(new Export() {
+				public void run(Schema schema, File dir, Loan[] loans, int count) throws IOException {
+					exportWithFileWriter(schema, dir, loans, count);
+				}
+			}, schema, dir, loans, loanCount);
+			
+			long after = time(new Export() {
+				public void run(Schema schema, File dir, Loan[] loans, int count) throws IOException {
+					Writer w = new Writer(schema, dir);
+					for (int i=0; i<count; i++) {
+						w.write(loans[i % loans.length]);
+					}
+					w.close();
+				}
+			}, schema, dir, loans, loanCount);
+			
+			long bytes = 0;
+			for (File f : dir.listFiles()) {
+				bytes += f.length();
+			}
+			System.out.println("round " + (round + 1) + ": " + loanCount + " loans, " + (bytes / 1024 / 1024) + "MB; "
+				+ "FileWriter " + before + "ms (" + rate(bytes, before) + "MB/s), "
+				+ "ChannelWriter " + after + "ms (" + rate(bytes, after) + "MB/s)");
+		}
+		
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	private interface Export {
+		void run(Schema schema, File dir, Loan[] loans, int count) throws IOException;
+	}
+	
+	private static long time(Export export, Schema schema, File dir, Loan[] loans, int count) throws IOException {
+		long start = System.currentTimeMillis();
+		export.run(schema, dir, loans, count);
+		return System.currentTimeMillis() - start;
+	}
+	
+	private static long rate(long bytes, long millis) {
+		return bytes * 1000 / 1024 / 1024 / Math.max(1, millis);
+	}
+	
+	/**
+	 * What {@link Writer} used to do: an unbuffered {@link FileWriter} in 
+	 * the platform charset per file.
+	 */
+	private static void exportWithFileWriter(Schema schema, File dir, Loan[] loans, int count) throws IOException {
+		RowWriter loanWriter = new RowWriter(schema.loan(), new CSVWriter(new FileWriter(new File(dir, "loans.csv"))));
+		RowWriter installmentWriter = new RowWriter(schema.installmentPlan(), new CSVWriter(new FileWriter(new File(dir, "installments.csv"))));
+		RowWriter historyWriter = new RowWriter(schema.history(), new CSVWriter(new FileWriter(new File(dir, "history.csv"))));
+		loanWriter.writeHeader();
+		installmentWriter.writeHeader();
+		historyWriter.writeHeader();
+		for (int i=0; i<count; i++) {
+			Loan l = loans[i % loans.length];
+			String loanId = l.get(LOAN_ID);
+			write(l.loan, loanWriter, loanId);
+			for (Record r : l.installments) {
+				write(r, installmentWriter, loanId);
+			}
+			for (Record r : l.history) {
+				write(r, historyWriter, loanId);
+			}
+		}
+		loanWriter.close();
+		installmentWriter.close();
+		historyWriter.close();
+	}
+	
+	private static void write(Record r, RowWriter w, String loanId) throws IOException {
+		w.clear();
+		w.put(LOAN_ID, loanId);
+		for (String key : r.keys()) {
+			w.put(key, r.get(key));
+		}
+		w.write();
+	}
+	
+	private static Loan loan(int n) {
+		Loan l = new Loan()
+		.put(LOAN_ID, Integer.toString(n))
+		.put(APP_CUSTOMER_ID, Integer.toString(n * 7))
+		.put(APP_FIRST_NAME, "First " + n)
+		.put(APP_LAST_NAME, "Last, " + n)
+		.put(APP_DATE_OF_BIRTH, "1980-02-01")
+		.put(APP_EMAIL_ADDRESS, "borrower" + n + "@domain.com")
+		.put(APP_RES_LINE_ONE_PREFIX + "default", n + " Main St")
+		.put(APP_RES_CITY_PREFIX + "default", "Z\u00fcrich")
+		.put(APP_RES_STATE_PREFIX + "default", "TN")
+		.put(APP_RES_ZIP5_PREFIX + "default", "23423")
+		.put(APP_INC_EMPLOYER_NAME_PREFIX + "default", "Employer \"" + n + "\"")
+		.put(APP_INC_AMOUNT_PREFIX + "default", "1500.00")
+		.put(STRUCT_TYPE, "installment")
+		.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z")
+		.put(STRUCT_LOAN_AMOUNT, (n % 900 + 100) + ".00");
+		
+		for (int i=0; i<6; i++) {
+			MapRecord r = new MapRecord();
+			r.put(INST_DUE_DATE, "2011-0" + (i + 2) + "-01");
+			r.put(INST_DUE_AMOUNT, "110.00");
+			r.put(INST_ACCOUNT_PREFIX + "principal", "100.00");
+			r.put(INST_ACCOUNT_PREFIX + "fee", "10.00");
+			l.installments.add(r);
+		}
+		for (int i=0; i<4; i++) {
+			MapRecord r = new MapRecord();
+			r.put(HIST_ACTION, i == 0 ? "DRAW" : "PAYMENT");
+			r.put(HIST_WHEN_HAPPENED, "2011-0" + (i + 2) + "-07T16:29:54.778Z");
+			r.put(HIST_AMOUNT, "100.00");
+			l.history.add(r);
+		}
+		return l;
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.tools.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.oslef.format.Loan;
+import org.oslef.format.Reader;
+import org.oslef.tools.Generator;
+
+/**
+ * Times a full read of an OSLEF directory on 1, 2, 4, 8 and 16 threads, to 
+ * show how far the parallel path scales. The directory is filled by 
+ * {@link Generator} the first time. Each round reads with every thread count
+ * in turn, so compare later rounds rather than the first, and only count 
+ * thread counts up to the cores the machine has, which are printed first.
+ * 
+ * Usage: ReaderBenchmark [oslefDir] [loanCount] [rounds]
+ */
+public final class ReaderBenchmark {
+	
+	private static final int[] THREADS = {1, 2, 4, 8, 16};
+	
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "oslef-reader-bench");
+		int loanCount = args.length > 1 ? Integer.parseInt(args[1]) : 300000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		
+		if (!new File(dir, "loans.csv").exists()) {
+			if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+			new Generator(dir).generate(loanCount);
+		}
+		System.out.println(Runtime.getRuntime().availableProcessors() + " cores");
+		
+		for (int round=0; round<rounds; round++) {
+			StringBuilder sb = new StringBuilder("round " + (round + 1) + ":");
+			long single = 0;
+			for (int threads : THREADS) {
+				long start = System.currentTimeMillis();
+				int count = read(dir, threads);
+				long millis = Math.max(1, System.currentTimeMillis() - start);
+				if (threads == 1) single = millis;
+				sb.append(" " + threads + "t " + millis + "ms (" + (count * 1000L / millis) + " loans/s, " 
+					+ (single * 100 / millis) / 100.0 + "x)");
+			}
+			System.out.println(sb);
+		}
+	}
+	
+	private static int read(File dir, int threads) throws IOException {
+		Reader r = new Reader(dir, new Reader.Options().setParallelism(threads));
+		try {
+			int count = 0;
+			for (Loan l : r) {
+				if (l != null) count++;
+			}
+			return count;
+		}
+		finally {
+			r.close();
+		}
+	}
+}
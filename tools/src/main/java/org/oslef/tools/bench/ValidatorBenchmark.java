@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.tools.bench;
+
+import org.oslef.format.Constants;
+import org.oslef.format.Loan;
+import org.oslef.format.MapRecord;
+import org.oslef.format.Validator;
+import org.oslef.format.Validator.Problem;
+import org.oslef.format.Validator.ProblemListener;
+
+/**
+ * Times {@link Validator} over synthetic loans with the regex engine and with
+ * the hand-written scanners. Every round runs both engines over the same 
+ * loans after a warm-up pass, so compare later rounds rather than the first.
+ * Then times loans with 1k, 10k and 20k history rows each. The time per row 
+ * should stay flat as the history grows; if it climbs with the row count, 
+ * something in validation has gone quadratic again.
+ * 
+ * Usage: ValidatorBenchmark [loanCount] [rounds]
+ */
+public final class ValidatorBenchmark implements Constants {
+	
+	public static void main(String[] args) {
+		int loanCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		
+		Loan[] loans = new Loan[1000];
+		for (int i=0; i<loans.length; i++) {
+			loans[i] = loan(i);
+		}
+		
+		Counter regexProblems = new Counter();
+		Counter scannerProblems = new Counter();
+		Validator regex = new Validator(regexProblems, Validator.Engine.REGEX);
+		Validator scanner = new Validator(scannerProblems, Validator.Engine.SCANNER);
+		
+		time(regex, loans, loans.length);
+		time(scanner, loans, loans.length);
+		
+		for (int round=0; round<rounds; round++) {
+			regexProblems.count = scannerProblems.count = 0;
+			long before = time(regex, loans, loanCount);
+			long after = time(scanner, loans, loanCount);
+			
+			if (regexProblems.count != scannerProblems.count) {
+				throw new IllegalStateException("Engines disagree: " + regexProblems.count + " vs " + scannerProblems.count + " problems");
+			}
+			System.out.println("round " + (round + 1) + ": " + loanCount + " loans, " + regexProblems.count + " problems; "
+				+ "regex " + before + "ms (" + rate(loanCount, before) + " loans/s), "
+				+ "scanner " + after + "ms (" + rate(loanCount, after) + " loans/s)");
+		}
+		
+		int[] historySizes = {1000, 10000, 20000};
+		for (int round=0; round<rounds; round++) {
+			StringBuilder sb = new StringBuilder("history round " + (round + 1) + ":");
+			for (int size : historySizes) {
+				Loan l = longHistory(size);
+				long millis = time(scanner, new Loan[]{l}, 1);
+				sb.append(" " + size + " rows " + millis + "ms (" + rate(size, millis) + " rows/s)");
+			}
+			System.out.println(sb);
+		}
+	}
+	
+	private static final class Counter implements ProblemListener {
+		long count;
+		public void problemEncountered(Problem p) {
+			count++;
+		}
+	}
+	
+	private static long time(Validator v, Loan[] loans, int count) {
+		long start = System.currentTimeMillis();
+		for (int i=0; i<count; i++) {
+			v.validate(loans[i % loans.length]);
+		}
+		return System.currentTimeMillis() - start;
+	}
+	
+	private static Loan longHistory(int size) {
+		Loan l = loan(1);
+		for (int i=0; i<size; i++) {
+			MapRecord r = new MapRecord();
+			r.put(HIST_ACTION, "ACCRUAL");
+			r.put(HIST_WHEN_HAPPENED, "2011-02-07T16:29:54.778Z");
+			r.put(HIST_AMOUNT, "0." + (i % 100));
+			r.put(HIST_ACCOUNT_PREFIX + "interest", Integer.toString(i));
+			l.history.add(r);
+		}
+		return l;
+	}
+	
+	private static long rate(long count, long millis) {
+		return count * 1000 / Math.max(1, millis);
+	}
+	
+	/**
+	 * A fully populated loan, with the occasional bad value so that the 
+	 * failure paths are timed too.
+	 */
+	private static Loan loan(int n) {
+		Loan l = new Loan()
+		.put(LOAN_ID, Integer.toString(n))
+		.put(APP_SSN, n % 50 == 0 ? "12345678" : "123456789")
+		.put(APP_FIRST_NAME, "First " + n)
+		.put(APP_LAST_NAME, "Last " + n)
+		.put(APP_DATE_OF_BIRTH, "1980-02-01")
+		.put(APP_DRIVERS_LICENSE_NUMBER, "TN" + (1000000 + n))
+		.put(APP_EMAIL_ADDRESS, "borrower" + n + "@domain.com")
+		.put(APP_HEIGHT_INCHES, "70")
+		.put(APP_GENDER, n % 2 == 0 ? "MALE" : "female")
+		.put(APP_PHONE_PREFIX + "home", "6155551212")
+		.put(APP_PHONE_PREFIX + "cell", "6155551213")
+		.put(APP_RES_STATE_PREFIX + "default", n % 40 == 0 ? "XX" : "TN")
+		.put(APP_RES_ZIP5_PREFIX + "default", "37203")
+		.put(APP_RES_ZIP4_PREFIX + "default", "1234")
+		.put(APP_INC_PAY_FREQUENCY_PREFIX + "default", "BIWEEKLY")
+		.put(APP_INC_AMOUNT_PREFIX + "default", "1500.00")
+		.put(APP_INC_NEXT_PAY_DATE_PREFIX + "default", "2011-02-11")
+		.put(APP_INC_MONTHS_OF_SERVICE_PREFIX + "default", "24")
+		.put(APP_INC_HAS_DIRECT_DEPOSIT_PREFIX + "default", "true")
+		.put(STRUCT_TYPE, "installment")
+		.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z")
+		.put(STRUCT_LOAN_AMOUNT, n % 30 == 0 ? "1,000.00" : (n % 900 + 100) + ".00")
+		.put(STRUCT_DISCLOSED_APR, "391.07")
+		.put(STRUCT_INTEREST_RATE, "0.15")
+		.put(TA_CHECK_ROUTING_NUMBER_PREFIX + "default", "064000017")
+		.put(TA_CHECK_ACCOUNT_NUMBER_PREFIX + "default", "1234567890")
+		.put(TA_CHECK_NUMBER_PREFIX + "default", "1001")
+		.put(TA_CHECK_AMOUNT_PREFIX + "default", "115.00")
+		.put(TA_CHECK_DATE_PREFIX + "default", "2011-02-21");
+		
+		for (int i=0; i<6; i++) {
+			MapRecord r = new MapRecord();
+			r.put(INST_DUE_DATE, "2011-0" + (i + 2) + "-01");
+			r.put(INST_DUE_AMOUNT, "110.00");
+			r.put(INST_ACCOUNT_PREFIX + "principal", "100.00");
+			r.put(INST_ACCOUNT_PREFIX + "fee", "10.00");
+			l.installments.add(r);
+		}
+		for (int i=0; i<4; i++) {
+			MapRecord r = new MapRecord();
+			r.put(HIST_ACTION, i == 0 ? "DRAW" : "PAYMENT");
+			r.put(HIST_WHEN_HAPPENED, "2011-0" + (i + 2) + "-07T16:29:54.778Z");
+			r.put(HIST_AMOUNT, "100.00");
+			r.put(HIST_ACCOUNT_PREFIX + "principal", "-90.00");
+			l.history.add(r);
+		}
+		return l;
+	}
+}
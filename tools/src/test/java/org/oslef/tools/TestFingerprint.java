@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013, Moss Computing Inc.
+ *
+ * This file is part of oslef.
+ *
+ * oslef is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * oslef is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with oslef; see the file COPYING.  If not, write to the
+ * Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Linking this library statically or dynamically with other modules is
+ * making a combined work based on this library.  Thus, the terms and
+ * conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.oslef.tools;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.oslef.format.Constants;
+import org.oslef.format.MapRecord;
+import org.oslef.model.Translator;
+import org.oslef.tools.db.DbLoan;
+
+public final class TestFingerprint implements Constants {
+	
+	@Test
+	public void moneyTotalsMatchDecimalTotals() {
+		Fingerprint decimal = new Fingerprint();
+		Fingerprint money = new Fingerprint(Translator.Amounts.MONEY);
+		for (int i=0; i<500; i++) {
+			DbLoan l = loan(i);
+			decimal.update(l);
+			money.update(l);
+		}
+		money.settle();
+		
+		Assert.assertEquals(500, money.loanCount);
+		Assert.assertEquals(decimal.loanCount, money.loanCount);
+		Assert.assertEquals(0, decimal.totalProceeds.compareTo(money.totalProceeds));
+		Assert.assertEquals(new BigDecimal("62498.75"), money.totalProceeds);
+		assertSameTotals(decimal.totalFinancedFees, money.totalFinancedFees);
+		assertSameTotals(decimal.totalBalances, money.totalBalances);
+		Assert.assertEquals(2, money.totalFinancedFees.size());
+		Assert.assertEquals(3, money.totalBalances.size());
+	}
+	
+	@Test
+	public void settleIsRepeatable() {
+		Fingerprint money = new Fingerprint(Translator.Amounts.MONEY);
+		money.update(loan(1));
+		BigDecimal proceeds = money.settle().totalProceeds;
+		Assert.assertEquals(proceeds, money.settle().totalProceeds);
+		money.update(loan(2));
+		Assert.assertEquals(proceeds, money.totalProceeds);
+		Assert.assertEquals(new BigDecimal("250.00"), money.settle().totalProceeds);
+	}
+	
+	private static void assertSameTotals(Map<String, BigDecimal> expected, Map<String, BigDecimal> actual) {
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, BigDecimal> e : expected.entrySet()) {
+			BigDecimal a = actual.get(e.getKey());
+			Assert.assertEquals(e.getKey() + ": " + e.getValue() + " != " + a, 0, e.getValue().compareTo(a));
+			Assert.assertEquals(2, a.scale());
+		}
+	}
+	
+	/**
+	 * Amounts written with no, one and two decimal places, and some that
+	 * binary floating point can't hold.
+	 */
+	private static DbLoan loan(int i) {
+		DbLoan l = new DbLoan();
+		String amount = i % 4 == 0 ? "100" : i % 4 == 1 ? "125.5" : i % 4 == 2 ? "124.50" : "149.99";
+		l.put(LOAN_ID, Integer.toString(i))
+		.put(STRUCT_TYPE, "payday")
+		.put(STRUCT_WHEN_EXECUTED, "2011-02-07T16:29:54.778Z")
+		.put(STRUCT_LOAN_AMOUNT, amount)
+		.put(STRUCT_FINANCED_FEE_PREFIX + "origination", "0.1")
+		.put(STRUCT_FINANCED_FEE_PREFIX + "tax", i % 3 == 0 ? "0.07" : " ");
+		
+		MapRecord draw = new MapRecord();
+		draw.put(HIST_ACTION, "DRAW");
+		draw.put(HIST_WHEN_HAPPENED, "2011-02-07T17:00:00.000Z");
+		draw.put(HIST_AMOUNT, amount);
+		draw.put(HIST_ACCOUNT_PREFIX + "principal", amount);
+		l.history.add(draw);
+		
+		MapRecord payment = new MapRecord();
+		payment.put(HIST_ACTION, "PAYMENT");
+		payment.put(HIST_WHEN_HAPPENED, "2011-03-01T17:00:00.000Z");
+		payment.put(HIST_AMOUNT, "-30.33");
+		payment.put(HIST_ACCOUNT_PREFIX + "principal", "-20.3");
+		payment.put(HIST_ACCOUNT_PREFIX + "fee", "-10.03");
+		payment.put(HIST_ACCOUNT_PREFIX + "interest", i % 2 == 0 ? "0.00" : "");
+		l.history.add(payment);
+		return l;
+	}
+}